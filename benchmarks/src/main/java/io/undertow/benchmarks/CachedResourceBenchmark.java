@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.server.handlers.PathHandler;
+import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.resource.CachingResourceManager;
+import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.Resource;
+import io.undertow.server.handlers.resource.ResourceHandler;
+
+/**
+ * Compares serving a resource from the buffer cache on the blocking path ({@link Resource#serveBlocking}, as used by
+ * the default servlet) with the async path used by {@link ResourceHandler}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class CachedResourceBenchmark {
+
+    private static final String HOST = "localhost";
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"blocking", "async"})
+    public String mode;
+
+    private Path dir;
+    private Undertow server;
+    private int port;
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("undertow-benchmark");
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        Files.write(dir.resolve("file.bin"), data);
+
+        final CachingResourceManager resourceManager = new CachingResourceManager(100, 10 * 1024 * 1024,
+                new DirectBufferCache(1024, 1024, 64 * 1024 * 1024), new PathResourceManager(dir), -1);
+        PathHandler root = Handlers.path();
+        root.addPrefixPath("/async", new ResourceHandler(resourceManager));
+        root.addPrefixPath("/blocking", new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                Resource resource = resourceManager.getResource(exchange.getRelativePath());
+                exchange.setResponseContentLength(resource.getContentLength());
+                resource.serveBlocking(exchange.getOutputStream(), exchange);
+            }
+        }));
+
+        port = LoopbackClient.freePort();
+        server = Undertow.builder()
+                .addHttpListener(port, HOST)
+                .setHandler(root)
+                .build();
+        server.start();
+        path = "/" + mode + "/file.bin";
+
+        //make sure the resource is in the buffer cache before we start measuring
+        try (LoopbackClient client = new LoopbackClient(HOST, port)) {
+            for (int i = 0; i < 50; ++i) {
+                client.get(path);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.stop();
+        Files.deleteIfExists(dir.resolve("file.bin"));
+        Files.deleteIfExists(dir);
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        LoopbackClient client;
+
+        @Setup(Level.Trial)
+        public void setup(CachedResourceBenchmark benchmark) throws IOException {
+            client = new LoopbackClient(HOST, benchmark.port);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public long cachedResource(ClientState state) throws IOException {
+        return state.client.get(path);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.handler.codec.http.DefaultHttpHeadersFactory;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.UndertowOptionMap;
+import io.undertow.httpcore.UndertowOptions;
+import io.undertow.server.DefaultExchangeHandler;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+
+/**
+ * Measures a complete exchange through core, from the {@link DefaultExchangeHandler} used by the server to the end
+ * of the response, without any network IO.
+ * <p>
+ * This covers {@link HttpServerExchange} creation, request path and query string parsing, running the handler chain,
+ * committing the response and the completion listeners. With {@code recycle} the exchanges are reused, see
+ * {@link UndertowOptions#RECYCLE_EXCHANGES}, run with {@code -prof gc} to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExchangeBenchmark {
+
+    private static final String MESSAGE = "Hello World";
+
+    @Param({"/plaintext", "/api/users/12345/orders?page=2&size=20"})
+    public String uri;
+
+    @Param({"hello", "routing"})
+    public String handler;
+
+    @Param({"false", "true"})
+    public boolean recycle;
+
+    private DefaultExchangeHandler exchangeHandler;
+    private HttpHeaders requestHeaders;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HttpHandler hello = new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+                exchange.writeAsync(MESSAGE);
+            }
+        };
+        HttpHandler root;
+        if (handler.equals("routing")) {
+            root = new RoutingHandler()
+                    .get("/plaintext", hello)
+                    .get("/api/users", hello)
+                    .post("/api/users", hello)
+                    .get("/api/users/{id}", hello)
+                    .put("/api/users/{id}", hello)
+                    .get("/api/users/{id}/orders", hello)
+                    .get("/api/users/{id}/orders/{order}", hello)
+                    .get("/api/products/{id}", hello)
+                    .get("/static/*", hello);
+        } else {
+            root = hello;
+        }
+        exchangeHandler = new DefaultExchangeHandler(root, UndertowOptionMap.create(UndertowOptions.RECYCLE_EXCHANGES, recycle));
+
+        requestHeaders = DefaultHttpHeadersFactory.headersFactory().withValidation(false).newHeaders();
+        requestHeaders.add(HttpHeaderNames.HOST, "localhost:8080");
+        requestHeaders.add(HttpHeaderNames.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:60.0) Gecko/20100101 Firefox/60.0");
+        requestHeaders.add(HttpHeaderNames.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        requestHeaders.add(HttpHeaderNames.ACCEPT_LANGUAGE, "en-US,en;q=0.5");
+        requestHeaders.add(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate");
+        requestHeaders.add(HttpHeaderNames.CONNECTION, "keep-alive");
+        requestHeaders.add(HttpHeaderNames.COOKIE, "JSESSIONID=1A530637289A03B07199A44E8D531427; theme=dark");
+    }
+
+    @Benchmark
+    public int exchange() {
+        InMemoryHttpExchange exchange = new InMemoryHttpExchange("GET", uri, requestHeaders.copy());
+        exchangeHandler.handle(exchange);
+        if (!exchange.isComplete()) {
+            throw new IllegalStateException("Exchange was not completed");
+        }
+        return exchange.getStatusCode();
+    }
+}
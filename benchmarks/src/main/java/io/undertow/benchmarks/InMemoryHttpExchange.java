@@ -0,0 +1,431 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.DefaultHttpHeadersFactory;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.undertow.httpcore.BufferAllocator;
+import io.undertow.httpcore.HttpExchange;
+import io.undertow.httpcore.HttpExchangeBase;
+import io.undertow.httpcore.InputChannel;
+import io.undertow.httpcore.IoCallback;
+import io.undertow.httpcore.SSLSessionInfo;
+import io.undertow.httpcore.UndertowOptionMap;
+
+/**
+ * A {@link HttpExchange} for a request without a body, that discards the response.
+ * <p>
+ * This allows the exchange processing in core to be measured without any network IO. All work runs on the calling
+ * thread, which is treated as the IO thread.
+ */
+public class InMemoryHttpExchange extends HttpExchangeBase implements InputChannel {
+
+    private static final InetSocketAddress SOURCE = new InetSocketAddress("127.0.0.1", 54321);
+    private static final InetSocketAddress DESTINATION = new InetSocketAddress("127.0.0.1", 8080);
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    static final BufferAllocator ALLOCATOR = new BufferAllocator() {
+        @Override
+        public ByteBuf allocateBuffer() {
+            return PooledByteBufAllocator.DEFAULT.buffer(getBufferSize());
+        }
+
+        @Override
+        public ByteBuf allocateBuffer(boolean direct) {
+            return allocateBuffer(direct, getBufferSize());
+        }
+
+        @Override
+        public ByteBuf allocateBuffer(int bufferSize) {
+            return PooledByteBufAllocator.DEFAULT.buffer(bufferSize);
+        }
+
+        @Override
+        public ByteBuf allocateBuffer(boolean direct, int bufferSize) {
+            if (direct) {
+                return PooledByteBufAllocator.DEFAULT.directBuffer(bufferSize);
+            } else {
+                return PooledByteBufAllocator.DEFAULT.heapBuffer(bufferSize);
+            }
+        }
+
+        @Override
+        public int getBufferSize() {
+            return 8192;
+        }
+    };
+
+    private final String method;
+    private final String uri;
+    private final HttpHeaders requestHeaders;
+    private final HttpHeaders responseHeaders = DefaultHttpHeadersFactory.headersFactory().withValidation(false).newHeaders();
+    private UndertowOptionMap options = UndertowOptionMap.EMPTY;
+    private int statusCode = 200;
+    private long maxEntitySize;
+    private long readTimeout;
+
+    public InMemoryHttpExchange(String method, String uri, HttpHeaders requestHeaders) {
+        this.method = method;
+        this.uri = uri;
+        this.requestHeaders = requestHeaders;
+        //there is no request body
+        terminateRequest();
+    }
+
+    @Override
+    public BufferAllocator getBufferAllocator() {
+        return ALLOCATOR;
+    }
+
+    @Override
+    public HttpExchange setStatusCode(int code) {
+        this.statusCode = code;
+        return this;
+    }
+
+    @Override
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public String getRequestHeader(String name) {
+        return requestHeaders.get(name);
+    }
+
+    @Override
+    public List<String> getRequestHeaders(String name) {
+        return requestHeaders.getAll(name);
+    }
+
+    @Override
+    public boolean containsRequestHeader(String name) {
+        return requestHeaders.contains(name);
+    }
+
+    @Override
+    public void removeRequestHeader(String name) {
+        requestHeaders.remove(name);
+    }
+
+    @Override
+    public void setRequestHeader(String name, String value) {
+        requestHeaders.set(name, value);
+    }
+
+    @Override
+    public Collection<String> getRequestHeaderNames() {
+        return requestHeaders.names();
+    }
+
+    @Override
+    public void addRequestHeader(String name, String value) {
+        requestHeaders.add(name, value);
+    }
+
+    @Override
+    public void clearRequestHeaders() {
+        requestHeaders.clear();
+    }
+
+    @Override
+    public List<String> getResponseHeaders(String name) {
+        return responseHeaders.getAll(name);
+    }
+
+    @Override
+    public boolean containsResponseHeader(String name) {
+        return responseHeaders.contains(name);
+    }
+
+    @Override
+    public void removeResponseHeader(String name) {
+        responseHeaders.remove(name);
+    }
+
+    @Override
+    public void setResponseHeader(String name, String value) {
+        responseHeaders.set(name, value);
+    }
+
+    @Override
+    public Collection<String> getResponseHeaderNames() {
+        return responseHeaders.names();
+    }
+
+    @Override
+    public void addResponseHeader(String name, String value) {
+        responseHeaders.add(name, value);
+    }
+
+    @Override
+    public void clearResponseHeaders() {
+        responseHeaders.clear();
+    }
+
+    @Override
+    public String getResponseHeader(String name) {
+        return responseHeaders.get(name);
+    }
+
+    @Override
+    public String getRequestHeader(CharSequence name) {
+        return requestHeaders.get(name);
+    }
+
+    @Override
+    public List<String> getRequestHeaders(CharSequence name) {
+        return requestHeaders.getAll(name);
+    }
+
+    @Override
+    public boolean containsRequestHeader(CharSequence name) {
+        return requestHeaders.contains(name);
+    }
+
+    @Override
+    public void removeRequestHeader(CharSequence name) {
+        requestHeaders.remove(name);
+    }
+
+    @Override
+    public void setRequestHeader(CharSequence name, String value) {
+        requestHeaders.set(name, value);
+    }
+
+    @Override
+    public void addRequestHeader(CharSequence name, String value) {
+        requestHeaders.add(name, value);
+    }
+
+    @Override
+    public String getResponseHeader(CharSequence name) {
+        return responseHeaders.get(name);
+    }
+
+    @Override
+    public List<String> getResponseHeaders(CharSequence name) {
+        return responseHeaders.getAll(name);
+    }
+
+    @Override
+    public boolean containsResponseHeader(CharSequence name) {
+        return responseHeaders.contains(name);
+    }
+
+    @Override
+    public void removeResponseHeader(CharSequence name) {
+        responseHeaders.remove(name);
+    }
+
+    @Override
+    public void setResponseHeader(CharSequence name, String value) {
+        responseHeaders.set(name, value);
+    }
+
+    @Override
+    public void addResponseHeader(CharSequence name, String value) {
+        responseHeaders.add(name, value);
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestScheme() {
+        return "http";
+    }
+
+    @Override
+    public String getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public boolean isInIoThread() {
+        return true;
+    }
+
+    @Override
+    public boolean isHttp2() {
+        return false;
+    }
+
+    @Override
+    protected <T> void writeAsync0(ByteBuf data, boolean last, IoCallback<T> callback, T context) {
+        if (data != null) {
+            data.release();
+        }
+        if (last) {
+            terminateResponse();
+        }
+        if (callback != null) {
+            callback.onComplete(this, context);
+        }
+    }
+
+    @Override
+    protected void writeBlocking0(ByteBuf data, boolean last) throws IOException {
+        if (data != null) {
+            data.release();
+        }
+        if (last) {
+            terminateResponse();
+        }
+    }
+
+    @Override
+    public InputChannel getInputChannel() {
+        return this;
+    }
+
+    @Override
+    public ByteBuf readAsync() throws IOException {
+        return null;
+    }
+
+    @Override
+    public boolean isReadable() {
+        return true;
+    }
+
+    @Override
+    public <T> void setReadHandler(BiConsumer<InputChannel, T> handler, T context) {
+        handler.accept(this, context);
+    }
+
+    @Override
+    public int readBytesAvailable() {
+        return 0;
+    }
+
+    @Override
+    public ByteBuf readBlocking() throws IOException {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getDestinationAddress() {
+        return DESTINATION;
+    }
+
+    @Override
+    public InetSocketAddress getSourceAddress() {
+        return SOURCE;
+    }
+
+    @Override
+    public void close() {
+        terminateRequest();
+        terminateResponse();
+    }
+
+    @Override
+    public EventExecutor getIoThread() {
+        return ImmediateEventExecutor.INSTANCE;
+    }
+
+    @Override
+    public void setUpgradeListener(Consumer<Object> listener) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Executor getWorker() {
+        return DIRECT_EXECUTOR;
+    }
+
+    @Override
+    public UndertowOptionMap getUndertowOptions() {
+        return options;
+    }
+
+    @Override
+    public void setUndertowOptions(UndertowOptionMap options) {
+        this.options = options;
+    }
+
+    @Override
+    public void sendContinue() {
+    }
+
+    @Override
+    public void discardRequest() {
+    }
+
+    @Override
+    public boolean isUpgradeSupported() {
+        return false;
+    }
+
+    @Override
+    public SSLSessionInfo getSslSessionInfo() {
+        return null;
+    }
+
+    @Override
+    public boolean isIoOperationQueued() {
+        return false;
+    }
+
+    @Override
+    public void setMaxEntitySize(long maxEntitySize) {
+        this.maxEntitySize = maxEntitySize;
+    }
+
+    @Override
+    public long getMaxEntitySize() {
+        return maxEntitySize;
+    }
+
+    @Override
+    public void setReadTimeout(long readTimeoutMs) {
+        this.readTimeout = readTimeoutMs;
+    }
+
+    @Override
+    public long getReadTimeout() {
+        return readTimeout;
+    }
+}
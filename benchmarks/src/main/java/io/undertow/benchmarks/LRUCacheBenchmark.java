@@ -0,0 +1,141 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.undertow.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.undertow.server.handlers.cache.LRUCache;
+
+/**
+ * Compares the eviction policies of {@link LRUCache}, by throughput and by hit ratio, on a cache that is used the way
+ * the resource and path caches are: a lookup, and an add on a miss.
+ * <p>
+ * The <code>zipfian</code> workload draws keys from a Zipfian distribution over a key space a hundred times the size
+ * of the cache. The <code>scan</code> workload interleaves the same Zipfian keys with a sweep over keys that are never
+ * used again, like a crawler requesting every URL. The hit ratio of each run is printed when it ends, and the hits and
+ * misses are reported as secondary results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LRUCacheBenchmark {
+
+    private static final int CACHE_SIZE = 1000;
+    private static final int KEY_SPACE = CACHE_SIZE * 100;
+    private static final int TRACE_SIZE = 1 << 20;
+    private static final int TRACE_MASK = TRACE_SIZE - 1;
+
+    @Param({"LRU", "FIFO", "TINY_LFU"})
+    public LRUCache.EvictionPolicy policy;
+
+    @Param({"zipfian", "scan"})
+    public String workload;
+
+    private LRUCache<String, String> cache;
+    private String[] trace;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cache = new LRUCache<>(CACHE_SIZE, -1, policy);
+        final String[] keys = new String[KEY_SPACE];
+        for (int i = 0; i < KEY_SPACE; ++i) {
+            keys[i] = "/resource/" + i;
+        }
+        final double[] cumulative = zipfian(KEY_SPACE, 0.99);
+        final Random random = new Random(42);
+        trace = new String[TRACE_SIZE];
+        int sweep = 0;
+        for (int i = 0; i < TRACE_SIZE; ++i) {
+            if (workload.equals("scan") && (i & 1) == 1) {
+                trace[i] = "/crawl/" + sweep++;
+            } else {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble());
+                trace[i] = keys[index < 0 ? Math.min(-index - 1, KEY_SPACE - 1) : index];
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        System.out.printf("%n%s %s hit ratio %.3f, %d evictions%n", policy, workload, hits / (double) (hits + misses), cache.getEvictions());
+    }
+
+    private static double[] zipfian(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; ++i) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; ++i) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long hits;
+        public long misses;
+        int index;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            index = new Random().nextInt(TRACE_SIZE);
+        }
+    }
+
+    @Benchmark
+    public String getOrAdd(Counters counters) {
+        final String key = trace[counters.index++ & TRACE_MASK];
+        String value = cache.get(key);
+        if (value == null) {
+            counters.misses++;
+            cache.add(key, key);
+            return key;
+        }
+        counters.hits++;
+        return value;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ParameterLimitException;
+import io.undertow.util.URLUtils;
+
+/**
+ * A copy of the request path parsing as it was before the path was decoded in a single pass and the query parameters
+ * were parsed lazily, so {@link RequestPathBenchmark} can compare the two. The query string is still parsed with
+ * {@link URLUtils}, so the difference in parameter decoding is not included.
+ */
+final class LegacyRequestPath {
+
+    private LegacyRequestPath() {
+    }
+
+    public static void setExchangeRequestPath(final HttpServerExchange exchange, final String encodedPath, final String charset, boolean decode, final boolean allowEncodedSlash, StringBuilder decodeBuffer, int maxParameters) throws ParameterLimitException {
+        boolean requiresDecode = false;
+        final StringBuilder pathBuilder = new StringBuilder();
+        int currentPathPartIndex = 0;
+        for (int i = 0; i < encodedPath.length(); ++i) {
+            char c = encodedPath.charAt(i);
+            if (c == '?') {
+                String part;
+                String encodedPart = encodedPath.substring(currentPathPartIndex, i);
+                if (requiresDecode) {
+                    part = decode(encodedPart, charset, allowEncodedSlash,false, decodeBuffer);
+                } else {
+                    part = encodedPart;
+                }
+                pathBuilder.append(part);
+                part = pathBuilder.toString();
+                exchange.setRequestPath(part);
+                exchange.setRelativePath(part);
+                exchange.setRequestURI(encodedPath.substring(0, i));
+                final String qs = encodedPath.substring(i + 1);
+                exchange.setQueryString(qs);
+                URLUtils.parseQueryString(qs, exchange, charset, decode, maxParameters);
+                return;
+            } else if(c == ';') {
+                String part;
+                String encodedPart = encodedPath.substring(currentPathPartIndex, i);
+                if (requiresDecode) {
+                    part = decode(encodedPart, charset, allowEncodedSlash, false, decodeBuffer);
+                } else {
+                    part = encodedPart;
+                }
+                pathBuilder.append(part);
+                exchange.setRequestURI(encodedPath);
+                currentPathPartIndex = i + 1 + URLUtils.parsePathParams(encodedPath.substring(i + 1), exchange, charset, decode, maxParameters);
+                i = currentPathPartIndex -1 ;
+            } else if(c == '%' || c == '+') {
+                requiresDecode = decode;
+            }
+        }
+
+        String part;
+        String encodedPart = encodedPath.substring(currentPathPartIndex);
+        if (requiresDecode) {
+            part = decode(encodedPart, charset, allowEncodedSlash, false, decodeBuffer);
+        } else {
+            part = encodedPart;
+        }
+        pathBuilder.append(part);
+        part = pathBuilder.toString();
+        exchange.setRequestPath(part);
+        exchange.setRelativePath(part);
+        exchange.setRequestURI(encodedPath);
+    }
+
+    static String decode(String s, String enc, boolean decodeSlash, boolean formEncoding, StringBuilder buffer) {
+        buffer.setLength(0);
+        boolean needToChange = false;
+        int numChars = s.length();
+        int i = 0;
+
+        while (i < numChars) {
+            char c = s.charAt(i);
+            if (c == '+') {
+                if (formEncoding) {
+                    buffer.append(' ');
+                    i++;
+                    needToChange = true;
+                } else {
+                    i++;
+                    buffer.append(c);
+                }
+            } else if (c == '%' || c > 127) {
+                /*
+                 * Starting with this instance of a character
+                 * that needs to be encoded, process all
+                 * consecutive substrings of the form %xy. Each
+                 * substring %xy will yield a byte. Convert all
+                 * consecutive  bytes obtained this way to whatever
+                 * character(s) they represent in the provided
+                 * encoding.
+                 *
+                 * Note that we need to decode the whole rest of the value, we can't just decode
+                 * three characters. For multi code point characters there if the code point can be
+                 * represented as an alphanumeric
+                 */
+                try {
+                    // guess the size of the remaining bytes
+                    // of remaining bytes
+                    // this works for percent encoded characters,
+                    // not so much for unencoded bytes
+                    byte[] bytes = new byte[numChars - i + 1];
+
+                    int pos = 0;
+
+                    while ((i < numChars)) {
+                        if (c == '%') {
+                            // we need 2 more characters to decode the % construct
+                            if ((i + 2) >= s.length()) {
+                                throw new IllegalArgumentException(s);
+                            }
+                            char p1 = Character.toLowerCase(s.charAt(i + 1));
+                            char p2 = Character.toLowerCase(s.charAt(i + 2));
+                            if (!decodeSlash && ((p1 == '2' && p2 == 'f') || (p1 == '5' && p2 == 'c'))) {
+                                if(pos + 2 >= bytes.length) {
+                                    bytes = expandBytes(bytes);
+                                }
+                                bytes[pos++] = (byte) c;
+                                // should be copied with preserved upper/lower case
+                                bytes[pos++] = (byte) s.charAt(i + 1);
+                                bytes[pos++] = (byte) s.charAt(i + 2);
+                                i += 3;
+
+                                if (i < numChars) {
+                                    c = s.charAt(i);
+                                }
+                                continue;
+                            }
+                            int v = 0;
+                            if (p1 >= '0' && p1 <= '9') {
+                                v = (p1 - '0') << 4;
+                            } else if (p1 >= 'a' && p1 <= 'f') {
+                                v = (p1 - 'a' + 10) << 4;
+                            } else {
+                                throw new IllegalArgumentException(s);
+                            }
+                            if (p2 >= '0' && p2 <= '9') {
+                                v += (p2 - '0');
+                            } else if (p2 >= 'a' && p2 <= 'f') {
+                                v += (p2 - 'a' + 10);
+                            } else {
+                                throw new IllegalArgumentException(s);
+                            }
+                            if (v < 0) {
+                                throw new IllegalArgumentException(s);
+                            }
+
+                            if(pos == bytes.length) {
+                                bytes = expandBytes(bytes);
+                            }
+                            bytes[pos++] = (byte) v;
+                            i += 3;
+                            if (i < numChars) {
+                                c = s.charAt(i);
+                            }
+                        } else if (c == '+' && formEncoding) {
+                            if(pos == bytes.length) {
+                                bytes = expandBytes(bytes);
+                            }
+                            bytes[pos++] = (byte) ' ';
+                            ++i;
+                            if (i < numChars) {
+                                c = s.charAt(i);
+                            }
+                        } else {
+                            if (pos == bytes.length) {
+                                bytes = expandBytes(bytes);
+                            }
+                            ++i;
+                            if(c >> 8 != 0) {
+                                bytes[pos++] = (byte) (c >> 8);
+                                if (pos == bytes.length) {
+                                    bytes = expandBytes(bytes);
+                                }
+                                bytes[pos++] = (byte) c;
+                            } else {
+                                bytes[pos++] = (byte) c;
+                                if (i < numChars) {
+                                    c = s.charAt(i);
+                                }
+                            }
+
+                        }
+                    }
+
+                    String decoded = new String(bytes, 0, pos, enc);
+                    buffer.append(decoded);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(s, e);
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalArgumentException(s, e);
+                }
+                needToChange = true;
+                break;
+            } else {
+                buffer.append(c);
+                i++;
+            }
+        }
+
+        return (needToChange ? buffer.toString() : s);
+    }
+
+    private static byte[] expandBytes(byte[] bytes) {
+        byte[] newBytes = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, newBytes, 0, bytes.length);
+        return newBytes;
+    }
+}
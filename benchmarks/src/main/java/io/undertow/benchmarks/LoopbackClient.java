@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal keep-alive HTTP/1.1 client used to drive a server over loopback.
+ * <p>
+ * It does as little work as possible per request, so that the benchmark results are dominated by the server. Only
+ * responses with a Content-Length are supported, and the body is read and discarded.
+ */
+public final class LoopbackClient implements Closeable {
+
+    private static final byte[] CONTENT_LENGTH = "content-length:".getBytes(StandardCharsets.US_ASCII);
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final String host;
+    private final byte[] line = new byte[8192];
+    private final byte[] body = new byte[65536];
+
+    public LoopbackClient(String host, int port) throws IOException {
+        this.host = host;
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port));
+        this.in = new BufferedInputStream(socket.getInputStream(), 65536);
+        this.out = socket.getOutputStream();
+    }
+
+    /**
+     * @return A port that is currently free on the loopback interface
+     */
+    public static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    /**
+     * Sends a GET request and reads the response.
+     *
+     * @param path The request path
+     * @return The number of body bytes that were read
+     */
+    public long get(String path) throws IOException {
+        return send("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n");
+    }
+
+    /**
+     * Sends a raw request and reads the response.
+     *
+     * @param request The request, including the request line and the terminating empty line
+     * @return The number of body bytes that were read
+     */
+    public long send(String request) throws IOException {
+        out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        long contentLength = -1;
+        int length = readLine();
+        if (length < 12 || line[9] != '2') {
+            throw new IOException("Unexpected response " + new String(line, 0, length, StandardCharsets.ISO_8859_1));
+        }
+        while ((length = readLine()) > 0) {
+            if (startsWithIgnoreCase(length, CONTENT_LENGTH)) {
+                contentLength = Long.parseLong(new String(line, CONTENT_LENGTH.length, length - CONTENT_LENGTH.length, StandardCharsets.US_ASCII).trim());
+            }
+        }
+        if (contentLength < 0) {
+            throw new IOException("No content length");
+        }
+        long remaining = contentLength;
+        while (remaining > 0) {
+            int r = in.read(body, 0, (int) Math.min(body.length, remaining));
+            if (r == -1) {
+                throw new EOFException();
+            }
+            remaining -= r;
+        }
+        return contentLength;
+    }
+
+    private boolean startsWithIgnoreCase(int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; ++i) {
+            if (Character.toLowerCase(line[i]) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a line into the line buffer, without the trailing CRLF
+     *
+     * @return The length of the line
+     */
+    private int readLine() throws IOException {
+        int pos = 0;
+        for (;;) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            if (b == '\n') {
+                return pos > 0 && line[pos - 1] == '\r' ? pos - 1 : pos;
+            }
+            line[pos++] = (byte) b;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
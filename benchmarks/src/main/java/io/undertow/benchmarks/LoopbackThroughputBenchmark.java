@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.UndertowEngine;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.server.handlers.PathHandler;
+import io.undertow.vertx.VertxUndertowEngine;
+
+/**
+ * Requests per second for small responses, through a server running on the {@link VertxUndertowEngine} and a keep-alive
+ * connection per benchmark thread over loopback.
+ * <p>
+ * Each endpoint exercises a different part of the exchange: an async write from the IO thread, a blocking write from a
+ * worker thread, and routing with a path template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LoopbackThroughputBenchmark {
+
+    private static final String HOST = "localhost";
+    private static final byte[] MESSAGE = "Hello World".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"/plaintext", "/blocking", "/users/12345/orders"})
+    public String path;
+
+    private Undertow server;
+    private int port;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        UndertowEngine engine = ServiceLoader.load(UndertowEngine.class).iterator().next();
+        if (!(engine instanceof VertxUndertowEngine)) {
+            throw new IllegalStateException("Expected the Vert.x engine, found " + engine);
+        }
+        HttpHandler plaintext = new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+                exchange.setResponseContentLength(MESSAGE.length);
+                exchange.writeAsync(exchange.allocateBuffer().writeBytes(MESSAGE), true, null, null);
+            }
+        };
+        PathHandler root = Handlers.path();
+        root.addExactPath("/plaintext", plaintext);
+        root.addExactPath("/blocking", new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+                exchange.setResponseContentLength(MESSAGE.length);
+                exchange.getOutputStream().write(MESSAGE);
+            }
+        }));
+        root.addPrefixPath("/users", new RoutingHandler()
+                .get("/{id}", plaintext)
+                .get("/{id}/orders", plaintext)
+                .get("/{id}/orders/{order}", plaintext));
+
+        port = LoopbackClient.freePort();
+        server = Undertow.builder()
+                .addHttpListener(port, HOST)
+                .setHandler(root)
+                .build();
+        server.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        LoopbackClient client;
+
+        @Setup(Level.Trial)
+        public void setup(LoopbackThroughputBenchmark benchmark) throws IOException {
+            client = new LoopbackClient(HOST, benchmark.port);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public long request(ClientState state) throws IOException {
+        return state.client.get(path);
+    }
+}
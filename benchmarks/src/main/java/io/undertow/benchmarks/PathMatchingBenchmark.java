@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.handler.codec.http.DefaultHttpHeadersFactory;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+import io.undertow.util.PathMatcher;
+
+/**
+ * Measures the path based dispatch used by {@link io.undertow.server.handlers.PathHandler} and
+ * {@link RoutingHandler}.
+ * <p>
+ * The routing benchmark creates a new exchange for every invocation, as routing adds the template parameters to it,
+ * see {@link RequestPathBenchmark#newExchange()} for the cost of this.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathMatchingBenchmark {
+
+    private static final String[] PREFIXES = {
+            "/api", "/api/v1", "/api/v2", "/static", "/static/css", "/static/js", "/static/images",
+            "/admin", "/admin/users", "/login", "/logout", "/health", "/metrics", "/docs", "/docs/api"};
+
+    private static final String[] TEMPLATES = {
+            "/api/users", "/api/users/{id}", "/api/users/{id}/orders", "/api/users/{id}/orders/{order}",
+            "/api/products", "/api/products/{id}", "/api/products/{id}/reviews", "/admin/{section}",
+            "/health", "/metrics", "/static/*"};
+
+    @Param({"/health", "/api/users/12345/orders", "/static/images/logo.png", "/not/mapped"})
+    public String path;
+
+    private PathMatcher<String> pathMatcher;
+    private RoutingHandler routingHandler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pathMatcher = new PathMatcher<>("default");
+        for (String prefix : PREFIXES) {
+            pathMatcher.addPrefixPath(prefix, prefix);
+        }
+        pathMatcher.addExactPath("/health", "health");
+        pathMatcher.addExactPath("/favicon.ico", "favicon");
+
+        HttpHandler handler = new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+            }
+        };
+        routingHandler = new RoutingHandler();
+        routingHandler.setFallbackHandler(handler);
+        for (String template : TEMPLATES) {
+            routingHandler.get(template, handler);
+            routingHandler.post(template, handler);
+        }
+    }
+
+    @Benchmark
+    public PathMatcher.PathMatch<String> pathMatcher() {
+        return pathMatcher.match(path);
+    }
+
+    @Benchmark
+    public HttpServerExchange routingHandler() throws Exception {
+        HttpServerExchange exchange = new HttpServerExchange(new InMemoryHttpExchange("GET", path, DefaultHttpHeadersFactory.headersFactory().withValidation(false).newHeaders()), -1);
+        exchange.setRequestPath(path);
+        exchange.setRelativePath(path);
+        routingHandler.handleRequest(exchange);
+        return exchange;
+    }
+}
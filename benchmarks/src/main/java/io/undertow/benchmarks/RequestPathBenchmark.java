@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.benchmarks;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.handler.codec.http.DefaultHttpHeadersFactory;
+import io.undertow.httpcore.UndertowOptions;
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ParameterLimitException;
+import io.undertow.util.URLUtils;
+
+/**
+ * Measures parsing of the request URI into the request path, relative path, query string and query parameters,
+ * and the URL decoding it uses. The {@code legacy} benchmarks run the implementation from before the single pass
+ * decoder and lazy query parameters, see {@link LegacyRequestPath}.
+ * <p>
+ * {@link #newExchange()} is the cost of creating the exchange, which is included in {@link #setExchangeRequestPath()}.
+ * The query parameters are only parsed when they are used, so {@link #setExchangeRequestPathAndQueryParameters()}
+ * includes reading them for a fair comparison with the legacy version, which always parses them.
+ * {@link #setExchangeRequestPathAndQueryParameter()} looks up a single parameter in the compact form, without building
+ * the map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestPathBenchmark {
+
+    @Param({
+            "/plaintext",
+            "/api/users/12345/orders",
+            "/files/some%20directory/r%C3%A9sum%C3%A9.pdf",
+            "/search?q=undertow&page=2&size=20&sort=name",
+            "/app;jsessionid=1A530637289A03B07199A44E8D531427/index.html?lang=en"})
+    public String uri;
+
+    private final StringBuilder decodeBuffer = new StringBuilder();
+
+    @Benchmark
+    public HttpServerExchange newExchange() {
+        return new HttpServerExchange(new InMemoryHttpExchange("GET", uri, DefaultHttpHeadersFactory.headersFactory().withValidation(false).newHeaders()), -1);
+    }
+
+    @Benchmark
+    public HttpServerExchange setExchangeRequestPath() throws ParameterLimitException {
+        HttpServerExchange exchange = newExchange();
+        Connectors.setExchangeRequestPath(exchange, uri, "UTF-8", true, false, decodeBuffer, UndertowOptions.DEFAULT_MAX_PARAMETERS);
+        return exchange;
+    }
+
+    @Benchmark
+    public HttpServerExchange legacySetExchangeRequestPath() throws ParameterLimitException {
+        HttpServerExchange exchange = newExchange();
+        LegacyRequestPath.setExchangeRequestPath(exchange, uri, "UTF-8", true, false, decodeBuffer, UndertowOptions.DEFAULT_MAX_PARAMETERS);
+        return exchange;
+    }
+
+    @Benchmark
+    public Map<String, Deque<String>> setExchangeRequestPathAndQueryParameters() throws ParameterLimitException {
+        return setExchangeRequestPath().getQueryParameters();
+    }
+
+    @Benchmark
+    public String setExchangeRequestPathAndQueryParameter() throws ParameterLimitException {
+        return setExchangeRequestPath().getQueryParameter("page");
+    }
+
+    @Benchmark
+    public Map<String, Deque<String>> legacySetExchangeRequestPathAndQueryParameters() throws ParameterLimitException {
+        return legacySetExchangeRequestPath().getQueryParameters();
+    }
+
+    @Benchmark
+    public String decode() {
+        return URLUtils.decode(uri, "UTF-8", false, false, decodeBuffer);
+    }
+
+    @Benchmark
+    public String legacyDecode() {
+        return LegacyRequestPath.decode(uri, "UTF-8", false, false, decodeBuffer);
+    }
+}
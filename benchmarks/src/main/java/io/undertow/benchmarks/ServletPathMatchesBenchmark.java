@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.undertow.servlet.Servlets;
+import io.undertow.servlet.api.DeploymentInfo;
+import io.undertow.servlet.api.DeploymentManager;
+import io.undertow.servlet.handlers.ServletPathMatch;
+import io.undertow.servlet.handlers.ServletPathMatches;
+
+/**
+ * Measures the servlet path resolution that is done for every servlet request, and for every include or forward.
+ * <p>
+ * The deployment has exact, prefix, extension and default mappings, with filters mapped by both URL pattern and
+ * servlet name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServletPathMatchesBenchmark {
+
+    @Param({"/exact", "/api/users/12345", "/pages/index.jsp", "/static/css/site.css"})
+    public String path;
+
+    private DeploymentManager manager;
+    private ServletPathMatches servletPaths;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DeploymentInfo info = Servlets.deployment()
+                .setClassLoader(ServletPathMatchesBenchmark.class.getClassLoader())
+                .setContextPath("/")
+                .setDeploymentName("benchmark.war")
+                .addServlet(Servlets.servlet("exact", BenchmarkServlet.class).addMapping("/exact"))
+                .addServlet(Servlets.servlet("api", BenchmarkServlet.class).addMapping("/api/*"))
+                .addServlet(Servlets.servlet("admin", BenchmarkServlet.class).addMapping("/admin/*"))
+                .addServlet(Servlets.servlet("jsp", BenchmarkServlet.class).addMappings("*.jsp", "*.jspx"))
+                .addServlet(Servlets.servlet("default", BenchmarkServlet.class).addMapping("/"))
+                .addFilter(Servlets.filter("security", BenchmarkFilter.class))
+                .addFilterUrlMapping("security", "/api/*", DispatcherType.REQUEST)
+                .addFilterUrlMapping("security", "/admin/*", DispatcherType.REQUEST)
+                .addFilter(Servlets.filter("encoding", BenchmarkFilter.class))
+                .addFilterServletNameMapping("encoding", "jsp", DispatcherType.REQUEST);
+        manager = Servlets.newContainer().addDeployment(info);
+        manager.deploy();
+        servletPaths = manager.getDeployment().getServletPaths();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.undeploy();
+    }
+
+    @Benchmark
+    public ServletPathMatch getServletHandlerByPath() {
+        return servletPaths.getServletHandlerByPath(path);
+    }
+
+    public static class BenchmarkServlet extends HttpServlet {
+    }
+
+    public static class BenchmarkFilter implements Filter {
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+            chain.doFilter(request, response);
+        }
+    }
+}
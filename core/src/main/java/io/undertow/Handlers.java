@@ -51,6 +51,8 @@ import io.undertow.server.handlers.SetAttributeHandler;
 import io.undertow.server.handlers.SetHeaderHandler;
 import io.undertow.server.handlers.URLDecodingHandler;
 import io.undertow.server.handlers.builder.PredicatedHandler;
+import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.cache.ResponseCacheHandler;
 import io.undertow.server.handlers.resource.ResourceHandler;
 import io.undertow.server.handlers.resource.ResourceManager;
 import io.undertow.httpcore.UndertowOptions;
@@ -419,6 +421,17 @@ public class Handlers {
         return new DisableCacheHandler(next);
     }
 
+    /**
+     * Returns a handler that caches the responses of the next handler, as a shared HTTP cache
+     *
+     * @param dataCache The cache that holds the response bodies
+     * @param next      The next handler
+     * @return The handler
+     */
+    public static ResponseCacheHandler responseCache(final DirectBufferCache dataCache, final HttpHandler next) {
+        return new ResponseCacheHandler(next, dataCache);
+    }
+
     /**
      * Returns a handler that dumps requests to the log for debugging purposes.
      *
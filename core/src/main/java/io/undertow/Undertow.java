@@ -38,6 +38,7 @@ import io.undertow.httpcore.UndertowOptionMap;
 import io.undertow.httpcore.UndertowOptions;
 import io.undertow.server.DefaultExchangeHandler;
 import io.undertow.server.HttpHandler;
+import io.undertow.util.VirtualThreads;
 
 /**
  * Convenience class used to build an Undertow server.
@@ -49,6 +50,7 @@ public final class Undertow {
 
     private final int ioThreads;
     private final int workerThreads;
+    private final boolean virtualThreadWorker;
     private final List<ListenerConfig> listeners = new ArrayList<>();
     private volatile List<ListenerInfo> listenerInfo;
     private final HttpHandler rootHandler;
@@ -73,6 +75,7 @@ public final class Undertow {
     private Undertow(Builder builder) {
         this.ioThreads = builder.ioThreads;
         this.workerThreads = builder.workerThreads;
+        this.virtualThreadWorker = builder.virtualThreadWorker;
         this.listeners.addAll(builder.listeners);
         this.rootHandler = builder.handler;
         this.worker = builder.worker;
@@ -133,11 +136,15 @@ public final class Undertow {
         try {
 
             if (internalWorker) {
-                worker = Executors.newFixedThreadPool(workerThreads);
+                if (virtualThreadWorker) {
+                    worker = VirtualThreads.newExecutor("undertow-worker-");
+                } else {
+                    worker = Executors.newFixedThreadPool(workerThreads);
+                }
             }
-            engineInstance = engine.start(ioThreads, worker, allocator);
+            engineInstance = engine.start(ioThreads, worker, allocator, serverOptions);
 
-            DefaultExchangeHandler handler = new DefaultExchangeHandler(rootHandler);
+            DefaultExchangeHandler handler = new DefaultExchangeHandler(rootHandler, serverOptions);
             listenerInfo = new ArrayList<>();
             for (ListenerConfig listener : listeners) {
                 UndertowLogger.ROOT_LOGGER.debugf("Configuring listener with getProtocol %s for interface %s and port %s", listener.type, listener.host, listener.port);
@@ -329,6 +336,7 @@ public final class Undertow {
         int bufferSize;
         int ioThreads;
         int workerThreads;
+        boolean virtualThreadWorker;
         boolean directBuffers;
         final List<ListenerConfig> listeners = new ArrayList<>();
         HttpHandler handler;
@@ -388,6 +396,20 @@ public final class Undertow {
             return this;
         }
 
+        /**
+         * If this is true the worker runs every task in a new virtual thread, instead of using a pool of
+         * {@link #setWorkerThreads(int) worker threads}. Blocking requests then only use memory while they wait, so a
+         * very large number of them can be in progress at once. This requires Java 21 or later, and has no effect if a
+         * {@link #setWorker(ExecutorService) worker} is provided.
+         *
+         * @param virtualThreadWorker <code>true</code> to run blocking tasks in virtual threads
+         * @return this builder
+         */
+        public Builder setVirtualThreadWorker(final boolean virtualThreadWorker) {
+            this.virtualThreadWorker = virtualThreadWorker;
+            return this;
+        }
+
         public Builder setDirectBuffers(final boolean directBuffers) {
             this.directBuffers = directBuffers;
             return this;
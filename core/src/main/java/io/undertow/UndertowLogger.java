@@ -408,4 +408,16 @@ UndertowLogger extends BasicLogger {
     @LogMessage(level = ERROR)
     @Message(id = 5093, value = "Failed to run task")
     void failedToRunTask(@Cause Throwable t);
+
+    @LogMessage(level = WARN)
+    @Message(id = 5094, value = "Exchange for %s %s was garbage collected without being released, it was either never completed or a handler never returned")
+    void exchangeLeaked(String method, String uri);
+
+    @LogMessage(level = WARN)
+    @Message(id = 5095, value = "Could not watch %s for changes, cached resources will only be refreshed when their max age expires")
+    void couldNotWatchForChanges(Object resourceManager, @Cause Throwable t);
+
+    @LogMessage(level = ERROR)
+    @Message(id = 5096, value = "Failed to handle file system changes in %s")
+    void failedToHandleFileSystemChanges(Path path, @Cause Throwable t);
 }
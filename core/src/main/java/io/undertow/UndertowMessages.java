@@ -20,6 +20,7 @@ package io.undertow;
 
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.file.Path;
 
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLHandshakeException;
@@ -580,4 +581,13 @@ public interface UndertowMessages {
 
     @Message(id = 192, value = "Form value is a in-memory file, use getFileItem() instead")
     IllegalStateException formValueIsInMemoryFile();
+
+    @Message(id = 193, value = "Virtual threads are not supported by this JVM, Java 21 or later is required")
+    IllegalStateException virtualThreadsNotSupported();
+
+    @Message(id = 194, value = "Exchange was used after it was recycled")
+    IllegalStateException exchangeUsedAfterRecycle();
+
+    @Message(id = 195, value = "Failed to watch %s for changes")
+    IllegalStateException failedToWatchForChanges(Path path, @Cause IOException cause);
 }
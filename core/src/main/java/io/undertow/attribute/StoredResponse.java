@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.attribute;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import io.netty.buffer.ByteBuf;
+import io.undertow.httpcore.AsciiHeaderNames;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.StoredResponseHandler;
+
+/**
+ * The response body, as stored by {@link StoredResponseHandler}.
+ * <p>
+ * The body is decoded using the charset from the response content type, or ISO-8859-1 if none is specified.
+ */
+public class StoredResponse implements ExchangeAttribute {
+
+    public static final String STORED_RESPONSE = "%{STORED_RESPONSE}";
+
+    public static final ExchangeAttribute INSTANCE = new StoredResponse();
+
+    private StoredResponse() {
+
+    }
+
+    @Override
+    public String readAttribute(final HttpServerExchange exchange) {
+        ByteBuf data = exchange.getAttachment(StoredResponseHandler.RESPONSE);
+        if (data == null) {
+            return null;
+        }
+        return data.toString(data.readerIndex(), data.readableBytes(), charset(exchange));
+    }
+
+    private static Charset charset(final HttpServerExchange exchange) {
+        String contentType = exchange.getResponseHeader(AsciiHeaderNames.CONTENT_TYPE);
+        if (contentType != null) {
+            String value = HttpHeaderNames.extractQuotedValueFromHeader(contentType, "charset");
+            if (value != null) {
+                try {
+                    return Charset.forName(value);
+                } catch (IllegalArgumentException e) {
+                    //unsupported or illegal charset name, fall through to the default
+                }
+            }
+        }
+        return StandardCharsets.ISO_8859_1;
+    }
+
+    @Override
+    public void writeAttribute(final HttpServerExchange exchange, final String newValue) throws ReadOnlyAttributeException {
+        throw new ReadOnlyAttributeException("Stored Response", newValue);
+    }
+
+    public static final class Builder implements ExchangeAttributeBuilder {
+
+        @Override
+        public String name() {
+            return "Stored Response";
+        }
+
+        @Override
+        public ExchangeAttribute build(final String token) {
+            if (token.equals(STORED_RESPONSE)) {
+                return StoredResponse.INSTANCE;
+            }
+            return null;
+        }
+
+        @Override
+        public int priority() {
+            return 0;
+        }
+    }
+}
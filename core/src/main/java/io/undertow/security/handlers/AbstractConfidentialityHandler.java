@@ -23,7 +23,7 @@ import java.net.URISyntaxException;
 import io.undertow.UndertowLogger;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.StatusCodes;
 
 /**
@@ -49,7 +49,7 @@ public abstract class AbstractConfidentialityHandler implements HttpHandler {
                 URI redirectUri = getRedirectURI(exchange);
                 UndertowLogger.SECURITY_LOGGER.debugf("Redirecting request %s to %s to meet confidentiality requirements", exchange, redirectUri);
                 exchange.setStatusCode(StatusCodes.FOUND);
-                exchange.setResponseHeader(HttpHeaderNames.LOCATION, redirectUri.toString());
+                exchange.setResponseHeader(AsciiHeaderNames.LOCATION, redirectUri.toString());
             } catch (Exception e) {
                 UndertowLogger.REQUEST_LOGGER.exceptionProcessingRequest(e);
                 exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
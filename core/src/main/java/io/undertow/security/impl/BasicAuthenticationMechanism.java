@@ -46,7 +46,7 @@ import io.undertow.security.idm.PasswordCredential;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.form.FormParserFactory;
 import io.undertow.util.FlexBase64;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 
 /**
  * The authentication handler responsible for BASIC authentication as described by RFC2617
@@ -138,7 +138,7 @@ public class BasicAuthenticationMechanism implements AuthenticationMechanism {
 
                         Charset charset = this.charset;
                         if(!userAgentCharsets.isEmpty()) {
-                            String ua = exchange.getRequestHeader(HttpHeaderNames.USER_AGENT);
+                            String ua = exchange.getRequestHeader(AsciiHeaderNames.USER_AGENT);
                             if(ua != null) {
                                 for (Map.Entry<Pattern, Charset> entry : userAgentCharsets.entrySet()) {
                                     if(entry.getKey().matcher(ua).find()) {
@@ -26,13 +26,15 @@ import java.util.concurrent.RejectedExecutionException;
 
 import io.netty.buffer.ByteBuf;
 import io.undertow.UndertowLogger;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.UndertowMessages;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.StatusCodes;
 import io.undertow.httpcore.UndertowOptions;
 import io.undertow.server.handlers.Cookie;
 import io.undertow.util.DateUtils;
 import io.undertow.util.LegacyCookieSupport;
 import io.undertow.util.ParameterLimitException;
+import io.undertow.util.QueryParameters;
 import io.undertow.util.URLUtils;
 
 /**
@@ -56,7 +58,7 @@ public class Connectors {
         boolean enableRfc6265Validation = exchange.getUndertowOptions().get(UndertowOptions.ENABLE_RFC6265_COOKIE_VALIDATION, UndertowOptions.DEFAULT_ENABLE_RFC6265_COOKIE_VALIDATION);
         if (cookies != null) {
             for (Map.Entry<String, Cookie> entry : cookies.entrySet()) {
-                exchange.addResponseHeader(HttpHeaderNames.SET_COOKIE, getCookieString(entry.getValue(), enableRfc6265Validation));
+                exchange.addResponseHeader(AsciiHeaderNames.SET_COOKIE, getCookieString(entry.getValue(), enableRfc6265Validation));
             }
         }
     }
@@ -279,6 +281,16 @@ public class Connectors {
     }
 
     public static void executeRootHandler(final HttpHandler handler, final HttpServerExchange exchange) {
+        //a pooled exchange must not be recycled while the handlers are still running
+        exchange.retain();
+        try {
+            executeHandlerChain(handler, exchange);
+        } finally {
+            exchange.release();
+        }
+    }
+
+    private static void executeHandlerChain(final HttpHandler handler, final HttpServerExchange exchange) {
         try {
             exchange.beginExecutingHandlerChain();
             handler.handleRequest(exchange);
@@ -298,8 +310,9 @@ public class Connectors {
                 if (dispatchTask != null) {
                     executor = executor == null ? exchange.getWorker() : executor;
                     try {
-                        executor.execute(dispatchTask);
+                        executor.execute(exchange.retainUntilRun(dispatchTask));
                     } catch (RejectedExecutionException e) {
+                        exchange.release();
                         UndertowLogger.REQUEST_LOGGER.debug("Failed to dispatch to worker", e);
                         exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
                         exchange.endExchange();
@@ -350,55 +363,48 @@ public class Connectors {
      */
     public static void setExchangeRequestPath(final HttpServerExchange exchange, final String encodedPath, final String charset, boolean decode, final boolean allowEncodedSlash, StringBuilder decodeBuffer, int maxParameters) throws ParameterLimitException {
         boolean requiresDecode = false;
-        final StringBuilder pathBuilder = new StringBuilder();
+        //only needed if there are path parameters, otherwise the path is a single part of the URI
+        StringBuilder pathBuilder = null;
         int currentPathPartIndex = 0;
-        for (int i = 0; i < encodedPath.length(); ++i) {
+        final int length = encodedPath.length();
+        for (int i = 0; i < length; ++i) {
             char c = encodedPath.charAt(i);
             if (c == '?') {
-                String part;
                 String encodedPart = encodedPath.substring(currentPathPartIndex, i);
-                if (requiresDecode) {
-                    part = URLUtils.decode(encodedPart, charset, allowEncodedSlash,false, decodeBuffer);
-                } else {
-                    part = encodedPart;
-                }
-                pathBuilder.append(part);
-                part = pathBuilder.toString();
-                exchange.setRequestPath(part);
-                exchange.setRelativePath(part);
-                exchange.setRequestURI(encodedPath.substring(0, i));
+                setRequestPath(exchange, pathBuilder, requiresDecode ? URLUtils.decode(encodedPart, charset, allowEncodedSlash, false, decodeBuffer) : encodedPart);
+                exchange.setRequestURI(currentPathPartIndex == 0 ? encodedPart : encodedPath.substring(0, i));
                 final String qs = encodedPath.substring(i + 1);
                 exchange.setQueryString(qs);
-                URLUtils.parseQueryString(qs, exchange, charset, decode, maxParameters);
+                //the parameters are only parsed if they are used, but the limit is enforced now
+                if (QueryParameters.count(qs) > maxParameters) {
+                    throw UndertowMessages.MESSAGES.tooManyParameters(maxParameters);
+                }
+                exchange.setUnparsedQueryString(qs, charset, decode);
                 return;
-            } else if(c == ';') {
-                String part;
+            } else if (c == ';') {
                 String encodedPart = encodedPath.substring(currentPathPartIndex, i);
-                if (requiresDecode) {
-                    part = URLUtils.decode(encodedPart, charset, allowEncodedSlash, false, decodeBuffer);
-                } else {
-                    part = encodedPart;
+                if (pathBuilder == null) {
+                    pathBuilder = new StringBuilder();
                 }
-                pathBuilder.append(part);
+                pathBuilder.append(requiresDecode ? URLUtils.decode(encodedPart, charset, allowEncodedSlash, false, decodeBuffer) : encodedPart);
                 exchange.setRequestURI(encodedPath);
                 currentPathPartIndex = i + 1 + URLUtils.parsePathParams(encodedPath.substring(i + 1), exchange, charset, decode, maxParameters);
-                i = currentPathPartIndex -1 ;
-            } else if(c == '%' || c == '+') {
+                i = currentPathPartIndex - 1;
+            } else if (c == '%' || c == '+') {
                 requiresDecode = decode;
             }
         }
 
-        String part;
         String encodedPart = encodedPath.substring(currentPathPartIndex);
-        if (requiresDecode) {
-            part = URLUtils.decode(encodedPart, charset, allowEncodedSlash, false, decodeBuffer);
-        } else {
-            part = encodedPart;
+        setRequestPath(exchange, pathBuilder, requiresDecode ? URLUtils.decode(encodedPart, charset, allowEncodedSlash, false, decodeBuffer) : encodedPart);
+        exchange.setRequestURI(encodedPath);
+    }
+
+    private static void setRequestPath(final HttpServerExchange exchange, final StringBuilder pathBuilder, String part) {
+        if (pathBuilder != null) {
+            part = pathBuilder.append(part).toString();
         }
-        pathBuilder.append(part);
-        part = pathBuilder.toString();
         exchange.setRequestPath(part);
         exchange.setRelativePath(part);
-        exchange.setRequestURI(encodedPath);
     }
 }
@@ -1,20 +1,44 @@
 package io.undertow.server;
 
+import io.netty.util.concurrent.FastThreadLocal;
 import io.undertow.httpcore.ExchangeHandler;
 import io.undertow.httpcore.HttpExchange;
+import io.undertow.httpcore.UndertowOptionMap;
+import io.undertow.httpcore.UndertowOptions;
 
 public class DefaultExchangeHandler implements ExchangeHandler {
 
+    /**
+     * Scratch space for decoding the request path, requests are dispatched from the IO threads so there is one per IO
+     * thread.
+     */
+    private static final FastThreadLocal<StringBuilder> DECODE_BUFFER = new FastThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
+
     private final HttpHandler handler;
+    private final ExchangePool pool;
 
     public DefaultExchangeHandler(HttpHandler handler) {
+        this(handler, UndertowOptionMap.EMPTY);
+    }
+
+    /**
+     * @param handler The root handler
+     * @param options The server options, these control if exchanges are recycled
+     */
+    public DefaultExchangeHandler(HttpHandler handler, UndertowOptionMap options) {
         this.handler = handler;
+        this.pool = options.get(UndertowOptions.RECYCLE_EXCHANGES, false) ? new ExchangePool(options.get(UndertowOptions.RECYCLE_EXCHANGES_DEBUG, false)) : null;
     }
 
     @Override
     public void handle(HttpExchange delegate) {
-        HttpServerExchange exchange = new HttpServerExchange(delegate, -1);
-        Connectors.setExchangeRequestPath(exchange, delegate.getRequestURI(), "UTF-8", true, false, new StringBuilder());
+        HttpServerExchange exchange = pool == null ? new HttpServerExchange(delegate, -1) : pool.acquire(delegate, -1);
+        Connectors.setExchangeRequestPath(exchange, delegate.getRequestURI(), "UTF-8", true, false, DECODE_BUFFER.get());
         Connectors.executeRootHandler(handler, exchange);
     }
 }
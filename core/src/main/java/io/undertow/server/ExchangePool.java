@@ -0,0 +1,189 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.lang.ref.Cleaner;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.undertow.UndertowLogger;
+import io.undertow.UndertowMessages;
+import io.undertow.httpcore.HttpExchange;
+import io.undertow.httpcore.UndertowOptions;
+
+/**
+ * Recycles {@link HttpServerExchange} objects, see {@link UndertowOptions#RECYCLE_EXCHANGES}.
+ * <p>
+ * Each IO thread has its own free list. A pooled exchange holds one reference until it completes, and one for every
+ * handler chain or dispatched task that is running for it. When the last reference is released the exchange is reset
+ * by a task on its IO thread, so that nothing on the stack that released it can still be using it, and put on the
+ * free list of that thread, which is the thread that will handle its next request.
+ * <p>
+ * In debug mode exchanges are never reused. A recycled exchange has its delegate replaced by one that fails on every
+ * call, so anything that uses it afterwards fails straight away, and exchanges that are garbage collected without
+ * ever being released are logged.
+ */
+final class ExchangePool {
+
+    /**
+     * The most exchanges that are kept for each IO thread.
+     */
+    private static final int MAX_POOLED = 256;
+
+    private static final HttpExchange RECYCLED = (HttpExchange) Proxy.newProxyInstance(ExchangePool.class.getClassLoader(), new Class<?>[]{HttpExchange.class}, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return "recycled exchange";
+                }
+            }
+            throw UndertowMessages.MESSAGES.exchangeUsedAfterRecycle();
+        }
+    });
+
+    private final boolean debug;
+    private final FastThreadLocal<ArrayDeque<HttpServerExchange>> free = new FastThreadLocal<ArrayDeque<HttpServerExchange>>() {
+        @Override
+        protected ArrayDeque<HttpServerExchange> initialValue() {
+            return new ArrayDeque<>();
+        }
+    };
+
+    ExchangePool(final boolean debug) {
+        this.debug = debug;
+    }
+
+    /**
+     * Gets an exchange for a new request, this must be called on the IO thread of the request.
+     */
+    HttpServerExchange acquire(final HttpExchange delegate, final long maxEntitySize) {
+        HttpServerExchange exchange = debug ? null : free.get().pollLast();
+        if (exchange == null) {
+            exchange = new HttpServerExchange(delegate, maxEntitySize);
+            exchange.pooled = new Entry(this, exchange);
+        } else {
+            exchange.attach(delegate, maxEntitySize);
+        }
+        exchange.acquired();
+        if (debug) {
+            exchange.pooled.leakTracker = new LeakTracker(delegate.getRequestMethod(), delegate.getRequestURI());
+            exchange.pooled.cleanable = Leaks.CLEANER.register(exchange, exchange.pooled.leakTracker);
+        }
+        return exchange;
+    }
+
+    private void recycle(final HttpServerExchange exchange) {
+        if (debug) {
+            final Entry entry = exchange.pooled;
+            entry.leakTracker.released = true;
+            entry.cleanable.clean();
+            entry.leakTracker = null;
+            entry.cleanable = null;
+            exchange.recycle(RECYCLED);
+            return;
+        }
+        exchange.recycle(null);
+        final ArrayDeque<HttpServerExchange> free = this.free.get();
+        if (free.size() < MAX_POOLED) {
+            free.add(exchange);
+        }
+    }
+
+    /**
+     * The pool state of an exchange, this is also the task that recycles it so nothing is allocated to do that.
+     */
+    static final class Entry implements Runnable {
+
+        private final ExchangePool pool;
+        private final HttpServerExchange exchange;
+        private LeakTracker leakTracker;
+        private Cleaner.Cleanable cleanable;
+
+        Entry(final ExchangePool pool, final HttpServerExchange exchange) {
+            this.pool = pool;
+            this.exchange = exchange;
+        }
+
+        /**
+         * Called when the last reference to the exchange has been released, which can be on any thread.
+         */
+        void release() {
+            final EventExecutor ioThread = exchange.getIoThread();
+            if (ioThread == null) {
+                run();
+            } else {
+                ioThread.execute(this);
+            }
+        }
+
+        /**
+         * Called when the exchange will never be recycled, so it is not reported as a leak when it is garbage collected.
+         */
+        void detach() {
+            if (leakTracker != null) {
+                leakTracker.released = true;
+                cleanable.clean();
+            }
+        }
+
+        @Override
+        public void run() {
+            pool.recycle(exchange);
+        }
+    }
+
+    /**
+     * Logs an exchange that is garbage collected before it is released. This must not reference the exchange.
+     */
+    private static final class LeakTracker implements Runnable {
+
+        private final String method;
+        private final String uri;
+        private volatile boolean released;
+
+        LeakTracker(final String method, final String uri) {
+            this.method = method;
+            this.uri = uri;
+        }
+
+        @Override
+        public void run() {
+            if (!released) {
+                UndertowLogger.REQUEST_LOGGER.exchangeLeaked(method, uri);
+            }
+        }
+    }
+
+    /**
+     * Holds the cleaner, so its thread is only started in debug mode.
+     */
+    private static final class Leaks {
+        static final Cleaner CLEANER = Cleaner.create();
+    }
+}
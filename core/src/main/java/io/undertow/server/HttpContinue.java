@@ -21,7 +21,7 @@ import java.util.List;
 import java.util.Set;
 
 import io.undertow.util.AttachmentKey;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpProtocolNames;
 import io.undertow.httpcore.StatusCodes;
 
@@ -59,7 +59,7 @@ public class HttpContinue {
             return false;
         }
 
-        return requiresContinueResponse(exchange.getRequestHeaders(HttpHeaderNames.EXPECT));
+        return requiresContinueResponse(exchange.getRequestHeaders(AsciiHeaderNames.EXPECT));
     }
 
     public static boolean requiresContinueResponse(List<String> expect) {
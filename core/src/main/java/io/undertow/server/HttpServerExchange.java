@@ -27,22 +27,27 @@ import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.concurrent.EventExecutor;
 import io.undertow.UndertowLogger;
 import io.undertow.UndertowMessages;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.BlockingHttpExchange;
 import io.undertow.httpcore.BufferAllocator;
 import io.undertow.httpcore.CompletedListener;
@@ -54,17 +59,21 @@ import io.undertow.httpcore.InputChannel;
 import io.undertow.httpcore.IoCallback;
 import io.undertow.httpcore.OutputChannel;
 import io.undertow.httpcore.PreCommitListener;
+import io.undertow.httpcore.RequestIds;
+import io.undertow.httpcore.ResponseSizeHint;
 import io.undertow.httpcore.SSLSessionInfo;
 import io.undertow.httpcore.StatusCodes;
 import io.undertow.httpcore.UndertowOptionMap;
 import io.undertow.httpcore.UndertowOptions;
 import io.undertow.httpcore.WriteFunction;
+import io.undertow.httpcore.WriteThrottle;
 import io.undertow.security.api.SecurityContext;
 import io.undertow.server.handlers.Cookie;
 import io.undertow.util.AbstractAttachable;
 import io.undertow.util.AttachmentKey;
 import io.undertow.util.Cookies;
 import io.undertow.util.NetworkUtils;
+import io.undertow.util.QueryParameters;
 import io.undertow.util.Rfc6265CookieSupport;
 
 /**
@@ -100,6 +109,19 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
     private Map<String, Deque<String>> queryParameters;
     private Map<String, Deque<String>> pathParameters;
 
+    /**
+     * The query string the query parameters will be parsed from when they are first used, most requests never look at
+     * them so there is no point parsing them up front.
+     */
+    private String unparsedQueryString;
+    private String queryStringCharset;
+    private boolean decodeQueryString;
+    /**
+     * The compact form of the query parameters, used to look up single parameters until something asks for the
+     * mutable map.
+     */
+    private QueryParameters compactQueryParameters;
+
     private Map<String, Cookie> requestCookies;
     private Map<String, Cookie> responseCookies;
 
@@ -239,18 +261,157 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
     private InetSocketAddress destinationAddress;
 
     private SSLSessionInfo sslSessionInfo;
-    final HttpExchange delegate;
+    HttpExchange delegate;
     private boolean executingHandlerChain;
-    private static final AtomicLong REQUEST_ID_GENERATOR = new AtomicLong(0);
-    private final String requestId = Long.toString(REQUEST_ID_GENERATOR.incrementAndGet());
+    /**
+     * Generated the first time it is asked for, most requests never use it.
+     */
+    private volatile String requestId;
+
+    private static final AtomicIntegerFieldUpdater<HttpServerExchange> REFERENCES_UPDATER = AtomicIntegerFieldUpdater.newUpdater(HttpServerExchange.class, "references");
+    private static final AtomicReferenceFieldUpdater<HttpServerExchange, String> REQUEST_ID_UPDATER = AtomicReferenceFieldUpdater.newUpdater(HttpServerExchange.class, String.class, "requestId");
+
+    /**
+     * The pool entry of an exchange that is recycled, or null if it is not.
+     */
+    ExchangePool.Entry pooled;
+    /**
+     * The references to a pooled exchange: one until the exchange completes, and one for each handler chain or
+     * dispatched task that is running for it. The exchange is recycled when the last one is released.
+     */
+    private volatile int references;
 
     public HttpServerExchange(final HttpExchange delegate, long maxEntitySize) {
+        attach(delegate, maxEntitySize);
+    }
+
+    /**
+     * Attaches this exchange to a request, this is used by the constructor and when a recycled exchange is reused.
+     */
+    void attach(final HttpExchange delegate, final long maxEntitySize) {
         this.maxEntitySize = maxEntitySize;
         this.delegate = delegate;
         delegate.setCompletedListener(this);
         delegate.setPreCommitListener(this);
     }
 
+    /**
+     * Marks a pooled exchange as in use, holding the reference that is released when it completes.
+     */
+    void acquired() {
+        references = 1;
+    }
+
+    /**
+     * Detaches a pooled exchange from its request, and resets it to the state of a newly created exchange.
+     *
+     * @param placeholder The delegate to use until the exchange is attached to a new request
+     */
+    void recycle(final HttpExchange placeholder) {
+        delegate.setCompletedListener(null);
+        delegate.setPreCommitListener(null);
+        delegate = placeholder;
+        clearAttachments();
+        exchangeCompletionListenersCount = 0;
+        if (exchangeCompleteListeners != null) {
+            Arrays.fill(exchangeCompleteListeners, null);
+        }
+        if (defaultResponseListeners != null) {
+            Arrays.fill(defaultResponseListeners, null);
+        }
+        responseCommitListenerCount = 0;
+        if (responseCommitListeners != null) {
+            Arrays.fill(responseCommitListeners, null);
+        }
+        queryParameters = null;
+        pathParameters = null;
+        unparsedQueryString = null;
+        queryStringCharset = null;
+        decodeQueryString = false;
+        compactQueryParameters = null;
+        requestCookies = null;
+        responseCookies = null;
+        protocol = null;
+        securityContext = null;
+        state = 200;
+        requestMethod = null;
+        requestScheme = null;
+        requestURI = null;
+        requestPath = null;
+        relativePath = null;
+        resolvedPath = "";
+        queryString = "";
+        requestStartTime = -1;
+        dispatchTask = null;
+        dispatchExecutor = null;
+        sourceAddress = null;
+        destinationAddress = null;
+        sslSessionInfo = null;
+        executingHandlerChain = false;
+        requestId = null;
+    }
+
+    /**
+     * Takes a reference to a pooled exchange, so it is not recycled until it is released.
+     */
+    void retain() {
+        if (pooled == null) {
+            return;
+        }
+        for (;;) {
+            final int references = this.references;
+            if (references == 0) {
+                throw UndertowMessages.MESSAGES.exchangeUsedAfterRecycle();
+            }
+            if (REFERENCES_UPDATER.compareAndSet(this, references, references + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases a reference to a pooled exchange, recycling it if it was the last one.
+     */
+    void release() {
+        if (pooled != null && REFERENCES_UPDATER.decrementAndGet(this) == 0) {
+            pooled.release();
+        }
+    }
+
+    /**
+     * Stops this exchange from being recycled when exchanges are recycled, see
+     * {@link UndertowOptions#RECYCLE_EXCHANGES}. This is for code that can keep using the exchange after it has
+     * completed, such as async servlet requests and upgraded connections. This must be called while a handler is
+     * running for the exchange.
+     */
+    public void disableRecycling() {
+        if (pooled != null) {
+            //a reference that is never released
+            retain();
+            pooled.detach();
+        }
+    }
+
+    /**
+     * Returns a task that keeps a pooled exchange from being recycled until the given task has run.
+     */
+    Runnable retainUntilRun(final Runnable task) {
+        if (pooled == null) {
+            return task;
+        }
+        retain();
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    release();
+                }
+            }
+        };
+    }
+
     /**
      * Get the request getProtocol string.  Normally this is one of the strings listed in {@link HttpProtocolNames}.
      *
@@ -330,7 +491,21 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
         return this;
     }
 
+    /**
+     * Returns the id of this request, generating it the first time it is called.
+     *
+     * @return The request id
+     * @see UndertowOptions#REQUEST_ID_GENERATOR
+     */
     public String getRequestId() {
+        String requestId = this.requestId;
+        if (requestId == null) {
+            //it can be asked for from more than one thread, they must all see the same id
+            requestId = delegate.getUndertowOptions().get(UndertowOptions.REQUEST_ID_GENERATOR, RequestIds.SEQUENTIAL).generateRequestId();
+            if (!REQUEST_ID_UPDATER.compareAndSet(this, null, requestId)) {
+                requestId = this.requestId;
+            }
+        }
         return requestId;
     }
 
@@ -503,7 +678,7 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
      * @return The host part of the destination address
      */
     public String getHostName() {
-        String host = getRequestHeader(HttpHeaderNames.HOST);
+        String host = getRequestHeader(AsciiHeaderNames.HOST);
         if (host == null) {
             host = getDestinationAddress().getHostString();
         } else {
@@ -527,7 +702,7 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
      * @return The host and port part of the destination address
      */
     public String getHostAndPort() {
-        String host = getRequestHeader(HttpHeaderNames.HOST);
+        String host = getRequestHeader(AsciiHeaderNames.HOST);
         if (host == null) {
             InetSocketAddress address = getDestinationAddress();
             host = NetworkUtils.formatPossibleIpv6Address(address.getHostString());
@@ -551,7 +726,7 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
      * @return The port part of the destination address
      */
     public int getHostPort() {
-        String host = getRequestHeader(HttpHeaderNames.HOST);
+        String host = getRequestHeader(AsciiHeaderNames.HOST);
         if (host != null) {
             //for ipv6 addresses we make sure we take out the first part, which can have multiple occurrences of :
             final int colonIndex;
@@ -757,6 +932,19 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
         return delegate.getSourceAddress();
     }
 
+    /**
+     * Get the IP address of the peer in network byte order. The returned array may be shared with other callers, and
+     * must not be modified.
+     *
+     * @return the address bytes, or <code>null</code> if the peer does not have an IP address
+     */
+    public byte[] getSourceAddressBytes() {
+        if (sourceAddress != null) {
+            return HttpExchange.addressBytes(sourceAddress);
+        }
+        return delegate.getSourceAddressBytes();
+    }
+
     public boolean isComplete() {
         return delegate.isComplete();
     }
@@ -792,6 +980,19 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
         return delegate.getDestinationAddress();
     }
 
+    /**
+     * Get the IP address the request was sent to in network byte order. The returned array may be shared with other
+     * callers, and must not be modified.
+     *
+     * @return the address bytes, or <code>null</code> if the destination does not have an IP address
+     */
+    public byte[] getDestinationAddressBytes() {
+        if (destinationAddress != null) {
+            return HttpExchange.addressBytes(destinationAddress);
+        }
+        return delegate.getDestinationAddressBytes();
+    }
+
     /**
      * Sets the destination address of the HTTP request. If this is not explicitly set
      * the actual destination address of the channel is used.
@@ -811,9 +1012,9 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
      */
     public HttpServerExchange setResponseContentLength(long length) {
         if (length == -1) {
-            delegate.removeResponseHeader(HttpHeaderNames.CONTENT_LENGTH);
+            delegate.removeResponseHeader(AsciiHeaderNames.CONTENT_LENGTH);
         } else {
-            delegate.setResponseHeader(HttpHeaderNames.CONTENT_LENGTH, Long.toString(length));
+            delegate.setResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, Long.toString(length));
         }
         return this;
     }
@@ -825,14 +1026,32 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
      */
     public Map<String, Deque<String>> getQueryParameters() {
         if (queryParameters == null) {
-            queryParameters = new TreeMap<>();
+            createQueryParameters();
         }
         return queryParameters;
     }
 
+    /**
+     * Returns the first value of a query parameter.
+     * <p>
+     * Unlike {@link #getQueryParameters()} this does not need to build the map of all the parameters, it looks the
+     * parameter up directly in the query string and only decodes what it returns.
+     *
+     * @param name The parameter name
+     * @return The first value of the parameter, or <code>null</code> if it is not present
+     */
+    public String getQueryParameter(final String name) {
+        if (queryParameters != null) {
+            final Deque<String> values = queryParameters.get(name);
+            return values == null ? null : values.peekFirst();
+        }
+        final QueryParameters compact = getCompactQueryParameters();
+        return compact == null ? null : compact.getFirst(name);
+    }
+
     public HttpServerExchange addQueryParam(final String name, final String param) {
         if (queryParameters == null) {
-            queryParameters = new TreeMap<>();
+            createQueryParameters();
         }
         Deque<String> list = queryParameters.get(name);
         if (list == null) {
@@ -843,6 +1062,35 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
     }
 
 
+    /**
+     * Sets the query string that the query parameters are parsed from the first time they are used. The number of
+     * parameters must already have been checked against the limit.
+     */
+    void setUnparsedQueryString(final String queryString, final String charset, final boolean decode) {
+        this.unparsedQueryString = queryString;
+        this.queryStringCharset = charset;
+        this.decodeQueryString = decode;
+        this.compactQueryParameters = null;
+    }
+
+    private QueryParameters getCompactQueryParameters() {
+        if (compactQueryParameters == null && unparsedQueryString != null) {
+            compactQueryParameters = new QueryParameters(unparsedQueryString, queryStringCharset, decodeQueryString);
+        }
+        return compactQueryParameters;
+    }
+
+    private void createQueryParameters() {
+        final QueryParameters compact = getCompactQueryParameters();
+        queryParameters = new TreeMap<>();
+        if (compact != null) {
+            //the map is mutable, so from now on it is the only copy of the parameters
+            compact.addTo(queryParameters);
+            compactQueryParameters = null;
+            unparsedQueryString = null;
+        }
+    }
+
     /**
      * Returns a mutable map of path parameters
      *
@@ -875,7 +1123,7 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
             requestCookies = Cookies.parseRequestCookies(
                     delegate.getUndertowOptions().get(UndertowOptions.MAX_COOKIES, 200),
                     delegate.getUndertowOptions().get(UndertowOptions.ALLOW_EQUALS_IN_COOKIE_VALUE, false),
-                    delegate.getRequestHeaders(HttpHeaderNames.COOKIE));
+                    delegate.getRequestHeaders(AsciiHeaderNames.COOKIE));
         }
         return requestCookies;
     }
@@ -944,6 +1192,46 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
         return delegate.getInputChannel().readBlocking();
     }
 
+    /**
+     * Reads the whole request body, blocking until it has been received. The body is made up of the buffers it was
+     * received in, so it is not copied, and the caller must release it.
+     * <p>
+     * This must not be called from an IO thread, and must not be mixed with reads from the input stream. Use
+     * {@link io.undertow.httpcore.UndertowInputStream#readBuffer()} to read the body one buffer at a time instead.
+     *
+     * @return The request body, which is empty if there is none
+     * @throws io.undertow.util.RequestTooBigException If the body is larger than the max entity size
+     * @throws IOException                             If the body could not be read
+     */
+    public CompositeByteBuf readRequestBody() throws IOException {
+        if (getIoThread().inEventLoop()) {
+            throw UndertowMessages.MESSAGES.blockingIoFromIOThread();
+        }
+        return new RequestBodyReader(this, null).readBlocking();
+    }
+
+    /**
+     * Reads the whole request body without blocking, and passes it to the callback as its context once it has been
+     * received. The body is made up of the buffers it was received in, so it is not copied, and the callback must
+     * release it. This can be called from any thread, the callback is invoked by the thread that reads the end of the
+     * body.
+     * <p>
+     * If the body is larger than the max entity size the callback is notified with a
+     * {@link io.undertow.util.RequestTooBigException}.
+     *
+     * @param callback The callback
+     */
+    public void readRequestBody(final IoCallback<CompositeByteBuf> callback) {
+        final RequestBodyReader reader;
+        try {
+            reader = new RequestBodyReader(this, callback);
+        } catch (IOException e) {
+            callback.onException(delegate, null, e);
+            return;
+        }
+        reader.accept(this, this);
+    }
+
     public void send1ContinueIfRequired() {
         if (HttpContinue.requiresContinueResponse(this)) {
             delegate.sendContinue();
@@ -1016,6 +1304,21 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
         delegate.getOutputChannel().writeBlocking(data, last);
     }
 
+    /**
+     * Writes a region of a file and ends the exchange. If possible the file will be transferred
+     * directly to the connection without being copied through the heap.
+     *
+     * @see OutputChannel#writeFileAsync(Path, long, long, IoCallback, Object)
+     */
+    public <T> void writeFileAsync(Path file, long position, long count, IoCallback<T> callback, T context) {
+        if (isResponseComplete() || anyAreSet(state, FLAG_LAST_DATA_QUEUED)) {
+            callback.onException(delegate, context, new IOException(UndertowMessages.MESSAGES.responseComplete()));
+            return;
+        }
+        state |= FLAG_LAST_DATA_QUEUED;
+        delegate.getOutputChannel().writeFileAsync(file, position, count, callback, context);
+    }
+
     private void invokeExchangeCompleteListeners() {
         int count = exchangeCompletionListenersCount;
         exchangeCompletionListenersCount = -1;
@@ -1098,6 +1401,54 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
         delegate.addResponseHeader(name, value);
     }
 
+    public String getRequestHeader(CharSequence name) {
+        return delegate.getRequestHeader(name);
+    }
+
+    public List<String> getRequestHeaders(CharSequence name) {
+        return delegate.getRequestHeaders(name);
+    }
+
+    public boolean containsRequestHeader(CharSequence name) {
+        return delegate.containsRequestHeader(name);
+    }
+
+    public void removeRequestHeader(CharSequence name) {
+        delegate.removeRequestHeader(name);
+    }
+
+    public void setRequestHeader(CharSequence name, String value) {
+        delegate.setRequestHeader(name, value);
+    }
+
+    public void addRequestHeader(CharSequence name, String value) {
+        delegate.addRequestHeader(name, value);
+    }
+
+    public String getResponseHeader(CharSequence name) {
+        return delegate.getResponseHeader(name);
+    }
+
+    public List<String> getResponseHeaders(CharSequence name) {
+        return delegate.getResponseHeaders(name);
+    }
+
+    public boolean containsResponseHeader(CharSequence name) {
+        return delegate.containsResponseHeader(name);
+    }
+
+    public void removeResponseHeader(CharSequence name) {
+        delegate.removeResponseHeader(name);
+    }
+
+    public void setResponseHeader(CharSequence name, String value) {
+        delegate.setResponseHeader(name, value);
+    }
+
+    public void addResponseHeader(CharSequence name, String value) {
+        delegate.addResponseHeader(name, value);
+    }
+
     /**
      * Change the status code for this response.  If not specified, the code will be a {@code 200}.  Setting
      * the status code after the response headers have been transmitted has no effect.
@@ -1151,6 +1502,25 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
         return delegate.getOutputStream();
     }
 
+    /**
+     * Sets the sizes of earlier responses to similar requests, which the output stream uses to size its buffer.
+     * This must be called before anything is written to the output stream.
+     *
+     * @param hint The response size hint, usually one for each route
+     * @return this exchange
+     */
+    public HttpServerExchange setResponseSizeHint(final ResponseSizeHint hint) {
+        delegate.setResponseSizeHint(hint);
+        return this;
+    }
+
+    /**
+     * @return The response size hint, or <code>null</code> if none has been set
+     */
+    public ResponseSizeHint getResponseSizeHint() {
+        return delegate.getResponseSizeHint();
+    }
+
 
     /**
      * @return The request start time, or -1 if this was not recorded
@@ -1318,13 +1688,15 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
         if (!delegate.isUpgradeSupported()) {
             throw UndertowMessages.MESSAGES.upgradeNotSupported();
         }
-        if (!delegate.containsRequestHeader(HttpHeaderNames.UPGRADE)) {
+        if (!delegate.containsRequestHeader(AsciiHeaderNames.UPGRADE)) {
             throw UndertowMessages.MESSAGES.notAnUpgradeRequest();
         }
         UndertowLogger.REQUEST_LOGGER.debugf("Upgrading request %s", this);
 
         setStatusCode(StatusCodes.SWITCHING_PROTOCOLS);
-        delegate.setResponseHeader(HttpHeaderNames.CONNECTION, HttpHeaderNames.UPGRADE);
+        delegate.setResponseHeader(AsciiHeaderNames.CONNECTION, HttpHeaderNames.UPGRADE);
+        //the upgrade listener can use the exchange after it has completed
+        disableRecycling();
         delegate.setUpgradeListener(listener);
         return this;
     }
@@ -1343,10 +1715,12 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
             throw UndertowMessages.MESSAGES.upgradeNotSupported();
         }
         UndertowLogger.REQUEST_LOGGER.debugf("Upgrading request %s", this);
+        //the upgrade listener can use the exchange after it has completed
+        disableRecycling();
         delegate.setUpgradeListener(listener);
         setStatusCode(StatusCodes.SWITCHING_PROTOCOLS);
-        delegate.setResponseHeader(HttpHeaderNames.UPGRADE, productName);
-        delegate.setResponseHeader(HttpHeaderNames.CONNECTION, HttpHeaderNames.UPGRADE);
+        delegate.setResponseHeader(AsciiHeaderNames.UPGRADE, productName);
+        delegate.setResponseHeader(AsciiHeaderNames.CONNECTION, HttpHeaderNames.UPGRADE);
         return this;
     }
 
@@ -1393,6 +1767,7 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
     @Override
     public void completed(HttpExchange exchange) {
         invokeExchangeCompleteListeners();
+        release();
     }
 
     public void beginExecutingHandlerChain() {
@@ -1433,4 +1808,13 @@ public final class HttpServerExchange extends AbstractAttachable implements Buff
         delegate.addWriteFunction(function);
     }
 
+    /**
+     * Limits the rate at which the response body is written.
+     *
+     * @param throttle The throttle, or <code>null</code> to write at full speed
+     */
+    public void setWriteThrottle(WriteThrottle throttle) {
+        delegate.setWriteThrottle(throttle);
+    }
+
 }
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.undertow.UndertowMessages;
+import io.undertow.httpcore.InputChannel;
+import io.undertow.httpcore.IoCallback;
+
+/**
+ * Gathers the buffers of a request body into a single composite buffer, without copying them.
+ *
+ * @see HttpServerExchange#readRequestBody()
+ * @see HttpServerExchange#readRequestBody(IoCallback)
+ */
+final class RequestBodyReader implements BiConsumer<InputChannel, HttpServerExchange> {
+
+    private final HttpServerExchange exchange;
+    private final IoCallback<CompositeByteBuf> callback;
+    private final long maxSize;
+    private CompositeByteBuf body;
+
+    RequestBodyReader(final HttpServerExchange exchange, final IoCallback<CompositeByteBuf> callback) throws IOException {
+        this.exchange = exchange;
+        this.callback = callback;
+        this.maxSize = exchange.getMaxEntitySize();
+        final long contentLength = exchange.getRequestContentLength();
+        if (maxSize > 0 && contentLength > maxSize) {
+            throw UndertowMessages.MESSAGES.requestEntityWasTooLarge(maxSize);
+        }
+        //there is no component limit, as reaching it would consolidate the body into a copy
+        this.body = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+    }
+
+    CompositeByteBuf readBlocking() throws IOException {
+        try {
+            ByteBuf buffer;
+            while ((buffer = exchange.readBlocking()) != null) {
+                add(buffer);
+            }
+            final CompositeByteBuf body = this.body;
+            this.body = null;
+            return body;
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void accept(final InputChannel channel, final HttpServerExchange exchange) {
+        boolean done = exchange.isRequestComplete();
+        try {
+            while (!done && exchange.isReadable()) {
+                final ByteBuf buffer = exchange.readAsync();
+                if (buffer == null) {
+                    done = true;
+                } else {
+                    add(buffer);
+                }
+            }
+        } catch (IOException e) {
+            release();
+            callback.onException(exchange.getDelegate(), null, e);
+            return;
+        } catch (RuntimeException e) {
+            release();
+            callback.onException(exchange.getDelegate(), null, new IOException(e));
+            return;
+        }
+        if (done) {
+            final CompositeByteBuf body = this.body;
+            this.body = null;
+            callback.onComplete(exchange.getDelegate(), body);
+        } else {
+            exchange.setReadHandler(this, exchange);
+        }
+    }
+
+    private void add(final ByteBuf buffer) throws IOException {
+        if (!buffer.isReadable()) {
+            buffer.release();
+            return;
+        }
+        if (maxSize > 0 && body.readableBytes() + buffer.readableBytes() > maxSize) {
+            buffer.release();
+            throw UndertowMessages.MESSAGES.requestEntityWasTooLarge(maxSize);
+        }
+        body.addComponent(true, buffer);
+    }
+
+    private void release() {
+        if (body != null) {
+            body.release();
+            body = null;
+        }
+    }
+}
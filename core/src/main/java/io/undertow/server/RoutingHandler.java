@@ -27,6 +27,7 @@ import io.undertow.predicate.Predicate;
 import io.undertow.server.handlers.ResponseCodeHandler;
 import io.undertow.util.CopyOnWriteMap;
 import io.undertow.httpcore.HttpMethodNames;
+import io.undertow.httpcore.ResponseSizeHint;
 import io.undertow.util.PathTemplate;
 import io.undertow.util.PathTemplateMatch;
 import io.undertow.util.PathTemplateMatcher;
@@ -77,6 +78,7 @@ public class RoutingHandler implements HttpHandler {
             return;
         }
         exchange.putAttachment(PathTemplateMatch.ATTACHMENT_KEY, match);
+        exchange.setResponseSizeHint(match.getValue().responseSizeHint);
         if (rewriteQueryParameters) {
             for (Map.Entry<String, String> entry : match.getParameters().entrySet()) {
                 exchange.addQueryParam(entry.getKey(), entry.getValue());
@@ -270,6 +272,8 @@ public class RoutingHandler implements HttpHandler {
 
         final List<HandlerHolder> predicatedHandlers = new CopyOnWriteArrayList<>();
         volatile HttpHandler defaultHandler;
+        // Sizes of the responses sent by this route, used to size the response buffer.
+        final ResponseSizeHint responseSizeHint = new ResponseSizeHint();
 
     }
 
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
@@ -33,7 +34,7 @@ import io.undertow.httpcore.WriteFunction;
 import io.undertow.server.handlers.builder.HandlerBuilder;
 import io.undertow.util.ByteRange;
 import io.undertow.util.DateUtils;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpMethodNames;
 import io.undertow.httpcore.StatusCodes;
 
@@ -44,8 +45,8 @@ import io.undertow.httpcore.StatusCodes;
  * Note that this is not necessarily the most efficient way to handle range requests, as the full content
  * will be generated and then discarded.
  * <p>
- * At present this handler can only handle simple (i.e. single range) requests. If multiple ranges are requested the
- * Range header will be ignored.
+ * If multiple ranges are requested they are sent as a {@code multipart/byteranges} response. Overlapping and nearby
+ * ranges are merged, and requests for more than {@code maxRanges} ranges are ignored and the full entity is sent.
  *
  * @author Stuart Douglas
  */
@@ -53,15 +54,17 @@ public class ByteRangeHandler implements HttpHandler {
 
     private final HttpHandler next;
     private final boolean sendAcceptRanges;
+    private final int maxRanges;
+    private final long coalesceThreshold;
 
     private static final ResponseCommitListener ACCEPT_RANGE_LISTENER = new ResponseCommitListener() {
         @Override
         public void beforeCommit(HttpServerExchange exchange) {
-            if (!exchange.containsResponseHeader(HttpHeaderNames.ACCEPT_RANGES)) {
-                if (exchange.containsResponseHeader(HttpHeaderNames.CONTENT_LENGTH)) {
-                    exchange.setResponseHeader(HttpHeaderNames.ACCEPT_RANGES, "bytes");
+            if (!exchange.containsResponseHeader(AsciiHeaderNames.ACCEPT_RANGES)) {
+                if (exchange.containsResponseHeader(AsciiHeaderNames.CONTENT_LENGTH)) {
+                    exchange.setResponseHeader(AsciiHeaderNames.ACCEPT_RANGES, "bytes");
                 } else {
-                    exchange.setResponseHeader(HttpHeaderNames.ACCEPT_RANGES, "none");
+                    exchange.setResponseHeader(AsciiHeaderNames.ACCEPT_RANGES, "none");
                 }
             }
         }
@@ -69,8 +72,20 @@ public class ByteRangeHandler implements HttpHandler {
     };
 
     public ByteRangeHandler(HttpHandler next, boolean sendAcceptRanges) {
+        this(next, sendAcceptRanges, ByteRange.DEFAULT_MAX_RANGES, ByteRange.DEFAULT_COALESCE_THRESHOLD);
+    }
+
+    /**
+     * @param next              The next handler
+     * @param sendAcceptRanges  If the Accept-Ranges header should be sent
+     * @param maxRanges         The maximum number of ranges to honour, requests for more ranges are served in full
+     * @param coalesceThreshold Ranges separated by no more than this many bytes are sent as a single part
+     */
+    public ByteRangeHandler(HttpHandler next, boolean sendAcceptRanges, int maxRanges, long coalesceThreshold) {
         this.next = next;
         this.sendAcceptRanges = sendAcceptRanges;
+        this.maxRanges = maxRanges;
+        this.coalesceThreshold = coalesceThreshold;
     }
 
 
@@ -84,27 +99,34 @@ public class ByteRangeHandler implements HttpHandler {
         if (sendAcceptRanges) {
             exchange.addResponseCommitListener(ACCEPT_RANGE_LISTENER);
         }
-        final ByteRange range = ByteRange.parse(exchange.getRequestHeader(HttpHeaderNames.RANGE));
-        if (range != null && range.getRanges() == 1) {
+        final ByteRange range = ByteRange.parse(exchange.getRequestHeader(AsciiHeaderNames.RANGE));
+        if (range != null && range.getRanges() <= maxRanges) {
             exchange.addResponseCommitListener(new ResponseCommitListener() {
                 @Override
                 public void beforeCommit(HttpServerExchange exchange) {
                     if (exchange.getStatusCode() != StatusCodes.OK) {
                         return;
                     }
-                    String length = exchange.getResponseHeader(HttpHeaderNames.CONTENT_LENGTH);
+                    String length = exchange.getResponseHeader(AsciiHeaderNames.CONTENT_LENGTH);
                     if (length == null) {
                         return;
                     }
                     long responseLength = Long.parseLong(length);
-                    String lastModified = exchange.getResponseHeader(HttpHeaderNames.LAST_MODIFIED);
-                    ByteRange.RangeResponseResult rangeResponse = range.getResponseResult(responseLength, exchange.getRequestHeader(HttpHeaderNames.IF_RANGE),
-                            lastModified == null ? null : DateUtils.parseDate(lastModified), exchange.getResponseHeader(HttpHeaderNames.ETAG));
-                    if (rangeResponse != null) {
+                    String lastModified = exchange.getResponseHeader(AsciiHeaderNames.LAST_MODIFIED);
+                    ByteRange.RangeResponseResult rangeResponse = range.getResponseResult(responseLength, exchange.getRequestHeader(AsciiHeaderNames.IF_RANGE),
+                            lastModified == null ? null : DateUtils.parseDate(lastModified), exchange.getResponseHeader(AsciiHeaderNames.ETAG),
+                            exchange.getResponseHeader(AsciiHeaderNames.CONTENT_TYPE), maxRanges, coalesceThreshold);
+                    if (rangeResponse instanceof ByteRange.MultipartRangeResponseResult) {
+                        ByteRange.MultipartRangeResponseResult multipart = (ByteRange.MultipartRangeResponseResult) rangeResponse;
+                        exchange.setStatusCode(multipart.getStatusCode());
+                        exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, multipart.getContentType());
+                        exchange.setResponseContentLength(multipart.getContentLength());
+                        exchange.addWriteFunction(new MultipartRangeWriteFunction(multipart));
+                    } else if (rangeResponse != null) {
                         long start = rangeResponse.getStart();
                         long end = rangeResponse.getEnd();
                         exchange.setStatusCode(rangeResponse.getStatusCode());
-                        exchange.setResponseHeader(HttpHeaderNames.CONTENT_RANGE, rangeResponse.getContentRange());
+                        exchange.setResponseHeader(AsciiHeaderNames.CONTENT_RANGE, rangeResponse.getContentRange());
                         exchange.setResponseContentLength(rangeResponse.getContentLength());
                         if (rangeResponse.getStatusCode() == StatusCodes.REQUEST_RANGE_NOT_SATISFIABLE) {
                             exchange.addWriteFunction(new WriteFunction() {
@@ -172,17 +194,104 @@ public class ByteRangeHandler implements HttpHandler {
     }
 
 
+    /**
+     * Write function that turns the full entity into a multipart/byteranges body. The parts are sorted and
+     * disjoint, so this is done in a single pass, and the data for each part is a slice of the original buffer.
+     */
+    private static class MultipartRangeWriteFunction implements WriteFunction {
+
+        private final ByteRange.MultipartRangeResponseResult ranges;
+
+        private long written;
+        private int part;
+        private boolean headerWritten;
+        private boolean trailerWritten;
+
+        MultipartRangeWriteFunction(ByteRange.MultipartRangeResponseResult ranges) {
+            this.ranges = ranges;
+        }
+
+        @Override
+        public ByteBuf preWrite(ByteBuf src, boolean last) {
+            if (src == null || !src.isReadable()) {
+                //the closing delimiter has to be written even if the last write has no data
+                if (last && !trailerWritten) {
+                    if (src != null) {
+                        src.release();
+                    }
+                    trailerWritten = true;
+                    return ranges.getTrailer();
+                }
+                return src;
+            }
+            if (part == ranges.getParts()) {
+                written += src.readableBytes();
+                src.release();
+                return Unpooled.EMPTY_BUFFER;
+            }
+            CompositeByteBuf result = Unpooled.compositeBuffer();
+            try {
+                long bufferStart = written;
+                long bufferEnd = written + src.readableBytes();
+                while (part < ranges.getParts()) {
+                    long partStart = ranges.getPartStart(part);
+                    long partEnd = ranges.getPartEnd(part) + 1;
+                    if (partStart >= bufferEnd) {
+                        break;
+                    }
+                    if (!headerWritten) {
+                        result.addComponent(true, ranges.getPartHeader(part));
+                        headerWritten = true;
+                    }
+                    long sliceStart = Math.max(partStart, bufferStart);
+                    long sliceEnd = Math.min(partEnd, bufferEnd);
+                    if (sliceEnd > sliceStart) {
+                        result.addComponent(true, src.retainedSlice(src.readerIndex() + (int) (sliceStart - bufferStart), (int) (sliceEnd - sliceStart)));
+                    }
+                    if (partEnd > bufferEnd) {
+                        break;
+                    }
+                    ++part;
+                    headerWritten = false;
+                    if (part == ranges.getParts()) {
+                        result.addComponent(true, ranges.getTrailer());
+                        trailerWritten = true;
+                    }
+                }
+                if (last && !trailerWritten) {
+                    result.addComponent(true, ranges.getTrailer());
+                    trailerWritten = true;
+                }
+                written = bufferEnd;
+            } catch (RuntimeException e) {
+                result.release();
+                throw e;
+            } finally {
+                src.release();
+            }
+            return result;
+        }
+    }
+
     public static class Wrapper implements HandlerWrapper {
 
         private final boolean sendAcceptRanges;
+        private final int maxRanges;
+        private final long coalesceThreshold;
 
         public Wrapper(boolean sendAcceptRanges) {
+            this(sendAcceptRanges, ByteRange.DEFAULT_MAX_RANGES, ByteRange.DEFAULT_COALESCE_THRESHOLD);
+        }
+
+        public Wrapper(boolean sendAcceptRanges, int maxRanges, long coalesceThreshold) {
             this.sendAcceptRanges = sendAcceptRanges;
+            this.maxRanges = maxRanges;
+            this.coalesceThreshold = coalesceThreshold;
         }
 
         @Override
         public HttpHandler wrap(HttpHandler handler) {
-            return new ByteRangeHandler(handler, sendAcceptRanges);
+            return new ByteRangeHandler(handler, sendAcceptRanges, maxRanges, coalesceThreshold);
         }
     }
 
@@ -197,6 +306,8 @@ public class ByteRangeHandler implements HttpHandler {
         public Map<String, Class<?>> parameters() {
             Map<String, Class<?>> params = new HashMap<>();
             params.put("send-accept-ranges", boolean.class);
+            params.put("max-ranges", int.class);
+            params.put("coalesce-threshold", long.class);
             return params;
         }
 
@@ -213,7 +324,11 @@ public class ByteRangeHandler implements HttpHandler {
         @Override
         public HandlerWrapper build(Map<String, Object> config) {
             Boolean send = (Boolean) config.get("send-accept-ranges");
-            return new Wrapper(send != null && send);
+            Integer maxRanges = (Integer) config.get("max-ranges");
+            Long coalesceThreshold = (Long) config.get("coalesce-threshold");
+            return new Wrapper(send != null && send,
+                    maxRanges == null ? ByteRange.DEFAULT_MAX_RANGES : maxRanges,
+                    coalesceThreshold == null ? ByteRange.DEFAULT_COALESCE_THRESHOLD : coalesceThreshold);
         }
     }
 
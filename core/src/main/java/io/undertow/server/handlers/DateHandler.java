@@ -23,7 +23,7 @@ import java.util.Date;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.DateUtils;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.UndertowOptions;
 
 /**
@@ -55,13 +55,13 @@ public class DateHandler implements HttpHandler {
         // better method is used in DateUtils#addDateHeaderIfRequired
         long time = System.nanoTime();
         if(time < nextUpdateTime) {
-            exchange.setResponseHeader(HttpHeaderNames.DATE, cachedDateString);
+            exchange.setResponseHeader(AsciiHeaderNames.DATE, cachedDateString);
         } else {
             long realTime = System.currentTimeMillis();
             String dateString = DateUtils.toDateString(new Date(realTime));
             cachedDateString = dateString;
             nextUpdateTime = time + 1000000000;
-            exchange.setResponseHeader(HttpHeaderNames.DATE, dateString);
+            exchange.setResponseHeader(AsciiHeaderNames.DATE, dateString);
         }
         next.handleRequest(exchange);
     }
@@ -8,7 +8,7 @@ import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.builder.HandlerBuilder;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 
 /**
  *
@@ -27,9 +27,9 @@ public class DisableCacheHandler implements HttpHandler {
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
-        exchange.addResponseHeader(HttpHeaderNames.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
-        exchange.addResponseHeader(HttpHeaderNames.PRAGMA, "no-cache");
-        exchange.addResponseHeader(HttpHeaderNames.EXPIRES, "0");
+        exchange.addResponseHeader(AsciiHeaderNames.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+        exchange.addResponseHeader(AsciiHeaderNames.PRAGMA, "no-cache");
+        exchange.addResponseHeader(AsciiHeaderNames.EXPIRES, "0");
         next.handleRequest(exchange);
     }
 
@@ -15,7 +15,7 @@ import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.builder.HandlerBuilder;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.util.NetworkUtils;
 
 /**
@@ -41,7 +41,7 @@ public class ForwardedHandler implements HttpHandler {
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
-        List<String> forwarded = exchange.getRequestHeaders(HttpHeaderNames.FORWARDED);
+        List<String> forwarded = exchange.getRequestHeaders(AsciiHeaderNames.FORWARDED);
         if (forwarded != null) {
             Map<Token, String> values = new HashMap<>();
             for (String val : forwarded) {
@@ -53,7 +53,7 @@ public class ForwardedHandler implements HttpHandler {
             String forVal = values.get(Token.FOR);
 
             if (host != null) {
-                exchange.setRequestHeader(HttpHeaderNames.HOST, host);
+                exchange.setRequestHeader(AsciiHeaderNames.HOST, host);
                 exchange.setDestinationAddress(InetSocketAddress.createUnresolved(exchange.getHostName(), exchange.getHostPort()));
             } else if (by != null) {
                 //we only use 'by' if the host is null
@@ -26,7 +26,7 @@ import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.builder.HandlerBuilder;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpMethodNames;
 
 /**
@@ -45,7 +45,7 @@ public class HttpTraceHandler implements HttpHandler {
     @Override
     public void handleRequest(final HttpServerExchange exchange) throws Exception {
         if(exchange.getRequestMethod().equals(HttpMethodNames.TRACE)) {
-            exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, "message/http");
+            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, "message/http");
             StringBuilder body = new StringBuilder("TRACE ");
             body.append(exchange.getRequestURI());
             if(!exchange.getQueryString().isEmpty()) {
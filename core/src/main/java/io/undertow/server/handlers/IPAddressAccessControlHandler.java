@@ -18,10 +18,7 @@
 
 package io.undertow.server.handlers;
 
-import java.net.Inet4Address;
-import java.net.Inet6Address;
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -99,8 +96,7 @@ public class IPAddressAccessControlHandler implements HttpHandler {
 
     @Override
     public void handleRequest(final HttpServerExchange exchange) throws Exception {
-        InetSocketAddress peer = exchange.getSourceAddress();
-        if (isAllowed(peer.getAddress())) {
+        if (isAllowed(exchange.getSourceAddressBytes())) {
             next.handleRequest(exchange);
         } else {
             exchange.setStatusCode(denyResponseCode);
@@ -109,13 +105,20 @@ public class IPAddressAccessControlHandler implements HttpHandler {
     }
 
     boolean isAllowed(InetAddress address) {
-        if(address instanceof Inet4Address) {
+        return isAllowed(address == null ? null : address.getAddress());
+    }
+
+    boolean isAllowed(byte[] address) {
+        if (address == null) {
+            return defaultAllow;
+        }
+        if (address.length == 4) {
             for (PeerMatch rule : ipv4acl) {
                 if (rule.matches(address)) {
                     return !rule.isDeny();
                 }
             }
-        } else if(address instanceof Inet6Address) {
+        } else if (address.length == 16) {
             for (PeerMatch rule : ipv6acl) {
                 if (rule.matches(address)) {
                     return !rule.isDeny();
@@ -316,7 +319,7 @@ public class IPAddressAccessControlHandler implements HttpHandler {
             this.pattern = pattern;
         }
 
-        abstract boolean matches(final InetAddress address);
+        abstract boolean matches(final byte[] address);
 
         boolean isDeny() {
             return deny;
@@ -341,8 +344,8 @@ public class IPAddressAccessControlHandler implements HttpHandler {
         }
 
         @Override
-        boolean matches(final InetAddress address) {
-            return Arrays.equals(address.getAddress(), this.address);
+        boolean matches(final byte[] address) {
+            return Arrays.equals(address, this.address);
         }
     }
 
@@ -356,8 +359,8 @@ public class IPAddressAccessControlHandler implements HttpHandler {
         }
 
         @Override
-        boolean matches(final InetAddress address) {
-            return Arrays.equals(address.getAddress(), this.address);
+        boolean matches(final byte[] address) {
+            return Arrays.equals(address, this.address);
         }
     }
 
@@ -373,11 +376,7 @@ public class IPAddressAccessControlHandler implements HttpHandler {
         }
 
         @Override
-        boolean matches(final InetAddress address) {
-            byte[] bytes = address.getAddress();
-            if (bytes == null) {
-                return false;
-            }
+        boolean matches(final byte[] bytes) {
             int addressInt = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
             return (addressInt & mask) == prefix;
         }
@@ -396,11 +395,7 @@ public class IPAddressAccessControlHandler implements HttpHandler {
         }
 
         @Override
-        boolean matches(final InetAddress address) {
-            byte[] bytes = address.getAddress();
-            if (bytes == null) {
-                return false;
-            }
+        boolean matches(final byte[] bytes) {
             if (bytes.length != mask.length) {
                 return false;
             }
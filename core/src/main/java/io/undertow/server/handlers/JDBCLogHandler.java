@@ -45,7 +45,7 @@ import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.builder.HandlerBuilder;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 
 public class JDBCLogHandler implements HttpHandler, Runnable {
 
@@ -142,10 +142,10 @@ public class JDBCLogHandler implements HttpHandler, Runnable {
         jdbcLogAttribute.status = exchange.getStatusCode();
 
         if (jdbcLogAttribute.pattern.equals("combined")) {
-            jdbcLogAttribute.virtualHost = exchange.getRequestHeader(HttpHeaderNames.HOST);
+            jdbcLogAttribute.virtualHost = exchange.getRequestHeader(AsciiHeaderNames.HOST);
             jdbcLogAttribute.method = exchange.getRequestMethod();
-            jdbcLogAttribute.referer = exchange.getRequestHeader(HttpHeaderNames.REFERER);
-            jdbcLogAttribute.userAgent = exchange.getRequestHeader(HttpHeaderNames.USER_AGENT);
+            jdbcLogAttribute.referer = exchange.getRequestHeader(AsciiHeaderNames.REFERER);
+            jdbcLogAttribute.userAgent = exchange.getRequestHeader(AsciiHeaderNames.USER_AGENT);
         }
 
         this.pendingMessages.add(jdbcLogAttribute);
@@ -29,7 +29,7 @@ import io.undertow.Handlers;
 import io.undertow.UndertowLogger;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 
 /**
  * A handler for the HTTP Origin (RFC 6454) header.
@@ -47,7 +47,7 @@ public class OriginHandler implements HttpHandler {
 
     @Override
     public void handleRequest(final HttpServerExchange exchange) throws Exception {
-        final List<String> origin = exchange.getRequestHeaders(HttpHeaderNames.ORIGIN);
+        final List<String> origin = exchange.getRequestHeaders(AsciiHeaderNames.ORIGIN);
         if (origin == null) {
             if (requireOriginHeader) {
                 //TODO: Is 403 (Forbidden) the best response code
@@ -30,7 +30,7 @@ import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.builder.HandlerBuilder;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.StatusCodes;
 
 /**
@@ -62,7 +62,7 @@ public class RedirectHandler implements HttpHandler {
     @Override
     public void handleRequest(final HttpServerExchange exchange) throws Exception {
         exchange.setStatusCode(StatusCodes.FOUND);
-        exchange.setResponseHeader(HttpHeaderNames.LOCATION, attribute.readAttribute(exchange));
+        exchange.setResponseHeader(AsciiHeaderNames.LOCATION, attribute.readAttribute(exchange));
         exchange.endExchange();
     }
 
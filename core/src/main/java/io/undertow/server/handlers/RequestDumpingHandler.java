@@ -25,13 +25,14 @@ import java.util.Map;
 import java.util.Set;
 
 import io.undertow.UndertowLogger;
+import io.undertow.attribute.StoredResponse;
 import io.undertow.security.api.SecurityContext;
 import io.undertow.server.ExchangeCompletionListener;
 import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.builder.HandlerBuilder;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.util.LocaleUtils;
 
 /**
@@ -54,9 +55,9 @@ public class RequestDumpingHandler implements HttpHandler {
         final SecurityContext sc = exchange.getSecurityContext();
         sb.append("\n----------------------------REQUEST---------------------------\n");
         sb.append("               URI=" + exchange.getRequestURI() + "\n");
-        sb.append(" characterEncoding=" + exchange.getRequestHeader(HttpHeaderNames.CONTENT_ENCODING) + "\n");
+        sb.append(" characterEncoding=" + exchange.getRequestHeader(AsciiHeaderNames.CONTENT_ENCODING) + "\n");
         sb.append("     contentLength=" + exchange.getRequestContentLength() + "\n");
-        sb.append("       contentType=" + exchange.getRequestHeader(HttpHeaderNames.CONTENT_TYPE) + "\n");
+        sb.append("       contentType=" + exchange.getRequestHeader(AsciiHeaderNames.CONTENT_TYPE) + "\n");
         //sb.append("       contextPath=" + exchange.getContextPath());
         if (sc != null) {
             if (sc.isAuthenticated()) {
@@ -80,7 +81,7 @@ public class RequestDumpingHandler implements HttpHandler {
                 sb.append("            header=" + header + "=" + value + "\n");
             }
         }
-        sb.append("            locale=" + LocaleUtils.getLocalesFromHeader(exchange.getRequestHeader(HttpHeaderNames.ACCEPT_LANGUAGE)) + "\n");
+        sb.append("            locale=" + LocaleUtils.getLocalesFromHeader(exchange.getRequestHeader(AsciiHeaderNames.ACCEPT_LANGUAGE)) + "\n");
         sb.append("            method=" + exchange.getRequestMethod() + "\n");
         Map<String, Deque<String>> pnames = exchange.getQueryParameters();
         for (Map.Entry<String, Deque<String>> entry : pnames.entrySet()) {
@@ -104,7 +105,7 @@ public class RequestDumpingHandler implements HttpHandler {
         sb.append("        remoteHost=" + exchange.getSourceAddress().getHostName() + "\n");
         //sb.append("requestedSessionId=" + exchange.getRequestedSessionId());
         sb.append("            scheme=" + exchange.getRequestScheme() + "\n");
-        sb.append("              host=" + exchange.getRequestHeader(HttpHeaderNames.HOST) + "\n");
+        sb.append("              host=" + exchange.getRequestHeader(AsciiHeaderNames.HOST) + "\n");
         sb.append("        serverPort=" + exchange.getDestinationAddress().getPort() + "\n");
         //sb.append("       servletPath=" + exchange.getServletPath());
         sb.append("          isSecure=" + exchange.isSecure() + "\n");
@@ -126,7 +127,7 @@ public class RequestDumpingHandler implements HttpHandler {
                     }
                 }
                 sb.append("     contentLength=" + exchange.getResponseContentLength() + "\n");
-                sb.append("       contentType=" + exchange.getResponseHeader(HttpHeaderNames.CONTENT_TYPE) + "\n");
+                sb.append("       contentType=" + exchange.getResponseHeader(AsciiHeaderNames.CONTENT_TYPE) + "\n");
                 Map<String, Cookie> cookies = exchange.getResponseCookies();
                 if (cookies != null) {
                     for (Cookie cookie : cookies.values()) {
@@ -139,11 +140,14 @@ public class RequestDumpingHandler implements HttpHandler {
                     }
                 }
                 sb.append("            status=" + exchange.getStatusCode() + "\n");
-//                String storedResponse = StoredResponse.INSTANCE.readAttribute(exchange);
-//                if (storedResponse != null) {
-//                    sb.append("body=\n");
-//                    sb.append(storedResponse);
-//                }
+                String storedResponse = StoredResponse.INSTANCE.readAttribute(exchange);
+                if (storedResponse != null) {
+                    sb.append("body=\n");
+                    sb.append(storedResponse);
+                    if (exchange.getAttachment(StoredResponseHandler.TRUNCATED) != null) {
+                        sb.append("\n[truncated]");
+                    }
+                }
 
                 sb.append("\n==============================================================");
 
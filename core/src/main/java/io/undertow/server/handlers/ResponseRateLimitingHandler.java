@@ -18,28 +18,63 @@
 
 package io.undertow.server.handlers;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
+import io.undertow.httpcore.WriteThrottle;
 import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.builder.HandlerBuilder;
+import io.undertow.server.handlers.cache.LRUCache;
 
 /**
- * Handler that limits the download rate
+ * Handler that limits the download rate.
+ * <p>
+ * The rate is enforced with a token bucket that holds one time period's worth of bytes, so a response can burst up
+ * to {@code bytes} before it is slowed down. The bucket can be per exchange, shared between all requests from the
+ * same peer address, or shared between all requests that pass through this handler.
  *
  * @author Stuart Douglas
  */
 public class ResponseRateLimitingHandler implements HttpHandler {
 
+    /**
+     * The largest chunk that is written at once, so the data is spread out evenly over the time period
+     */
+    private static final int MAX_WRITE_SIZE = 16 * 1024;
+    private static final int MAX_PEER_ADDRESSES = 10000;
+
+    public enum Scope {
+        /**
+         * Every exchange has its own limit
+         */
+        EXCHANGE,
+        /**
+         * The limit is shared by all exchanges from the same peer address
+         */
+        PEER_ADDRESS,
+        /**
+         * The limit is shared by all exchanges handled by this handler
+         */
+        HANDLER
+    }
+
     private final long time;
     private final int bytes;
     private final HttpHandler next;
+    private final Scope scope;
+    private final TokenBucket sharedBucket;
+    private final LRUCache<InetAddress, TokenBucket> peerBuckets;
 
     /**
      *
@@ -51,17 +86,111 @@ public class ResponseRateLimitingHandler implements HttpHandler {
      * @param timeUnit The units of the time period
      */
     public ResponseRateLimitingHandler(HttpHandler next, int bytes,long time, TimeUnit timeUnit) {
-        this.time = timeUnit.toMillis(time);
+        this(next, bytes, time, timeUnit, Scope.EXCHANGE);
+    }
+
+    /**
+     *
+     * A handler that limits the download speed to a set number of bytes/period
+     *
+     * @param next The next handler
+     * @param bytes The number of bytes per time period
+     * @param time The time period
+     * @param timeUnit The units of the time period
+     * @param scope The exchanges that share the limit
+     */
+    public ResponseRateLimitingHandler(HttpHandler next, int bytes, long time, TimeUnit timeUnit, Scope scope) {
+        if (bytes <= 0 || time <= 0) {
+            throw new IllegalArgumentException("bytes and time must be positive");
+        }
+        this.time = timeUnit.toNanos(time);
         this.bytes = bytes;
         this.next = next;
+        this.scope = scope;
+        this.sharedBucket = scope == Scope.HANDLER ? new TokenBucket(bytes, this.time) : null;
+        this.peerBuckets = scope == Scope.PEER_ADDRESS ? new LRUCache<InetAddress, TokenBucket>(MAX_PEER_ADDRESSES, -1) : null;
     }
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
-//        exchange.addResponseWrapper(WRAPPER);
-//        next.handleRequest(exchange);
+        exchange.setWriteThrottle(getBucket(exchange));
+        next.handleRequest(exchange);
     }
 
+    private TokenBucket getBucket(HttpServerExchange exchange) {
+        switch (scope) {
+            case HANDLER:
+                return sharedBucket;
+            case PEER_ADDRESS:
+                InetSocketAddress peer = exchange.getSourceAddress();
+                if (peer != null && peer.getAddress() != null) {
+                    TokenBucket bucket = peerBuckets.get(peer.getAddress());
+                    if (bucket == null) {
+                        bucket = new TokenBucket(bytes, time);
+                        TokenBucket existing = peerBuckets.putIfAbsent(peer.getAddress(), bucket);
+                        if (existing != null) {
+                            bucket = existing;
+                        }
+                    }
+                    return bucket;
+                }
+                return new TokenBucket(bytes, time);
+            default:
+                return new TokenBucket(bytes, time);
+        }
+    }
+
+    /**
+     * A lock free token bucket, implemented using the generic cell rate algorithm. Rather than counting tokens it
+     * tracks the time at which the bucket will be full again, and callers that take more than the bucket holds
+     * are told how long to wait.
+     */
+    static final class TokenBucket implements WriteThrottle {
+
+        private static final LongSupplier NANO_TIME = new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return System.nanoTime();
+            }
+        };
+
+        private final double nanosPerByte;
+        private final long burst;
+        private final int maxWriteSize;
+        private final LongSupplier clock;
+        private final AtomicLong fullAt;
+
+        TokenBucket(int bytes, long timeNanos) {
+            this(bytes, timeNanos, NANO_TIME);
+        }
+
+        TokenBucket(int bytes, long timeNanos, LongSupplier clock) {
+            this.nanosPerByte = (double) timeNanos / bytes;
+            this.burst = timeNanos;
+            this.maxWriteSize = Math.min(bytes, MAX_WRITE_SIZE);
+            this.clock = clock;
+            this.fullAt = new AtomicLong(clock.getAsLong());
+        }
+
+        @Override
+        public int getMaxWriteSize() {
+            return maxWriteSize;
+        }
+
+        @Override
+        public long acquire(int bytes) {
+            long cost = (long) (bytes * nanosPerByte);
+            long now = clock.getAsLong();
+            for (;;) {
+                long current = fullAt.get();
+                long start = current - now > 0 ? current : now;
+                long next = start + cost;
+                if (fullAt.compareAndSet(current, next)) {
+                    return next - burst - now;
+                }
+            }
+        }
+    }
 
     public static class Builder implements HandlerBuilder {
 
@@ -75,6 +204,7 @@ public class ResponseRateLimitingHandler implements HttpHandler {
             Map<String, Class<?>> ret = new HashMap<>();
             ret.put("bytes", Integer.class);
             ret.put("time", Long.class);
+            ret.put("scope", String.class);
             return ret;
         }
 
@@ -90,7 +220,9 @@ public class ResponseRateLimitingHandler implements HttpHandler {
 
         @Override
         public HandlerWrapper build(Map<String, Object> config) {
-            return new Wrapper((Integer)config.get("bytes"), (Long)config.get("time"), TimeUnit.MILLISECONDS);
+            String scope = (String) config.get("scope");
+            return new Wrapper((Integer)config.get("bytes"), (Long)config.get("time"), TimeUnit.MILLISECONDS,
+                    scope == null ? Scope.EXCHANGE : Scope.valueOf(scope.toUpperCase(Locale.ENGLISH).replace('-', '_')));
         }
 
     }
@@ -99,15 +231,17 @@ public class ResponseRateLimitingHandler implements HttpHandler {
 
         private final long time;
         private final int bytes;
+        private final Scope scope;
 
-        private Wrapper(int bytes, long time, TimeUnit timeUnit) {
+        private Wrapper(int bytes, long time, TimeUnit timeUnit, Scope scope) {
             this.time = timeUnit.toMillis(time);
             this.bytes = bytes;
+            this.scope = scope;
         }
 
         @Override
         public HttpHandler wrap(HttpHandler handler) {
-            return new ResponseRateLimitingHandler(handler, bytes, time, TimeUnit.MILLISECONDS);
+            return new ResponseRateLimitingHandler(handler, bytes, time, TimeUnit.MILLISECONDS, scope);
         }
     }
 }
@@ -22,40 +22,128 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.undertow.httpcore.WriteFunction;
 import io.undertow.server.ExchangeCompletionListener;
 import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.builder.HandlerBuilder;
+import io.undertow.util.AttachmentKey;
 
 /**
- * A handler that buffers the full response and attaches it to the exchange. This makes use of
- * {@link StoredResponseStreamSinkConduit}
+ * A handler that buffers the response and attaches it to the exchange.
  * <p>
  * This will be made available once the response is fully complete, so should generally
- * be read in an {@link ExchangeCompletionListener}
+ * be read in an {@link ExchangeCompletionListener}. The response is copied into pooled buffers, and
+ * at most {@code maxSize} bytes are stored, anything past that is dropped and the response is marked as truncated.
+ * The stored data is released once all completion listeners added by the handlers this handler wraps have run.
  *
  * @author Stuart Douglas
  */
 public class StoredResponseHandler implements HttpHandler {
 
+    public static final AttachmentKey<ByteBuf> RESPONSE = AttachmentKey.create(ByteBuf.class);
+    public static final AttachmentKey<Boolean> TRUNCATED = AttachmentKey.create(Boolean.class);
+
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
     private final HttpHandler next;
+    private final int maxSize;
 
     public StoredResponseHandler(HttpHandler next) {
+        this(next, DEFAULT_MAX_SIZE);
+    }
+
+    public StoredResponseHandler(HttpHandler next, int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize");
+        }
         this.next = next;
+        this.maxSize = maxSize;
     }
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
-//        exchange.addResponseWrapper(new ConduitWrapper<StreamSinkConduit>() {
-//            @Override
-//            public StreamSinkConduit wrap(ConduitFactory<StreamSinkConduit> factory, HttpServerExchange exchange) {
-//                return new StoredResponseStreamSinkConduit(factory.create(), exchange);
-//            }
-//        });
+        StoringWriteFunction function = new StoringWriteFunction(exchange, maxSize);
+        exchange.addWriteFunction(function);
+        //listeners run in reverse order, so the data is still available to listeners added by the wrapped handlers
+        exchange.addExchangeCompleteListener(function);
         next.handleRequest(exchange);
     }
 
+    private static final class StoringWriteFunction implements WriteFunction, ExchangeCompletionListener {
+
+        private final HttpServerExchange exchange;
+        private final int maxSize;
+        private CompositeByteBuf stored;
+        private ByteBuf current;
+        private boolean released;
+
+        StoringWriteFunction(HttpServerExchange exchange, int maxSize) {
+            this.exchange = exchange;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public synchronized ByteBuf preWrite(ByteBuf data, boolean last) {
+            if (released) {
+                return data;
+            }
+            if (data != null && data.isReadable()) {
+                store(data);
+            }
+            if (last && current != null) {
+                stored.addComponent(true, current);
+                current = null;
+            }
+            return data;
+        }
+
+        private void store(ByteBuf data) {
+            if (stored == null) {
+                stored = Unpooled.compositeBuffer();
+                exchange.putAttachment(RESPONSE, stored);
+            }
+            int remaining = maxSize - stored.readableBytes() - (current == null ? 0 : current.readableBytes());
+            if (remaining < data.readableBytes()) {
+                exchange.putAttachment(TRUNCATED, Boolean.TRUE);
+            }
+            int pos = data.readerIndex();
+            int end = pos + Math.min(remaining, data.readableBytes());
+            while (pos < end) {
+                if (current == null) {
+                    //don't allocate more than we are allowed to store
+                    current = exchange.allocateBuffer(false, Math.min(exchange.getBufferSize(), remaining));
+                }
+                int n = Math.min(current.writableBytes(), end - pos);
+                current.writeBytes(data, pos, n);
+                pos += n;
+                remaining -= n;
+                if (!current.isWritable()) {
+                    stored.addComponent(true, current);
+                    current = null;
+                }
+            }
+        }
+
+        @Override
+        public synchronized void exchangeEvent(HttpServerExchange exchange) {
+            released = true;
+            exchange.removeAttachment(RESPONSE);
+            if (current != null) {
+                current.release();
+                current = null;
+            }
+            if (stored != null) {
+                stored.release();
+                stored = null;
+            }
+        }
+    }
+
     public static class Builder implements HandlerBuilder {
 
         @Override
@@ -65,7 +153,7 @@ public class StoredResponseHandler implements HttpHandler {
 
         @Override
         public Map<String, Class<?>> parameters() {
-            return Collections.emptyMap();
+            return Collections.<String, Class<?>>singletonMap("max-size", int.class);
         }
 
         @Override
@@ -80,10 +168,11 @@ public class StoredResponseHandler implements HttpHandler {
 
         @Override
         public HandlerWrapper build(Map<String, Object> config) {
+            final Integer maxSize = (Integer) config.get("max-size");
             return new HandlerWrapper() {
                 @Override
                 public HttpHandler wrap(HttpHandler handler) {
-                    return new StoredResponseHandler(handler);
+                    return new StoredResponseHandler(handler, maxSize == null ? DEFAULT_MAX_SIZE : maxSize);
                 }
             };
         }
@@ -0,0 +1,54 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.undertow.server.handlers.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * A composite of cached buffers that holds a reference to the cached data, and releases it when the buffer is
+ * deallocated. This lets cached data be written without copying it, while making sure it is not freed or reused
+ * until the write has finished. The caller must have taken the reference before creating the buffer.
+ */
+public final class CacheEntryByteBuf extends CompositeByteBuf {
+
+    private final CacheReference reference;
+
+    /**
+     * @param entry   The cache entry the buffers belong to, which has been referenced by the caller
+     * @param buffers The buffers to write
+     */
+    public CacheEntryByteBuf(DirectBufferCache.CacheEntry entry, ByteBuf[] buffers) {
+        this((CacheReference) entry, buffers);
+    }
+
+    CacheEntryByteBuf(CacheReference reference, ByteBuf[] buffers) {
+        super(UnpooledByteBufAllocator.DEFAULT, true, Math.max(1, buffers.length), buffers);
+        this.reference = reference;
+    }
+
+    @Override
+    protected void deallocate() {
+        try {
+            super.deallocate();
+        } finally {
+            reference.dereference();
+        }
+    }
+}
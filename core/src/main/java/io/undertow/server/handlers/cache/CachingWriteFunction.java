@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.undertow.server.handlers.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.undertow.httpcore.WriteFunction;
+
+/**
+ * Copies a response into a {@link DirectBufferCache} entry as it is written. The entry is enabled once exactly
+ * {@link DirectBufferCache.CacheEntry#size()} bytes have been written. If the response is longer or shorter than that
+ * the data is discarded and the entry disabled, so another request can populate it.
+ * <p>
+ * The caller must hold a reference to the entry, which is released once the entry has been enabled or discarded.
+ */
+public final class CachingWriteFunction implements WriteFunction {
+
+    private final DirectBufferCache.CacheEntry cacheEntry;
+    private long written;
+    private boolean done;
+
+    public CachingWriteFunction(DirectBufferCache.CacheEntry cacheEntry) {
+        this.cacheEntry = cacheEntry;
+    }
+
+    @Override
+    public ByteBuf preWrite(ByteBuf data, boolean last) {
+        if (done) {
+            return data;
+        }
+        if (data != null && data.isReadable()) {
+            written += data.readableBytes();
+            if (written > cacheEntry.size()) {
+                discard();
+                return data;
+            }
+            ByteBuf copy = data.duplicate();
+            for (LimitedBufferSlicePool.PooledByteBuffer pooled : cacheEntry.buffers()) {
+                ByteBuf buf = pooled.getBuffer();
+                if (buf.isWritable()) {
+                    buf.writeBytes(copy, Math.min(buf.writableBytes(), copy.readableBytes()));
+                }
+                if (!copy.isReadable()) {
+                    break;
+                }
+            }
+        }
+        if (written == cacheEntry.size()) {
+            done = true;
+            cacheEntry.enable();
+            cacheEntry.dereference();
+        } else if (last) {
+            discard();
+        }
+        return data;
+    }
+
+    /**
+     * Gives up on populating the entry, for example because the response turned out not to contain the whole
+     * resource. This does nothing if the entry has already been enabled or discarded.
+     */
+    public void discard() {
+        if (done) {
+            return;
+        }
+        done = true;
+        for (LimitedBufferSlicePool.PooledByteBuffer pooled : cacheEntry.buffers()) {
+            pooled.getBuffer().clear();
+        }
+        cacheEntry.disable();
+        cacheEntry.dereference();
+    }
+}
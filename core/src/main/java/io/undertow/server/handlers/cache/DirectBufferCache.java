@@ -20,12 +20,16 @@ package io.undertow.server.handlers.cache;
 
 import static io.undertow.server.handlers.cache.LimitedBufferSlicePool.PooledByteBuffer;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.netty.buffer.ByteBufAllocator;
 import io.undertow.util.ConcurrentDirectDeque;
@@ -36,8 +40,13 @@ import io.undertow.util.ConcurrentDirectDeque;
  * a file system cache, where the path corresponds to a file location.
  * <p>
  * <p>To reduce contention, entry allocation and eviction execute in a sampling
- * fashion (entry hits modulo N). Eviction follows an LRU approach (oldest sampled
- * entries are removed first) when the cache is out of capacity</p>
+ * fashion (entry hits modulo N). When the cache is out of capacity the least recently
+ * sampled entries are considered for eviction first, but an entry is only evicted if
+ * it has been used less often for its size than the entry that needs the room. Entries
+ * that are kept have their hit count halved, so entries that stop being used lose
+ * their place over time. If not enough room can be made nothing is evicted, so one
+ * large file that is rarely used cannot push out many small files that are used all
+ * the time.</p>
  * <p>
  * <p>In order to expedite reclamation, cache entries are reference counted as
  * opposed to garbage collected.</p>
@@ -46,12 +55,25 @@ import io.undertow.util.ConcurrentDirectDeque;
  */
 public class DirectBufferCache {
     private static final int SAMPLE_INTERVAL = 5;
+    /**
+     * The most entries that are looked at to make room for an entry
+     */
+    private static final int MAX_EVICTION_SCAN = 64;
 
     private final LimitedBufferSlicePool pool;
     private final ConcurrentMap<Object, CacheEntry> cache;
     private final ConcurrentDirectDeque<CacheEntry> accessQueue;
     private final int sliceSize;
     private final int maxAge;
+    private final long sliceCapacity;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder slicesUsed = new LongAdder();
+    private final LongAdder bytesCached = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder allocationFailures = new LongAdder();
 
     public DirectBufferCache(int sliceSize, int slicesPerPage, int maxMemory) {
         this(sliceSize, slicesPerPage, maxMemory, ByteBufAllocator.DEFAULT);
@@ -63,7 +85,9 @@ public class DirectBufferCache {
 
     public DirectBufferCache(int sliceSize, int slicesPerPage, int maxMemory, final ByteBufAllocator bufferAllocator, int maxAge) {
         this.sliceSize = sliceSize;
-        this.pool = new LimitedBufferSlicePool(bufferAllocator, sliceSize, sliceSize * slicesPerPage, maxMemory / (sliceSize * slicesPerPage));
+        final int maxRegions = maxMemory / (sliceSize * slicesPerPage);
+        this.pool = new LimitedBufferSlicePool(bufferAllocator, sliceSize, sliceSize * slicesPerPage, maxRegions);
+        this.sliceCapacity = maxRegions > 0 ? (long) maxRegions * slicesPerPage : -1;
         this.cache = new ConcurrentHashMap<>(16);
         this.accessQueue = ConcurrentDirectDeque.newInstance();
         this.maxAge = maxAge;
@@ -91,6 +115,7 @@ public class DirectBufferCache {
     public CacheEntry get(Object key) {
         CacheEntry cacheEntry = cache.get(key);
         if (cacheEntry == null) {
+            misses.increment();
             return null;
         }
 
@@ -98,41 +123,83 @@ public class DirectBufferCache {
         if (expires != -1) {
             if (System.currentTimeMillis() > expires) {
                 remove(key);
+                misses.increment();
                 return null;
             }
         }
+        if (cacheEntry.enabled()) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
 
         if (cacheEntry.hit() % SAMPLE_INTERVAL == 0) {
 
             bumpAccess(cacheEntry);
 
             if (!cacheEntry.allocate()) {
-                // Try and make room
-                int reclaimSize = cacheEntry.size();
-                for (CacheEntry oldest : accessQueue) {
-                    if (oldest == cacheEntry) {
-                        continue;
-                    }
-
-                    if (oldest.buffers().length > 0) {
-                        reclaimSize -= oldest.size();
-                    }
-
-                    this.remove(oldest.key());
-
-                    if (reclaimSize <= 0) {
-                        break;
-                    }
+                // Try and make room, maybe lucky?
+                if (!makeRoom(cacheEntry) || !cacheEntry.allocate()) {
+                    allocationFailures.increment();
                 }
-
-                // Maybe lucky?
-                cacheEntry.allocate();
             }
         }
 
         return cacheEntry;
     }
 
+    /**
+     * Evicts entries to make room for an entry, if they have been used less often for their size than it has.
+     * Evicted slices may not be free straight away, if the entries are still being written out.
+     *
+     * @return <code>true</code> if there may be room for the entry
+     */
+    private boolean makeRoom(final CacheEntry candidate) {
+        if (!evictionLock.tryLock()) {
+            //another thread is already making room
+            return false;
+        }
+        try {
+            final int candidateSlices = candidate.slices();
+            final long needed = sliceCapacity < 0 ? 0 : candidateSlices - (sliceCapacity - slicesUsed.sum());
+            if (needed <= 0) {
+                return true;
+            }
+            final int candidateHits = candidate.hits;
+            final List<CacheEntry> victims = new ArrayList<>();
+            long reclaimed = 0;
+            int scanned = 0;
+            for (CacheEntry entry : accessQueue) {
+                if (reclaimed >= needed || ++scanned > MAX_EVICTION_SCAN) {
+                    break;
+                }
+                if (entry == candidate) {
+                    continue;
+                }
+                final int slices = entry.buffers().length;
+                //compare hits per slice, without dividing
+                if ((long) entry.hits * candidateSlices < (long) candidateHits * Math.max(1, slices)) {
+                    victims.add(entry);
+                    reclaimed += slices;
+                } else {
+                    entry.age();
+                }
+            }
+            if (reclaimed < needed) {
+                return false;
+            }
+            for (CacheEntry victim : victims) {
+                final boolean hasBuffers = victim.buffers().length > 0;
+                if (remove(victim.key(), victim) && hasBuffers) {
+                    evictions.increment();
+                }
+            }
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
     /**
      * Returns a set of all the keys in the cache. This is a copy of the
      * key set at the time of method invocation.
@@ -167,15 +234,76 @@ public class DirectBufferCache {
     public void remove(Object key) {
         CacheEntry remove = cache.remove(key);
         if (remove != null) {
-            Object old = remove.clearToken();
-            if (old != null) {
-                accessQueue.removeToken(old);
-            }
-            remove.dereference();
+            removed(remove);
+        }
+    }
+
+    private boolean remove(Object key, CacheEntry entry) {
+        if (cache.remove(key, entry)) {
+            removed(entry);
+            return true;
         }
+        return false;
     }
 
-    public static final class CacheEntry {
+    private void removed(CacheEntry entry) {
+        Object old = entry.clearToken();
+        if (old != null) {
+            accessQueue.removeToken(old);
+        }
+        entry.dereference();
+    }
+
+    /**
+     * Returns the statistics of this cache. The values are read when the methods of the returned object are called.
+     *
+     * @return The statistics
+     */
+    public DirectBufferCacheStatistics getStatistics() {
+        return new DirectBufferCacheStatistics() {
+            @Override
+            public int getEntryCount() {
+                return cache.size();
+            }
+
+            @Override
+            public long getSlicesUsed() {
+                return slicesUsed.sum();
+            }
+
+            @Override
+            public long getSliceCapacity() {
+                return sliceCapacity;
+            }
+
+            @Override
+            public long getBytesCached() {
+                return bytesCached.sum();
+            }
+
+            @Override
+            public long getHits() {
+                return hits.sum();
+            }
+
+            @Override
+            public long getMisses() {
+                return misses.sum();
+            }
+
+            @Override
+            public long getEvictions() {
+                return evictions.sum();
+            }
+
+            @Override
+            public long getAllocationFailures() {
+                return allocationFailures.sum();
+            }
+        };
+    }
+
+    public static final class CacheEntry implements CacheReference {
         private static final PooledByteBuffer[] EMPTY_BUFFERS = new PooledByteBuffer[0];
         private static final PooledByteBuffer[] INIT_BUFFERS = new PooledByteBuffer[0];
         private static final Object CLAIM_TOKEN = new Object();
@@ -224,6 +352,25 @@ public class DirectBufferCache {
             }
         }
 
+        /**
+         * Halves the hit count, when the entry has been kept in the cache in place of another entry.
+         */
+        void age() {
+            for (; ; ) {
+                int i = hits;
+                if (i <= 1 || hitsUpdater.weakCompareAndSet(this, i, i >> 1)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return The number of slices that are needed to hold the entry
+         */
+        int slices() {
+            return Math.max(1, (size + cache.sliceSize - 1) / cache.sliceSize);
+        }
+
         public Object key() {
             return key;
         }
@@ -286,12 +433,8 @@ public class DirectBufferCache {
                 return true;
             }
 
-            int reserveSize = size;
-            int n = 1;
+            int n = slices();
             DirectBufferCache bufferCache = cache;
-            while ((reserveSize -= bufferCache.sliceSize) > 0) {
-                n++;
-            }
 
             // Try to avoid mutations
             LimitedBufferSlicePool slicePool = bufferCache.pool;
@@ -314,12 +457,22 @@ public class DirectBufferCache {
                 buffers[i] = allocate;
             }
 
+            bufferCache.slicesUsed.add(n);
+            bufferCache.bytesCached.add(size);
             this.buffers = buffers;
+            if (refs < 1) {
+                //it was removed while the buffers were allocated
+                destroy();
+            }
             return true;
         }
 
         private void destroy() {
-            this.buffers = EMPTY_BUFFERS;
+            final PooledByteBuffer[] buffers = bufsUpdater.getAndSet(this, EMPTY_BUFFERS);
+            if (buffers.length > 0) {
+                cache.slicesUsed.add(-buffers.length);
+                cache.bytesCached.add(-size);
+            }
             for (PooledByteBuffer buffer : buffers) {
                 buffer.free();
             }
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.undertow.server.handlers.cache;
+
+/**
+ * Statistics of a {@link DirectBufferCache}.
+ *
+ * @see DirectBufferCache#getStatistics()
+ */
+public interface DirectBufferCacheStatistics {
+
+    /**
+     *
+     * @return The number of entries, including those that have not been given any buffers yet
+     */
+    int getEntryCount();
+
+    /**
+     *
+     * @return The number of slices that are held by entries
+     */
+    long getSlicesUsed();
+
+    /**
+     *
+     * @return The most slices the cache can hold, or -1 if it is not limited
+     */
+    long getSliceCapacity();
+
+    /**
+     *
+     * @return The number of bytes of the entries that hold slices
+     */
+    long getBytesCached();
+
+    /**
+     *
+     * @return The number of lookups that found an entry with its data cached
+     */
+    long getHits();
+
+    /**
+     *
+     * @return The number of lookups that found no entry, an expired entry, or one whose data is not cached yet
+     */
+    long getMisses();
+
+    /**
+     *
+     * @return The number of entries that were removed to make room for another entry
+     */
+    long getEvictions();
+
+    /**
+     *
+     * @return The number of times an entry could not be given buffers, because there was no room and the entries that
+     * could have been evicted were used more often for their size
+     */
+    long getAllocationFailures();
+}
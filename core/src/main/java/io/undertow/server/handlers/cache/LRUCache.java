@@ -22,6 +22,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 
 import io.undertow.util.ConcurrentDirectDeque;
 
@@ -33,7 +34,8 @@ import io.undertow.util.ConcurrentDirectDeque;
  * entries are removed first) when the cache is out of capacity.</p>
  * <p>
  *
- * This cache can also be configured to run in FIFO mode, rather than LRU.
+ * This cache can also be configured to run in FIFO mode, rather than LRU, or to use a frequency aware policy, see
+ * {@link EvictionPolicy}.
  *
  * @author Jason T. Greene
  * @author Stuart Douglas
@@ -53,20 +55,35 @@ public class LRUCache<K, V> {
      */
     private final int maxAge;
     private final boolean fifo;
+    /**
+     * The frequency aware policy, this is null unless the policy is {@link EvictionPolicy#TINY_LFU}
+     */
+    private final TinyLfuPolicy<K, V> tinyLfu;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
 
     public LRUCache(int maxEntries, final int maxAge) {
-        this.maxAge = maxAge;
-        this.cache = new ConcurrentHashMap<>(16);
-        this.accessQueue = ConcurrentDirectDeque.newInstance();
-        this.maxEntries = maxEntries;
-        this.fifo = false;
+        this(maxEntries, maxAge, EvictionPolicy.LRU);
     }
+
     public LRUCache(int maxEntries, final int maxAge, boolean fifo) {
+        this(maxEntries, maxAge, fifo ? EvictionPolicy.FIFO : EvictionPolicy.LRU);
+    }
+
+    public LRUCache(int maxEntries, final int maxAge, EvictionPolicy evictionPolicy) {
         this.maxAge = maxAge;
         this.cache = new ConcurrentHashMap<>(16);
-        this.accessQueue = ConcurrentDirectDeque.newInstance();
         this.maxEntries = maxEntries;
-        this.fifo = fifo;
+        this.fifo = evictionPolicy == EvictionPolicy.FIFO;
+        if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+            this.accessQueue = null;
+            this.tinyLfu = new TinyLfuPolicy<>(maxEntries, cache, evictions);
+        } else {
+            this.accessQueue = ConcurrentDirectDeque.newInstance();
+            this.tinyLfu = null;
+        }
     }
 
     public void add(K key, V newValue) {
@@ -79,17 +96,60 @@ public class LRUCache<K, V> {
                 expires = System.currentTimeMillis() + maxAge;
             }
             value = new CacheEntry<>(key, newValue, expires);
-            CacheEntry result = cache.putIfAbsent(key, value);
+            CacheEntry<K, V> result = cache.putIfAbsent(key, value);
+            if (tinyLfu != null) {
+                if (result == null) {
+                    tinyLfu.added(value);
+                } else {
+                    result.setValue(newValue);
+                }
+                return;
+            }
             if (result != null) {
                 value = result;
                 value.setValue(newValue);
             }
             bumpAccess(value);
-            if (cache.size() > maxEntries) {
-                //remove the oldest
-                CacheEntry<K, V> oldest = accessQueue.poll();
-                if (oldest != value) {
-                    this.remove(oldest.key());
+            evictOldest(value);
+        }
+    }
+
+    /**
+     * Adds the value if the key is not already cached. Unlike {@link #add(Object, Object)} this never replaces a value
+     * that another thread has added, so concurrent callers all end up using the same value.
+     *
+     * @return The value that is already cached, or <code>null</code> if the new value was added
+     */
+    public V putIfAbsent(K key, V newValue) {
+        long expires = maxAge == -1 ? -1 : System.currentTimeMillis() + maxAge;
+        CacheEntry<K, V> value = new CacheEntry<>(key, newValue, expires);
+        for (;;) {
+            CacheEntry<K, V> result = cache.putIfAbsent(key, value);
+            if (result == null) {
+                break;
+            }
+            long existingExpires = result.getExpires();
+            if (existingExpires == -1 || System.currentTimeMillis() <= existingExpires) {
+                return result.getValue();
+            }
+            remove(key);
+        }
+        if (tinyLfu != null) {
+            tinyLfu.added(value);
+        } else {
+            bumpAccess(value);
+            evictOldest(value);
+        }
+        return null;
+    }
+
+    private void evictOldest(CacheEntry<K, V> added) {
+        if (cache.size() > maxEntries) {
+            //remove the oldest
+            CacheEntry<K, V> oldest = accessQueue.poll();
+            if (oldest != added) {
+                if (this.remove(oldest.key()) != null) {
+                    evictions.increment();
                 }
             }
         }
@@ -98,17 +158,22 @@ public class LRUCache<K, V> {
     public V get(K key) {
         CacheEntry<K, V> cacheEntry = cache.get(key);
         if (cacheEntry == null) {
+            misses.increment();
             return null;
         }
         long expires = cacheEntry.getExpires();
         if(expires != -1) {
             if(System.currentTimeMillis() > expires) {
                 remove(key);
+                misses.increment();
                 return null;
             }
         }
+        hits.increment();
 
-        if(!fifo) {
+        if (tinyLfu != null) {
+            tinyLfu.recordRead(cacheEntry);
+        } else if(!fifo) {
             if (cacheEntry.hit() % SAMPLE_INTERVAL == 0) {
                 bumpAccess(cacheEntry);
             }
@@ -140,9 +205,13 @@ public class LRUCache<K, V> {
     public V remove(K key) {
         CacheEntry<K, V> remove = cache.remove(key);
         if (remove != null) {
-            Object old = remove.clearToken();
-            if (old != null) {
-                accessQueue.removeToken(old);
+            if (tinyLfu != null) {
+                tinyLfu.removed(remove);
+            } else {
+                Object old = remove.clearToken();
+                if (old != null) {
+                    accessQueue.removeToken(old);
+                }
             }
             return remove.getValue();
         } else {
@@ -151,8 +220,62 @@ public class LRUCache<K, V> {
     }
 
     public void clear() {
-        cache.clear();
-        accessQueue.clear();
+        if (tinyLfu != null) {
+            tinyLfu.clear();
+        } else {
+            cache.clear();
+            accessQueue.clear();
+        }
+    }
+
+    /**
+     * @return The number of entries in the cache
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return The number of lookups that found an entry
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups that did not find an entry, or found one that had expired
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of entries that were removed to make room for other entries
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * How the entry to evict is chosen when the cache is full.
+     */
+    public enum EvictionPolicy {
+        /**
+         * The least recently used entry is evicted. To reduce contention only a sample of the hits update the order
+         * of the entries.
+         */
+        LRU,
+        /**
+         * The oldest entry is evicted.
+         */
+        FIFO,
+        /**
+         * The W-TinyLFU policy. New entries go into a small LRU window, and an entry that leaves the window is only
+         * kept in place of another entry if it has been used more often. Keys that are used once, such as those of a
+         * crawler that sweeps every URL, cannot flush the entries that are used all the time. Reads are recorded
+         * without blocking, but adding and removing entries takes a lock.
+         */
+        TINY_LFU
     }
 
     public static final class CacheEntry<K, V> {
@@ -168,6 +291,10 @@ public class LRUCache<K, V> {
         private final long expires;
         private volatile int hits = 1;
         private volatile Object accessToken;
+        //guarded by the lock of the TinyLfuPolicy
+        CacheEntry<K, V> prev;
+        CacheEntry<K, V> next;
+        byte region;
 
         private CacheEntry(K key, V value, final long expires) {
             this.key = key;
@@ -183,7 +183,8 @@ public final class LimitedBufferSlicePool {
         }
 
         ByteBuf slice() {
-            return parent.slice(start, start + size);
+            //the slice starts out empty, it is filled by the user of the pool
+            return parent.slice(start, size).clear();
         }
     }
 }
@@ -0,0 +1,377 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.undertow.UndertowLogger;
+import io.undertow.util.DirectByteBufferDeallocator;
+
+/**
+ * A cache of read only memory mappings of files, for files that are too large to be copied into a
+ * {@link DirectBufferCache}.
+ * <p>
+ * A file is only mapped once it has been asked for a number of times, so files that are only served now and then
+ * are still served from disk. The total size of the mappings is limited, and when a file does not fit the mappings
+ * that have not been used for the longest time are removed to make room for it. A file that is bigger than the limit
+ * is never mapped.
+ * <p>
+ * Mappings are reference counted. Removing a mapping, either because it was evicted or because the file has been
+ * invalidated, drops the reference held by the cache, and the file is unmapped as soon as the buffers that are still
+ * being written have been released. Until then the memory is not counted against the limit any more.
+ * <p>
+ * A file that is truncated while it is mapped makes reads of the missing part fail, so this should only be used for
+ * files that are replaced rather than modified in place, and the cached files should be invalidated when they change.
+ */
+public class MappedFileCache {
+
+    /**
+     * The biggest region that is mapped at once, larger files are made up of several regions
+     */
+    private static final int MAX_REGION_SIZE = 1 << 30;
+
+    private final long maxMappedBytes;
+    private final int minRequests;
+    private final int regionSize;
+    private final ConcurrentMap<Object, MappedFile> files = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Counts requests for files that are not mapped, guarded by the lock
+     */
+    private final FrequencySketch sketch;
+    private final AtomicLong clock = new AtomicLong();
+    /**
+     * The size of the mappings that are in the cache, guarded by the lock
+     */
+    private long mappedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxMappedBytes The most bytes that are mapped at once
+     * @param minRequests    The number of times a file has to be asked for before it is mapped, at most 15
+     */
+    public MappedFileCache(long maxMappedBytes, int minRequests) {
+        this(maxMappedBytes, minRequests, MAX_REGION_SIZE);
+    }
+
+    MappedFileCache(long maxMappedBytes, int minRequests, int regionSize) {
+        this.maxMappedBytes = maxMappedBytes;
+        this.minRequests = Math.min(Math.max(1, minRequests), 15);
+        this.regionSize = regionSize;
+        this.sketch = new FrequencySketch(1024);
+    }
+
+    /**
+     * Gets the mapping of a file, mapping it if it has been asked for often enough.
+     * <p>
+     * If a mapping is returned it has been referenced, and the caller must call {@link MappedFile#dereference()}
+     * once it is done with it.
+     *
+     * @param key    The cache key
+     * @param file   The file
+     * @param length The length the file is expected to have, it is not mapped if it does not have this length
+     * @return The mapping, or <code>null</code> if the file is not mapped
+     */
+    public MappedFile get(Object key, Path file, long length) {
+        MappedFile mapped = files.get(key);
+        if (mapped != null && mapped.length != length) {
+            //the file has changed since it was mapped
+            lock.lock();
+            try {
+                remove(key, mapped);
+            } finally {
+                lock.unlock();
+            }
+            mapped = null;
+        }
+        if (mapped != null && mapped.reference()) {
+            mapped.lastAccess = clock.incrementAndGet();
+            hits.increment();
+            return mapped;
+        }
+        misses.increment();
+        if (length <= 0 || length > maxMappedBytes) {
+            return null;
+        }
+        lock.lock();
+        try {
+            sketch.increment(key);
+            if (sketch.frequency(key) < minRequests) {
+                return null;
+            }
+            mapped = files.get(key);
+            if (mapped != null) {
+                //mapped by another thread in the meantime
+                if (mapped.reference()) {
+                    mapped.lastAccess = clock.incrementAndGet();
+                    return mapped;
+                }
+                return null;
+            }
+            if (!makeRoom(length)) {
+                return null;
+            }
+            mapped = map(key, file, length);
+            if (mapped == null) {
+                return null;
+            }
+            mapped.lastAccess = clock.incrementAndGet();
+            mappedBytes += length;
+            files.put(key, mapped);
+            //one reference for the cache, and one for the caller
+            mapped.reference();
+            return mapped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private MappedFile map(Object key, Path file, long length) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != length) {
+                //the file has changed since its length was read
+                return null;
+            }
+            final int count = (int) ((length + regionSize - 1) / regionSize);
+            final MappedByteBuffer[] regions = new MappedByteBuffer[count];
+            try {
+                for (int i = 0; i < count; ++i) {
+                    final long position = (long) i * regionSize;
+                    regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionSize, length - position));
+                }
+            } catch (IOException | RuntimeException e) {
+                for (MappedByteBuffer region : regions) {
+                    DirectByteBufferDeallocator.free(region);
+                }
+                throw e;
+            }
+            return new MappedFile(key, regions, length, regionSize);
+        } catch (IOException | RuntimeException e) {
+            UndertowLogger.REQUEST_IO_LOGGER.debugf(e, "Could not map %s", file);
+            return null;
+        }
+    }
+
+    /**
+     * Evicts the least recently used mappings until a mapping of the given length fits. Nothing is evicted if that is
+     * not possible. This must be called with the lock held.
+     */
+    private boolean makeRoom(long length) {
+        if (length > maxMappedBytes) {
+            return false;
+        }
+        while (mappedBytes + length > maxMappedBytes) {
+            MappedFile victim = null;
+            //the number of mappings is small as they are all large files, so they are just scanned
+            for (MappedFile candidate : files.values()) {
+                if (victim == null || candidate.lastAccess < victim.lastAccess) {
+                    victim = candidate;
+                }
+            }
+            if (victim == null) {
+                return false;
+            }
+            evictions.increment();
+            remove(victim.key, victim);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the mapping of a file. It is unmapped once the buffers that are still in use have been released.
+     *
+     * @param key The cache key
+     */
+    public void remove(Object key) {
+        lock.lock();
+        try {
+            final MappedFile mapped = files.get(key);
+            if (mapped != null) {
+                remove(key, mapped);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Object key, MappedFile mapped) {
+        if (files.remove(key, mapped)) {
+            mappedBytes -= mapped.length;
+            mapped.dereference();
+        }
+    }
+
+    public Set<Object> getAllKeys() {
+        return new HashSet<>(files.keySet());
+    }
+
+    /**
+     * @return The total size of the mappings in the cache
+     */
+    public long getMappedBytes() {
+        lock.lock();
+        try {
+            return mappedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The most bytes that are mapped at once
+     */
+    public long getMaxMappedBytes() {
+        return maxMappedBytes;
+    }
+
+    /**
+     * @return The number of lookups that found a mapping
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups that did not find a mapping
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of mappings that were removed to make room for others
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * A mapped file, made up of one or more mapped regions.
+     */
+    public static final class MappedFile implements CacheReference {
+
+        private static final AtomicIntegerFieldUpdater<MappedFile> refsUpdater = AtomicIntegerFieldUpdater.newUpdater(MappedFile.class, "refs");
+
+        private final Object key;
+        private final MappedByteBuffer[] regions;
+        private final long length;
+        private final int regionSize;
+        private volatile int refs = 1;
+        private volatile long lastAccess;
+
+        MappedFile(Object key, MappedByteBuffer[] regions, long length, int regionSize) {
+            this.key = key;
+            this.regions = regions;
+            this.length = length;
+            this.regionSize = regionSize;
+        }
+
+        /**
+         * @return The length of the file when it was mapped
+         */
+        public long length() {
+            return length;
+        }
+
+        /**
+         * Returns a buffer that wraps part of the mapping, without copying it. The buffer holds its own reference to
+         * the mapping, which is released when the buffer is released.
+         *
+         * @param start The first byte
+         * @param end   The last byte (inclusive)
+         * @return The buffer
+         */
+        public ByteBuf slice(long start, long end) {
+            if (start < 0 || end >= length || start > end) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (!reference()) {
+                throw new IllegalStateException();
+            }
+            final int first = (int) (start / regionSize);
+            final int last = (int) (end / regionSize);
+            final ByteBuf[] slices = new ByteBuf[last - first + 1];
+            for (int i = first; i <= last; ++i) {
+                final long regionStart = (long) i * regionSize;
+                final ByteBuffer region = regions[i].duplicate();
+                region.limit((int) (Math.min(end + 1, regionStart + region.capacity()) - regionStart));
+                region.position((int) (Math.max(start, regionStart) - regionStart));
+                slices[i - first] = Unpooled.wrappedBuffer(region);
+            }
+            return new CacheEntryByteBuf(this, slices);
+        }
+
+        public boolean reference() {
+            for (; ; ) {
+                int refs = this.refs;
+                if (refs < 1) {
+                    return false; // unmapped
+                }
+
+                if (refsUpdater.compareAndSet(this, refs, refs + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public boolean dereference() {
+            for (; ; ) {
+                int refs = this.refs;
+                if (refs < 1) {
+                    return false;  // unmapped
+                }
+
+                if (refsUpdater.compareAndSet(this, refs, refs - 1)) {
+                    if (refs == 1) {
+                        for (MappedByteBuffer region : regions) {
+                            DirectByteBufferDeallocator.free(region);
+                        }
+                    }
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return <code>true</code> if the file has not been unmapped yet
+         */
+        boolean isMapped() {
+            return refs > 0;
+        }
+    }
+}
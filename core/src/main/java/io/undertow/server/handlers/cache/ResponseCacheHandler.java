@@ -0,0 +1,749 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.netty.buffer.ByteBuf;
+import io.undertow.httpcore.AsciiHeaderNames;
+import io.undertow.httpcore.HttpExchange;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.HttpMethodNames;
+import io.undertow.httpcore.IoCallback;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.httpcore.WriteFunction;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.DateUtils;
+import io.undertow.util.ETag;
+import io.undertow.util.ETagUtils;
+import io.undertow.util.SameThreadExecutor;
+
+/**
+ * A shared HTTP cache for the responses of the handlers this handler wraps.
+ * <p>
+ * Responses to <code>GET</code> requests are copied into a {@link DirectBufferCache} as they are written. A response
+ * is only stored if it has an explicit freshness lifetime (from <code>s-maxage</code>, <code>max-age</code> or
+ * <code>Expires</code>), a known length, and is not marked <code>no-store</code>, <code>no-cache</code> or
+ * <code>private</code>. Responses that set cookies are never cached. Requests with credentials, that is with an
+ * <code>Authorization</code>, <code>Proxy-Authorization</code> or <code>Cookie</code> header, are only served and
+ * stored responses that are explicitly marked <code>public</code>. Responses are stored under the URL and the values of
+ * the request headers named by their <code>Vary</code> header. As the buffer cache only gives memory to entries that
+ * are asked for again, a response is usually stored once it has been requested a few times.
+ * <p>
+ * Fresh responses are served straight from the cached buffers, without copying them and without leaving the thread
+ * the request is handled on, so this handler should be placed before any handler that dispatches. Conditional
+ * requests are answered from the cache as well, using the stored <code>ETag</code> and <code>Last-Modified</code>
+ * headers.
+ * <p>
+ * While a response is being captured, other requests for the same response wait for it rather than all being sent to
+ * the next handler. Once it is done they are tried again, and are served from the cache if the response was stored.
+ * URLs whose responses are marked <code>no-store</code> or <code>private</code> are not waited for, until one of their
+ * responses is stored again.
+ */
+public class ResponseCacheHandler implements HttpHandler {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    private static final String[] NO_HEADERS = new String[0];
+
+    private static final IoCallback<Object> END_EXCHANGE = new IoCallback<Object>() {
+        @Override
+        public void onComplete(HttpExchange exchange, Object context) {
+            exchange.endExchange();
+        }
+    };
+
+    private final HttpHandler next;
+    private final DirectBufferCache dataCache;
+    private final int maxEntrySize;
+
+    /**
+     * The request headers that the responses for each URL vary by
+     */
+    private final LRUCache<String, Variants> variants;
+
+    /**
+     * The cached responses, the data of each is held in the buffer cache under the same key
+     */
+    private final LRUCache<ResponseKey, CachedResponse> responses;
+
+    /**
+     * The responses that are being captured
+     */
+    private final ConcurrentMap<ResponseKey, PendingResponse> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Handles requests that waited for a response to be captured, these do not wait again
+     */
+    private final HttpHandler retryHandler = new HttpHandler() {
+        @Override
+        public void handleRequest(HttpServerExchange exchange) throws Exception {
+            ResponseCacheHandler.this.handleRequest(exchange, false);
+        }
+    };
+
+    public ResponseCacheHandler(HttpHandler next, DirectBufferCache dataCache) {
+        this(next, dataCache, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_ENTRY_SIZE);
+    }
+
+    /**
+     * @param next         The next handler
+     * @param dataCache    The cache that holds the response bodies, it can be shared with other handlers
+     * @param maxEntries   The most responses that are cached
+     * @param maxEntrySize The largest response body that is cached
+     */
+    public ResponseCacheHandler(HttpHandler next, DirectBufferCache dataCache, int maxEntries, int maxEntrySize) {
+        this.next = next;
+        this.dataCache = dataCache;
+        this.maxEntrySize = maxEntrySize;
+        this.variants = new LRUCache<>(maxEntries, -1, LRUCache.EvictionPolicy.TINY_LFU);
+        this.responses = new LRUCache<>(maxEntries, -1, LRUCache.EvictionPolicy.TINY_LFU);
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        handleRequest(exchange, true);
+    }
+
+    private void handleRequest(HttpServerExchange exchange, boolean coalesce) throws Exception {
+        final String method = exchange.getRequestMethod();
+        final boolean head = method.equals(HttpMethodNames.HEAD);
+        if (!head && !method.equals(HttpMethodNames.GET)) {
+            next.handleRequest(exchange);
+            return;
+        }
+        final CacheControl cacheControl = CacheControl.parse(exchange.getRequestHeaders(AsciiHeaderNames.CACHE_CONTROL));
+        if (cacheControl.noStore) {
+            next.handleRequest(exchange);
+            return;
+        }
+        //the client wants a response from the origin, which may then replace the cached one
+        final boolean revalidate = cacheControl.noCache || cacheControl.maxAge == 0
+                || (cacheControl.empty && containsToken(exchange.getRequestHeaders(AsciiHeaderNames.PRAGMA), "no-cache"));
+
+        //a response to a request with credentials may be meant only for that user, unless it says otherwise
+        final boolean credentials = hasCredentials(exchange);
+
+        final String url = cacheUrl(exchange);
+        final Variants variants = this.variants.get(url);
+        final ResponseKey key = new ResponseKey(url, variants == null ? null : variants.values(exchange));
+        final DirectBufferCache.CacheEntry entry = dataCache.get(key);
+        if (entry != null && !revalidate) {
+            final CachedResponse response = responses.get(key);
+            if (response != null && response.entry == entry && entry.enabled() && (!credentials || response.isPublic)) {
+                //a stale response is kept until the response that is captured next replaces it
+                final long age = response.age(System.currentTimeMillis());
+                if (age < response.lifetime && (cacheControl.maxAge < 0 || age <= cacheControl.maxAge * 1000) && entry.reference()) {
+                    serve(exchange, response, age, head);
+                    return;
+                }
+            }
+        }
+        if (head) {
+            //there is no body to capture
+            next.handleRequest(exchange);
+            return;
+        }
+        PendingResponse pendingResponse = null;
+        if (coalesce && !revalidate && !credentials && (variants == null || !variants.uncacheable)) {
+            pendingResponse = new PendingResponse(key);
+            final PendingResponse existing = pending.putIfAbsent(key, pendingResponse);
+            if (existing != null) {
+                exchange.dispatch(SameThreadExecutor.INSTANCE, new Runnable() {
+                    @Override
+                    public void run() {
+                        existing.await(exchange);
+                    }
+                });
+                return;
+            }
+        }
+        final CapturingWriteFunction capture = new CapturingWriteFunction(exchange, url, key, entry, credentials, pendingResponse);
+        exchange.addWriteFunction(capture);
+        exchange.addExchangeCompleteListener(capture);
+        next.handleRequest(exchange);
+    }
+
+    /**
+     * Serves a cached response.
+     *
+     * @param exchange The exchange
+     * @param response The response
+     * @param age      The age of the response in milliseconds
+     * @param head     If this is a <code>HEAD</code> request
+     */
+    private static void serve(HttpServerExchange exchange, CachedResponse response, long age, boolean head) {
+        final DirectBufferCache.CacheEntry entry = response.entry;
+        for (int i = 0; i < response.headerNames.length; ++i) {
+            exchange.addResponseHeader(response.headerNames[i], response.headerValues[i]);
+        }
+        exchange.setResponseHeader(AsciiHeaderNames.AGE, Long.toString(age / 1000));
+        if (response.status == StatusCodes.OK && isNotModified(exchange, response)) {
+            entry.dereference();
+            exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+            exchange.endExchange();
+            return;
+        }
+        exchange.setStatusCode(response.status);
+        exchange.setResponseContentLength(entry.size());
+        if (head) {
+            entry.dereference();
+            exchange.endExchange();
+            return;
+        }
+        ByteBuf[] buffers;
+        boolean ok = false;
+        try {
+            LimitedBufferSlicePool.PooledByteBuffer[] pooled = entry.buffers();
+            buffers = new ByteBuf[pooled.length];
+            for (int i = 0; i < buffers.length; i++) {
+                // Keep position from mutating
+                buffers[i] = pooled[i].getBuffer().retainedDuplicate();
+            }
+            ok = true;
+        } finally {
+            if (!ok) {
+                entry.dereference();
+            }
+        }
+        exchange.writeAsync(new CacheEntryByteBuf(entry, buffers), true, END_EXCHANGE, null);
+    }
+
+    private static boolean isNotModified(HttpServerExchange exchange, CachedResponse response) {
+        //if-modified-since is ignored if if-none-match is present
+        final String ifNoneMatch = exchange.getRequestHeader(AsciiHeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return !ETagUtils.handleIfNoneMatch(ifNoneMatch, response.etag, true);
+        }
+        return !DateUtils.handleIfModifiedSince(exchange, response.lastModified);
+    }
+
+    private static String cacheUrl(HttpServerExchange exchange) {
+        final String query = exchange.getQueryString();
+        if (query == null || query.isEmpty()) {
+            return exchange.getRequestURL();
+        }
+        return exchange.getRequestURL() + "?" + query;
+    }
+
+    private static boolean hasCredentials(HttpServerExchange exchange) {
+        return exchange.containsRequestHeader(AsciiHeaderNames.AUTHORIZATION)
+                || exchange.containsRequestHeader(AsciiHeaderNames.PROXY_AUTHORIZATION)
+                || exchange.containsRequestHeader(AsciiHeaderNames.COOKIE);
+    }
+
+    private static boolean isCacheableStatus(int status) {
+        switch (status) {
+            case StatusCodes.OK:
+            case StatusCodes.NON_AUTHORITATIVE_INFORMATION:
+            case StatusCodes.MULTIPLE_CHOICES:
+            case StatusCodes.MOVED_PERMANENTLY:
+            case StatusCodes.NOT_FOUND:
+            case StatusCodes.GONE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the header is stored with the response
+     */
+    private static boolean isStoredHeader(String name) {
+        return !(name.equalsIgnoreCase(HttpHeaderNames.CONNECTION)
+                || name.equalsIgnoreCase(HttpHeaderNames.KEEP_ALIVE)
+                || name.equalsIgnoreCase(HttpHeaderNames.TRANSFER_ENCODING)
+                || name.equalsIgnoreCase(HttpHeaderNames.CONTENT_LENGTH)
+                || name.equalsIgnoreCase(HttpHeaderNames.AGE));
+    }
+
+    private static boolean containsToken(List<String> values, String token) {
+        for (String value : values) {
+            for (String part : value.split(",")) {
+                if (part.trim().equalsIgnoreCase(token)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The lower case names of the headers in the vary header, or <code>null</code> if it contains <code>*</code>
+     */
+    private static String[] parseVary(List<String> values) {
+        if (values.isEmpty()) {
+            return NO_HEADERS;
+        }
+        final List<String> headers = new ArrayList<>();
+        for (String value : values) {
+            for (String part : value.split(",")) {
+                final String name = part.trim().toLowerCase(Locale.ENGLISH);
+                if (name.equals("*")) {
+                    return null;
+                }
+                if (!name.isEmpty() && !headers.contains(name)) {
+                    headers.add(name);
+                }
+            }
+        }
+        return headers.toArray(new String[headers.size()]);
+    }
+
+    /**
+     * @return The freshness lifetime of the response in milliseconds, or -1 if it does not have an explicit lifetime
+     */
+    private static long freshnessLifetime(HttpServerExchange exchange, CacheControl cacheControl, long now) {
+        //s-maxage is only for shared caches, which is what this is
+        if (cacheControl.sMaxAge >= 0) {
+            return cacheControl.sMaxAge * 1000;
+        }
+        if (cacheControl.maxAge >= 0) {
+            return cacheControl.maxAge * 1000;
+        }
+        final String expires = exchange.getResponseHeader(AsciiHeaderNames.EXPIRES);
+        if (expires == null) {
+            return -1;
+        }
+        //an invalid date means the response has already expired
+        final Date expiresDate = DateUtils.parseDate(expires);
+        if (expiresDate == null) {
+            return 0;
+        }
+        final String date = exchange.getResponseHeader(AsciiHeaderNames.DATE);
+        final Date dateDate = date == null ? null : DateUtils.parseDate(date);
+        return expiresDate.getTime() - (dateDate == null ? now : dateDate.getTime());
+    }
+
+    /**
+     * The parts of a cache control header that this cache looks at.
+     */
+    private static final class CacheControl {
+
+        private static final CacheControl EMPTY = new CacheControl();
+
+        boolean empty = true;
+        boolean noStore;
+        boolean noCache;
+        boolean isPrivate;
+        boolean isPublic;
+        long maxAge = -1;
+        long sMaxAge = -1;
+
+        static CacheControl parse(List<String> values) {
+            if (values.isEmpty()) {
+                return EMPTY;
+            }
+            final CacheControl result = new CacheControl();
+            result.empty = false;
+            for (String value : values) {
+                for (String part : value.split(",")) {
+                    final String directive = part.trim();
+                    final int index = directive.indexOf('=');
+                    final String name = (index == -1 ? directive : directive.substring(0, index).trim()).toLowerCase(Locale.ENGLISH);
+                    switch (name) {
+                        case "no-store":
+                            result.noStore = true;
+                            break;
+                        case "no-cache":
+                            //no-cache with a list of fields still needs the response to be revalidated, which we can't do
+                            result.noCache = true;
+                            break;
+                        case "private":
+                            result.isPrivate = true;
+                            break;
+                        case "public":
+                            result.isPublic = true;
+                            break;
+                        case "max-age":
+                            result.maxAge = parseSeconds(directive, index);
+                            break;
+                        case "s-maxage":
+                            result.sMaxAge = parseSeconds(directive, index);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return The number of seconds, or 0 if they are not valid so the response is treated as stale
+         */
+        private static long parseSeconds(String directive, int index) {
+            if (index == -1) {
+                return 0;
+            }
+            String value = directive.substring(index + 1).trim();
+            if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            try {
+                return Math.max(0, Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * The request headers that the responses for a URL vary by.
+     */
+    private static final class Variants {
+
+        final String[] headers;
+        /**
+         * If the last response for the URL was marked <code>no-store</code> or <code>private</code>, requests for it then
+         * do not wait for each other
+         */
+        volatile boolean uncacheable;
+
+        Variants(String[] headers) {
+            this.headers = headers;
+        }
+
+        String[] values(HttpServerExchange exchange) {
+            if (headers.length == 0) {
+                return null;
+            }
+            final String[] values = new String[headers.length];
+            for (int i = 0; i < headers.length; ++i) {
+                final List<String> value = exchange.getRequestHeaders(headers[i]);
+                values[i] = value.isEmpty() ? null : String.join(",", value);
+            }
+            return values;
+        }
+    }
+
+    private static final class ResponseKey {
+
+        private final String url;
+        private final String[] varyValues;
+        private final int hashCode;
+
+        ResponseKey(String url, String[] varyValues) {
+            this.url = url;
+            this.varyValues = varyValues;
+            this.hashCode = url.hashCode() * 31 + Arrays.hashCode(varyValues);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ResponseKey)) {
+                return false;
+            }
+            final ResponseKey that = (ResponseKey) o;
+            return hashCode == that.hashCode && url.equals(that.url) && Arrays.equals(varyValues, that.varyValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class CachedResponse {
+
+        final DirectBufferCache.CacheEntry entry;
+        final int status;
+        final String[] headerNames;
+        final String[] headerValues;
+        final ETag etag;
+        final Date lastModified;
+        final long storedAt;
+        final long lifetime;
+        final long initialAge;
+        /**
+         * If the response can be served to requests with credentials
+         */
+        final boolean isPublic;
+
+        CachedResponse(DirectBufferCache.CacheEntry entry, int status, String[] headerNames, String[] headerValues, ETag etag, Date lastModified, long storedAt, long lifetime, long initialAge, boolean isPublic) {
+            this.entry = entry;
+            this.status = status;
+            this.headerNames = headerNames;
+            this.headerValues = headerValues;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+            this.lifetime = lifetime;
+            this.initialAge = initialAge;
+            this.isPublic = isPublic;
+        }
+
+        /**
+         * @return The age of the response in milliseconds, including the age it had when it was stored
+         */
+        long age(long now) {
+            return initialAge + Math.max(0, now - storedAt);
+        }
+    }
+
+    /**
+     * A response that is being captured, and the requests that are waiting for it.
+     */
+    private final class PendingResponse {
+
+        private final ResponseKey key;
+        private List<HttpServerExchange> waiting = new ArrayList<>();
+
+        PendingResponse(ResponseKey key) {
+            this.key = key;
+        }
+
+        /**
+         * Suspends an exchange until the response is done, this must be called once the exchange has been dispatched.
+         */
+        void await(HttpServerExchange exchange) {
+            synchronized (this) {
+                if (waiting != null) {
+                    waiting.add(exchange);
+                    return;
+                }
+            }
+            resume(exchange);
+        }
+
+        /**
+         * Resumes the waiting exchanges, on their own IO threads.
+         */
+        void done() {
+            final List<HttpServerExchange> waiting;
+            synchronized (this) {
+                waiting = this.waiting;
+                this.waiting = null;
+            }
+            if (waiting == null) {
+                return;
+            }
+            pending.remove(key, this);
+            for (HttpServerExchange exchange : waiting) {
+                resume(exchange);
+            }
+        }
+
+        private void resume(HttpServerExchange exchange) {
+            exchange.dispatch(exchange.getIoThread(), retryHandler);
+        }
+    }
+
+    /**
+     * Copies a response into the buffer cache as it is written.
+     */
+    private final class CapturingWriteFunction implements WriteFunction, ExchangeCompletionListener {
+
+        private final HttpServerExchange exchange;
+        private final String url;
+        private final ResponseKey key;
+        private final DirectBufferCache.CacheEntry existing;
+        private final boolean credentials;
+        private final PendingResponse pendingResponse;
+        private DirectBufferCache.CacheEntry entry;
+        private CachedResponse response;
+        private ResponseKey storeKey;
+        private int written;
+        private boolean done;
+
+        CapturingWriteFunction(HttpServerExchange exchange, String url, ResponseKey key, DirectBufferCache.CacheEntry existing, boolean credentials, PendingResponse pendingResponse) {
+            this.exchange = exchange;
+            this.url = url;
+            this.key = key;
+            this.existing = existing;
+            this.credentials = credentials;
+            this.pendingResponse = pendingResponse;
+        }
+
+        @Override
+        public synchronized ByteBuf preWrite(ByteBuf data, boolean last) {
+            if (done) {
+                return data;
+            }
+            if (entry == null && !start(data, last)) {
+                finish();
+                return data;
+            }
+            if (data != null && data.isReadable()) {
+                if (written + data.readableBytes() > entry.size()) {
+                    //longer than the content length said it would be
+                    discard();
+                    return data;
+                }
+                final ByteBuf copy = data.duplicate();
+                for (LimitedBufferSlicePool.PooledByteBuffer pooled : entry.buffers()) {
+                    final ByteBuf buf = pooled.getBuffer();
+                    if (buf.isWritable()) {
+                        final int write = Math.min(buf.writableBytes(), copy.readableBytes());
+                        written += write;
+                        buf.writeBytes(copy, write);
+                    }
+                    if (!copy.isReadable()) {
+                        break;
+                    }
+                }
+            }
+            if (written == entry.size()) {
+                //the cache does not replace the value of an existing key
+                responses.remove(storeKey);
+                responses.add(storeKey, response);
+                entry.enable();
+                entry.dereference();
+                finish();
+            } else if (last) {
+                //the response did not contain the whole body
+                discard();
+            }
+            return data;
+        }
+
+        /**
+         * Works out if the response can be stored, and claims a cache entry for it.
+         *
+         * @return <code>true</code> if the response is being captured
+         */
+        private boolean start(ByteBuf data, boolean last) {
+            final int status = exchange.getStatusCode();
+            final CacheControl cacheControl = CacheControl.parse(exchange.getResponseHeaders(AsciiHeaderNames.CACHE_CONTROL));
+            final String[] vary = parseVary(exchange.getResponseHeaders(AsciiHeaderNames.VARY));
+            final long now = System.currentTimeMillis();
+            final long lifetime = freshnessLifetime(exchange, cacheControl, now);
+            long length = exchange.getResponseContentLength();
+            if (length < 0 && last) {
+                length = data == null ? 0 : data.readableBytes();
+            }
+            if (credentials && (!cacheControl.isPublic || cacheControl.noStore || cacheControl.isPrivate)) {
+                //this says nothing about the responses to requests without credentials
+                return false;
+            }
+            if (cacheControl.noStore || cacheControl.isPrivate) {
+                //the origin says responses for this URL are never stored, so requests for it are not made to wait
+                Variants variants = ResponseCacheHandler.this.variants.get(url);
+                if (variants == null) {
+                    variants = new Variants(NO_HEADERS);
+                    ResponseCacheHandler.this.variants.add(url, variants);
+                }
+                variants.uncacheable = true;
+                return false;
+            }
+            //other responses, such as a 304 to a conditional request, say nothing about the next response for the URL
+            if (!isCacheableStatus(status) || cacheControl.noCache || exchange.containsResponseHeader(AsciiHeaderNames.SET_COOKIE)
+                    || vary == null || lifetime <= 0 || length <= 0 || length > maxEntrySize) {
+                return false;
+            }
+            //remember what the response varies by, so later requests are looked up with the right key
+            Variants variants = ResponseCacheHandler.this.variants.get(url);
+            if (variants == null || !Arrays.equals(variants.headers, vary)) {
+                variants = new Variants(vary);
+                ResponseCacheHandler.this.variants.remove(url);
+                ResponseCacheHandler.this.variants.add(url, variants);
+            } else {
+                variants.uncacheable = false;
+            }
+            storeKey = new ResponseKey(url, variants.values(exchange));
+            DirectBufferCache.CacheEntry entry = storeKey.equals(key) ? existing : dataCache.get(storeKey);
+            boolean replaced = false;
+            if (entry != null && (entry.size() != length || entry.enabled())) {
+                //a different or stale response is cached, this one replaces it
+                replaced = entry.buffers().length != 0;
+                dataCache.remove(storeKey);
+                entry = null;
+            }
+            if (entry == null) {
+                //the buffer cache only allocates memory for entries that are asked for again, but a response that
+                //replaces one that had memory gets it straight away
+                entry = dataCache.add(storeKey, (int) length);
+                if (!replaced || !entry.allocate()) {
+                    return false;
+                }
+            }
+            if (entry.buffers().length == 0 || !entry.claimEnable()) {
+                return false;
+            }
+            if (!entry.reference()) {
+                entry.disable();
+                return false;
+            }
+            final List<String> headerNames = new ArrayList<>();
+            final List<String> headerValues = new ArrayList<>();
+            for (String name : exchange.getResponseHeaderNames()) {
+                if (isStoredHeader(name)) {
+                    for (String value : exchange.getResponseHeaders(name)) {
+                        headerNames.add(name);
+                        headerValues.add(value);
+                    }
+                }
+            }
+            final String lastModified = exchange.getResponseHeader(AsciiHeaderNames.LAST_MODIFIED);
+            final String age = exchange.getResponseHeader(AsciiHeaderNames.AGE);
+            long initialAge = 0;
+            if (age != null) {
+                try {
+                    initialAge = Math.max(0, Long.parseLong(age.trim()) * 1000);
+                } catch (NumberFormatException ignore) {
+                }
+            }
+            this.entry = entry;
+            this.response = new CachedResponse(entry, status, headerNames.toArray(NO_HEADERS), headerValues.toArray(NO_HEADERS),
+                    ETagUtils.getETag(exchange), lastModified == null ? null : DateUtils.parseDate(lastModified), now, lifetime, initialAge, cacheControl.isPublic);
+            return true;
+        }
+
+        private void discard() {
+            for (LimitedBufferSlicePool.PooledByteBuffer pooled : entry.buffers()) {
+                pooled.getBuffer().clear();
+            }
+            entry.disable();
+            entry.dereference();
+            finish();
+        }
+
+        private void finish() {
+            done = true;
+            if (pendingResponse != null) {
+                pendingResponse.done();
+            }
+        }
+
+        @Override
+        public synchronized void exchangeEvent(HttpServerExchange exchange) {
+            if (done) {
+                return;
+            }
+            if (entry != null) {
+                //the response was not completed
+                discard();
+            } else {
+                finish();
+            }
+        }
+    }
+}
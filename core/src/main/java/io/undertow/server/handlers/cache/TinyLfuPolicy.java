@@ -0,0 +1,312 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.undertow.server.handlers.cache;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The W-TinyLFU eviction policy of {@link LRUCache}, see {@link LRUCache.EvictionPolicy#TINY_LFU}.
+ * <p>
+ * New entries are added to a window that holds 1% of the entries, which is kept in LRU order. The rest of the cache
+ * is the main region, a segmented LRU made of a probation segment and a protected segment that holds up to 80% of the
+ * main region. An entry that leaves the window is admitted to probation if there is room, otherwise it only replaces
+ * the least recently used entry of probation if the {@link FrequencySketch} says it has been used more often, and is
+ * evicted if not. An entry that is read while on probation is moved to the protected segment, which pushes the least
+ * recently used protected entry back to probation.
+ * <p>
+ * The policy is guarded by a lock. Reads never wait for it: they are recorded in striped ring buffers, which are
+ * drained by whichever thread gets the lock once a buffer is half full, and reads are dropped if a buffer is full.
+ * Adds and removes take the lock, as they already follow the work of creating or invalidating a value.
+ */
+final class TinyLfuPolicy<K, V> {
+
+    static final byte NONE = 0;
+    static final byte WINDOW = 1;
+    static final byte PROBATION = 2;
+    static final byte PROTECTED = 3;
+
+    private static final int STRIPES = Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+    private static final int BUFFER_SIZE = 32;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+    private final ConcurrentMap<K, LRUCache.CacheEntry<K, V>> cache;
+    private final LongAdder evictions;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReadBuffer<K, V>[] readBuffers;
+    private final FrequencySketch sketch;
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+    private final int maxWindow;
+    private final int maxMain;
+    private final int maxProtected;
+
+    @SuppressWarnings("unchecked")
+    TinyLfuPolicy(final int maxEntries, final ConcurrentMap<K, LRUCache.CacheEntry<K, V>> cache, final LongAdder evictions) {
+        this.cache = cache;
+        this.evictions = evictions;
+        this.maxWindow = Math.max(1, maxEntries / 100);
+        this.maxMain = Math.max(0, maxEntries - maxWindow);
+        this.maxProtected = maxMain * 4 / 5;
+        this.sketch = new FrequencySketch(maxEntries);
+        this.readBuffers = new ReadBuffer[STRIPES];
+        for (int i = 0; i < STRIPES; ++i) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+    }
+
+    /**
+     * Records a read of an entry, this never waits for the lock.
+     */
+    void recordRead(final LRUCache.CacheEntry<K, V> entry) {
+        final ReadBuffer<K, V> buffer = readBuffers[stripe()];
+        if (buffer.offer(entry) && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Called after an entry has been put in the map, this evicts an entry if the cache is full.
+     */
+    void added(final LRUCache.CacheEntry<K, V> entry) {
+        lock.lock();
+        try {
+            drainReadBuffers();
+            if (cache.get(entry.key()) != entry) {
+                //it was removed before we got the lock
+                return;
+            }
+            sketch.increment(entry.key());
+            entry.region = WINDOW;
+            window.addLast(entry);
+            if (window.size > maxWindow) {
+                admit(window.removeFirst());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called after an entry has been removed from the map.
+     */
+    void removed(final LRUCache.CacheEntry<K, V> entry) {
+        lock.lock();
+        try {
+            unlink(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            for (LRUCache.CacheEntry<K, V> entry : cache.values()) {
+                unlink(entry);
+                cache.remove(entry.key(), entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void admit(final LRUCache.CacheEntry<K, V> candidate) {
+        if (probation.size + protectedSegment.size < maxMain) {
+            candidate.region = PROBATION;
+            probation.addLast(candidate);
+            return;
+        }
+        final LRUCache.CacheEntry<K, V> victim = probation.first != null ? probation.first : protectedSegment.first;
+        if (victim != null && sketch.frequency(candidate.key()) > sketch.frequency(victim.key())) {
+            evict(victim);
+            candidate.region = PROBATION;
+            probation.addLast(candidate);
+        } else {
+            candidate.region = NONE;
+            evict(candidate);
+        }
+    }
+
+    private void evict(final LRUCache.CacheEntry<K, V> entry) {
+        unlink(entry);
+        if (cache.remove(entry.key(), entry)) {
+            evictions.increment();
+        }
+    }
+
+    private void unlink(final LRUCache.CacheEntry<K, V> entry) {
+        switch (entry.region) {
+            case WINDOW:
+                window.remove(entry);
+                break;
+            case PROBATION:
+                probation.remove(entry);
+                break;
+            case PROTECTED:
+                protectedSegment.remove(entry);
+                break;
+            default:
+                return;
+        }
+        entry.region = NONE;
+    }
+
+    private void drainReadBuffers() {
+        for (ReadBuffer<K, V> buffer : readBuffers) {
+            buffer.drain(this);
+        }
+    }
+
+    private void read(final LRUCache.CacheEntry<K, V> entry) {
+        sketch.increment(entry.key());
+        switch (entry.region) {
+            case WINDOW:
+                window.moveToLast(entry);
+                break;
+            case PROBATION:
+                probation.remove(entry);
+                entry.region = PROTECTED;
+                protectedSegment.addLast(entry);
+                if (protectedSegment.size > maxProtected) {
+                    final LRUCache.CacheEntry<K, V> demoted = protectedSegment.removeFirst();
+                    demoted.region = PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedSegment.moveToLast(entry);
+                break;
+            default:
+                //it has already been removed
+                break;
+        }
+    }
+
+    private static int stripe() {
+        int h = System.identityHashCode(Thread.currentThread());
+        h ^= h >>> 16;
+        return h & (STRIPES - 1);
+    }
+
+    /**
+     * A lossy ring buffer of reads, filled by any thread and drained under the lock.
+     */
+    private static final class ReadBuffer<K, V> {
+
+        private final AtomicLong writes = new AtomicLong();
+        private final AtomicReferenceArray<LRUCache.CacheEntry<K, V>> entries = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private volatile long reads;
+
+        /**
+         * Adds a read to the buffer, the read is dropped if the buffer is full or another thread is adding to it.
+         *
+         * @return <code>true</code> if the buffer should be drained
+         */
+        boolean offer(final LRUCache.CacheEntry<K, V> entry) {
+            final long head = reads;
+            final long tail = writes.get();
+            final long size = tail - head;
+            if (size >= BUFFER_SIZE) {
+                return true;
+            }
+            if (writes.compareAndSet(tail, tail + 1)) {
+                entries.lazySet((int) tail & BUFFER_MASK, entry);
+                return size + 1 >= BUFFER_SIZE / 2;
+            }
+            return false;
+        }
+
+        void drain(final TinyLfuPolicy<K, V> policy) {
+            long head = reads;
+            final long tail = writes.get();
+            for (; head < tail; ++head) {
+                final int index = (int) head & BUFFER_MASK;
+                final LRUCache.CacheEntry<K, V> entry = entries.get(index);
+                if (entry == null) {
+                    //the writer has not stored it yet, it is picked up by the next drain
+                    break;
+                }
+                entries.lazySet(index, null);
+                policy.read(entry);
+            }
+            reads = head;
+        }
+    }
+
+    /**
+     * A list of entries in access order, linked through the entries themselves.
+     */
+    private static final class AccessOrder<K, V> {
+
+        LRUCache.CacheEntry<K, V> first;
+        LRUCache.CacheEntry<K, V> last;
+        int size;
+
+        void addLast(final LRUCache.CacheEntry<K, V> entry) {
+            entry.prev = last;
+            entry.next = null;
+            if (last == null) {
+                first = entry;
+            } else {
+                last.next = entry;
+            }
+            last = entry;
+            ++size;
+        }
+
+        void remove(final LRUCache.CacheEntry<K, V> entry) {
+            final LRUCache.CacheEntry<K, V> prev = entry.prev;
+            final LRUCache.CacheEntry<K, V> next = entry.next;
+            if (prev == null) {
+                first = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                last = prev;
+            } else {
+                next.prev = prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            --size;
+        }
+
+        LRUCache.CacheEntry<K, V> removeFirst() {
+            final LRUCache.CacheEntry<K, V> entry = first;
+            remove(entry);
+            return entry;
+        }
+
+        void moveToLast(final LRUCache.CacheEntry<K, V> entry) {
+            if (entry != last) {
+                remove(entry);
+                addLast(entry);
+            }
+        }
+    }
+}
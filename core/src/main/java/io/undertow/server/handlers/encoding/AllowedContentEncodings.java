@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import java.util.List;
+
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * The result of negotiating the content encoding for a request.
+ */
+public class AllowedContentEncodings {
+
+    private final List<EncodingMapping> encodings;
+    private final boolean identityAllowed;
+
+    /**
+     * @param encodings       The acceptable encodings, most preferred first
+     * @param identityAllowed If the client accepts a response that is not encoded
+     */
+    public AllowedContentEncodings(final List<EncodingMapping> encodings, final boolean identityAllowed) {
+        this.encodings = encodings;
+        this.identityAllowed = identityAllowed;
+    }
+
+    /**
+     * @return The acceptable encodings, most preferred first
+     */
+    public List<EncodingMapping> getEncodings() {
+        return encodings;
+    }
+
+    public boolean isIdentityAllowed() {
+        return identityAllowed;
+    }
+
+    /**
+     * @return <code>true</code> if the client does not accept any of the available encodings, or the identity encoding
+     */
+    public boolean isNoEncodingsAllowed() {
+        return encodings.isEmpty() && !identityAllowed;
+    }
+
+    /**
+     * Selects the encoding to use for the response. This resolves the predicates of the acceptable encodings, so
+     * should be called once the response headers that they depend on have been set.
+     *
+     * @param exchange The exchange
+     * @return The encoding to use, or <code>null</code> if the response should not be encoded
+     */
+    public EncodingMapping selectEncoding(final HttpServerExchange exchange) {
+        for (EncodingMapping encoding : encodings) {
+            if (encoding.getAllowed().resolve(exchange)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Objects;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.undertow.UndertowLogger;
+import io.undertow.httpcore.HttpExchange;
+import io.undertow.httpcore.AsciiHeaderNames;
+import io.undertow.httpcore.IoCallback;
+import io.undertow.httpcore.WriteFunction;
+import io.undertow.predicate.Predicate;
+import io.undertow.predicate.Predicates;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ResponseCommitListener;
+import io.undertow.server.handlers.cache.CachingWriteFunction;
+import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.cache.LimitedBufferSlicePool;
+import io.undertow.server.handlers.resource.Resource;
+
+/**
+ * Serves content encoded versions of static resources.
+ * <p>
+ * Resources are encoded on the fly as they are served. If a buffer cache is provided the encoded variants of small
+ * resources are also stored in the cache, keyed by the resource and the encoding, so that each variant only has to be
+ * encoded once. As with the {@link io.undertow.server.handlers.resource.CachingResourceManager} entries are only
+ * populated once the cache has decided to allocate space for them, so a resource has to be requested a few times
+ * before the encoded variant is served from the cache.
+ */
+public class ContentEncodedResourceManager {
+
+    private final ContentEncodingRepository contentEncodingRepository;
+    private final DirectBufferCache dataCache;
+    private final long maxCachedResourceSize;
+    private final int maxAge;
+    private final Predicate encodingAllowed;
+
+    /**
+     * @param contentEncodingRepository The available encodings
+     * @param dataCache                 The cache used for encoded variants, may be <code>null</code>
+     * @param maxCachedResourceSize     The largest (unencoded) resource whose encoded variants will be cached
+     * @param maxAge                    The maximum age of cache entries in milliseconds, or -1 for no limit
+     * @param encodingAllowed           Predicate that decides if the resource for an exchange can be encoded
+     */
+    public ContentEncodedResourceManager(ContentEncodingRepository contentEncodingRepository, DirectBufferCache dataCache, long maxCachedResourceSize, int maxAge, Predicate encodingAllowed) {
+        this.contentEncodingRepository = contentEncodingRepository;
+        this.dataCache = dataCache;
+        this.maxCachedResourceSize = maxCachedResourceSize;
+        this.maxAge = maxAge;
+        this.encodingAllowed = encodingAllowed == null ? Predicates.truePredicate() : encodingAllowed;
+    }
+
+    /**
+     * Serves the resource with a content encoding, if the client accepts one. Range requests are never encoded.
+     * <p>
+     * The response headers of the unencoded resource must already have been set.
+     *
+     * @param resource The resource to serve
+     * @param exchange The exchange
+     * @return <code>true</code> if the resource is being served, <code>false</code> if it should be served unencoded
+     */
+    public boolean serveAsync(final Resource resource, final HttpServerExchange exchange) {
+        if (exchange.containsRequestHeader(AsciiHeaderNames.RANGE) || !encodingAllowed.resolve(exchange)) {
+            return false;
+        }
+        final AllowedContentEncodings encodings = contentEncodingRepository.getContentEncodings(exchange);
+        if (encodings == null) {
+            return false;
+        }
+        EncodingHandler.addVary(exchange);
+        final EncodingMapping encoding = encodings.selectEncoding(exchange);
+        if (encoding == null) {
+            return false;
+        }
+        final Long length = resource.getContentLength();
+        final String cacheKey = resource.getCacheKey();
+        if (dataCache == null || length == null || length > maxCachedResourceSize || cacheKey == null) {
+            encodeOnCommit(exchange, encoding, null);
+            resource.serveAsync(exchange.getOutputChannel(), exchange);
+            return true;
+        }
+        final EncodedCacheKey key = new EncodedCacheKey(cacheKey, resource.getLastModified(), encoding.getName());
+        final DirectBufferCache.CacheEntry existing = dataCache.get(key);
+        if (existing != null && existing.enabled() && existing.reference()) {
+            serveFromCache(exchange, encoding, existing);
+            return true;
+        }
+        WriteFunction cacheFunction;
+        if (existing == null) {
+            cacheFunction = new SizeRecordingWriteFunction(key);
+        } else if (existing.buffers().length != 0 && existing.claimEnable()) {
+            if (existing.reference()) {
+                cacheFunction = new CachingWriteFunction(existing);
+            } else {
+                existing.disable();
+                cacheFunction = null;
+            }
+        } else {
+            cacheFunction = null;
+        }
+        encodeOnCommit(exchange, encoding, cacheFunction);
+        resource.serveAsync(exchange.getOutputChannel(), exchange);
+        return true;
+    }
+
+    private void encodeOnCommit(final HttpServerExchange exchange, final EncodingMapping encoding, final WriteFunction cacheFunction) {
+        //the encoder has to run after any write functions that the resource installs, so it is added on commit
+        exchange.addResponseCommitListener(new ResponseCommitListener() {
+            @Override
+            public void beforeCommit(HttpServerExchange exchange) {
+                if (exchange.containsResponseHeader(AsciiHeaderNames.CONTENT_ENCODING) || !EncodingHandler.isEncodable(exchange)) {
+                    //the resource is already encoded, or there is no body
+                    if (cacheFunction instanceof CachingWriteFunction) {
+                        ((CachingWriteFunction) cacheFunction).discard();
+                    }
+                    return;
+                }
+                exchange.removeResponseHeader(AsciiHeaderNames.ACCEPT_RANGES);
+                EncodingHandler.encode(exchange, encoding);
+                if (cacheFunction != null) {
+                    exchange.addWriteFunction(cacheFunction);
+                }
+            }
+        });
+    }
+
+    private void serveFromCache(final HttpServerExchange exchange, final EncodingMapping encoding, final DirectBufferCache.CacheEntry entry) {
+        UndertowLogger.REQUEST_LOGGER.tracef("Serving %s encoded resource from the buffer cache to %s", encoding.getName(), exchange);
+        ByteBuf[] buffers;
+        boolean ok = false;
+        try {
+            LimitedBufferSlicePool.PooledByteBuffer[] pooled = entry.buffers();
+            buffers = new ByteBuf[pooled.length];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = pooled[i].getBuffer().retainedDuplicate();
+            }
+            ok = true;
+        } finally {
+            if (!ok) {
+                entry.dereference();
+            }
+        }
+        exchange.removeResponseHeader(AsciiHeaderNames.ACCEPT_RANGES);
+        exchange.setResponseHeader(AsciiHeaderNames.CONTENT_ENCODING, encoding.getName());
+        exchange.setResponseContentLength(entry.size());
+        exchange.getOutputChannel().writeAsync(Unpooled.wrappedBuffer(buffers), true, new IoCallback<Object>() {
+            @Override
+            public void onComplete(HttpExchange exchange, Object context) {
+                try {
+                    entry.dereference();
+                } finally {
+                    exchange.endExchange();
+                }
+            }
+
+            @Override
+            public void onException(HttpExchange exchange, Object context, IOException exception) {
+                UndertowLogger.REQUEST_IO_LOGGER.ioException(exception);
+                try {
+                    entry.dereference();
+                } finally {
+                    IoCallback.super.onException(exchange, context, exception);
+                }
+            }
+        }, null);
+    }
+
+    /**
+     * Records the encoded size of a resource, so a cache entry of the correct size can be created. The entry is
+     * populated by a later request, once the cache has allocated buffers for it.
+     */
+    private final class SizeRecordingWriteFunction implements WriteFunction {
+
+        private final EncodedCacheKey key;
+        private long written;
+        private boolean done;
+
+        SizeRecordingWriteFunction(EncodedCacheKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public ByteBuf preWrite(ByteBuf data, boolean last) {
+            if (done) {
+                return data;
+            }
+            if (data != null) {
+                written += data.readableBytes();
+            }
+            if (last) {
+                done = true;
+                if (written <= maxCachedResourceSize) {
+                    dataCache.add(key, (int) written, maxAge);
+                }
+            }
+            return data;
+        }
+    }
+
+    private static final class EncodedCacheKey {
+
+        private final String resourceKey;
+        private final Date lastModified;
+        private final String encoding;
+        private final int hashCode;
+
+        EncodedCacheKey(String resourceKey, Date lastModified, String encoding) {
+            this.resourceKey = resourceKey;
+            this.lastModified = lastModified;
+            this.encoding = encoding;
+            this.hashCode = Objects.hash(resourceKey, lastModified, encoding);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof EncodedCacheKey)) return false;
+            EncodedCacheKey that = (EncodedCacheKey) o;
+            return resourceKey.equals(that.resourceKey) && Objects.equals(lastModified, that.lastModified) && encoding.equals(that.encoding);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return resourceKey + ";" + encoding;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import io.undertow.httpcore.WriteFunction;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Provides an implementation of a content encoding.
+ */
+public interface ContentEncodingProvider {
+
+    /**
+     * Creates a write function that encodes the response body. This is called once the response headers are final,
+     * and the returned function will see every write that is made for the response.
+     *
+     * @param exchange The exchange
+     * @return The write function that performs the encoding
+     */
+    WriteFunction createWriteFunction(HttpServerExchange exchange);
+}
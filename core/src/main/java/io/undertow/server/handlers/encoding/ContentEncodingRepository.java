@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import io.undertow.httpcore.AsciiHeaderNames;
+import io.undertow.predicate.Predicate;
+import io.undertow.predicate.Predicates;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.CopyOnWriteMap;
+import io.undertow.util.QValueParser;
+
+/**
+ * Class that provides a way of negotiating the content encoding of a response, based on the encodings that have
+ * been registered and the {@code Accept-Encoding} header of the request.
+ */
+public class ContentEncodingRepository {
+
+    public static final String IDENTITY = "identity";
+    private static final String WILDCARD = "*";
+
+    private final Map<String, EncodingMapping> encodingMap = new CopyOnWriteMap<>();
+
+    /**
+     * Negotiates the content encoding for the exchange. Encodings the client accepts with a higher q value are
+     * preferred, and encodings with the same q value are ordered by their priority.
+     *
+     * @param exchange The exchange
+     * @return The acceptable encodings, or <code>null</code> if the request does not specify any
+     */
+    public AllowedContentEncodings getContentEncodings(final HttpServerExchange exchange) {
+        final List<String> res = exchange.getRequestHeaders(AsciiHeaderNames.ACCEPT_ENCODING);
+        if (res == null || res.isEmpty()) {
+            return null;
+        }
+        final List<List<QValueParser.QValueResult>> found = QValueParser.parse(res);
+        //encodings that are mentioned explicitly are not matched by a wildcard
+        final Set<String> mentioned = new HashSet<>();
+        final Set<String> rejected = new HashSet<>();
+        boolean identityMentioned = false;
+        boolean identityRejected = false;
+        boolean wildcardRejected = false;
+        for (List<QValueParser.QValueResult> result : found) {
+            for (QValueParser.QValueResult value : result) {
+                String name = value.getValue().toLowerCase(Locale.ENGLISH);
+                mentioned.add(name);
+                if (value.isQValueZero()) {
+                    if (name.equals(IDENTITY)) {
+                        identityRejected = true;
+                    } else if (name.equals(WILDCARD)) {
+                        wildcardRejected = true;
+                    } else {
+                        rejected.add(name);
+                    }
+                } else if (name.equals(IDENTITY)) {
+                    identityMentioned = true;
+                }
+            }
+        }
+        final boolean identityAllowed = !identityRejected && (identityMentioned || !wildcardRejected);
+
+        final List<EncodingMapping> encodings = new ArrayList<>();
+        for (List<QValueParser.QValueResult> result : found) {
+            final List<EncodingMapping> available = new ArrayList<>();
+            boolean identity = false;
+            for (QValueParser.QValueResult value : result) {
+                if (value.isQValueZero()) {
+                    continue;
+                }
+                String name = value.getValue().toLowerCase(Locale.ENGLISH);
+                if (name.equals(IDENTITY)) {
+                    identity = true;
+                } else if (name.equals(WILDCARD)) {
+                    for (EncodingMapping mapping : encodingMap.values()) {
+                        if (!mentioned.contains(mapping.getName()) && !available.contains(mapping)) {
+                            available.add(mapping);
+                        }
+                    }
+                } else {
+                    EncodingMapping mapping = encodingMap.get(name);
+                    if (mapping != null && !rejected.contains(name) && !available.contains(mapping)) {
+                        available.add(mapping);
+                    }
+                }
+            }
+            Collections.sort(available);
+            encodings.addAll(available);
+            if (identity) {
+                //anything with a lower q value is less preferred than not encoding the response
+                break;
+            }
+        }
+        return new AllowedContentEncodings(encodings, identityAllowed);
+    }
+
+    public synchronized ContentEncodingRepository addEncodingHandler(final String encoding, final ContentEncodingProvider encoder, int priority) {
+        addEncodingHandler(encoding, encoder, priority, Predicates.truePredicate());
+        return this;
+    }
+
+    /**
+     * Registers a content encoding.
+     *
+     * @param encoding         The name of the encoding, as used in the {@code Content-Encoding} header
+     * @param encoder          The encoder
+     * @param priority         The priority, used to choose between encodings the client accepts equally
+     * @param enabledPredicate A predicate that is resolved once the response headers are known, to decide if the
+     *                         response should be encoded
+     */
+    public synchronized ContentEncodingRepository addEncodingHandler(final String encoding, final ContentEncodingProvider encoder, int priority, final Predicate enabledPredicate) {
+        String name = encoding.toLowerCase(Locale.ENGLISH);
+        this.encodingMap.put(name, new EncodingMapping(name, encoder, priority, enabledPredicate));
+        return this;
+    }
+
+    public synchronized ContentEncodingRepository removeEncodingHandler(final String encoding) {
+        encodingMap.remove(encoding.toLowerCase(Locale.ENGLISH));
+        return this;
+    }
+}
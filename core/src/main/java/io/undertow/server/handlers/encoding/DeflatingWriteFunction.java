@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.undertow.httpcore.WriteFunction;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Write function that compresses the response body using a {@link Deflater}.
+ * <p>
+ * The compressed data is written into buffers allocated from the exchange. Every write is flushed through the
+ * deflater, so data that is written to a streaming response is not held back waiting for more input.
+ */
+public class DeflatingWriteFunction implements WriteFunction {
+
+    private final HttpServerExchange exchange;
+    private final Deflater deflater;
+    private boolean started;
+    private boolean finished;
+
+    public DeflatingWriteFunction(final HttpServerExchange exchange, final int level) {
+        this(exchange, new Deflater(level));
+    }
+
+    protected DeflatingWriteFunction(final HttpServerExchange exchange, final Deflater deflater) {
+        this.exchange = exchange;
+        this.deflater = deflater;
+        //make sure the native resources are freed if the response is never completed
+        exchange.addExchangeCompleteListener(new ExchangeCompletionListener() {
+            @Override
+            public void exchangeEvent(HttpServerExchange exchange) {
+                deflater.end();
+            }
+        });
+    }
+
+    @Override
+    public ByteBuf preWrite(ByteBuf data, boolean last) {
+        if (finished) {
+            return data;
+        }
+        Output output = new Output();
+        try {
+            if (!started) {
+                started = true;
+                header(output);
+            }
+            if (data.isReadable()) {
+                for (ByteBuffer in : data.nioBuffers()) {
+                    update(in.duplicate());
+                    deflater.setInput(in);
+                    while (!deflater.needsInput()) {
+                        deflate(output, Deflater.NO_FLUSH);
+                    }
+                }
+            }
+            if (last) {
+                finished = true;
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate(output, Deflater.NO_FLUSH);
+                }
+                trailer(output);
+                deflater.end();
+            } else {
+                //flush until the deflater has space left over, which means there is nothing more pending
+                do {
+                    deflate(output, Deflater.SYNC_FLUSH);
+                } while (!output.current.isWritable());
+            }
+        } catch (RuntimeException e) {
+            output.release();
+            throw e;
+        } finally {
+            data.release();
+        }
+        return output.result();
+    }
+
+    private void deflate(Output output, int flush) {
+        ByteBuf current = output.writable();
+        ByteBuffer out = current.nioBuffer(current.writerIndex(), current.writableBytes());
+        int written = deflater.deflate(out, flush);
+        current.writerIndex(current.writerIndex() + written);
+    }
+
+    /**
+     * Called before any data is compressed, allows subclasses to write a header.
+     */
+    protected void header(Output output) {
+    }
+
+    /**
+     * Called with the uncompressed data before it is compressed.
+     */
+    protected void update(ByteBuffer data) {
+    }
+
+    /**
+     * Called once all data has been compressed, allows subclasses to write a trailer.
+     */
+    protected void trailer(Output output) {
+    }
+
+    /**
+     * The compressed output of a single write. Buffers are only allocated when there is data to write into them.
+     */
+    protected final class Output {
+
+        private ByteBuf buffer;
+        private ByteBuf current;
+
+        /**
+         * @return A buffer with space available, that will be included in the output
+         */
+        public ByteBuf writable() {
+            if (current == null) {
+                current = exchange.allocateBuffer();
+            } else if (!current.isWritable()) {
+                append(current);
+                current = exchange.allocateBuffer();
+            }
+            return current;
+        }
+
+        private void append(ByteBuf full) {
+            if (buffer == null) {
+                buffer = full;
+            } else if (buffer instanceof CompositeByteBuf) {
+                ((CompositeByteBuf) buffer).addComponent(true, full);
+            } else {
+                CompositeByteBuf composite = Unpooled.compositeBuffer();
+                composite.addComponent(true, buffer);
+                composite.addComponent(true, full);
+                buffer = composite;
+            }
+        }
+
+        public void write(byte[] data) {
+            int pos = 0;
+            while (pos < data.length) {
+                ByteBuf current = writable();
+                int toWrite = Math.min(current.writableBytes(), data.length - pos);
+                current.writeBytes(data, pos, toWrite);
+                pos += toWrite;
+            }
+        }
+
+        ByteBuf result() {
+            if (current != null) {
+                if (current.isReadable()) {
+                    append(current);
+                } else {
+                    current.release();
+                }
+                current = null;
+            }
+            return buffer == null ? Unpooled.EMPTY_BUFFER : buffer;
+        }
+
+        void release() {
+            if (current != null) {
+                current.release();
+                current = null;
+            }
+            if (buffer != null) {
+                buffer.release();
+                buffer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.undertow.httpcore.AsciiHeaderNames;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.HttpMethodNames;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.server.HandlerWrapper;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ResponseCommitListener;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.server.handlers.builder.HandlerBuilder;
+
+/**
+ * Handler that encodes the response body using the best content encoding the client accepts.
+ * <p>
+ * The encoding is chosen when the request arrives, but is only applied once the response is committed, so the
+ * predicates of the registered encodings can take the response headers into account. Responses that already have a
+ * {@code Content-Encoding}, responses without a body and responses to range requests are not encoded. As the length
+ * of the encoded body is not known in advance any {@code Content-Length} header is removed.
+ */
+public class EncodingHandler implements HttpHandler {
+
+    private volatile HttpHandler next = ResponseCodeHandler.HANDLE_404;
+    private volatile HttpHandler noEncodingHandler = ResponseCodeHandler.HANDLE_406;
+
+    private final ContentEncodingRepository contentEncodingRepository;
+
+    public EncodingHandler(final HttpHandler next, ContentEncodingRepository contentEncodingRepository) {
+        this.next = next;
+        this.contentEncodingRepository = contentEncodingRepository;
+    }
+
+    public EncodingHandler(ContentEncodingRepository contentEncodingRepository) {
+        this.contentEncodingRepository = contentEncodingRepository;
+    }
+
+    @Override
+    public void handleRequest(final HttpServerExchange exchange) throws Exception {
+        final AllowedContentEncodings encodings = contentEncodingRepository.getContentEncodings(exchange);
+        if (encodings == null) {
+            next.handleRequest(exchange);
+            return;
+        }
+        if (encodings.isNoEncodingsAllowed()) {
+            noEncodingHandler.handleRequest(exchange);
+            return;
+        }
+        addVary(exchange);
+        if (!encodings.getEncodings().isEmpty() && !exchange.containsRequestHeader(AsciiHeaderNames.RANGE)) {
+            exchange.addResponseCommitListener(new ResponseCommitListener() {
+                @Override
+                public void beforeCommit(HttpServerExchange exchange) {
+                    if (exchange.containsResponseHeader(AsciiHeaderNames.CONTENT_ENCODING) || !isEncodable(exchange)) {
+                        return;
+                    }
+                    EncodingMapping encoding = encodings.selectEncoding(exchange);
+                    if (encoding != null) {
+                        encode(exchange, encoding);
+                    }
+                }
+            });
+        }
+        next.handleRequest(exchange);
+    }
+
+    /**
+     * Marks the response as varying by the {@code Accept-Encoding} header, so caches store the variants separately.
+     */
+    static void addVary(HttpServerExchange exchange) {
+        List<String> vary = exchange.getResponseHeaders(AsciiHeaderNames.VARY);
+        if (vary != null) {
+            for (String value : vary) {
+                if (value.equalsIgnoreCase(HttpHeaderNames.ACCEPT_ENCODING)) {
+                    return;
+                }
+            }
+        }
+        exchange.addResponseHeader(AsciiHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+    }
+
+    /**
+     * @return <code>true</code> if the response has a body that could be encoded
+     */
+    static boolean isEncodable(HttpServerExchange exchange) {
+        if (exchange.getRequestMethod().equals(HttpMethodNames.HEAD)) {
+            return false;
+        }
+        int code = exchange.getStatusCode();
+        return code >= 200 && code != StatusCodes.NO_CONTENT && code != StatusCodes.NOT_MODIFIED && code != StatusCodes.PARTIAL_CONTENT;
+    }
+
+    /**
+     * Sets up the response to be encoded. This must be called before the response is committed.
+     */
+    static void encode(HttpServerExchange exchange, EncodingMapping encoding) {
+        exchange.setResponseHeader(AsciiHeaderNames.CONTENT_ENCODING, encoding.getName());
+        exchange.removeResponseHeader(AsciiHeaderNames.CONTENT_LENGTH);
+        exchange.addWriteFunction(encoding.getEncoding().createWriteFunction(exchange));
+    }
+
+    public HttpHandler getNext() {
+        return next;
+    }
+
+    public EncodingHandler setNext(final HttpHandler next) {
+        this.next = next;
+        return this;
+    }
+
+    public HttpHandler getNoEncodingHandler() {
+        return noEncodingHandler;
+    }
+
+    /**
+     * Sets the handler that is invoked if the client does not accept any of the available encodings, or an
+     * unencoded response. By default a 406 response is sent.
+     */
+    public EncodingHandler setNoEncodingHandler(HttpHandler noEncodingHandler) {
+        this.noEncodingHandler = noEncodingHandler;
+        return this;
+    }
+
+    public static class Builder implements HandlerBuilder {
+
+        @Override
+        public String name() {
+            return "compress";
+        }
+
+        @Override
+        public Map<String, Class<?>> parameters() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Set<String> requiredParameters() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public String defaultParameter() {
+            return null;
+        }
+
+        @Override
+        public HandlerWrapper build(Map<String, Object> config) {
+            return new Wrapper();
+        }
+
+    }
+
+    private static class Wrapper implements HandlerWrapper {
+
+        @Override
+        public HttpHandler wrap(HttpHandler handler) {
+            return new EncodingHandler(handler, new ContentEncodingRepository()
+                    .addEncodingHandler("gzip", new GzipEncodingProvider(), 100)
+                    .addEncodingHandler("deflate", new DeflateEncodingProvider(), 10));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import io.undertow.predicate.Predicate;
+
+/**
+ * A content encoding that has been registered with a {@link ContentEncodingRepository}.
+ */
+public final class EncodingMapping implements Comparable<EncodingMapping> {
+
+    private final String name;
+    private final ContentEncodingProvider encoding;
+    private final int priority;
+    private final Predicate allowed;
+
+    public EncodingMapping(final String name, final ContentEncodingProvider encoding, final int priority, final Predicate allowed) {
+        this.name = name;
+        this.encoding = encoding;
+        this.priority = priority;
+        this.allowed = allowed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ContentEncodingProvider getEncoding() {
+        return encoding;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return A predicate that is resolved against the exchange once the response headers are known, to decide if
+     *         the response should actually be encoded
+     */
+    public Predicate getAllowed() {
+        return allowed;
+    }
+
+    @Override
+    public int compareTo(final EncodingMapping o) {
+        return Integer.compare(o.priority, priority);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import java.util.zip.Deflater;
+
+import io.undertow.httpcore.WriteFunction;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Content encoding provider for the gzip content encoding.
+ */
+public class GzipEncodingProvider implements ContentEncodingProvider {
+
+    private final int level;
+
+    public GzipEncodingProvider() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level The compression level, from 0 to 9
+     */
+    public GzipEncodingProvider(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public WriteFunction createWriteFunction(HttpServerExchange exchange) {
+        return new GzipWriteFunction(exchange, level);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Write function that compresses the response body in the gzip format.
+ */
+public class GzipWriteFunction extends DeflatingWriteFunction {
+
+    private static final byte[] HEADER = new byte[]{
+            (byte) 0x1f, (byte) 0x8b, // magic number
+            Deflater.DEFLATED, // compression method
+            0, // flags
+            0, 0, 0, 0, // modification time
+            0, // extra flags
+            (byte) 0xff // operating system: unknown
+    };
+
+    private final CRC32 crc = new CRC32();
+    private long size;
+
+    public GzipWriteFunction(final HttpServerExchange exchange, final int level) {
+        super(exchange, new Deflater(level, true));
+    }
+
+    @Override
+    protected void header(Output output) {
+        output.write(HEADER);
+    }
+
+    @Override
+    protected void update(ByteBuffer data) {
+        size += data.remaining();
+        crc.update(data);
+    }
+
+    @Override
+    protected void trailer(Output output) {
+        int crcValue = (int) crc.getValue();
+        int isize = (int) size;
+        output.write(new byte[]{
+                (byte) crcValue, (byte) (crcValue >> 8), (byte) (crcValue >> 16), (byte) (crcValue >> 24),
+                (byte) isize, (byte) (isize >> 8), (byte) (isize >> 16), (byte) (isize >> 24)
+        });
+    }
+}
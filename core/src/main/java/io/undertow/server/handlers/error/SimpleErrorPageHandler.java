@@ -28,7 +28,7 @@ import io.undertow.server.DefaultResponseListener;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.ResponseCodeHandler;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.StatusCodes;
 
 /**
@@ -61,8 +61,8 @@ public class SimpleErrorPageHandler implements HttpHandler {
             Set<Integer> codes = responseCodes;
             if (codes == null ? exchange.getStatusCode() >= StatusCodes.BAD_REQUEST : codes.contains(Integer.valueOf(exchange.getStatusCode()))) {
                 final String errorPage = "<html><head><title>Error</title></head><body>" + exchange.getStatusCode() + " - " + StatusCodes.getReason(exchange.getStatusCode()) + "</body></html>";
-                exchange.setResponseHeader(HttpHeaderNames.CONTENT_LENGTH, "" + errorPage.length());
-                exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, "text/html");
+                exchange.setResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, "" + errorPage.length());
+                exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, "text/html");
                 exchange.writeAsync(errorPage);
                 return true;
             }
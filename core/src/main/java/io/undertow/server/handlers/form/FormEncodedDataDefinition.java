@@ -25,6 +25,7 @@ import io.undertow.httpcore.InputChannel;
 import io.undertow.httpcore.IoCallback;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.util.SameThreadExecutor;
 import io.undertow.util.URLUtils;
@@ -48,11 +49,11 @@ public class FormEncodedDataDefinition implements FormParserFactory.ParserDefini
 
     @Override
     public FormDataParser create(final HttpServerExchange exchange) {
-        String mimeType = exchange.getRequestHeader(HttpHeaderNames.CONTENT_TYPE);
+        String mimeType = exchange.getRequestHeader(AsciiHeaderNames.CONTENT_TYPE);
         if (forceCreation || (mimeType != null && mimeType.startsWith(APPLICATION_X_WWW_FORM_URLENCODED))) {
 
             String charset = defaultEncoding;
-            String contentType = exchange.getRequestHeader(HttpHeaderNames.CONTENT_TYPE);
+            String contentType = exchange.getRequestHeader(AsciiHeaderNames.CONTENT_TYPE);
             if (contentType != null) {
                 String cs = HttpHeaderNames.extractQuotedValueFromHeader(contentType, "charset");
                 if (cs != null) {
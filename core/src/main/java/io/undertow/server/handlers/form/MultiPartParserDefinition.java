@@ -43,6 +43,7 @@ import io.undertow.httpcore.IoCallback;
 import io.undertow.server.ExchangeCompletionListener;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.util.IoUtils;
 import io.undertow.util.MalformedMessageException;
@@ -77,7 +78,7 @@ public class MultiPartParserDefinition implements FormParserFactory.ParserDefini
 
     @Override
     public FormDataParser create(final HttpServerExchange exchange) {
-        String mimeType = exchange.getRequestHeader(HttpHeaderNames.CONTENT_TYPE);
+        String mimeType = exchange.getRequestHeader(AsciiHeaderNames.CONTENT_TYPE);
         if (mimeType != null && mimeType.startsWith(MULTIPART_FORM_DATA)) {
             String boundary = HttpHeaderNames.extractQuotedValueFromHeader(mimeType, "boundary");
             if (boundary == null) {
@@ -169,7 +170,7 @@ public class MultiPartParserDefinition implements FormParserFactory.ParserDefini
             this.fileSizeThreshold = fileSizeThreshold;
             this.data = new FormData(exchange.getUndertowOptions().get(UndertowOptions.MAX_PARAMETERS, 1000));
             String charset = defaultEncoding;
-            String contentType = exchange.getRequestHeader(HttpHeaderNames.CONTENT_TYPE);
+            String contentType = exchange.getRequestHeader(AsciiHeaderNames.CONTENT_TYPE);
             if (contentType != null) {
                 String value = HttpHeaderNames.extractQuotedValueFromHeader(contentType, "charset");
                 if (value != null) {
@@ -23,19 +23,24 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.undertow.UndertowLogger;
+import io.undertow.httpcore.BufferWritableOutputStream;
 import io.undertow.httpcore.HttpExchange;
 import io.undertow.httpcore.IoCallback;
 import io.undertow.httpcore.OutputChannel;
 import io.undertow.server.HttpServerExchange;
-import io.undertow.httpcore.WriteFunction;
+import io.undertow.server.handlers.cache.CacheEntryByteBuf;
+import io.undertow.server.handlers.cache.CachingWriteFunction;
 import io.undertow.server.handlers.cache.DirectBufferCache;
 import io.undertow.server.handlers.cache.LimitedBufferSlicePool;
+import io.undertow.server.handlers.cache.MappedFileCache;
+import io.undertow.util.ByteRange;
 import io.undertow.util.DateUtils;
 import io.undertow.util.ETag;
 import io.undertow.util.MimeMappings;
@@ -45,6 +50,13 @@ import io.undertow.util.MimeMappings;
  */
 public class CachedResource implements Resource, RangeAwareResource {
 
+    private static final IoCallback<Object> END_EXCHANGE = new IoCallback<Object>() {
+        @Override
+        public void onComplete(HttpExchange exchange, Object context) {
+            exchange.endExchange();
+        }
+    };
+
     private final CacheKey cacheKey;
     private final CachingResourceManager cachingResourceManager;
     private final Resource underlyingResource;
@@ -54,6 +66,10 @@ public class CachedResource implements Resource, RangeAwareResource {
     private final ETag eTag;
     private final String name;
     private volatile long nextMaxAgeCheck;
+    /**
+     * The length of the underlying resource, which is only kept if the cache is notified when it changes
+     */
+    private volatile Long underlyingContentLength;
 
     public CachedResource(final CachingResourceManager cachingResourceManager, final Resource underlyingResource, final String path) {
         this.cachingResourceManager = cachingResourceManager;
@@ -117,6 +133,11 @@ public class CachedResource implements Resource, RangeAwareResource {
 
     @Override
     public void serveBlocking(OutputStream outputStream, HttpServerExchange exchange) throws IOException {
+        final MappedFileCache.MappedFile mapped = getMappedFile();
+        if (mapped != null) {
+            writeMappedBlocking(outputStream, mapped, 0, mapped.length() - 1);
+            return;
+        }
         final DirectBufferCache dataCache = cachingResourceManager.getDataCache();
         if (dataCache == null) {
             underlyingResource.serveBlocking(outputStream, exchange);
@@ -143,7 +164,7 @@ public class CachedResource implements Resource, RangeAwareResource {
             if (entry != null && entry.buffers().length != 0 && entry.claimEnable()) {
                 if (entry.reference()) {
                     final DirectBufferCache.CacheEntry cacheEntry = entry;
-                    exchange.addWriteFunction(new CachingWriteFunction(cacheEntry, length));
+                    exchange.addWriteFunction(new CachingWriteFunction(cacheEntry));
                 } else {
                     entry.disable();
                 }
@@ -159,7 +180,7 @@ public class CachedResource implements Resource, RangeAwareResource {
                 buffers = new ByteBuf[pooled.length];
                 for (int i = 0; i < buffers.length; i++) {
                     // Keep position from mutating
-                    buffers[i] = pooled[i].getBuffer().duplicate();
+                    buffers[i] = pooled[i].getBuffer().retainedDuplicate();
                 }
                 ok = true;
             } finally {
@@ -167,22 +188,17 @@ public class CachedResource implements Resource, RangeAwareResource {
                     existing.dereference();
                 }
             }
-            try {
-                //TODO: performance
-                for (ByteBuf i : buffers) {
-                    while (i.isReadable()) {
-                        outputStream.write(i.readByte());
-                    }
-                }
-                outputStream.close();
-            } finally {
-                existing.dereference();
-            }
+            writeCachedBlocking(outputStream, existing, buffers);
         }
     }
 
     @Override
     public void serveAsync(OutputChannel stream, HttpServerExchange exchange) {
+        final MappedFileCache.MappedFile mapped = getMappedFile();
+        if (mapped != null) {
+            writeMappedAsync(stream, mapped, 0, mapped.length() - 1);
+            return;
+        }
         final DirectBufferCache dataCache = cachingResourceManager.getDataCache();
         if (dataCache == null) {
             underlyingResource.serveAsync(stream, exchange);
@@ -209,7 +225,7 @@ public class CachedResource implements Resource, RangeAwareResource {
             if (entry != null && entry.buffers().length != 0 && entry.claimEnable()) {
                 if (entry.reference()) {
                     final DirectBufferCache.CacheEntry cacheEntry = entry;
-                    exchange.addWriteFunction(new CachingWriteFunction(cacheEntry, length));
+                    exchange.addWriteFunction(new CachingWriteFunction(cacheEntry));
                 } else {
                     entry.disable();
                 }
@@ -225,7 +241,7 @@ public class CachedResource implements Resource, RangeAwareResource {
                 buffers = new ByteBuf[pooled.length];
                 for (int i = 0; i < buffers.length; i++) {
                     // Keep position from mutating
-                    buffers[i] = pooled[i].getBuffer().duplicate();
+                    buffers[i] = pooled[i].getBuffer().retainedDuplicate();
                 }
                 ok = true;
             } finally {
@@ -233,7 +249,7 @@ public class CachedResource implements Resource, RangeAwareResource {
                     existing.dereference();
                 }
             }
-            stream.writeAsync(Unpooled.wrappedBuffer(buffers), true, new DereferenceCallback<>(existing, IoCallback.END_EXCHANGE), null);
+            stream.writeAsync(Unpooled.wrappedBuffer(buffers), true, new DereferenceCallback<>(existing, END_EXCHANGE), null);
 
         }
     }
@@ -243,6 +259,78 @@ public class CachedResource implements Resource, RangeAwareResource {
         if (dataCache != null) {
             dataCache.remove(cacheKey);
         }
+        final MappedFileCache mappedFileCache = cachingResourceManager.getMappedFileCache();
+        if (mappedFileCache != null) {
+            mappedFileCache.remove(cacheKey);
+        }
+    }
+
+    /**
+     * Gets the mapping of the file if it is too big for the buffer cache, and has been asked for often enough to be
+     * mapped. The mapping has been referenced, and must be dereferenced by the caller.
+     *
+     * @return The mapping, or <code>null</code> if the resource is served some other way
+     */
+    private MappedFileCache.MappedFile getMappedFile() {
+        final MappedFileCache mappedFileCache = cachingResourceManager.getMappedFileCache();
+        if (mappedFileCache == null || directory) {
+            return null;
+        }
+        final Long length = getUnderlyingContentLength();
+        if (length == null || length <= cachingResourceManager.getMaxFileSize()) {
+            return null;
+        }
+        final Path file = underlyingResource.getFilePath();
+        if (file == null) {
+            return null;
+        }
+        return mappedFileCache.get(cacheKey, file, length);
+    }
+
+    /**
+     * Writes part of a mapped file to a blocking stream without copying it if the stream can accept buffers, and
+     * closes the stream.
+     *
+     * @param outputStream The stream
+     * @param mapped       The mapping, which must have been referenced by the caller and is dereferenced by this method
+     * @param start        The first byte
+     * @param end          The last byte (inclusive)
+     */
+    private static void writeMappedBlocking(OutputStream outputStream, MappedFileCache.MappedFile mapped, long start, long end) throws IOException {
+        final ByteBuf buffer;
+        try {
+            buffer = mapped.slice(start, end);
+        } finally {
+            mapped.dereference();
+        }
+        if (outputStream instanceof BufferWritableOutputStream) {
+            ((BufferWritableOutputStream) outputStream).write(buffer);
+        } else {
+            try {
+                buffer.readBytes(outputStream, buffer.readableBytes());
+            } finally {
+                buffer.release();
+            }
+        }
+        outputStream.close();
+    }
+
+    /**
+     * Writes part of a mapped file without copying it, and ends the exchange.
+     *
+     * @param stream The output channel
+     * @param mapped The mapping, which must have been referenced by the caller and is dereferenced by this method
+     * @param start  The first byte
+     * @param end    The last byte (inclusive)
+     */
+    private static void writeMappedAsync(OutputChannel stream, MappedFileCache.MappedFile mapped, long start, long end) {
+        final ByteBuf buffer;
+        try {
+            buffer = mapped.slice(start, end);
+        } finally {
+            mapped.dereference();
+        }
+        stream.writeAsync(buffer, true, END_EXCHANGE, null);
     }
 
     public boolean checkStillValid() {
@@ -264,16 +352,29 @@ public class CachedResource implements Resource, RangeAwareResource {
         //to prevent a mis-match between size on disk and cached size
         final DirectBufferCache dataCache = cachingResourceManager.getDataCache();
         if (dataCache == null) {
-            return underlyingResource.getContentLength();
+            return getUnderlyingContentLength();
         }
         final DirectBufferCache.CacheEntry existing = dataCache.get(cacheKey);
         if (existing == null || !existing.enabled()) {
-            return underlyingResource.getContentLength();
+            return getUnderlyingContentLength();
         }
         //we only return the
         return (long) existing.size();
     }
 
+    private Long getUnderlyingContentLength() {
+        if (!cachingResourceManager.isWatchingChanges()) {
+            return underlyingResource.getContentLength();
+        }
+        //this resource is invalidated when the underlying resource changes, so the length does not need to be checked
+        Long length = underlyingContentLength;
+        if (length == null) {
+            length = underlyingResource.getContentLength();
+            underlyingContentLength = length;
+        }
+        return length;
+    }
+
     @Override
     public String getCacheKey() {
         return cacheKey.cacheKey;
@@ -306,6 +407,11 @@ public class CachedResource implements Resource, RangeAwareResource {
 
     @Override
     public void serveRangeBlocking(OutputStream outputStream, HttpServerExchange exchange, long start, long end) throws IOException {
+        final MappedFileCache.MappedFile mapped = getMappedFile();
+        if (mapped != null) {
+            writeMappedBlocking(outputStream, mapped, start, end);
+            return;
+        }
         final DirectBufferCache dataCache = cachingResourceManager.getDataCache();
         if (dataCache == null) {
             ((RangeAwareResource) underlyingResource).serveRangeBlocking(outputStream, exchange, start, end);
@@ -329,52 +435,53 @@ public class CachedResource implements Resource, RangeAwareResource {
             ByteBuf[] buffers;
             boolean ok = false;
             try {
-                LimitedBufferSlicePool.PooledByteBuffer[] pooled = existing.buffers();
-                buffers = new ByteBuf[pooled.length];
-                for (int i = 0; i < buffers.length; i++) {
-                    // Keep position from mutating
-                    buffers[i] = pooled[i].getBuffer().duplicate();
-                }
+                buffers = sliceRange(existing.buffers(), start, end);
                 ok = true;
             } finally {
                 if (!ok) {
                     existing.dereference();
                 }
             }
-            if (start > 0) {
-                long startDec = start;
-                long endCount = 0;
-                //handle the start of the range
+            writeCachedBlocking(outputStream, existing, buffers);
+        }
+    }
+
+    /**
+     * Writes cached buffers to a blocking stream, and closes the stream.
+     * <p>
+     * If the stream can accept buffers they are handed over as is, and the entry is only dereferenced once the
+     * connection has released them, as until then the underlying slices must not be reused. Otherwise the buffers
+     * are copied to the stream in bulk.
+     *
+     * @param outputStream The stream
+     * @param entry        The cache entry, which must have been referenced by the caller
+     * @param buffers      Retained duplicates or slices of the cached buffers, which are released by this method
+     */
+    private static void writeCachedBlocking(OutputStream outputStream, DirectBufferCache.CacheEntry entry, ByteBuf[] buffers) throws IOException {
+        if (outputStream instanceof BufferWritableOutputStream) {
+            ((BufferWritableOutputStream) outputStream).write(new CacheEntryByteBuf(entry, buffers));
+        } else {
+            try {
                 for (ByteBuf b : buffers) {
-                    if (endCount == end) {
-                        b.clear();
-                        continue;
-                    } else if (endCount + b.readableBytes() < end) {
-                        endCount += b.readableBytes();
-                    } else {
-                        b.writerIndex((int) (b.readerIndex() + (end - endCount)));
-                        endCount = end;
-                    }
-                    if (b.readableBytes() >= startDec) {
-                        startDec = 0;
-                        b.readerIndex((int) (b.readerIndex() + startDec));
-                    } else {
-                        startDec -= b.readableBytes();
-                        b.clear();
-                    }
+                    b.readBytes(outputStream, b.readableBytes());
                 }
-            }
-            for (ByteBuf i : buffers) {
-                while (i.isReadable()) {
-                    outputStream.write(i.readByte());
+            } finally {
+                for (ByteBuf b : buffers) {
+                    b.release();
                 }
+                entry.dereference();
             }
-            outputStream.close();
         }
+        outputStream.close();
     }
 
     @Override
     public void serveRangeAsync(OutputChannel sender, HttpServerExchange exchange, long start, long end) {
+        final MappedFileCache.MappedFile mapped = getMappedFile();
+        if (mapped != null) {
+            writeMappedAsync(sender, mapped, start, end);
+            return;
+        }
         final DirectBufferCache dataCache = cachingResourceManager.getDataCache();
         if (dataCache == null) {
             ((RangeAwareResource) underlyingResource).serveRangeAsync(sender, exchange, start, end);
@@ -398,43 +505,94 @@ public class CachedResource implements Resource, RangeAwareResource {
             ByteBuf[] buffers;
             boolean ok = false;
             try {
-                LimitedBufferSlicePool.PooledByteBuffer[] pooled = existing.buffers();
-                buffers = new ByteBuf[pooled.length];
-                for (int i = 0; i < buffers.length; i++) {
-                    // Keep position from mutating
-                    buffers[i] = pooled[i].getBuffer().duplicate();
-                }
+                buffers = sliceRange(existing.buffers(), start, end);
                 ok = true;
             } finally {
                 if (!ok) {
                     existing.dereference();
                 }
             }
-            if (start > 0) {
-                long startDec = start;
-                long endCount = 0;
-                //handle the start of the range
-                for (ByteBuf b : buffers) {
-                    if (endCount == end) {
-                        b.clear();
-                        continue;
-                    } else if (endCount + b.readableBytes() < end) {
-                        endCount += b.readableBytes();
-                    } else {
-                        b.writerIndex((int) (b.readerIndex() + (end - endCount)));
-                        endCount = end;
-                    }
-                    if (b.readableBytes() >= startDec) {
-                        startDec = 0;
-                        b.readerIndex((int) (b.readerIndex() + startDec));
-                    } else {
-                        startDec -= b.readableBytes();
-                        b.clear();
-                    }
+            sender.writeAsync(Unpooled.wrappedBuffer(buffers), true, new DereferenceCallback<>(existing, END_EXCHANGE), null);
+        }
+    }
+
+    @Override
+    public boolean isMultipartRangeSupported() {
+        return isRangeSupported() && ((RangeAwareResource) underlyingResource).isMultipartRangeSupported();
+    }
+
+    @Override
+    public void serveMultipartRangeAsync(OutputChannel sender, HttpServerExchange exchange, ByteRange.MultipartRangeResponseResult ranges) {
+        final MappedFileCache.MappedFile mapped = getMappedFile();
+        if (mapped != null) {
+            //each part is a slice of the mapping
+            new MultipartRangeWriter(exchange, sender, ranges, new MultipartRangeWriter.PartSource() {
+                @Override
+                public ByteBuf read(long position, long remaining) {
+                    return mapped.slice(position, position + remaining - 1);
+                }
+
+                @Override
+                public void close() {
+                    mapped.dereference();
                 }
+            }).start();
+            return;
+        }
+        final DirectBufferCache dataCache = cachingResourceManager.getDataCache();
+        final DirectBufferCache.CacheEntry existing = dataCache == null ? null : dataCache.get(cacheKey);
+        if (existing == null || !existing.enabled() || !existing.reference()) {
+            ((RangeAwareResource) underlyingResource).serveMultipartRangeAsync(sender, exchange, ranges);
+            return;
+        }
+        //serve straight from the cache, each part is a set of slices of the cached buffers
+        new MultipartRangeWriter(exchange, sender, ranges, new MultipartRangeWriter.PartSource() {
+            @Override
+            public ByteBuf read(long position, long remaining) {
+                return Unpooled.wrappedBuffer(sliceRange(existing.buffers(), position, position + remaining - 1));
             }
-            sender.writeAsync(Unpooled.wrappedBuffer(buffers), true, new DereferenceCallback(existing, IoCallback.END_EXCHANGE), null);
+
+            @Override
+            public void close() {
+                existing.dereference();
+            }
+        }).start();
+    }
+
+    /**
+     * Returns retained slices of the cached data that cover the given range. Only the buffers that
+     * overlap the range are touched, and the cached buffers themselves are not modified.
+     *
+     * @param pooled The cached buffers
+     * @param start  The first byte of the range
+     * @param end    The last byte of the range (inclusive)
+     * @return The slices, which must be released by the caller
+     */
+    private static ByteBuf[] sliceRange(LimitedBufferSlicePool.PooledByteBuffer[] pooled, long start, long end) {
+        List<ByteBuf> slices = new ArrayList<>(pooled.length);
+        long offset = 0;
+        try {
+            for (LimitedBufferSlicePool.PooledByteBuffer p : pooled) {
+                if (offset > end) {
+                    break;
+                }
+                ByteBuf buffer = p.getBuffer();
+                int readable = buffer.readableBytes();
+                long bufferEnd = offset + readable - 1;
+                if (readable > 0 && bufferEnd >= start) {
+                    long sliceStart = Math.max(start, offset);
+                    long sliceEnd = Math.min(end, bufferEnd);
+                    slices.add(buffer.retainedSlice(buffer.readerIndex() + (int) (sliceStart - offset), (int) (sliceEnd - sliceStart + 1)));
+                }
+                offset += readable;
+            }
+        } catch (RuntimeException e) {
+            for (ByteBuf slice : slices) {
+                slice.release();
+            }
+            throw e;
         }
+        return slices.toArray(new ByteBuf[slices.size()]);
     }
 
     @Override
@@ -444,6 +602,7 @@ public class CachedResource implements Resource, RangeAwareResource {
         return underlyingResource instanceof RangeAwareResource && ((RangeAwareResource) underlyingResource).isRangeSupported();
     }
 
+
     private static class DereferenceCallback<T> implements IoCallback<T> {
 
         private final DirectBufferCache.CacheEntry entry;
@@ -504,38 +663,4 @@ public class CachedResource implements Resource, RangeAwareResource {
             return result;
         }
     }
-
-    private static class CachingWriteFunction implements WriteFunction {
-
-        private final DirectBufferCache.CacheEntry cacheEntry;
-        private final Long length;
-        int written;
-
-        public CachingWriteFunction(DirectBufferCache.CacheEntry cacheEntry, Long length) {
-            this.cacheEntry = cacheEntry;
-            this.length = length;
-        }
-
-        @Override
-        public ByteBuf preWrite(ByteBuf data, boolean last) {
-            ByteBuf copy = data.duplicate();
-            LimitedBufferSlicePool.PooledByteBuffer[] pooled = cacheEntry.buffers();
-            ByteBuf[] buffers = new ByteBuf[pooled.length];
-            for (int i = 0; i < buffers.length; i++) {
-                ByteBuf buf = pooled[i].getBuffer();
-                if (buf.isWritable()) {
-                    int write = Math.min(buf.writableBytes(), copy.readableBytes());
-                    written += write;
-                    buf.writeBytes(copy);
-                }
-                if (!copy.isReadable()) {
-                    break;
-                }
-            }
-            if (written == length) {
-                cacheEntry.enable();
-            }
-            return data;
-        }
-    }
 }
@@ -19,12 +19,25 @@
 package io.undertow.server.handlers.resource;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Set;
 
+import io.undertow.UndertowLogger;
 import io.undertow.server.handlers.cache.DirectBufferCache;
 import io.undertow.server.handlers.cache.LRUCache;
+import io.undertow.server.handlers.cache.MappedFileCache;
 
 /**
+ * A resource manager that caches the metadata and the content of the resources of another resource manager.
+ * <p>
+ * If the underlying resource manager supports change listeners the cache is updated as soon as resources change, so
+ * the max age can be set to -1 and cached resources are then never checked against the underlying resources. Otherwise
+ * cached resources are checked again once they are older than the max age.
+ * <p>
+ * Files that are bigger than the max file size are not copied into the buffer cache. If a {@link MappedFileCache} is
+ * given the ones that are asked for often are memory mapped instead, otherwise they are always served from the
+ * underlying resource.
+ *
  * @author Stuart Douglas
  */
 public class CachingResourceManager implements ResourceManager {
@@ -44,6 +57,11 @@ public class CachingResourceManager implements ResourceManager {
      */
     private final DirectBufferCache dataCache;
 
+    /**
+     * A cache of mapped files, for files bigger than the max file size
+     */
+    private final MappedFileCache mappedFileCache;
+
     /**
      * A cache of file metadata, such as if a file exists or not
      */
@@ -51,12 +69,55 @@ public class CachingResourceManager implements ResourceManager {
 
     private final int maxAge;
 
+    /**
+     * Invalidates cached resources when the underlying resources change
+     */
+    private final ResourceChangeListener changeListener = new ResourceChangeListener() {
+        @Override
+        public void handleChanges(Collection<ResourceChangeEvent> changes) {
+            for (ResourceChangeEvent change : changes) {
+                if (change.getType() == ResourceChangeEvent.Type.OVERFLOW) {
+                    //there is no way to find the resources below a path, so everything is invalidated
+                    invalidateAll();
+                    return;
+                }
+                final String path = change.getResource();
+                invalidate(path);
+                invalidate(path + "/");
+                if (change.getType() != ResourceChangeEvent.Type.MODIFIED) {
+                    //the listing of the parent directory has changed as well
+                    final int index = path.lastIndexOf('/');
+                    final String parent = index == -1 ? "" : path.substring(0, index);
+                    invalidate(parent);
+                    invalidate(parent + "/");
+                }
+            }
+        }
+    };
+
+    private final boolean watchingChanges;
+
     public CachingResourceManager(final int metadataCacheSize, final long maxFileSize, final DirectBufferCache dataCache, final ResourceManager underlyingResourceManager, final int maxAge) {
+        this(metadataCacheSize, maxFileSize, dataCache, null, underlyingResourceManager, maxAge);
+    }
+
+    public CachingResourceManager(final int metadataCacheSize, final long maxFileSize, final DirectBufferCache dataCache, final MappedFileCache mappedFileCache, final ResourceManager underlyingResourceManager, final int maxAge) {
         this.maxFileSize = maxFileSize;
         this.underlyingResourceManager = underlyingResourceManager;
         this.dataCache = dataCache;
-        this.cache = new LRUCache<>(metadataCacheSize, maxAge);
+        this.mappedFileCache = mappedFileCache;
+        this.cache = new LRUCache<>(metadataCacheSize, maxAge, LRUCache.EvictionPolicy.TINY_LFU);
         this.maxAge = maxAge;
+        boolean watchingChanges = false;
+        if (underlyingResourceManager.isResourceChangeListenerSupported()) {
+            try {
+                underlyingResourceManager.registerResourceChangeListener(changeListener);
+                watchingChanges = true;
+            } catch (RuntimeException e) {
+                UndertowLogger.ROOT_LOGGER.couldNotWatchForChanges(underlyingResourceManager, e);
+            }
+        }
+        this.watchingChanges = watchingChanges;
     }
 
     @Override
@@ -115,10 +176,29 @@ public class CachingResourceManager implements ResourceManager {
         }
     }
 
+    /**
+     * Removes every resource from the cache.
+     */
+    public void invalidateAll() {
+        cache.clear();
+        removeCachedData();
+    }
+
+    /**
+     * @return <code>true</code> if the cache is notified when the underlying resources change
+     */
+    boolean isWatchingChanges() {
+        return watchingChanges;
+    }
+
     DirectBufferCache getDataCache() {
         return dataCache;
     }
 
+    MappedFileCache getMappedFileCache() {
+        return mappedFileCache;
+    }
+
     public long getMaxFileSize() {
         return maxFileSize;
     }
@@ -130,19 +210,33 @@ public class CachingResourceManager implements ResourceManager {
     @Override
     public void close() throws IOException {
         try {
+            if (watchingChanges) {
+                underlyingResourceManager.removeResourceChangeListener(changeListener);
+            }
             //clear all cached data on close
-            if(dataCache != null) {
-                Set<Object> keys = dataCache.getAllKeys();
-                for(final Object key : keys) {
-                    if(key instanceof CachedResource.CacheKey) {
-                        if(((CachedResource.CacheKey) key).manager == this) {
-                            dataCache.remove(key);
-                        }
+            removeCachedData();
+        } finally {
+            underlyingResourceManager.close();
+        }
+    }
+
+    private void removeCachedData() {
+        if(dataCache != null) {
+            Set<Object> keys = dataCache.getAllKeys();
+            for(final Object key : keys) {
+                if(key instanceof CachedResource.CacheKey) {
+                    if(((CachedResource.CacheKey) key).manager == this) {
+                        dataCache.remove(key);
                     }
                 }
             }
-        } finally {
-            underlyingResourceManager.close();
+        }
+        if (mappedFileCache != null) {
+            for (final Object key : mappedFileCache.getAllKeys()) {
+                if (key instanceof CachedResource.CacheKey && ((CachedResource.CacheKey) key).manager == this) {
+                    mappedFileCache.remove(key);
+                }
+            }
         }
     }
 
@@ -34,7 +34,7 @@ import io.undertow.util.DateUtils;
 import io.undertow.util.ETag;
 import io.undertow.util.ETagUtils;
 import io.undertow.util.FlexBase64;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpMethodNames;
 import io.undertow.util.RedirectBuilder;
 import io.undertow.httpcore.StatusCodes;
@@ -74,9 +74,9 @@ public class DirectoryUtils {
                 return true;
             }
 
-            exchange.setResponseHeader(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(buffer.readableBytes()));
-            exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, type);
-            exchange.setResponseHeader(HttpHeaderNames.ETAG, quotedEtag);
+            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, String.valueOf(buffer.readableBytes()));
+            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, type);
+            exchange.setResponseHeader(AsciiHeaderNames.ETAG, quotedEtag);
             if (HttpMethodNames.HEAD.equals(exchange.getRequestMethod())) {
                 exchange.endExchange();
                 return true;
@@ -153,16 +153,16 @@ public class DirectoryUtils {
         String requestPath = exchange.getRequestPath();
         if (!requestPath.endsWith("/")) {
             exchange.setStatusCode(StatusCodes.FOUND);
-            exchange.setResponseHeader(HttpHeaderNames.LOCATION, RedirectBuilder.redirect(exchange, exchange.getRelativePath() + "/", true));
+            exchange.setResponseHeader(AsciiHeaderNames.LOCATION, RedirectBuilder.redirect(exchange, exchange.getRelativePath() + "/", true));
             exchange.endExchange();
             return;
         }
 
         StringBuilder builder = renderDirectoryListing(requestPath, resource);
 
-        exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, "text/html; charset=UTF-8");
-        exchange.setResponseHeader(HttpHeaderNames.LAST_MODIFIED, DateUtils.toDateString(new Date()));
-        exchange.setResponseHeader(HttpHeaderNames.CACHE_CONTROL, "must-revalidate");
+        exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, "text/html; charset=UTF-8");
+        exchange.setResponseHeader(AsciiHeaderNames.LAST_MODIFIED, DateUtils.toDateString(new Date()));
+        exchange.setResponseHeader(AsciiHeaderNames.CACHE_CONTROL, "must-revalidate");
         exchange.writeAsync(builder.toString());
 
         exchange.endExchange();
@@ -20,7 +20,6 @@ package io.undertow.server.handlers.resource;
 
 import java.io.File;
 
-import io.undertow.UndertowMessages;
 
 /**
  * Serves files from the file system.
@@ -55,14 +54,7 @@ public class FileResourceManager extends PathResourceManager {
     }
 
     public FileResourceManager setBase(final File base) {
-        if (base == null) {
-            throw UndertowMessages.MESSAGES.argumentCannotBeNull("base");
-        }
-        String basePath = base.getAbsolutePath();
-        if (!basePath.endsWith("/")) {
-            basePath = basePath + '/';
-        }
-        this.base = basePath;
+        super.setBase(base);
         return this;
     }
 }
@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.resource;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.undertow.UndertowLogger;
+import io.undertow.httpcore.HttpExchange;
+import io.undertow.httpcore.IoCallback;
+import io.undertow.httpcore.OutputChannel;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ByteRange;
+
+/**
+ * Writes a {@code multipart/byteranges} body asynchronously. Each part header is sent in the same write as the
+ * first chunk of its data, and the closing delimiter is sent with the last chunk. Only one write is in flight at
+ * any time.
+ * <p>
+ * The data always goes through buffers provided by the {@link PartSource}, even for files. A file region can only
+ * be sent as the whole response body, so it can not be interleaved with the part headers.
+ */
+final class MultipartRangeWriter implements IoCallback<Object> {
+
+    /**
+     * Provides the data for the individual parts.
+     */
+    interface PartSource {
+
+        /**
+         * Reads data from the resource.
+         *
+         * @param position  The position to read from
+         * @param remaining The number of bytes left in the current part
+         * @return A buffer containing at least one and at most {@code remaining} bytes, owned by the caller
+         */
+        ByteBuf read(long position, long remaining) throws IOException;
+
+        void close();
+    }
+
+    private final HttpServerExchange exchange;
+    private final OutputChannel channel;
+    private final ByteRange.MultipartRangeResponseResult ranges;
+    private final PartSource source;
+
+    private int part;
+    private long position;
+    private long remaining;
+    private boolean newPart;
+    private boolean done;
+
+    MultipartRangeWriter(HttpServerExchange exchange, OutputChannel channel, ByteRange.MultipartRangeResponseResult ranges, PartSource source) {
+        this.exchange = exchange;
+        this.channel = channel;
+        this.ranges = ranges;
+        this.source = source;
+    }
+
+    void start() {
+        position = ranges.getPartStart(0);
+        remaining = ranges.getPartEnd(0) - position + 1;
+        newPart = true;
+        writeNext();
+    }
+
+    private void writeNext() {
+        ByteBuf data;
+        try {
+            data = source.read(position, remaining);
+            if (!data.isReadable()) {
+                data.release();
+                throw new EOFException();
+            }
+        } catch (IOException e) {
+            onException(exchange.getDelegate(), null, e);
+            return;
+        }
+        ByteBuf header = newPart ? ranges.getPartHeader(part) : null;
+        newPart = false;
+        position += data.readableBytes();
+        remaining -= data.readableBytes();
+        ByteBuf buffer = header == null ? data : Unpooled.wrappedBuffer(header, data);
+        if (remaining == 0) {
+            if (++part == ranges.getParts()) {
+                done = true;
+                buffer = Unpooled.wrappedBuffer(buffer, ranges.getTrailer());
+            } else {
+                position = ranges.getPartStart(part);
+                remaining = ranges.getPartEnd(part) - position + 1;
+                newPart = true;
+            }
+        }
+        channel.writeAsync(buffer, done, this, null);
+    }
+
+    @Override
+    public void onComplete(HttpExchange ex, Object context) {
+        if (done) {
+            source.close();
+            ex.endExchange();
+        } else {
+            writeNext();
+        }
+    }
+
+    @Override
+    public void onException(HttpExchange ex, Object context, IOException exception) {
+        UndertowLogger.REQUEST_IO_LOGGER.ioException(exception);
+        source.close();
+        IoCallback.super.onException(ex, context, exception);
+    }
+}
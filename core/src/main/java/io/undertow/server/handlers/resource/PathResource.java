@@ -1,24 +1,31 @@
 package io.undertow.server.handlers.resource;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 import io.netty.buffer.ByteBuf;
 import io.undertow.UndertowLogger;
+import io.undertow.httpcore.HttpExchange;
+import io.undertow.httpcore.IoCallback;
 import io.undertow.httpcore.OutputChannel;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ByteRange;
 import io.undertow.util.DateUtils;
 import io.undertow.util.ETag;
+import io.undertow.util.IoUtils;
 import io.undertow.util.MimeMappings;
 
 /**
@@ -28,6 +35,13 @@ import io.undertow.util.MimeMappings;
  */
 public class PathResource implements RangeAwareResource {
 
+    private static final IoCallback<Object> END_EXCHANGE = new IoCallback<Object>() {
+        @Override
+        public void onComplete(HttpExchange exchange, Object context) {
+            exchange.endExchange();
+        }
+    };
+
     private final Path file;
     private final String path;
     private final ETag eTag;
@@ -117,19 +131,15 @@ public class PathResource implements RangeAwareResource {
 
     @Override
     public void serveAsync(OutputChannel stream, HttpServerExchange exchange) {
-        //TODO: do this properly
-        //todo implement non blocking IO
-        exchange.dispatch(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    serveBlocking(exchange.getOutputStream(), exchange);
-                } catch (IOException e) {
-                    UndertowLogger.REQUEST_IO_LOGGER.ioException(e);
-                    exchange.endExchange();
-                }
-            }
-        });
+        final long length;
+        try {
+            length = Files.size(file);
+        } catch (IOException e) {
+            UndertowLogger.REQUEST_IO_LOGGER.ioException(e);
+            exchange.endExchange();
+            return;
+        }
+        stream.writeFileAsync(file, 0, length, END_EXCHANGE, null);
     }
 
     @Override
@@ -178,35 +188,22 @@ public class PathResource implements RangeAwareResource {
     @Override
     public void serveRangeBlocking(OutputStream sender, HttpServerExchange exchange, long start, long end) throws IOException {
         ByteBuf buffer = exchange.allocateBuffer(false);
-        int pos = 0;
-        try (InputStream in = Files.newInputStream(file)) {
-            int r;
-            while ((r = in.read(buffer.array(), buffer.arrayOffset(), buffer.writableBytes())) > 0) {
-                int sw, ew;
-                if (pos < start) {
-                    int toEat = (int) (start - pos);
-                    if (toEat > r) {
-                        sw = -1;
-                    } else {
-                        sw = toEat;
-                    }
-                } else {
-                    sw = 0;
-                }
-                int rem = (int) (end - Math.max(pos, start)) + 1;
-                if (rem <= 0) {
-                    sender.close();
-                    return;
-                } else if (r > rem) {
-                    ew = rem;
-                } else {
-                    ew = r;
-                }
-                if (sw != -1) {
-                    sender.write(buffer.array(), buffer.arrayOffset() + sw, ew);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            //positional reads, so we only ever touch the bytes that are actually sent
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                buffer.clear();
+                int r = buffer.writeBytes(channel, position, (int) Math.min(buffer.writableBytes(), remaining));
+                if (r <= 0) {
+                    //the file was truncated, the headers already promised the full range so the response can't complete
+                    throw new EOFException();
                 }
-                pos += r;
+                sender.write(buffer.array(), buffer.arrayOffset(), r);
+                position += r;
+                remaining -= r;
             }
+            sender.close();
         } finally {
             buffer.release();
         }
@@ -214,22 +211,61 @@ public class PathResource implements RangeAwareResource {
 
     @Override
     public void serveRangeAsync(OutputChannel outputStream, HttpServerExchange exchange, long start, long end) {
-        //todo implement non blocking IO
-        exchange.dispatch(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    serveRangeBlocking(exchange.getOutputStream(), exchange, start, end);
-                } catch (IOException e) {
-                    UndertowLogger.REQUEST_IO_LOGGER.ioException(e);
-                    exchange.endExchange();
-                }
-            }
-        });
+        outputStream.writeFileAsync(file, start, end - start + 1, END_EXCHANGE, null);
     }
 
     @Override
     public boolean isRangeSupported() {
         return true;
     }
+
+    @Override
+    public boolean isMultipartRangeSupported() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Unlike a single range, the parts of a multipart response are not transferred with a file region. An
+     * {@link OutputChannel} can only send a file as the complete response body, so the data for each part is read
+     * into a pooled buffer and written between its part header and the next one.
+     */
+    @Override
+    public void serveMultipartRangeAsync(OutputChannel outputStream, final HttpServerExchange exchange, ByteRange.MultipartRangeResponseResult ranges) {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            UndertowLogger.REQUEST_IO_LOGGER.ioException(e);
+            exchange.endExchange();
+            return;
+        }
+        new MultipartRangeWriter(exchange, outputStream, ranges, new MultipartRangeWriter.PartSource() {
+            @Override
+            public ByteBuf read(long position, long remaining) throws IOException {
+                ByteBuf buffer = exchange.allocateBuffer();
+                try {
+                    int toRead = (int) Math.min(buffer.writableBytes(), remaining);
+                    while (toRead > 0) {
+                        int r = buffer.writeBytes(channel, position, toRead);
+                        if (r == -1) {
+                            break;
+                        }
+                        position += r;
+                        toRead -= r;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    buffer.release();
+                    throw e;
+                }
+                return buffer;
+            }
+
+            @Override
+            public void close() {
+                IoUtils.safeClose(channel);
+            }
+        }).start();
+    }
 }
@@ -7,6 +7,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.TreeSet;
 
 import org.jboss.logging.Logger;
@@ -59,6 +62,11 @@ public class PathResourceManager implements ResourceManager  {
 
     private final boolean allowResourceChangeListeners;
 
+    /**
+     * The registered change listeners, and the watches that notify them.
+     */
+    private final Map<ResourceChangeListener, PathWatcher.Registration> changeListeners = new HashMap<>();
+
     public PathResourceManager(final Path base) {
         this(base, DEFAULT_TRANSFER_MIN_SIZE, true, false, null);
     }
@@ -152,6 +160,7 @@ public class PathResourceManager implements ResourceManager  {
             basePath = basePath + File.separatorChar;
         }
         this.base = basePath;
+        rewatch();
         return this;
     }
 
@@ -164,6 +173,7 @@ public class PathResourceManager implements ResourceManager  {
             basePath = basePath + File.separatorChar;
         }
         this.base = basePath;
+        rewatch();
         return this;
     }
 
@@ -222,8 +232,70 @@ public class PathResourceManager implements ResourceManager  {
         return transferMinSize;
     }
 
+    @Override
+    public boolean isResourceChangeListenerSupported() {
+        return allowResourceChangeListeners && base != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The base directory is watched for changes with a {@link java.nio.file.WatchService}. Changes in directories that
+     * are reached through symbolic links are not seen.
+     */
+    @Override
+    public synchronized void registerResourceChangeListener(ResourceChangeListener listener) {
+        if (!isResourceChangeListenerSupported()) {
+            throw UndertowMessages.MESSAGES.resourceChangeListenerNotSupported();
+        }
+        final Path basePath = getBasePath();
+        final PathWatcher.Registration registration;
+        try {
+            registration = PathWatcher.watch(basePath, listener);
+        } catch (IOException e) {
+            throw UndertowMessages.MESSAGES.failedToWatchForChanges(basePath, e);
+        }
+        final PathWatcher.Registration existing = changeListeners.put(listener, registration);
+        if (existing != null) {
+            existing.close();
+        }
+    }
+
+    @Override
+    public synchronized void removeResourceChangeListener(ResourceChangeListener listener) {
+        final PathWatcher.Registration registration = changeListeners.remove(listener);
+        if (registration != null) {
+            registration.close();
+        }
+    }
+
+    /**
+     * Watches the new base directory after it has been changed.
+     */
+    private synchronized void rewatch() {
+        if (changeListeners.isEmpty()) {
+            return;
+        }
+        final Path basePath = getBasePath();
+        final Iterator<Map.Entry<ResourceChangeListener, PathWatcher.Registration>> it = changeListeners.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<ResourceChangeListener, PathWatcher.Registration> entry = it.next();
+            entry.getValue().close();
+            try {
+                entry.setValue(PathWatcher.watch(basePath, entry.getKey()));
+            } catch (IOException e) {
+                UndertowLogger.ROOT_LOGGER.couldNotWatchForChanges(this, e);
+                it.remove();
+            }
+        }
+    }
+
     @Override
     public synchronized void close() throws IOException {
+        for (PathWatcher.Registration registration : changeListeners.values()) {
+            registration.close();
+        }
+        changeListeners.clear();
     }
 
     /**
@@ -0,0 +1,335 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.undertow.server.handlers.resource;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import io.undertow.UndertowLogger;
+
+/**
+ * Watches directory trees for changes, for {@link PathResourceManager}.
+ * <p>
+ * A single watch service and daemon thread are shared by every watched tree. They are started when the first tree is
+ * watched and stopped when the last one is no longer watched. Directories are watched recursively, a directory that is
+ * created is watched as soon as its creation is seen and everything already in it is reported as added.
+ * <p>
+ * Changes are debounced, they are held back until no more have been seen for {@link #DEBOUNCE_MILLIS}, so that a file
+ * that is written in several steps is only reported once. If the watch service overflows, or a watched directory is
+ * removed or moved away, the changes below it are not known, so an {@link ResourceChangeEvent.Type#OVERFLOW} event is
+ * reported for it instead.
+ */
+final class PathWatcher implements Runnable {
+
+    /**
+     * How long there must be no changes before the changes that have been seen are reported.
+     */
+    static final long DEBOUNCE_MILLIS = Long.getLong("io.undertow.file-system-watcher-debounce", 50);
+
+    /**
+     * The longest changes are held back for when more changes keep arriving.
+     */
+    private static final long MAX_DELAY_MILLIS = DEBOUNCE_MILLIS * 20;
+
+    private static PathWatcher instance;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    private PathWatcher() throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Starts watching a directory tree.
+     *
+     * @param root     The root of the tree
+     * @param listener The listener that is notified of changes, with paths relative to the root
+     * @return The registration, which must be closed to stop watching the tree
+     * @throws IOException If the tree could not be watched
+     */
+    static Registration watch(final Path root, final ResourceChangeListener listener) throws IOException {
+        synchronized (PathWatcher.class) {
+            boolean started = false;
+            if (instance == null) {
+                instance = new PathWatcher();
+                started = true;
+            }
+            final PathWatcher watcher = instance;
+            try {
+                watcher.watchTree(root, null);
+            } catch (IOException | RuntimeException e) {
+                if (watcher.registrations.isEmpty()) {
+                    watcher.stop();
+                }
+                throw e;
+            }
+            final Registration registration = new Registration(watcher, root, listener);
+            watcher.registrations.add(registration);
+            if (started) {
+                final Thread thread = new Thread(watcher, "undertow-file-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            return registration;
+        }
+    }
+
+    private void unwatch(final Registration registration) {
+        synchronized (PathWatcher.class) {
+            if (!registrations.remove(registration)) {
+                return;
+            }
+            if (registrations.isEmpty()) {
+                stop();
+                return;
+            }
+            //stop watching the directories that are not in any of the remaining trees
+            final Iterator<Map.Entry<WatchKey, Path>> it = directories.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<WatchKey, Path> entry = it.next();
+                if (!isWatched(entry.getValue())) {
+                    entry.getKey().cancel();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void stop() {
+        if (instance == this) {
+            instance = null;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            UndertowLogger.ROOT_LOGGER.debug("Failed to close the file system watch service", e);
+        }
+    }
+
+    private boolean isWatched(final Path directory) {
+        for (Registration registration : registrations) {
+            if (directory.startsWith(registration.root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Watches a directory and everything below it. If changes is not null everything that is found below the directory
+     * is recorded as added, as it was created before the directory was watched.
+     */
+    private void watchTree(final Path directory, final Map<Path, ResourceChangeEvent.Type> changes) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                if (changes != null && !dir.equals(directory)) {
+                    record(changes, dir, ResourceChangeEvent.Type.ADDED);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (changes != null) {
+                    record(changes, file, ResourceChangeEvent.Type.ADDED);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (exc instanceof NoSuchFileException) {
+                    //it was removed while the tree was walked, which is reported by the watch service
+                    return FileVisitResult.CONTINUE;
+                }
+                throw exc;
+            }
+        });
+    }
+
+    /**
+     * Stops watching a directory that has been removed, and the directories below it.
+     */
+    private void forget(final Path directory) {
+        final Iterator<Map.Entry<WatchKey, Path>> it = directories.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<WatchKey, Path> entry = it.next();
+            if (entry.getValue().startsWith(directory)) {
+                entry.getKey().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        final Map<Path, ResourceChangeEvent.Type> changes = new LinkedHashMap<>();
+        final Set<Path> lost = new HashSet<>();
+        for (;;) {
+            try {
+                WatchKey key = watchService.take();
+                final long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                do {
+                    processEvents(key, changes, lost);
+                    key = System.currentTimeMillis() < deadline ? watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS) : null;
+                } while (key != null);
+                dispatch(changes, lost);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } finally {
+                changes.clear();
+                lost.clear();
+            }
+        }
+    }
+
+    private void processEvents(final WatchKey key, final Map<Path, ResourceChangeEvent.Type> changes, final Set<Path> lost) {
+        final Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            final WatchEvent.Kind<?> kind = event.kind();
+            if (kind == OVERFLOW) {
+                for (Registration registration : registrations) {
+                    lost.add(registration.root);
+                }
+            } else if (directory != null) {
+                final Path path = directory.resolve((Path) event.context());
+                if (kind == ENTRY_CREATE) {
+                    record(changes, path, ResourceChangeEvent.Type.ADDED);
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        try {
+                            watchTree(path, changes);
+                        } catch (IOException e) {
+                            UndertowLogger.ROOT_LOGGER.debugf(e, "Failed to watch %s", path);
+                            lost.add(path);
+                        }
+                    }
+                } else if (kind == ENTRY_DELETE) {
+                    record(changes, path, ResourceChangeEvent.Type.REMOVED);
+                    if (directories.containsValue(path)) {
+                        //events for a directory that has been moved away would have the wrong path, so it is forgotten
+                        forget(path);
+                        lost.add(path);
+                    }
+                } else {
+                    record(changes, path, ResourceChangeEvent.Type.MODIFIED);
+                }
+            }
+        }
+        if (!key.reset()) {
+            final Path removed = directories.remove(key);
+            if (removed != null) {
+                lost.add(removed);
+            }
+        }
+    }
+
+    private static void record(final Map<Path, ResourceChangeEvent.Type> changes, final Path path, final ResourceChangeEvent.Type type) {
+        final ResourceChangeEvent.Type existing = changes.get(path);
+        if (existing == null) {
+            changes.put(path, type);
+        } else if (existing == ResourceChangeEvent.Type.REMOVED && type == ResourceChangeEvent.Type.ADDED) {
+            changes.put(path, ResourceChangeEvent.Type.MODIFIED);
+        } else if (type != ResourceChangeEvent.Type.MODIFIED) {
+            changes.put(path, type);
+        }
+    }
+
+    private void dispatch(final Map<Path, ResourceChangeEvent.Type> changes, final Set<Path> lost) {
+        for (Registration registration : registrations) {
+            final List<ResourceChangeEvent> events = new ArrayList<>();
+            for (Path path : lost) {
+                if (registration.root.startsWith(path)) {
+                    events.add(new ResourceChangeEvent("", ResourceChangeEvent.Type.OVERFLOW));
+                } else if (path.startsWith(registration.root)) {
+                    events.add(new ResourceChangeEvent(registration.resourcePath(path), ResourceChangeEvent.Type.OVERFLOW));
+                }
+            }
+            for (Map.Entry<Path, ResourceChangeEvent.Type> change : changes.entrySet()) {
+                final Path path = change.getKey();
+                if (path.startsWith(registration.root) && !path.equals(registration.root)) {
+                    events.add(new ResourceChangeEvent(registration.resourcePath(path), change.getValue()));
+                }
+            }
+            if (!events.isEmpty()) {
+                try {
+                    registration.listener.handleChanges(events);
+                } catch (Throwable t) {
+                    UndertowLogger.ROOT_LOGGER.failedToHandleFileSystemChanges(registration.root, t);
+                }
+            }
+        }
+    }
+
+    /**
+     * A watched tree.
+     */
+    static final class Registration implements Closeable {
+
+        private final PathWatcher watcher;
+        private final Path root;
+        private final ResourceChangeListener listener;
+
+        private Registration(final PathWatcher watcher, final Path root, final ResourceChangeListener listener) {
+            this.watcher = watcher;
+            this.root = root;
+            this.listener = listener;
+        }
+
+        private String resourcePath(final Path path) {
+            final String relative = root.relativize(path).toString();
+            return File.separatorChar == '/' ? relative : relative.replace(File.separatorChar, '/');
+        }
+
+        @Override
+        public void close() {
+            watcher.unwatch(this);
+        }
+    }
+}
@@ -31,7 +31,7 @@ import io.undertow.httpcore.OutputChannel;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.CopyOnWriteMap;
 import io.undertow.util.ETag;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.util.MimeMappings;
 import io.undertow.util.QValueParser;
 
@@ -55,7 +55,7 @@ public class PreCompressedResourceSupplier implements ResourceSupplier {
     @Override
     public Resource getResource(HttpServerExchange exchange, String path) throws IOException {
         Resource originalResource = resourceManager.getResource(path);
-        if (exchange.containsRequestHeader(HttpHeaderNames.RANGE)) {
+        if (exchange.containsRequestHeader(AsciiHeaderNames.RANGE)) {
             //we don't use serve pre compressed resources for range requests
             return originalResource;
         }
@@ -68,7 +68,7 @@ public class PreCompressedResourceSupplier implements ResourceSupplier {
 
 
     private Resource getEncodedResource(final HttpServerExchange exchange, String path, Resource originalResource) throws IOException {
-        final List<String> res = exchange.getRequestHeaders(HttpHeaderNames.ACCEPT_ENCODING);
+        final List<String> res = exchange.getRequestHeaders(AsciiHeaderNames.ACCEPT_ENCODING);
         if (res == null || res.isEmpty()) {
             return null;
         }
@@ -123,13 +123,13 @@ public class PreCompressedResourceSupplier implements ResourceSupplier {
 
                             @Override
                             public void serveBlocking(OutputStream outputStream, HttpServerExchange exchange) throws IOException {
-                                exchange.setResponseHeader(HttpHeaderNames.CONTENT_ENCODING, value.getValue());
+                                exchange.setResponseHeader(AsciiHeaderNames.CONTENT_ENCODING, value.getValue());
                                 resource.serveBlocking(outputStream, exchange);
                             }
 
                             @Override
                             public void serveAsync(OutputChannel stream, HttpServerExchange exchange) {
-                                exchange.setResponseHeader(HttpHeaderNames.CONTENT_ENCODING, value.getValue());
+                                exchange.setResponseHeader(AsciiHeaderNames.CONTENT_ENCODING, value.getValue());
                                 resource.serveAsync(stream, exchange);
                             }
 
@@ -21,8 +21,11 @@ package io.undertow.server.handlers.resource;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.OutputChannel;
+import io.undertow.httpcore.StatusCodes;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ByteRange;
 
 /**
  * A resource implementation that
@@ -54,4 +57,41 @@ public interface RangeAwareResource extends Resource {
      * @return <code>true</code> if this resource supports range requests
      */
     boolean isRangeSupported();
+
+    /**
+     *
+     * @return <code>true</code> if this resource can serve {@code multipart/byteranges} responses
+     * @see #serveMultipartRangeAsync(OutputChannel, HttpServerExchange, ByteRange.MultipartRangeResponseResult)
+     */
+    default boolean isMultipartRangeSupported() {
+        return false;
+    }
+
+    /**
+     * Serve a {@code multipart/byteranges} response containing the given ranges, and end the exchange when complete.
+     * The response headers have already been set by the caller.
+     * <p>
+     * Resources that return <code>true</code> from {@link #isMultipartRangeSupported()} should override this. The
+     * default implementation ignores the ranges and serves the full entity with a 200 response, which is always a
+     * valid answer to a range request.
+     *
+     * @param outputStream The sender to use.
+     * @param exchange     The exchange
+     * @param ranges       The parts to send
+     */
+    default void serveMultipartRangeAsync(final OutputChannel outputStream, final HttpServerExchange exchange, ByteRange.MultipartRangeResponseResult ranges) {
+        exchange.setStatusCode(StatusCodes.OK);
+        if (ranges.getPartContentType() == null) {
+            exchange.removeResponseHeader(AsciiHeaderNames.CONTENT_TYPE);
+        } else {
+            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, ranges.getPartContentType());
+        }
+        Long contentLength = getContentLength();
+        if (contentLength == null) {
+            exchange.removeResponseHeader(AsciiHeaderNames.CONTENT_LENGTH);
+        } else {
+            exchange.setResponseContentLength(contentLength);
+        }
+        serveAsync(outputStream, exchange);
+    }
 }
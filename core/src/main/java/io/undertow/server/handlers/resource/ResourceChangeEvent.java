@@ -57,5 +57,9 @@ public class ResourceChangeEvent {
          * A file was modified in a directory.
          */
         MODIFIED,
+        /**
+         * Changes were lost, so any resource under this one may have been added, removed or modified.
+         */
+        OVERFLOW,
     }
 }
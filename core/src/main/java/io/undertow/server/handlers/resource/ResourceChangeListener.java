@@ -0,0 +1,36 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.undertow.server.handlers.resource;
+
+import java.util.Collection;
+
+/**
+ * Listener that is notified when the resources of a resource manager change.
+ *
+ * @see ResourceManager#registerResourceChangeListener(ResourceChangeListener)
+ */
+public interface ResourceChangeListener {
+
+    /**
+     * Called when resources have changed. Changes that happen close together are delivered in a single call.
+     *
+     * @param changes The changes, with resource paths relative to the root of the resource manager
+     */
+    void handleChanges(final Collection<ResourceChangeEvent> changes);
+
+}
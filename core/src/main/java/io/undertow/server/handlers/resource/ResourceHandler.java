@@ -39,12 +39,13 @@ import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.ResponseCodeHandler;
 import io.undertow.server.handlers.builder.HandlerBuilder;
+import io.undertow.server.handlers.encoding.ContentEncodedResourceManager;
 import io.undertow.util.ByteRange;
 import io.undertow.util.CanonicalPathUtils;
 import io.undertow.util.DateUtils;
 import io.undertow.util.ETag;
 import io.undertow.util.ETagUtils;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpMethodNames;
 import io.undertow.util.MimeMappings;
 import io.undertow.util.RedirectBuilder;
@@ -91,6 +92,18 @@ public class ResourceHandler implements HttpHandler {
     private volatile ResourceSupplier resourceSupplier;
     private volatile ResourceManager resourceManager;
 
+    /**
+     * The maximum number of ranges that will be honoured in a single request, and the largest gap between two
+     * ranges that will still be merged into a single part.
+     */
+    private volatile int maxRanges = ByteRange.DEFAULT_MAX_RANGES;
+    private volatile long rangeCoalesceThreshold = ByteRange.DEFAULT_COALESCE_THRESHOLD;
+
+    /**
+     * If this is set resources are served with a content encoding when the client accepts one.
+     */
+    private volatile ContentEncodedResourceManager contentEncodedResourceManager;
+
     /**
      * Handler that is called if no resource is found
      */
@@ -134,7 +147,7 @@ public class ResourceHandler implements HttpHandler {
         } else {
             if (KNOWN_METHODS.contains(exchange.getRequestMethod())) {
                 exchange.setStatusCode(StatusCodes.METHOD_NOT_ALLOWED);
-                exchange.addResponseHeader(HttpHeaderNames.ALLOW,
+                exchange.addResponseHeader(AsciiHeaderNames.ALLOW,
                         String.join(", ", HttpMethodNames.GET, HttpMethodNames.HEAD, HttpMethodNames.POST));
             } else {
                 exchange.setStatusCode(StatusCodes.NOT_IMPLEMENTED);
@@ -202,7 +215,7 @@ public class ResourceHandler implements HttpHandler {
                         }
                     } else if (!exchange.getRequestPath().endsWith("/")) {
                         exchange.setStatusCode(StatusCodes.FOUND);
-                        exchange.setResponseHeader(HttpHeaderNames.LOCATION, RedirectBuilder.redirect(exchange, exchange.getRelativePath() + "/", true));
+                        exchange.setResponseHeader(AsciiHeaderNames.LOCATION, RedirectBuilder.redirect(exchange, exchange.getRelativePath() + "/", true));
                         exchange.endExchange();
                         return;
                     }
@@ -230,23 +243,35 @@ public class ResourceHandler implements HttpHandler {
                 }
                 Long contentLength = resource.getContentLength();
 
-                if (contentLength != null && !exchange.containsResponseHeader(HttpHeaderNames.TRANSFER_ENCODING)) {
+                if (contentLength != null && !exchange.containsResponseHeader(AsciiHeaderNames.TRANSFER_ENCODING)) {
                     exchange.setResponseContentLength(contentLength);
                 }
+                //we are going to proceed. Set the appropriate headers
+                String contentType = exchange.getResponseHeader(AsciiHeaderNames.CONTENT_TYPE);
+                if (contentType == null) {
+                    contentType = resource.getContentType(mimeMappings);
+                    if (contentType == null) {
+                        contentType = "application/octet-stream";
+                    }
+                    exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, contentType);
+                }
                 ByteRange.RangeResponseResult rangeResponse = null;
                 long start = -1, end = -1;
                 if (resource instanceof RangeAwareResource && ((RangeAwareResource) resource).isRangeSupported() && contentLength != null) {
 
-                    exchange.setResponseHeader(HttpHeaderNames.ACCEPT_RANGES, "bytes");
-                    //TODO: figure out what to do with the content encoded resource manager
-                    ByteRange range = ByteRange.parse(exchange.getRequestHeader(HttpHeaderNames.RANGE));
-                    if (range != null && range.getRanges() == 1 && resource.getContentLength() != null) {
-                        rangeResponse = range.getResponseResult(resource.getContentLength(), exchange.getRequestHeader(HttpHeaderNames.IF_RANGE), resource.getLastModified(), resource.getETag() == null ? null : resource.getETag().getTag());
-                        if (rangeResponse != null) {
+                    exchange.setResponseHeader(AsciiHeaderNames.ACCEPT_RANGES, "bytes");
+                    ByteRange range = ByteRange.parse(exchange.getRequestHeader(AsciiHeaderNames.RANGE));
+                    if (range != null && (range.getRanges() == 1 || ((RangeAwareResource) resource).isMultipartRangeSupported()) && resource.getContentLength() != null) {
+                        rangeResponse = range.getResponseResult(resource.getContentLength(), exchange.getRequestHeader(AsciiHeaderNames.IF_RANGE), resource.getLastModified(), resource.getETag() == null ? null : resource.getETag().getTag(), contentType, maxRanges, rangeCoalesceThreshold);
+                        if (rangeResponse instanceof ByteRange.MultipartRangeResponseResult) {
+                            exchange.setStatusCode(rangeResponse.getStatusCode());
+                            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, ((ByteRange.MultipartRangeResponseResult) rangeResponse).getContentType());
+                            exchange.setResponseContentLength(rangeResponse.getContentLength());
+                        } else if (rangeResponse != null) {
                             start = rangeResponse.getStart();
                             end = rangeResponse.getEnd();
                             exchange.setStatusCode(rangeResponse.getStatusCode());
-                            exchange.setResponseHeader(HttpHeaderNames.CONTENT_RANGE, rangeResponse.getContentRange());
+                            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_RANGE, rangeResponse.getContentRange());
                             long length = rangeResponse.getContentLength();
                             exchange.setResponseContentLength(length);
                             if (rangeResponse.getStatusCode() == StatusCodes.REQUEST_RANGE_NOT_SATISFIABLE) {
@@ -255,29 +280,24 @@ public class ResourceHandler implements HttpHandler {
                         }
                     }
                 }
-                //we are going to proceed. Set the appropriate headers
-
-                if (!exchange.containsResponseHeader(HttpHeaderNames.CONTENT_TYPE)) {
-                    final String contentType = resource.getContentType(mimeMappings);
-                    if (contentType != null) {
-                        exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, contentType);
-                    } else {
-                        exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, "application/octet-stream");
-                    }
-                }
                 if (lastModified != null) {
-                    exchange.setResponseHeader(HttpHeaderNames.LAST_MODIFIED, resource.getLastModifiedString());
+                    exchange.setResponseHeader(AsciiHeaderNames.LAST_MODIFIED, resource.getLastModifiedString());
                 }
                 if (etag != null) {
-                    exchange.setResponseHeader(HttpHeaderNames.ETAG, etag.toString());
+                    exchange.setResponseHeader(AsciiHeaderNames.ETAG, etag.toString());
                 }
 
                 if (!sendContent) {
                     exchange.endExchange();
+                } else if (rangeResponse instanceof ByteRange.MultipartRangeResponseResult) {
+                    ((RangeAwareResource) resource).serveMultipartRangeAsync(exchange.getOutputChannel(), exchange, (ByteRange.MultipartRangeResponseResult) rangeResponse);
                 } else if (rangeResponse != null) {
                     ((RangeAwareResource) resource).serveRangeAsync(exchange.getOutputChannel(), exchange, start, end);
                 } else {
-                    resource.serveAsync(exchange.getOutputChannel(), exchange);
+                    final ContentEncodedResourceManager contentEncodedResourceManager = ResourceHandler.this.contentEncodedResourceManager;
+                    if (contentEncodedResourceManager == null || !contentEncodedResourceManager.serveAsync(resource, exchange)) {
+                        resource.serveAsync(exchange.getOutputChannel(), exchange);
+                    }
                 }
             }
         };
@@ -289,8 +309,8 @@ public class ResourceHandler implements HttpHandler {
     }
 
     private void clearCacheHeaders(HttpServerExchange exchange) {
-        exchange.removeResponseHeader(HttpHeaderNames.CACHE_CONTROL);
-        exchange.removeResponseHeader(HttpHeaderNames.EXPIRES);
+        exchange.removeResponseHeader(AsciiHeaderNames.CACHE_CONTROL);
+        exchange.removeResponseHeader(AsciiHeaderNames.EXPIRES);
     }
 
     private Resource getIndexFiles(HttpServerExchange exchange, ResourceSupplier resourceManager, final String base, List<String> possible) throws IOException {
@@ -374,6 +394,45 @@ public class ResourceHandler implements HttpHandler {
         return this;
     }
 
+    public int getMaxRanges() {
+        return maxRanges;
+    }
+
+    /**
+     * Sets the maximum number of ranges that will be served for a single request. If more ranges are requested
+     * the Range header is ignored and the full resource is sent. A value of 1 disables multipart/byteranges responses.
+     *
+     * @param maxRanges The maximum number of ranges
+     */
+    public ResourceHandler setMaxRanges(int maxRanges) {
+        this.maxRanges = maxRanges;
+        return this;
+    }
+
+    public long getRangeCoalesceThreshold() {
+        return rangeCoalesceThreshold;
+    }
+
+    /**
+     * Sets the largest gap (in bytes) between two requested ranges that will still be sent as a single part of a
+     * multipart/byteranges response. Overlapping ranges are always merged.
+     *
+     * @param rangeCoalesceThreshold The coalescing threshold
+     */
+    public ResourceHandler setRangeCoalesceThreshold(long rangeCoalesceThreshold) {
+        this.rangeCoalesceThreshold = rangeCoalesceThreshold;
+        return this;
+    }
+
+    public ContentEncodedResourceManager getContentEncodedResourceManager() {
+        return contentEncodedResourceManager;
+    }
+
+    public ResourceHandler setContentEncodedResourceManager(ContentEncodedResourceManager contentEncodedResourceManager) {
+        this.contentEncodedResourceManager = contentEncodedResourceManager;
+        return this;
+    }
+
     public boolean isCanonicalizePaths() {
         return canonicalizePaths;
     }
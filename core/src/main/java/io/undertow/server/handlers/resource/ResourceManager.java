@@ -21,6 +21,8 @@ package io.undertow.server.handlers.resource;
 import java.io.Closeable;
 import java.io.IOException;
 
+import io.undertow.UndertowMessages;
+
 /**
  *
  * Representation of a resource manager. A resource manager knows how to obtain
@@ -40,6 +42,34 @@ public interface ResourceManager extends Closeable {
      */
     Resource getResource(final String path) throws IOException;
 
+    /**
+     * Returns <code>true</code> if this resource manager can notify listeners when its resources change.
+     *
+     * @return <code>true</code> if resource change listeners are supported
+     */
+    default boolean isResourceChangeListenerSupported() {
+        return false;
+    }
+
+    /**
+     * Registers a listener that is notified when resources change. Listeners are notified from a background thread.
+     *
+     * @param listener The listener
+     * @throws IllegalArgumentException if change listeners are not supported
+     * @throws IllegalStateException if the resources could not be watched
+     */
+    default void registerResourceChangeListener(ResourceChangeListener listener) {
+        throw UndertowMessages.MESSAGES.resourceChangeListenerNotSupported();
+    }
+
+    /**
+     * Removes a listener that was registered with {@link #registerResourceChangeListener(ResourceChangeListener)}.
+     *
+     * @param listener The listener
+     */
+    default void removeResourceChangeListener(ResourceChangeListener listener) {
+    }
+
     ResourceManager EMPTY_RESOURCE_MANAGER = new ResourceManager() {
         @Override
         public Resource getResource(final String path){
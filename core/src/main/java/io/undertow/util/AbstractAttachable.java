@@ -68,6 +68,15 @@ public abstract class AbstractAttachable implements Attachable {
         return (T) attachments.put(key, value);
     }
 
+    /**
+     * Removes all attachments, keeping the attachment map so that it can be reused.
+     */
+    protected void clearAttachments() {
+        if (attachments != null) {
+            attachments.clear();
+        }
+    }
+
     protected Map<AttachmentKey<?>, Object> createAttachmentMap() {
         return new IdentityHashMap<>(5);
     }
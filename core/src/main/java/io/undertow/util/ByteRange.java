@@ -18,10 +18,16 @@
 
 package io.undertow.util;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.undertow.UndertowLogger;
 import io.undertow.httpcore.StatusCodes;
 
@@ -33,6 +39,25 @@ import io.undertow.httpcore.StatusCodes;
  */
 public class ByteRange {
 
+    /**
+     * The default maximum number of ranges that will be honoured in a single request. Requests with more ranges
+     * than this are served in full.
+     */
+    public static final int DEFAULT_MAX_RANGES = 20;
+
+    /**
+     * The default gap (in bytes) below which neighbouring ranges are merged into a single part. This is roughly the
+     * size of a part header, so merging closer ranges does not make the response any bigger.
+     */
+    public static final long DEFAULT_COALESCE_THRESHOLD = 80;
+
+    private static final Comparator<Range> RANGE_START_COMPARATOR = new Comparator<Range>() {
+        @Override
+        public int compare(Range o1, Range o2) {
+            return Long.compare(o1.getStart(), o2.getStart());
+        }
+    };
+
     private final List<Range> ranges;
 
     public ByteRange(List<Range> ranges) {
@@ -132,18 +157,8 @@ public class ByteRange {
         long start = getStart(0);
         long end = getEnd(0);
         long rangeLength;
-        if(ifRange != null && !ifRange.isEmpty()) {
-            if(ifRange.charAt(0) == '"') {
-                //entity tag
-                if(eTag != null && !eTag.equals(ifRange)) {
-                    return null;
-                }
-            } else {
-                Date ifDate = DateUtils.parseDate(ifRange);
-                if(ifDate != null && lastModified != null && ifDate.getTime() < lastModified.getTime()) {
-                    return null;
-                }
-            }
+        if(!ifRangeMatches(ifRange, lastModified, eTag)) {
+            return null;
         }
 
         if(start == -1 ) {
@@ -175,6 +190,104 @@ public class ByteRange {
         return new RangeResponseResult(start, end, rangeLength,  "bytes " + start + "-" + end + "/" + resourceContentLength, StatusCodes.PARTIAL_CONTENT);
     }
 
+    /**
+     * Returns a representation of the range result, allowing for multiple ranges. If this returns null then a 200
+     * response should be sent instead.
+     * <p>
+     * The satisfiable ranges are sorted, and ranges that overlap or are separated by no more than
+     * {@code coalesceThreshold} bytes are merged. If more than one range remains the result is a
+     * {@link MultipartRangeResponseResult}, otherwise it describes a single range in the same way as
+     * {@link #getResponseResult(long, String, Date, String)}.
+     *
+     * @param resourceContentLength The length of the full entity
+     * @param contentType           The content type of the full entity, used for the individual parts. May be null.
+     * @param maxRanges             The maximum number of ranges to honour, if more are requested the range header is ignored
+     * @param coalesceThreshold     The largest gap between two ranges that will still be served as a single part
+     * @return The range response, or null if the full entity should be sent
+     */
+    public RangeResponseResult getResponseResult(final long resourceContentLength, String ifRange, Date lastModified, String eTag, String contentType, int maxRanges, long coalesceThreshold) {
+        if(ranges.isEmpty() || ranges.size() > maxRanges) {
+            return null;
+        }
+        if(ranges.size() == 1) {
+            return getResponseResult(resourceContentLength, ifRange, lastModified, eTag);
+        }
+        if(!ifRangeMatches(ifRange, lastModified, eTag)) {
+            return null;
+        }
+        List<Range> resolved = new ArrayList<>(ranges.size());
+        for(Range range : ranges) {
+            Range r = resolve(range, resourceContentLength);
+            if(r != null) {
+                resolved.add(r);
+            }
+        }
+        if(resolved.isEmpty()) {
+            return new RangeResponseResult(0, 0, 0, "bytes */" + resourceContentLength, StatusCodes.REQUEST_RANGE_NOT_SATISFIABLE);
+        }
+        Collections.sort(resolved, RANGE_START_COMPARATOR);
+        List<Range> merged = new ArrayList<>(resolved.size());
+        Range current = resolved.get(0);
+        for(int i = 1; i < resolved.size(); ++i) {
+            Range next = resolved.get(i);
+            if(next.getStart() - current.getEnd() - 1 <= coalesceThreshold) {
+                current = new Range(current.getStart(), Math.max(current.getEnd(), next.getEnd()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        if(merged.size() == 1) {
+            return new RangeResponseResult(current.getStart(), current.getEnd(), current.getEnd() - current.getStart() + 1, "bytes " + current.getStart() + "-" + current.getEnd() + "/" + resourceContentLength, StatusCodes.PARTIAL_CONTENT);
+        }
+        return MultipartRangeResponseResult.create(merged, resourceContentLength, contentType);
+    }
+
+    private static boolean ifRangeMatches(String ifRange, Date lastModified, String eTag) {
+        if(ifRange != null && !ifRange.isEmpty()) {
+            if(ifRange.charAt(0) == '"') {
+                //entity tag
+                if(eTag != null && !eTag.equals(ifRange)) {
+                    return false;
+                }
+            } else {
+                Date ifDate = DateUtils.parseDate(ifRange);
+                if(ifDate != null && lastModified != null && ifDate.getTime() < lastModified.getTime()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts a range spec into absolute (inclusive) positions, or returns null if it cannot be satisfied
+     */
+    private static Range resolve(Range range, long resourceContentLength) {
+        long start = range.getStart();
+        long end = range.getEnd();
+        if(start == -1) {
+            //suffix range
+            if(end <= 0 || resourceContentLength == 0) {
+                return null;
+            }
+            return new Range(Math.max(resourceContentLength - end, 0), resourceContentLength - 1);
+        }
+        if(start >= resourceContentLength) {
+            return null;
+        }
+        if(end == -1) {
+            //prefix range
+            return new Range(start, resourceContentLength - 1);
+        }
+        end = Math.min(end, resourceContentLength - 1);
+        if(start > end) {
+            return null;
+        }
+        return new Range(start, end);
+    }
+
     public static class RangeResponseResult {
         private final long start;
         private final long end;
@@ -211,6 +324,119 @@ public class ByteRange {
         }
     }
 
+    /**
+     * The result of a request for multiple ranges, which is sent as a {@code multipart/byteranges} response.
+     * <p>
+     * The boundary, part headers and total content length are all computed up front, so the response can be sent
+     * with a fixed Content-Length and the data for each part can be written directly from the underlying resource.
+     * The parts are sorted and do not overlap.
+     */
+    public static class MultipartRangeResponseResult extends RangeResponseResult {
+
+        private static final String MULTIPART_BYTERANGES = "multipart/byteranges; boundary=";
+
+        private final long[] starts;
+        private final long[] ends;
+        private final byte[][] partHeaders;
+        private final byte[] trailer;
+        private final String boundary;
+        private final String partContentType;
+
+        private MultipartRangeResponseResult(long[] starts, long[] ends, byte[][] partHeaders, byte[] trailer, String boundary, String partContentType, long contentLength) {
+            super(starts[0], ends[ends.length - 1], contentLength, null, StatusCodes.PARTIAL_CONTENT);
+            this.starts = starts;
+            this.ends = ends;
+            this.partHeaders = partHeaders;
+            this.trailer = trailer;
+            this.boundary = boundary;
+            this.partContentType = partContentType;
+        }
+
+        static MultipartRangeResponseResult create(List<Range> parts, long resourceContentLength, String contentType) {
+            String boundary = generateBoundary();
+            long[] starts = new long[parts.size()];
+            long[] ends = new long[parts.size()];
+            byte[][] partHeaders = new byte[parts.size()][];
+            byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            long contentLength = trailer.length;
+            for (int i = 0; i < parts.size(); ++i) {
+                Range part = parts.get(i);
+                starts[i] = part.getStart();
+                ends[i] = part.getEnd();
+                partHeaders[i] = partHeader(boundary, contentType, part, resourceContentLength);
+                contentLength += partHeaders[i].length + part.getEnd() - part.getStart() + 1;
+            }
+            return new MultipartRangeResponseResult(starts, ends, partHeaders, trailer, boundary, contentType, contentLength);
+        }
+
+        private static String generateBoundary() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return Long.toHexString(random.nextLong() | Long.MIN_VALUE) + Long.toHexString(random.nextLong() | Long.MIN_VALUE);
+        }
+
+        private static byte[] partHeader(String boundary, String contentType, Range part, long resourceContentLength) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("\r\n--").append(boundary).append("\r\n");
+            if (contentType != null) {
+                sb.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            sb.append("Content-Range: bytes ").append(part.getStart()).append('-').append(part.getEnd()).append('/').append(resourceContentLength).append("\r\n\r\n");
+            return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * @return The value of the Content-Type header for the multipart response
+         */
+        public String getContentType() {
+            return MULTIPART_BYTERANGES + boundary;
+        }
+
+        public String getBoundary() {
+            return boundary;
+        }
+
+        /**
+         * @return The content type of the entity the parts are taken from, or <code>null</code> if it is not known
+         */
+        public String getPartContentType() {
+            return partContentType;
+        }
+
+        /**
+         * @return The number of parts in the response
+         */
+        public int getParts() {
+            return starts.length;
+        }
+
+        public long getPartStart(int part) {
+            return starts[part];
+        }
+
+        /**
+         * @return The last byte of the part (inclusive)
+         */
+        public long getPartEnd(int part) {
+            return ends[part];
+        }
+
+        /**
+         * Returns the delimiter and headers that precede the data of the given part.
+         *
+         * @return A buffer that wraps the precomputed header, the caller takes ownership of it
+         */
+        public ByteBuf getPartHeader(int part) {
+            return Unpooled.wrappedBuffer(partHeaders[part]);
+        }
+
+        /**
+         * @return A buffer containing the closing delimiter, the caller takes ownership of it
+         */
+        public ByteBuf getTrailer() {
+            return Unpooled.wrappedBuffer(trailer);
+        }
+    }
+
     public static class Range {
         private final long start, end;
 
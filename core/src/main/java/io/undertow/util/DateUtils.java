@@ -26,7 +26,7 @@ import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.UndertowOptions;
 import io.undertow.server.HttpServerExchange;
 
@@ -179,7 +179,7 @@ public class DateUtils {
      * @return
      */
     public static boolean handleIfModifiedSince(final HttpServerExchange exchange, final Date lastModified) {
-        return handleIfModifiedSince(exchange.getRequestHeader(HttpHeaderNames.IF_MODIFIED_SINCE), lastModified);
+        return handleIfModifiedSince(exchange.getRequestHeader(AsciiHeaderNames.IF_MODIFIED_SINCE), lastModified);
     }
 
     /**
@@ -211,7 +211,7 @@ public class DateUtils {
      * @return
      */
     public static boolean handleIfUnmodifiedSince(final HttpServerExchange exchange, final Date lastModified) {
-        return handleIfUnmodifiedSince(exchange.getRequestHeader(HttpHeaderNames.IF_UNMODIFIED_SINCE), lastModified);
+        return handleIfUnmodifiedSince(exchange.getRequestHeader(AsciiHeaderNames.IF_UNMODIFIED_SINCE), lastModified);
     }
 
     /**
@@ -236,9 +236,9 @@ public class DateUtils {
     }
 
     public static void addDateHeaderIfRequired(HttpServerExchange exchange) {
-        if (exchange.getUndertowOptions().get(UndertowOptions.ALWAYS_SET_DATE, true) && !exchange.containsResponseHeader(HttpHeaderNames.DATE)) {
+        if (exchange.getUndertowOptions().get(UndertowOptions.ALWAYS_SET_DATE, true) && !exchange.containsResponseHeader(AsciiHeaderNames.DATE)) {
             String dateString = getCurrentDateTime(exchange);
-            exchange.setResponseHeader(HttpHeaderNames.DATE, dateString);
+            exchange.setResponseHeader(AsciiHeaderNames.DATE, dateString);
         }
     }
 
@@ -22,7 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.server.HttpServerExchange;
 
 /**
@@ -54,7 +54,7 @@ public class ETagUtils {
      * @return
      */
     public static boolean handleIfMatch(final HttpServerExchange exchange, final List<ETag> etags, boolean allowWeak) {
-        return handleIfMatch(exchange.getRequestHeader(HttpHeaderNames.IF_MATCH), etags, allowWeak);
+        return handleIfMatch(exchange.getRequestHeader(AsciiHeaderNames.IF_MATCH), etags, allowWeak);
     }
 
     /**
@@ -121,7 +121,7 @@ public class ETagUtils {
      * @return
      */
     public static boolean handleIfNoneMatch(final HttpServerExchange exchange, final List<ETag> etags, boolean allowWeak) {
-        return handleIfNoneMatch(exchange.getRequestHeader(HttpHeaderNames.IF_NONE_MATCH), etags, allowWeak);
+        return handleIfNoneMatch(exchange.getRequestHeader(AsciiHeaderNames.IF_NONE_MATCH), etags, allowWeak);
     }
 
     /**
@@ -240,7 +240,7 @@ public class ETagUtils {
      * @return The ETag for the exchange, or null if the etag is not set
      */
     public static ETag getETag(final HttpServerExchange exchange) {
-        final String tag = exchange.getResponseHeader(HttpHeaderNames.ETAG);
+        final String tag = exchange.getResponseHeader(AsciiHeaderNames.ETAG);
         if (tag == null) {
             return null;
         }
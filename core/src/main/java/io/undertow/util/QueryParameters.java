@@ -0,0 +1,239 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * A compact, read only view of the parameters in a query string.
+ * <p>
+ * Rather than copying every name and value out of the query string this only records where they start and end, in
+ * parallel arrays of offsets into the raw string. Nothing is done until a parameter is first asked for, and names and
+ * values are only copied and decoded when they are actually used. A name that does not need decoding is matched
+ * against the raw query string directly.
+ * <p>
+ * Parameters are split exactly as {@link URLUtils#parseQueryString} splits them. The order of the parameters is the
+ * order they appear in the query string.
+ *
+ * @see io.undertow.server.HttpServerExchange#getQueryParameter(String)
+ */
+public final class QueryParameters {
+
+    private final String queryString;
+    private final String charset;
+    private final boolean decode;
+
+    private int size = -1;
+    /**
+     * The start of each name, the end of each name and the end of each value. The value starts after the '=' that
+     * ends the name, if there is no '=' the name and value end at the same place and the value is empty.
+     */
+    private int[] nameStarts;
+    private int[] nameEnds;
+    private int[] valueEnds;
+
+    private String[] names;
+    private String[] values;
+    private StringBuilder decodeBuffer;
+
+    public QueryParameters(final String queryString, final String charset, final boolean decode) {
+        this.queryString = queryString;
+        this.charset = charset;
+        this.decode = decode;
+    }
+
+    /**
+     * @return The number of parameters, including repeated names
+     */
+    public int size() {
+        if (size == -1) {
+            index();
+        }
+        return size;
+    }
+
+    /**
+     * @return The decoded name of the parameter at the given index
+     */
+    public String getName(final int index) {
+        if (size == -1) {
+            index();
+        }
+        String name = names[index];
+        if (name == null) {
+            names[index] = name = decode(nameStarts[index], nameEnds[index]);
+        }
+        return name;
+    }
+
+    /**
+     * @return The decoded value of the parameter at the given index, or the empty string if it has no value
+     */
+    public String getValue(final int index) {
+        if (size == -1) {
+            index();
+        }
+        String value = values[index];
+        if (value == null) {
+            final int nameEnd = nameEnds[index];
+            final int valueEnd = valueEnds[index];
+            values[index] = value = nameEnd == valueEnd ? "" : decode(nameEnd + 1, valueEnd);
+        }
+        return value;
+    }
+
+    /**
+     * @return The first value of the named parameter, or <code>null</code> if there is no such parameter
+     */
+    public String getFirst(final String name) {
+        final int size = size();
+        for (int i = 0; i < size; ++i) {
+            if (nameEquals(i, name)) {
+                return getValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return All the values of the named parameter, or <code>null</code> if there is no such parameter
+     */
+    public Deque<String> get(final String name) {
+        Deque<String> ret = null;
+        final int size = size();
+        for (int i = 0; i < size; ++i) {
+            if (nameEquals(i, name)) {
+                if (ret == null) {
+                    ret = new ArrayDeque<>(2);
+                }
+                ret.add(getValue(i));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Adds all the parameters to a map in the form returned by
+     * {@link io.undertow.server.HttpServerExchange#getQueryParameters()}.
+     *
+     * @param map The map to add the parameters to
+     */
+    public void addTo(final Map<String, Deque<String>> map) {
+        final int size = size();
+        for (int i = 0; i < size; ++i) {
+            final String name = getName(i);
+            Deque<String> list = map.get(name);
+            if (list == null) {
+                map.put(name, list = new ArrayDeque<>(2));
+            }
+            list.add(getValue(i));
+        }
+    }
+
+    /**
+     * Counts the parameters in a query string without parsing them, so a limit can be enforced up front.
+     *
+     * @param queryString The raw query string
+     * @return The number of parameters {@link URLUtils#parseQueryString} would find in it
+     */
+    public static int count(final String queryString) {
+        final int length = queryString.length();
+        int count = 0;
+        for (int i = 0; i < length; ++i) {
+            if (queryString.charAt(i) == '&') {
+                ++count;
+            }
+        }
+        if (length != 0 && queryString.charAt(length - 1) != '&') {
+            ++count;
+        }
+        return count;
+    }
+
+    private boolean nameEquals(final int index, final String name) {
+        final String decoded = names[index];
+        if (decoded != null) {
+            return decoded.equals(name);
+        }
+        final int start = nameStarts[index];
+        final int end = nameEnds[index];
+        if (!decode || !requiresDecode(start, end)) {
+            return end - start == name.length() && queryString.regionMatches(start, name, 0, end - start);
+        }
+        return getName(index).equals(name);
+    }
+
+    private boolean requiresDecode(final int start, final int end) {
+        for (int i = start; i < end; ++i) {
+            final char c = queryString.charAt(i);
+            if (c == '%' || c == '+' || c > 127) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String decode(final int start, final int end) {
+        final String part = queryString.substring(start, end);
+        if (!decode) {
+            return part;
+        }
+        if (decodeBuffer == null) {
+            decodeBuffer = new StringBuilder();
+        }
+        return URLUtils.decode(part, charset, true, true, decodeBuffer);
+    }
+
+    private void index() {
+        final String queryString = this.queryString;
+        final int length = queryString.length();
+        final int count = count(queryString);
+        final int[] nameStarts = new int[count];
+        final int[] nameEnds = new int[count];
+        final int[] valueEnds = new int[count];
+        int current = 0;
+        int start = 0;
+        int nameEnd = -1;
+        for (int i = 0; i < length; ++i) {
+            final char c = queryString.charAt(i);
+            if (c == '=' && nameEnd == -1) {
+                nameEnd = i;
+            } else if (c == '&') {
+                nameStarts[current] = start;
+                nameEnds[current] = nameEnd == -1 ? i : nameEnd;
+                valueEnds[current++] = i;
+                start = i + 1;
+                nameEnd = -1;
+            }
+        }
+        if (current != count) {
+            nameStarts[current] = start;
+            nameEnds[current] = nameEnd == -1 ? length : nameEnd;
+            valueEnds[current] = length;
+        }
+        this.nameStarts = nameStarts;
+        this.nameEnds = nameEnds;
+        this.valueEnds = valueEnds;
+        this.names = new String[count];
+        this.values = new String[count];
+        this.size = count;
+    }
+}
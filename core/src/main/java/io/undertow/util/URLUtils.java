@@ -19,6 +19,7 @@
 package io.undertow.util;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.regex.Pattern;
 
 import io.undertow.UndertowMessages;
@@ -34,6 +35,8 @@ public class URLUtils {
 
     private static final char PATH_SEPARATOR = '/';
 
+    private static final String UTF_8 = StandardCharsets.UTF_8.name();
+
     private static final QueryStringParser QUERY_STRING_PARSER = new QueryStringParser('&', false) {
         @Override
         void handle(HttpServerExchange exchange, String key, String value) {
@@ -93,10 +96,22 @@ public class URLUtils {
      * @return The decoded URL
      */
     public static String decode(String s, String enc, boolean decodeSlash, boolean formEncoding, StringBuilder buffer) {
-        buffer.setLength(0);
-        boolean needToChange = false;
         int numChars = s.length();
         int i = 0;
+        //most strings have nothing to decode, so find the first character that needs it before copying anything
+        while (i < numChars) {
+            char c = s.charAt(i);
+            if (c == '%' || c > 127 || (c == '+' && formEncoding)) {
+                break;
+            }
+            ++i;
+        }
+        if (i == numChars) {
+            return s;
+        }
+        buffer.setLength(0);
+        buffer.append(s, 0, i);
+        boolean needToChange = false;
 
         while (i < numChars) {
             char c = s.charAt(i);
@@ -212,7 +227,7 @@ public class URLUtils {
                         }
                     }
 
-                    String decoded = new String(bytes, 0, pos, enc);
+                    String decoded = UTF_8.equals(enc) ? new String(bytes, 0, pos, StandardCharsets.UTF_8) : new String(bytes, 0, pos, enc);
                     buffer.append(decoded);
                 } catch (NumberFormatException e) {
                     throw UndertowMessages.MESSAGES.failedToDecodeURL(s, enc, e);
@@ -247,6 +262,7 @@ public class URLUtils {
         }
 
         int parse(final String string, final HttpServerExchange exchange, final String charset, final boolean doDecode, int max) throws ParameterLimitException {
+            final StringBuilder buffer = new StringBuilder();
             int count = 0;
             int i = 0;
             try {
@@ -259,12 +275,12 @@ public class URLUtils {
                         stringStart = i + 1;
                     } else if (c == separator) {
                         if (attrName != null) {
-                            handle(exchange, decode(charset, attrName, doDecode), decode(charset, string.substring(stringStart, i), doDecode));
+                            handle(exchange, decode(charset, attrName, doDecode, buffer), decode(charset, string.substring(stringStart, i), doDecode, buffer));
                             if(++count > max) {
                                 throw UndertowMessages.MESSAGES.tooManyParameters(max);
                             }
                         } else {
-                            handle(exchange, decode(charset, string.substring(stringStart, i), doDecode), "");
+                            handle(exchange, decode(charset, string.substring(stringStart, i), doDecode, buffer), "");
                             if(++count > max) {
                                 throw UndertowMessages.MESSAGES.tooManyParameters(max);
                             }
@@ -276,12 +292,12 @@ public class URLUtils {
                     }
                 }
                 if (attrName != null) {
-                    handle(exchange, decode(charset, attrName, doDecode), decode(charset, string.substring(stringStart, i), doDecode));
+                    handle(exchange, decode(charset, attrName, doDecode, buffer), decode(charset, string.substring(stringStart, i), doDecode, buffer));
                     if(++count > max) {
                         throw UndertowMessages.MESSAGES.tooManyParameters(max);
                     }
                 } else if (string.length() != stringStart) {
-                    handle(exchange, decode(charset, string.substring(stringStart, i), doDecode), "");
+                    handle(exchange, decode(charset, string.substring(stringStart, i), doDecode, buffer), "");
                     if(++count > max) {
                         throw UndertowMessages.MESSAGES.tooManyParameters(max);
                     }
@@ -292,9 +308,9 @@ public class URLUtils {
             return i;
         }
 
-        private String decode(String charset, String attrName, final boolean doDecode) throws UnsupportedEncodingException {
+        private String decode(String charset, String attrName, final boolean doDecode, StringBuilder buffer) throws UnsupportedEncodingException {
             if (doDecode) {
-                return URLUtils.decode(attrName, charset, true, true, new StringBuilder());
+                return URLUtils.decode(attrName, charset, true, true, buffer);
             }
             return attrName;
         }
@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.undertow.httpcore.AsciiHeaderNames;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.TestHttpClient;
+
+/**
+ * Tests that the {@link CharSequence} header methods find the same headers as the {@link String} ones, whatever case
+ * the name has on the wire.
+ */
+@RunWith(DefaultServer.class)
+public class AsciiHeaderNamesTestCase {
+
+    @BeforeClass
+    public static void setup() {
+        DefaultServer.setRootHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.setResponseHeader(AsciiHeaderNames.CACHE_CONTROL, "no-cache");
+                exchange.addResponseHeader(AsciiHeaderNames.VARY, HttpHeaderNames.ORIGIN);
+                exchange.addResponseHeader(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT);
+                exchange.setResponseHeader(AsciiHeaderNames.PRAGMA, "no-cache");
+                exchange.removeResponseHeader(AsciiHeaderNames.PRAGMA);
+                exchange.writeAsync(exchange.getRequestHeader(AsciiHeaderNames.ORIGIN)
+                        + ":" + exchange.getRequestHeaders(AsciiHeaderNames.ACCEPT_LANGUAGE)
+                        + ":" + exchange.containsRequestHeader(AsciiHeaderNames.AUTHORIZATION)
+                        + ":" + exchange.getResponseHeaders(AsciiHeaderNames.VARY)
+                        + ":" + exchange.getResponseHeader(HttpHeaderNames.CACHE_CONTROL)
+                        + ":" + exchange.containsResponseHeader(AsciiHeaderNames.PRAGMA));
+            }
+        });
+    }
+
+    @Test
+    public void testHeaderLookups() throws Exception {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/path");
+            get.addHeader("origin", "http://example.com");
+            get.addHeader("ACCEPT-LANGUAGE", "en");
+            get.addHeader("Accept-Language", "fr");
+            HttpResponse result = client.execute(get);
+            Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+            Assert.assertEquals("http://example.com:[en, fr]:false:[Origin, Accept]:no-cache:false", HttpClientUtils.readResponse(result));
+            Assert.assertEquals("no-cache", result.getFirstHeader(HttpHeaderNames.CACHE_CONTROL).getValue());
+            Assert.assertNull(result.getFirstHeader(HttpHeaderNames.PRAGMA));
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+}
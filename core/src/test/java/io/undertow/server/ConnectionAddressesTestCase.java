@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.ProxyIgnore;
+import io.undertow.testutils.TestHttpClient;
+
+/**
+ * Tests that the source and destination addresses are the IP addresses of the connection, that their byte form
+ * matches them, and that every request on a connection sees the same addresses.
+ */
+@RunWith(DefaultServer.class)
+@ProxyIgnore
+public class ConnectionAddressesTestCase {
+
+    private static volatile InetSocketAddress lastSource;
+
+    @BeforeClass
+    public static void setup() {
+        DefaultServer.setRootHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                InetSocketAddress source = exchange.getSourceAddress();
+                InetSocketAddress destination = exchange.getDestinationAddress();
+                boolean same = source == lastSource;
+                lastSource = source;
+                //the host strings are the literal addresses, as nothing was resolved
+                exchange.writeAsync(source.getHostString().equals(source.getAddress().getHostAddress())
+                        + ":" + destination.getHostString().equals(destination.getAddress().getHostAddress())
+                        + ":" + Arrays.equals(source.getAddress().getAddress(), exchange.getSourceAddressBytes())
+                        + ":" + Arrays.equals(destination.getAddress().getAddress(), exchange.getDestinationAddressBytes())
+                        + ":" + same);
+            }
+        });
+    }
+
+    @Test
+    public void testAddresses() throws Exception {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            String prefix = "true:true:true:true:";
+            HttpResponse result = client.execute(new HttpGet(DefaultServer.getDefaultServerURL() + "/path"));
+            Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+            Assert.assertTrue(HttpClientUtils.readResponse(result).startsWith(prefix));
+            //the second request is on the same connection, so it gets the same cached address
+            result = client.execute(new HttpGet(DefaultServer.getDefaultServerURL() + "/path"));
+            Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+            Assert.assertEquals(prefix + "true", HttpClientUtils.readResponse(result));
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.undertow.testutils.MockHttpExchange;
+import io.undertow.testutils.category.UnitTest;
+import io.undertow.util.AttachmentKey;
+
+/**
+ * Unit tests for {@link ExchangePool}.
+ */
+@Category(UnitTest.class)
+public class ExchangePoolTestCase {
+
+    private static final AttachmentKey<String> KEY = AttachmentKey.create(String.class);
+
+    @Test
+    public void testExchangeIsResetAndReused() {
+        ExchangePool pool = new ExchangePool(false);
+        MockHttpExchange first = new MockHttpExchange();
+        HttpServerExchange exchange = pool.acquire(first, -1);
+        exchange.putAttachment(KEY, "value");
+        exchange.setRequestPath("/first");
+        exchange.setQueryString("a=b");
+        exchange.addQueryParam("a", "b");
+        exchange.addExchangeCompleteListener(new ExchangeCompletionListener() {
+            @Override
+            public void exchangeEvent(HttpServerExchange exchange) {
+            }
+        });
+        String requestId = exchange.getRequestId();
+        exchange.completed(first);
+
+        MockHttpExchange second = new MockHttpExchange();
+        Assert.assertSame(exchange, pool.acquire(second, -1));
+        Assert.assertSame(second, exchange.delegate);
+        Assert.assertNull(exchange.getAttachment(KEY));
+        Assert.assertNull(exchange.getRequestPath());
+        Assert.assertEquals("", exchange.getQueryString());
+        Assert.assertTrue(exchange.getQueryParameters().isEmpty());
+        Assert.assertNotEquals(requestId, exchange.getRequestId());
+        //the first request must no longer be able to affect the exchange
+        first.setCompletedListener(null);
+        Assert.assertNotSame(exchange, pool.acquire(new MockHttpExchange(), -1));
+    }
+
+    @Test
+    public void testNotRecycledWhileReferenced() {
+        ExchangePool pool = new ExchangePool(false);
+        MockHttpExchange delegate = new MockHttpExchange();
+        HttpServerExchange exchange = pool.acquire(delegate, -1);
+        exchange.retain();
+        exchange.completed(delegate);
+        Assert.assertNotSame(exchange, pool.acquire(new MockHttpExchange(), -1));
+        exchange.release();
+        Assert.assertSame(exchange, pool.acquire(new MockHttpExchange(), -1));
+    }
+
+    @Test
+    public void testDebugModeDetectsUseAfterRecycle() {
+        ExchangePool pool = new ExchangePool(true);
+        MockHttpExchange delegate = new MockHttpExchange();
+        HttpServerExchange exchange = pool.acquire(delegate, -1);
+        exchange.completed(delegate);
+        try {
+            exchange.getRequestHeader("Host");
+            Assert.fail("Expected the recycled exchange to fail");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            exchange.retain();
+            Assert.fail("Expected the recycled exchange to fail");
+        } catch (IllegalStateException expected) {
+        }
+        //debug mode never reuses exchanges
+        Assert.assertNotSame(exchange, pool.acquire(new MockHttpExchange(), -1));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.undertow.Undertow;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.httpcore.UndertowOptions;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.TestHttpClient;
+import io.undertow.util.AttachmentKey;
+
+/**
+ * Tests that a server with {@link UndertowOptions#RECYCLE_EXCHANGES} reuses exchanges, and that nothing from one
+ * request is visible to the next one that uses the same exchange.
+ */
+public class ExchangeRecyclingTestCase {
+
+    private static final int REQUESTS = 100;
+    private static final AttachmentKey<String> KEY = AttachmentKey.create(String.class);
+
+    @Test
+    public void testExchangesAreRecycled() throws Exception {
+        final Set<HttpServerExchange> exchanges = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<HttpServerExchange, Boolean>()));
+        final HttpHandler handler = new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchanges.add(exchange);
+                String previous = exchange.putAttachment(KEY, exchange.getQueryParameter("request"));
+                if (previous != null || exchange.getQueryParameters().size() != 2 || exchange.getResponseHeader("X-Request") != null) {
+                    exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+                }
+                exchange.setResponseHeader("X-Request", exchange.getAttachment(KEY));
+                exchange.writeAsync(exchange.getRequestPath() + " " + exchange.getAttachment(KEY));
+            }
+        };
+        final HttpHandler blocking = new BlockingHandler(handler);
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Undertow undertow = Undertow.builder()
+                .addHttpListener(port, "localhost")
+                .setIoThreads(1)
+                .setServerOption(UndertowOptions.RECYCLE_EXCHANGES, true)
+                .setHandler(new HttpHandler() {
+                    @Override
+                    public void handleRequest(HttpServerExchange exchange) throws Exception {
+                        if (exchange.getRequestPath().equals("/blocking")) {
+                            blocking.handleRequest(exchange);
+                        } else {
+                            handler.handleRequest(exchange);
+                        }
+                    }
+                })
+                .build();
+        undertow.start();
+        TestHttpClient client = new TestHttpClient();
+        try {
+            for (int i = 0; i < REQUESTS; ++i) {
+                String path = i % 2 == 0 ? "/blocking" : "/async";
+                HttpResponse result = client.execute(new HttpGet("http://localhost:" + port + path + "?request=" + i + "&other=x"));
+                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                Assert.assertEquals(path + " " + i, HttpClientUtils.readResponse(result));
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+            undertow.stop();
+        }
+        Assert.assertTrue("Used " + exchanges.size() + " exchanges", exchanges.size() < REQUESTS / 2);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.undertow.httpcore.HttpExchange;
+import io.undertow.httpcore.InputChannel;
+import io.undertow.httpcore.IoCallback;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.httpcore.UndertowInputStream;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.server.handlers.PathHandler;
+import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.TestHttpClient;
+import io.undertow.util.RequestTooBigException;
+
+/**
+ * Reads request bodies concurrently on many connections, with both blocking and async reads, and checks that every
+ * byte arrives in order.
+ */
+@RunWith(DefaultServer.class)
+public class RequestBodyReadTestCase {
+
+    private static final int THREADS = 8;
+    private static final int REQUESTS = 10;
+
+    @BeforeClass
+    public static void setup() {
+        PathHandler root = new PathHandler();
+        root.addPrefixPath("/blocking", new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                CRC32 crc = new CRC32();
+                long length = 0;
+                byte[] buf = new byte[1024];
+                InputStream in = exchange.getInputStream();
+                int r;
+                while ((r = in.read(buf)) != -1) {
+                    crc.update(buf, 0, r);
+                    length += r;
+                }
+                exchange.writeAsync(length + ":" + crc.getValue());
+            }
+        }));
+        root.addPrefixPath("/async", new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                new AsyncReader().accept(exchange, exchange);
+            }
+        });
+        root.addPrefixPath("/buffers", new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                CRC32 crc = new CRC32();
+                long length = 0;
+                UndertowInputStream in = (UndertowInputStream) exchange.getInputStream();
+                //mix a copying read with buffer reads, the rest of the first buffer must come back
+                byte[] first = new byte[10];
+                int r = in.read(first);
+                if (r > 0) {
+                    crc.update(first, 0, r);
+                    length += r;
+                }
+                ByteBuf data;
+                while ((data = in.readBuffer()) != null) {
+                    try {
+                        Assert.assertTrue(data.isReadOnly());
+                        length += data.readableBytes();
+                        crc.update(data.nioBuffer());
+                    } finally {
+                        data.release();
+                    }
+                }
+                exchange.writeAsync(length + ":" + crc.getValue());
+            }
+        }));
+        root.addPrefixPath("/body-blocking", new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                if (exchange.getQueryParameter("max") != null) {
+                    exchange.setMaxEntitySize(Long.parseLong(exchange.getQueryParameter("max")));
+                }
+                CompositeByteBuf body;
+                try {
+                    body = exchange.readRequestBody();
+                } catch (RequestTooBigException e) {
+                    exchange.setStatusCode(StatusCodes.REQUEST_ENTITY_TOO_LARGE);
+                    exchange.endExchange();
+                    return;
+                }
+                writeBody(exchange, body);
+            }
+        }));
+        root.addPrefixPath("/body-async", new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                if (exchange.getQueryParameter("max") != null) {
+                    exchange.setMaxEntitySize(Long.parseLong(exchange.getQueryParameter("max")));
+                }
+                exchange.readRequestBody(new IoCallback<CompositeByteBuf>() {
+                    @Override
+                    public void onComplete(HttpExchange ex, CompositeByteBuf body) {
+                        writeBody(exchange, body);
+                    }
+
+                    @Override
+                    public void onException(HttpExchange ex, CompositeByteBuf body, IOException exception) {
+                        exchange.setStatusCode(exception instanceof RequestTooBigException ? StatusCodes.REQUEST_ENTITY_TOO_LARGE : StatusCodes.INTERNAL_SERVER_ERROR);
+                        exchange.endExchange();
+                    }
+                });
+            }
+        });
+        DefaultServer.setRootHandler(root);
+    }
+
+    private static void writeBody(HttpServerExchange exchange, CompositeByteBuf body) {
+        try {
+            CRC32 crc = new CRC32();
+            for (ByteBuffer buffer : body.nioBuffers()) {
+                crc.update(buffer);
+            }
+            exchange.writeAsync(body.readableBytes() + ":" + crc.getValue());
+        } finally {
+            body.release();
+        }
+    }
+
+    @Test
+    public void testBlockingReads() throws Exception {
+        runTest("/blocking");
+    }
+
+    @Test
+    public void testAsyncReads() throws Exception {
+        runTest("/async");
+    }
+
+    @Test
+    public void testBufferReads() throws Exception {
+        runTest("/buffers");
+    }
+
+    @Test
+    public void testBlockingBodyReads() throws Exception {
+        runTest("/body-blocking");
+    }
+
+    @Test
+    public void testAsyncBodyReads() throws Exception {
+        runTest("/body-async");
+    }
+
+    @Test
+    public void testBodyLargerThanMaxEntitySize() throws Exception {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            for (String path : new String[]{"/body-blocking", "/body-async"}) {
+                HttpPost post = new HttpPost(DefaultServer.getDefaultServerURL() + path + "?max=1000");
+                post.setEntity(new ByteArrayEntity(new byte[1000]));
+                HttpResponse result = client.execute(post);
+                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                Assert.assertTrue(HttpClientUtils.readResponse(result).startsWith("1000:"));
+
+                post = new HttpPost(DefaultServer.getDefaultServerURL() + path + "?max=1000");
+                post.setEntity(new ByteArrayEntity(new byte[1001]));
+                result = client.execute(post);
+                Assert.assertEquals(StatusCodes.REQUEST_ENTITY_TOO_LARGE, result.getStatusLine().getStatusCode());
+                HttpClientUtils.readResponse(result);
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    private void runTest(String path) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; ++i) {
+                final Random random = new Random(i);
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        TestHttpClient client = new TestHttpClient();
+                        try {
+                            for (int j = 0; j < REQUESTS; ++j) {
+                                byte[] data = new byte[random.nextInt(200000)];
+                                random.nextBytes(data);
+                                CRC32 crc = new CRC32();
+                                crc.update(data);
+                                HttpPost post = new HttpPost(DefaultServer.getDefaultServerURL() + path);
+                                if (j % 2 == 0) {
+                                    post.setEntity(new ByteArrayEntity(data));
+                                } else {
+                                    post.setEntity(new InputStreamEntity(new ByteArrayInputStream(data), -1));
+                                }
+                                HttpResponse result = client.execute(post);
+                                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                                Assert.assertEquals(data.length + ":" + crc.getValue(), HttpClientUtils.readResponse(result));
+                            }
+                        } finally {
+                            client.getConnectionManager().shutdown();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class AsyncReader implements BiConsumer<InputChannel, HttpServerExchange> {
+
+        private final CRC32 crc = new CRC32();
+        private long length;
+
+        @Override
+        public void accept(InputChannel channel, HttpServerExchange exchange) {
+            try {
+                while (channel.isReadable()) {
+                    ByteBuf data = channel.readAsync();
+                    if (data == null) {
+                        exchange.writeAsync(length + ":" + crc.getValue());
+                        return;
+                    }
+                    try {
+                        length += data.readableBytes();
+                        crc.update(data.nioBuffer());
+                    } finally {
+                        data.release();
+                    }
+                }
+                channel.setReadHandler(this, exchange);
+            } catch (IOException e) {
+                exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+                exchange.endExchange();
+            }
+        }
+    }
+}
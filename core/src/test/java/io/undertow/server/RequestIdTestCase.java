@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.undertow.httpcore.RequestIds;
+import io.undertow.httpcore.UndertowOptionMap;
+import io.undertow.httpcore.UndertowOptions;
+import io.undertow.testutils.MockHttpExchange;
+import io.undertow.testutils.category.UnitTest;
+
+/**
+ * Unit tests for {@link HttpServerExchange#getRequestId()} and the built in request id generators.
+ */
+@Category(UnitTest.class)
+public class RequestIdTestCase {
+
+    private static final int THREADS = 4;
+    private static final int IDS = 5000;
+
+    @Test
+    public void testRequestIdIsStable() {
+        HttpServerExchange exchange = new HttpServerExchange(new MockHttpExchange(), -1);
+        String id = exchange.getRequestId();
+        Assert.assertNotNull(id);
+        Assert.assertSame(id, exchange.getRequestId());
+        Assert.assertNotEquals(id, new HttpServerExchange(new MockHttpExchange(), -1).getRequestId());
+    }
+
+    @Test
+    public void testSequentialIdsAreUniqueAcrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; ++i) {
+                results.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() {
+                        List<String> ids = new ArrayList<>();
+                        for (int j = 0; j < IDS; ++j) {
+                            ids.add(RequestIds.SEQUENTIAL.generateRequestId());
+                        }
+                        return ids;
+                    }
+                }));
+            }
+            Set<String> ids = new HashSet<>();
+            for (Future<List<String>> result : results) {
+                for (String id : result.get()) {
+                    Assert.assertTrue(id, Long.parseLong(id) > 0);
+                    Assert.assertTrue(id, ids.add(id));
+                }
+            }
+            Assert.assertEquals(THREADS * IDS, ids.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTraceIdFormat() {
+        MockHttpExchange delegate = new MockHttpExchange();
+        delegate.setUndertowOptions(UndertowOptionMap.create(UndertowOptions.REQUEST_ID_GENERATOR, RequestIds.TRACE_ID));
+        HttpServerExchange exchange = new HttpServerExchange(delegate, -1);
+        String id = exchange.getRequestId();
+        Assert.assertTrue(id, id.matches("[0-9a-f]{32}"));
+        Assert.assertFalse(id.matches("0{32}"));
+        Assert.assertNotEquals(id, RequestIds.TRACE_ID.generateRequestId());
+    }
+}
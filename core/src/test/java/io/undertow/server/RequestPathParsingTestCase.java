@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.undertow.testutils.MockHttpExchange;
+import io.undertow.testutils.category.UnitTest;
+import io.undertow.util.ParameterLimitException;
+
+/**
+ * Unit tests for {@link Connectors#setExchangeRequestPath}.
+ */
+@Category(UnitTest.class)
+public class RequestPathParsingTestCase {
+
+    @Test
+    public void testPathWithoutEscapesIsNotCopied() throws ParameterLimitException {
+        String uri = "/api/users/12345/orders";
+        HttpServerExchange exchange = parse(uri, 1000);
+        Assert.assertSame(uri, exchange.getRequestPath());
+        Assert.assertSame(uri, exchange.getRelativePath());
+        Assert.assertSame(uri, exchange.getRequestURI());
+        Assert.assertEquals("", exchange.getQueryString());
+        Assert.assertTrue(exchange.getQueryParameters().isEmpty());
+    }
+
+    @Test
+    public void testPathDecoding() throws ParameterLimitException {
+        HttpServerExchange exchange = parse("/files/some%20directory/r%C3%A9sum%C3%A9.pdf?a=b", 1000);
+        Assert.assertEquals("/files/some directory/résumé.pdf", exchange.getRequestPath());
+        Assert.assertEquals("/files/some%20directory/r%C3%A9sum%C3%A9.pdf", exchange.getRequestURI());
+        Assert.assertEquals("a=b", exchange.getQueryString());
+    }
+
+    @Test
+    public void testPathParameters() throws ParameterLimitException {
+        HttpServerExchange exchange = parse("/app;jsessionid=123/index%20page.html?lang=en", 1000);
+        Assert.assertEquals("/app/index page.html", exchange.getRequestPath());
+        Assert.assertEquals("/app;jsessionid=123/index%20page.html", exchange.getRequestURI());
+        Assert.assertEquals("123", exchange.getPathParameters().get("jsessionid").getFirst());
+        Assert.assertEquals("en", exchange.getQueryParameters().get("lang").getFirst());
+    }
+
+    @Test
+    public void testQueryParametersAreParsedWhenUsed() throws ParameterLimitException {
+        HttpServerExchange exchange = parse("/search?q=under%20tow&page=2&page=3&flag", 1000);
+        //changing the query string afterwards does not change the parameters of the request
+        exchange.setQueryString("other=value");
+        exchange.addQueryParam("added", "x");
+        Assert.assertEquals("under tow", exchange.getQueryParameters().get("q").getFirst());
+        Assert.assertEquals(2, exchange.getQueryParameters().get("page").size());
+        Assert.assertEquals("", exchange.getQueryParameters().get("flag").getFirst());
+        Assert.assertEquals("x", exchange.getQueryParameters().get("added").getFirst());
+        Assert.assertNull(exchange.getQueryParameters().get("other"));
+    }
+
+    @Test
+    public void testSingleQueryParameterLookup() throws ParameterLimitException {
+        HttpServerExchange exchange = parse("/search?q=under%20tow&page=2&page=3&flag", 1000);
+        Assert.assertEquals("under tow", exchange.getQueryParameter("q"));
+        Assert.assertEquals("2", exchange.getQueryParameter("page"));
+        Assert.assertEquals("", exchange.getQueryParameter("flag"));
+        Assert.assertNull(exchange.getQueryParameter("missing"));
+        //once the map has been changed the lookup has to see the changes
+        exchange.getQueryParameters().get("page").removeFirst();
+        exchange.addQueryParam("added", "x");
+        Assert.assertEquals("3", exchange.getQueryParameter("page"));
+        Assert.assertEquals("x", exchange.getQueryParameter("added"));
+    }
+
+    @Test
+    public void testParameterLimit() throws ParameterLimitException {
+        parse("/path?a=1&b=2&c=3", 3);
+        parse("/path?a=1&b=2&c=3&", 3);
+        try {
+            parse("/path?a=1&b=2&c=3&d", 3);
+            Assert.fail("Expected the parameter limit to be enforced");
+        } catch (ParameterLimitException expected) {
+        }
+    }
+
+    private static HttpServerExchange parse(String uri, int maxParameters) throws ParameterLimitException {
+        HttpServerExchange exchange = new HttpServerExchange(new MockHttpExchange(), -1);
+        Connectors.setExchangeRequestPath(exchange, uri, "UTF-8", true, false, new StringBuilder(), maxParameters);
+        return exchange;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.TestHttpClient;
+
+/**
+ * Writes response bodies from worker threads on many connections, as lots of small flushed writes and as large writes
+ * to a client that reads slowly, and checks that every byte arrives in order.
+ */
+@RunWith(DefaultServer.class)
+public class ResponseBodyWriteTestCase {
+
+    private static final int THREADS = 8;
+    private static final int REQUESTS = 10;
+
+    @BeforeClass
+    public static void setup() {
+        DefaultServer.setRootHandler(new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                int length = Integer.parseInt(exchange.getQueryParameters().get("length").getFirst());
+                int chunk = Integer.parseInt(exchange.getQueryParameters().get("chunk").getFirst());
+                boolean flush = exchange.getQueryParameters().containsKey("flush");
+                OutputStream out = exchange.getOutputStream();
+                byte[] data = data(length);
+                for (int i = 0; i < length; i += chunk) {
+                    out.write(data, i, Math.min(chunk, length - i));
+                    if (flush) {
+                        out.flush();
+                    }
+                }
+            }
+        }));
+    }
+
+    @Test
+    public void testSmallFlushedWrites() throws Exception {
+        runTest("chunk=7&flush=true", 50000, false);
+    }
+
+    @Test
+    public void testLargeWrites() throws Exception {
+        runTest("chunk=100000", 2000000, false);
+    }
+
+    @Test
+    public void testLargeWritesToSlowClient() throws Exception {
+        runTest("chunk=8192&flush=true", 2000000, true);
+    }
+
+    private void runTest(String query, int maxLength, boolean slow) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; ++i) {
+                final int thread = i;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        TestHttpClient client = new TestHttpClient();
+                        try {
+                            for (int j = 0; j < REQUESTS; ++j) {
+                                int length = maxLength / REQUESTS * j + thread;
+                                CRC32 expected = new CRC32();
+                                expected.update(data(length));
+                                HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/write?length=" + length + "&" + query);
+                                HttpResponse result = client.execute(get);
+                                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                                CRC32 crc = new CRC32();
+                                long read = 0;
+                                int reads = 0;
+                                byte[] buf = new byte[8192];
+                                try (InputStream in = result.getEntity().getContent()) {
+                                    int r;
+                                    while ((r = in.read(buf)) != -1) {
+                                        crc.update(buf, 0, r);
+                                        read += r;
+                                        if (slow && ++reads % 8 == 0) {
+                                            Thread.sleep(1);
+                                        }
+                                    }
+                                }
+                                Assert.assertEquals(length, read);
+                                Assert.assertEquals(expected.getValue(), crc.getValue());
+                            }
+                        } finally {
+                            client.getConnectionManager().shutdown();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            data[i] = (byte) (i % 251);
+        }
+        return data;
+    }
+}
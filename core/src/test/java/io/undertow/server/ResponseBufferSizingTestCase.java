@@ -0,0 +1,176 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.io.OutputStream;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.netty.buffer.Unpooled;
+import io.undertow.httpcore.BufferWritableOutputStream;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.ResponseSizeHint;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.TestHttpClient;
+
+/**
+ * Tests that the response buffer is sized from the earlier responses of a route, and that responses that fit in the
+ * full buffer still get a content length.
+ */
+@RunWith(DefaultServer.class)
+public class ResponseBufferSizingTestCase {
+
+    private static final String INITIAL_BUFFER_SIZE = "initial-buffer-size";
+
+    @BeforeClass
+    public static void setup() {
+        HttpHandler handler = new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                int length = Integer.parseInt(exchange.getQueryParameter("length"));
+                exchange.setResponseHeader(INITIAL_BUFFER_SIZE, Integer.toString(exchange.getResponseSizeHint().initialBufferSize(exchange.getBufferSize())));
+                boolean buffer = exchange.getQueryParameter("buffer") != null;
+                if (buffer) {
+                    exchange.setResponseContentLength(length);
+                }
+                OutputStream out = exchange.getOutputStream();
+                byte[] data = data(length);
+                if (buffer) {
+                    //a buffer that completes the content length closes the stream
+                    ((BufferWritableOutputStream) out).write(Unpooled.wrappedBuffer(data));
+                } else if (exchange.getQueryParameter("single") != null) {
+                    for (byte b : data) {
+                        out.write(b);
+                    }
+                } else {
+                    out.write(data);
+                }
+            }
+        });
+        DefaultServer.setRootHandler(new RoutingHandler()
+                .get("/small", handler)
+                .get("/large", handler)
+                .get("/buffer", handler)
+                .get("/buffer-size", new HttpHandler() {
+                    @Override
+                    public void handleRequest(HttpServerExchange exchange) {
+                        exchange.writeAsync(Integer.toString(exchange.getBufferSize()));
+                    }
+                }));
+    }
+
+    @Test
+    public void testSmallResponses() throws Exception {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            assertResponse(client, "/small?length=100", 100, true);
+            for (int i = 0; i < 5; ++i) {
+                Assert.assertEquals(Integer.toString(ResponseSizeHint.MIN_BUFFER_SIZE), assertResponse(client, "/small?length=100&single=true", 100, true));
+            }
+            //a larger response still fits the full buffer, so it is grown rather than sent in pieces
+            int length = bufferSize(client) - 10;
+            assertResponse(client, "/small?length=" + length + "&single=true", length, true);
+            assertResponse(client, "/small?length=" + length, length, true);
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testBufferWriteRecordsSize() throws Exception {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            assertResponse(client, "/buffer?length=100&buffer=true", 100, true);
+            Assert.assertEquals(Integer.toString(ResponseSizeHint.MIN_BUFFER_SIZE), assertResponse(client, "/buffer?length=100&buffer=true", 100, true));
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testLargeResponses() throws Exception {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            int bufferSize = bufferSize(client);
+            int length = bufferSize * 20 + 7;
+            assertResponse(client, "/large?length=" + length, length, false);
+            Assert.assertEquals(Integer.toString(bufferSize), assertResponse(client, "/large?length=" + length + "&single=true", length, false));
+            assertResponse(client, "/large?length=" + (bufferSize - 1), bufferSize - 1, true);
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testSizeHint() {
+        ResponseSizeHint hint = new ResponseSizeHint();
+        Assert.assertEquals(-1, hint.getEstimate());
+        Assert.assertEquals(16384, hint.initialBufferSize(16384));
+        hint.record(100);
+        Assert.assertEquals(ResponseSizeHint.MIN_BUFFER_SIZE, hint.initialBufferSize(16384));
+        hint.record(3000);
+        Assert.assertEquals(2048, hint.initialBufferSize(16384));
+        hint.record(100000);
+        Assert.assertEquals(16384, hint.initialBufferSize(16384));
+        for (int i = 0; i < 100; ++i) {
+            hint.record(100);
+        }
+        Assert.assertEquals(ResponseSizeHint.MIN_BUFFER_SIZE, hint.initialBufferSize(16384));
+
+        Assert.assertEquals(1024, ResponseSizeHint.nextBufferSize(512, 65536));
+        Assert.assertEquals(32728, ResponseSizeHint.nextBufferSize(16364, 65536));
+        Assert.assertEquals(65456, ResponseSizeHint.nextBufferSize(32728, 65536));
+        Assert.assertEquals(65536, ResponseSizeHint.nextBufferSize(65456, 65536));
+        Assert.assertEquals(65536, ResponseSizeHint.nextBufferSize(65536, 65536));
+    }
+
+    private static int bufferSize(TestHttpClient client) throws Exception {
+        HttpResponse result = client.execute(new HttpGet(DefaultServer.getDefaultServerURL() + "/buffer-size"));
+        return Integer.parseInt(EntityUtils.toString(result.getEntity()));
+    }
+
+    private static String assertResponse(TestHttpClient client, String path, int length, boolean contentLength) throws Exception {
+        HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+        HttpResponse result = client.execute(get);
+        Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+        Assert.assertArrayEquals(data(length), EntityUtils.toByteArray(result.getEntity()));
+        if (contentLength) {
+            Assert.assertEquals(Integer.toString(length), result.getFirstHeader(HttpHeaderNames.CONTENT_LENGTH).getValue());
+        } else {
+            Assert.assertNull(result.getFirstHeader(HttpHeaderNames.CONTENT_LENGTH));
+        }
+        return result.getFirstHeader(INITIAL_BUFFER_SIZE).getValue();
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            data[i] = (byte) (i % 251);
+        }
+        return data;
+    }
+}
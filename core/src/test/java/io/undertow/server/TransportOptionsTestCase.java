@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.undertow.Undertow;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.httpcore.UndertowOptions;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.TestHttpClient;
+
+/**
+ * Tests that the transport related server options are accepted, whether or not the native transport is available, and
+ * that connections are spread over more than one of the configured IO threads.
+ */
+public class TransportOptionsTestCase {
+
+    private static final int IO_THREADS = 3;
+
+    @Test
+    public void testTransportOptions() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Undertow undertow = Undertow.builder()
+                .addHttpListener(port, "localhost")
+                .setIoThreads(IO_THREADS)
+                .setServerOption(UndertowOptions.PREFER_NATIVE_TRANSPORT, true)
+                .setServerOption(UndertowOptions.REUSE_PORT, true)
+                .setServerOption(UndertowOptions.TCP_FASTOPEN, true)
+                .setServerOption(UndertowOptions.TCP_QUICKACK, true)
+                .setServerOption(UndertowOptions.TCP_CORK, false)
+                .setHandler(new HttpHandler() {
+                    @Override
+                    public void handleRequest(HttpServerExchange exchange) throws Exception {
+                        exchange.writeAsync(Thread.currentThread().getName());
+                    }
+                })
+                .build();
+        undertow.start();
+        try {
+            Set<String> threads = new HashSet<>();
+            for (int i = 0; i < IO_THREADS * 4; ++i) {
+                //a new client for every request, so each request has its own connection
+                TestHttpClient client = new TestHttpClient();
+                try {
+                    HttpResponse result = client.execute(new HttpGet("http://localhost:" + port + "/"));
+                    Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                    threads.add(HttpClientUtils.readResponse(result));
+                } finally {
+                    client.getConnectionManager().shutdown();
+                }
+            }
+            //how connections are assigned to event loops is up to the transport, with REUSE_PORT the kernel picks
+            Assert.assertTrue(threads.toString(), threads.size() > 1);
+            Assert.assertTrue(threads.toString(), threads.size() <= IO_THREADS);
+        } finally {
+            undertow.stop();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.undertow.Undertow;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.TestHttpClient;
+import io.undertow.util.VirtualThreads;
+
+/**
+ * Tests that a server with a virtual thread worker runs blocking requests in virtual threads, and that it refuses to
+ * start on a JVM without them.
+ */
+public class VirtualThreadWorkerTestCase {
+
+    @Test
+    public void testBlockingRequestsRunInVirtualThreads() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Undertow undertow = Undertow.builder()
+                .addHttpListener(port, "localhost")
+                .setVirtualThreadWorker(true)
+                .setHandler(new BlockingHandler(new HttpHandler() {
+                    @Override
+                    public void handleRequest(HttpServerExchange exchange) throws Exception {
+                        exchange.writeAsync(Boolean.toString(isVirtual(Thread.currentThread())));
+                    }
+                }))
+                .build();
+        if (!VirtualThreads.isSupported()) {
+            try {
+                undertow.start();
+                Assert.fail("Expected the server to fail to start");
+            } catch (RuntimeException expected) {
+            } finally {
+                undertow.stop();
+            }
+            return;
+        }
+        undertow.start();
+        TestHttpClient client = new TestHttpClient();
+        try {
+            for (int i = 0; i < 10; ++i) {
+                HttpResponse result = client.execute(new HttpGet("http://localhost:" + port + "/"));
+                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                Assert.assertEquals("true", HttpClientUtils.readResponse(result));
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+            undertow.stop();
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) throws IOException {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.undertow.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.netty.buffer.ByteBuf;
+import io.undertow.httpcore.HttpExchange;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.IoCallback;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.httpcore.WriteFunction;
+import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.TestHttpClient;
+
+/**
+ * Tests for {@link HttpServerExchange#writeFileAsync(Path, long, long, IoCallback, Object)}, both when the
+ * file can be handed directly to the connection and when a write function forces the chunked fallback.
+ */
+@RunWith(DefaultServer.class)
+public class WriteFileAsyncTestCase {
+
+    private static Path file;
+    private static String content;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; ++i) {
+            sb.append("line ").append(i).append('\n');
+        }
+        content = sb.toString();
+        file = Files.createTempFile("undertow", ".txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+        DefaultServer.setRootHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                long start = Long.parseLong(exchange.getQueryParameters().get("start").getFirst());
+                long count = Long.parseLong(exchange.getQueryParameters().get("count").getFirst());
+                if (exchange.getQueryParameters().containsKey("function")) {
+                    exchange.addWriteFunction(new WriteFunction() {
+                        @Override
+                        public ByteBuf preWrite(ByteBuf data, boolean last) {
+                            if (data != null) {
+                                for (int i = data.readerIndex(); i < data.writerIndex(); ++i) {
+                                    if (data.getByte(i) == 'l') {
+                                        data.setByte(i, 'L');
+                                    }
+                                }
+                            }
+                            return data;
+                        }
+                    });
+                }
+                exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+                exchange.writeFileAsync(file, start, count, new IoCallback<Object>() {
+                    @Override
+                    public void onComplete(HttpExchange exchange, Object context) {
+                        exchange.endExchange();
+                    }
+                }, null);
+            }
+        });
+    }
+
+    @AfterClass
+    public static void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testFullFile() throws IOException {
+        runTest(0, content.length(), false);
+    }
+
+    @Test
+    public void testFileRegion() throws IOException {
+        runTest(1000, 50000, false);
+    }
+
+    @Test
+    public void testEmptyRegion() throws IOException {
+        runTest(10, 0, false);
+    }
+
+    @Test
+    public void testFullFileWithWriteFunction() throws IOException {
+        runTest(0, content.length(), true);
+    }
+
+    @Test
+    public void testFileRegionWithWriteFunction() throws IOException {
+        runTest(1000, 50000, true);
+    }
+
+    private void runTest(long start, long count, boolean function) throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/file?start=" + start + "&count=" + count + (function ? "&function=true" : ""));
+            HttpResponse result = client.execute(get);
+            Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+            String expected = content.substring((int) start, (int) (start + count));
+            if (function) {
+                expected = expected.replace('l', 'L');
+            }
+            Assert.assertEquals(Long.toString(count), result.getFirstHeader(HttpHeaderNames.CONTENT_LENGTH).getValue());
+            Assert.assertEquals(expected, HttpClientUtils.readResponse(result));
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package io.undertow.server.handlers;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
@@ -36,11 +37,16 @@ import io.undertow.httpcore.IoCallback;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.cache.MappedFileCache;
 import io.undertow.server.handlers.resource.CachingResourceManager;
 import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.Resource;
 import io.undertow.server.handlers.resource.ResourceHandler;
+import io.undertow.server.handlers.resource.ResourceManager;
+import io.undertow.server.handlers.resource.URLResource;
 import io.undertow.testutils.DefaultServer;
 import io.undertow.testutils.TestHttpClient;
+import io.undertow.util.ByteRange;
 import io.undertow.util.DateUtils;
 import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.httpcore.StatusCodes;
@@ -63,15 +69,53 @@ public class RangeRequestTestCase {
                 exchange.setResponseContentLength("0123456789".length());
                 exchange.writeAsync(Unpooled.copiedBuffer("0123456789", StandardCharsets.UTF_8), true, IoCallback.END_EXCHANGE, null);
             }
-        }, true));
+        }, true, ByteRange.DEFAULT_MAX_RANGES, 0));
+        //the entity is written in pieces, and the stream is closed by a final write with no data
+        path.addPrefixPath("/path-split", new BlockingHandler(new ByteRangeHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.setResponseContentLength("0123456789".length());
+                OutputStream out = exchange.getOutputStream();
+                out.write("01234".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                out.write("56789".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                out.close();
+            }
+        }, true, ByteRange.DEFAULT_MAX_RANGES, 0)));
         path.addPrefixPath("/resource",  new ResourceHandler( new PathResourceManager(rootPath, 10485760))
-                .setDirectoryListingEnabled(true));
+                .setDirectoryListingEnabled(true).setRangeCoalesceThreshold(0));
         path.addPrefixPath("/cachedresource",  new ResourceHandler(new CachingResourceManager(1000, 1000000, new DirectBufferCache(1000, 10, 10000), new PathResourceManager(rootPath, 10485760), -1))
-                .setDirectoryListingEnabled(true));
+                .setDirectoryListingEnabled(true).setRangeCoalesceThreshold(0));
         path.addPrefixPath("/resource-blocking",  new BlockingHandler(new ResourceHandler( new PathResourceManager(rootPath, 10485760))
-                .setDirectoryListingEnabled(true)));
+                .setDirectoryListingEnabled(true).setRangeCoalesceThreshold(0)));
         path.addPrefixPath("/cachedresource-blocking",  new BlockingHandler(new ResourceHandler(new CachingResourceManager(1000, 1000000, new DirectBufferCache(1000, 10, 10000), new PathResourceManager(rootPath, 10485760), -1))
-                .setDirectoryListingEnabled(true)));
+                .setDirectoryListingEnabled(true).setRangeCoalesceThreshold(0)));
+        path.addPrefixPath("/cachedresource-slices",  new ResourceHandler(new CachingResourceManager(1000, 1000000, new DirectBufferCache(4, 10, 1000), new PathResourceManager(rootPath, 10485760), -1))
+                .setDirectoryListingEnabled(true).setRangeCoalesceThreshold(0));
+        path.addPrefixPath("/cachedresource-slices-blocking",  new BlockingHandler(new ResourceHandler(new CachingResourceManager(1000, 1000000, new DirectBufferCache(4, 10, 1000), new PathResourceManager(rootPath, 10485760), -1))
+                .setDirectoryListingEnabled(true).setRangeCoalesceThreshold(0)));
+        //a max file size of 0 means every file is mapped rather than copied into the buffer cache
+        path.addPrefixPath("/mappedresource",  new ResourceHandler(new CachingResourceManager(1000, 0, new DirectBufferCache(1000, 10, 10000), new MappedFileCache(1000, 1), new PathResourceManager(rootPath, 10485760), -1))
+                .setDirectoryListingEnabled(true).setRangeCoalesceThreshold(0));
+        path.addPrefixPath("/mappedresource-blocking",  new BlockingHandler(new ResourceHandler(new CachingResourceManager(1000, 0, null, new MappedFileCache(1000, 1), new PathResourceManager(rootPath, 10485760), -1))
+                .setDirectoryListingEnabled(true).setRangeCoalesceThreshold(0)));
+        //a resource that claims multipart support without implementing it falls back to the full entity
+        path.addPrefixPath("/multipart-fallback", new ResourceHandler(new ResourceManager() {
+            @Override
+            public Resource getResource(String path) throws IOException {
+                return new URLResource(RangeRequestTestCase.class.getResource("range.txt"), path) {
+                    @Override
+                    public boolean isMultipartRangeSupported() {
+                        return true;
+                    }
+                };
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        }).setRangeCoalesceThreshold(0));
         DefaultServer.setRootHandler(path);
     }
 
@@ -96,6 +140,97 @@ public class RangeRequestTestCase {
     public void testCachedResourceHandlerBlocking() throws IOException, InterruptedException {
         runTest("/cachedresource-blocking/range.txt", false);
     }
+
+    @Test
+    public void testCachedResourceHandlerMultipleSlices() throws IOException, InterruptedException {
+        warmCache("/cachedresource-slices/range.txt");
+        runTest("/cachedresource-slices/range.txt", false);
+    }
+
+    @Test
+    public void testCachedResourceHandlerMultipleSlicesBlocking() throws IOException, InterruptedException {
+        warmCache("/cachedresource-slices-blocking/range.txt");
+        runTest("/cachedresource-slices-blocking/range.txt", false);
+    }
+
+    @Test
+    public void testMappedResourceHandler() throws IOException, InterruptedException {
+        warmCache("/mappedresource/range.txt");
+        runTest("/mappedresource/range.txt", false);
+    }
+
+    @Test
+    public void testMappedResourceHandlerBlocking() throws IOException, InterruptedException {
+        warmCache("/mappedresource-blocking/range.txt");
+        runTest("/mappedresource-blocking/range.txt", false);
+    }
+
+    @Test
+    public void testMultipartRangesOfSplitEntity() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/path-split");
+            get.addHeader(HttpHeaderNames.RANGE, "bytes=3-6,9-9");
+            HttpResponse result = client.execute(get);
+            assertMultipart(result, null, "3-6", "3456", "9-9", "9");
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testMultipartRangeFallsBackToFullEntity() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/multipart-fallback/range.txt");
+            get.addHeader(HttpHeaderNames.RANGE, "bytes=1-2,5-6");
+            HttpResponse result = client.execute(get);
+            Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+            Assert.assertEquals("text/plain", result.getFirstHeader(HttpHeaderNames.CONTENT_TYPE).getValue());
+            Assert.assertEquals("10", result.getFirstHeader(HttpHeaderNames.CONTENT_LENGTH).getValue());
+            Assert.assertEquals("0123456789", EntityUtils.toString(result.getEntity()));
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    /**
+     * Range requests are never used to populate the cache, so make some full requests first
+     * to make sure the ranges are actually served from the cached buffers
+     */
+    private void warmCache(String path) throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            for (int i = 0; i < 10; ++i) {
+                HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+                HttpResponse result = client.execute(get);
+                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                Assert.assertEquals("0123456789", EntityUtils.toString(result.getEntity()));
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    private static void assertMultipart(HttpResponse result, String partContentType, String... parts) throws IOException {
+        Assert.assertEquals(StatusCodes.PARTIAL_CONTENT, result.getStatusLine().getStatusCode());
+        Assert.assertNull(result.getFirstHeader(HttpHeaderNames.CONTENT_RANGE));
+        String contentType = result.getFirstHeader(HttpHeaderNames.CONTENT_TYPE).getValue();
+        Assert.assertTrue(contentType, contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring("multipart/byteranges; boundary=".length());
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < parts.length; i += 2) {
+            expected.append("\r\n--").append(boundary).append("\r\n");
+            if (partContentType != null) {
+                expected.append("Content-Type: ").append(partContentType).append("\r\n");
+            }
+            expected.append("Content-Range: bytes ").append(parts[i]).append("/10\r\n\r\n").append(parts[i + 1]);
+        }
+        expected.append("\r\n--").append(boundary).append("--\r\n");
+        Assert.assertEquals(Integer.toString(expected.length()), result.getFirstHeader(HttpHeaderNames.CONTENT_LENGTH).getValue());
+        Assert.assertEquals(expected.toString(), EntityUtils.toString(result.getEntity()));
+    }
+
     public void runTest(String path, boolean etag) throws IOException, InterruptedException {
         TestHttpClient client = new TestHttpClient();
         try {
@@ -198,6 +333,53 @@ public class RangeRequestTestCase {
             Assert.assertEquals("0123456789", response);
             Assert.assertNull(result.getFirstHeader(HttpHeaderNames.CONTENT_RANGE));
 
+            String partContentType = etag ? null : "text/plain";
+            get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+            get.addHeader(HttpHeaderNames.RANGE, "bytes=1-2,5-6");
+            result = client.execute(get);
+            assertMultipart(result, partContentType, "1-2", "12", "5-6", "56");
+
+            //parts are sent in order, and overlapping ranges are merged
+            get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+            get.addHeader(HttpHeaderNames.RANGE, "bytes=8-,-1,0-0,3-4,4-5");
+            result = client.execute(get);
+            assertMultipart(result, partContentType, "0-0", "0", "3-5", "345", "8-9", "89");
+
+            //unsatisfiable ranges are dropped
+            get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+            get.addHeader(HttpHeaderNames.RANGE, "bytes=1-1,50-60,9-");
+            result = client.execute(get);
+            assertMultipart(result, partContentType, "1-1", "1", "9-9", "9");
+
+            //adjacent ranges become a single range
+            get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+            get.addHeader(HttpHeaderNames.RANGE, "bytes=1-2,3-4");
+            result = client.execute(get);
+            Assert.assertEquals(StatusCodes.PARTIAL_CONTENT, result.getStatusLine().getStatusCode());
+            response = EntityUtils.toString(result.getEntity());
+            Assert.assertEquals("1234", response);
+            Assert.assertEquals("bytes 1-4/10", result.getFirstHeader(HttpHeaderNames.CONTENT_RANGE).getValue());
+
+            get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+            get.addHeader(HttpHeaderNames.RANGE, "bytes=20-30,40-");
+            result = client.execute(get);
+            Assert.assertEquals(StatusCodes.REQUEST_RANGE_NOT_SATISFIABLE, result.getStatusLine().getStatusCode());
+            response = EntityUtils.toString(result.getEntity());
+            Assert.assertEquals("", response);
+            Assert.assertEquals("bytes */10", result.getFirstHeader(HttpHeaderNames.CONTENT_RANGE).getValue());
+
+            //too many ranges, the header is ignored
+            StringBuilder ranges = new StringBuilder("bytes=0-0");
+            for (int i = 0; i < ByteRange.DEFAULT_MAX_RANGES; ++i) {
+                ranges.append(",").append(i % 10).append("-").append(i % 10);
+            }
+            get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+            get.addHeader(HttpHeaderNames.RANGE, ranges.toString());
+            result = client.execute(get);
+            Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+            response = EntityUtils.toString(result.getEntity());
+            Assert.assertEquals("0123456789", response);
+
             if(etag) {
 
                 get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
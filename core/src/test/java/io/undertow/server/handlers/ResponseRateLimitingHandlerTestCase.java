@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.undertow.Handlers;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.ResourceHandler;
+import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.TestHttpClient;
+
+@RunWith(DefaultServer.class)
+public class ResponseRateLimitingHandlerTestCase {
+
+    private static final String MESSAGE;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 100000) {
+            sb.append("0123456789");
+        }
+        MESSAGE = sb.toString();
+    }
+
+    private static Path dir;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        dir = Files.createTempDirectory("undertow-rate-limit");
+        Files.write(dir.resolve("file.txt"), MESSAGE.getBytes(StandardCharsets.US_ASCII));
+        HttpHandler async = new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.setResponseContentLength(MESSAGE.length());
+                exchange.writeAsync(MESSAGE, StandardCharsets.US_ASCII);
+            }
+        };
+        HttpHandler blocking = new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.getOutputStream().write(MESSAGE.getBytes(StandardCharsets.US_ASCII));
+            }
+        });
+        PathHandler path = Handlers.path();
+        //100kb with a 50kb burst, so each response takes at least half a second
+        path.addPrefixPath("/async", new ResponseRateLimitingHandler(async, 50000, 500, TimeUnit.MILLISECONDS));
+        path.addPrefixPath("/blocking", new ResponseRateLimitingHandler(blocking, 50000, 500, TimeUnit.MILLISECONDS));
+        path.addPrefixPath("/file", new ResponseRateLimitingHandler(new ResourceHandler(new PathResourceManager(dir, 10485760)), 50000, 500, TimeUnit.MILLISECONDS));
+        path.addPrefixPath("/shared", new ResponseRateLimitingHandler(async, 100000, 500, TimeUnit.MILLISECONDS, ResponseRateLimitingHandler.Scope.HANDLER));
+        DefaultServer.setRootHandler(path);
+    }
+
+    @AfterClass
+    public static void cleanup() throws IOException {
+        Files.deleteIfExists(dir.resolve("file.txt"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testResponsesAreThrottled() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            //the rate itself is tested in ResponseRateLimitingHandlerUnitTestCase, this only checks that the throttle
+            //is applied at all, each response should take around half a second
+            long start = System.nanoTime();
+            for (String path : new String[]{"/async", "/blocking", "/file/file.txt"}) {
+                get(client, path);
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Assert.assertTrue("took " + elapsed + "ms", elapsed >= 500);
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testSharedLimit() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            get(client, "/shared");
+            get(client, "/shared");
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    private static void get(TestHttpClient client, String path) throws IOException {
+        HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+        HttpResponse result = client.execute(get);
+        Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+        Assert.assertEquals(MESSAGE, HttpClientUtils.readResponse(result));
+    }
+}
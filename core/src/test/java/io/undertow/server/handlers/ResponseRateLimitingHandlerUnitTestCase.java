@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers;
+
+import java.util.function.LongSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.undertow.testutils.category.UnitTest;
+
+/**
+ * Tests the token bucket arithmetic against a clock that only moves when the test moves it.
+ */
+@Category(UnitTest.class)
+public class ResponseRateLimitingHandlerUnitTestCase {
+
+    @Test
+    public void testBurstIsWrittenImmediately() {
+        TestClock clock = new TestClock();
+        //1000 bytes per 1000ns, one nanosecond per byte
+        ResponseRateLimitingHandler.TokenBucket bucket = new ResponseRateLimitingHandler.TokenBucket(1000, 1000, clock);
+        Assert.assertTrue(bucket.acquire(600) <= 0);
+        Assert.assertTrue(bucket.acquire(400) <= 0);
+        //the bucket is now empty
+        Assert.assertEquals(500, bucket.acquire(500));
+    }
+
+    @Test
+    public void testWaitIncludesEarlierReservations() {
+        TestClock clock = new TestClock();
+        ResponseRateLimitingHandler.TokenBucket bucket = new ResponseRateLimitingHandler.TokenBucket(1000, 1000, clock);
+        Assert.assertTrue(bucket.acquire(1000) <= 0);
+        Assert.assertEquals(200, bucket.acquire(200));
+        Assert.assertEquals(500, bucket.acquire(300));
+        //the time that passes is credited back
+        clock.now += 300;
+        Assert.assertEquals(300, bucket.acquire(100));
+    }
+
+    @Test
+    public void testBucketRefills() {
+        TestClock clock = new TestClock();
+        ResponseRateLimitingHandler.TokenBucket bucket = new ResponseRateLimitingHandler.TokenBucket(1000, 1000, clock);
+        Assert.assertTrue(bucket.acquire(1000) <= 0);
+        clock.now += 400;
+        Assert.assertTrue(bucket.acquire(400) <= 0);
+        Assert.assertEquals(100, bucket.acquire(100));
+    }
+
+    @Test
+    public void testIdleTimeIsCappedAtTheBurst() {
+        TestClock clock = new TestClock();
+        ResponseRateLimitingHandler.TokenBucket bucket = new ResponseRateLimitingHandler.TokenBucket(1000, 1000, clock);
+        //a long idle period does not allow more than one period's worth of data through at once
+        clock.now += 1000000;
+        Assert.assertEquals(500, bucket.acquire(1500));
+    }
+
+    @Test
+    public void testRateIsScaledToTheTimePeriod() {
+        TestClock clock = new TestClock();
+        //100 bytes per 1000ns, ten nanoseconds per byte
+        ResponseRateLimitingHandler.TokenBucket bucket = new ResponseRateLimitingHandler.TokenBucket(100, 1000, clock);
+        Assert.assertEquals(100, bucket.getMaxWriteSize());
+        Assert.assertTrue(bucket.acquire(100) <= 0);
+        Assert.assertEquals(500, bucket.acquire(50));
+    }
+
+    @Test
+    public void testMaxWriteSize() {
+        ResponseRateLimitingHandler.TokenBucket bucket = new ResponseRateLimitingHandler.TokenBucket(1000000, 1000, new TestClock());
+        Assert.assertEquals(16 * 1024, bucket.getMaxWriteSize());
+    }
+
+    private static final class TestClock implements LongSupplier {
+
+        long now = 1000;
+
+        @Override
+        public long getAsLong() {
+            return now;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package io.undertow.server.handlers.accesslog;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -31,8 +32,10 @@ import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.httpcore.StatusCodes;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.BlockingHandler;
 import io.undertow.server.handlers.StoredResponseHandler;
 import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.HttpClientUtils;
 import io.undertow.testutils.TestHttpClient;
 
 /**
@@ -67,17 +70,37 @@ public class AccessLogTestCase {
     @Test
     public void testRemoteAddress() throws IOException, InterruptedException {
         latch = new CountDownLatch(1);
-        //DefaultServer.setRootHandler(new StoredResponseHandler(new AccessLogHandler(HELLO_HANDLER, RECEIVER, "Remote address %a Code %s test-header %{i,test-header} %{STORED_RESPONSE}", AccessLogFileTestCase.class.getClassLoader())));
-        DefaultServer.setRootHandler(new StoredResponseHandler(new AccessLogHandler(HELLO_HANDLER, RECEIVER, "Remote address %a Code %s test-header %{i,test-header}", AccessLogFileTestCase.class.getClassLoader())));
+        DefaultServer.setRootHandler(new StoredResponseHandler(new AccessLogHandler(HELLO_HANDLER, RECEIVER, "Remote address %a Code %s test-header %{i,test-header} %{STORED_RESPONSE}", AccessLogFileTestCase.class.getClassLoader())));
         try (TestHttpClient client = new TestHttpClient();) {
             HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/path");
             get.addHeader("test-header", "test-value");
             HttpResponse result = client.execute(get);
             Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
-            //UT3 - P3
-            //Assert.assertEquals("HelloResponse", HttpClientUtils.readResponse(result));
+            Assert.assertEquals("HelloResponse", HttpClientUtils.readResponse(result));
             latch.await(10, TimeUnit.SECONDS);
-            Assert.assertEquals("Remote address " + DefaultServer.getDefaultServerAddress().getAddress().getHostAddress() + " Code 200 test-header test-value", message);
+            Assert.assertEquals("Remote address " + DefaultServer.getDefaultServerAddress().getAddress().getHostAddress() + " Code 200 test-header test-value HelloResponse", message);
+        }
+    }
+
+    @Test
+    public void testStoredResponseTruncated() throws IOException, InterruptedException {
+        latch = new CountDownLatch(1);
+        DefaultServer.setRootHandler(new StoredResponseHandler(new AccessLogHandler(new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(final HttpServerExchange exchange) throws Exception {
+                exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+                exchange.getOutputStream().write("Hello".getBytes(StandardCharsets.US_ASCII));
+                exchange.getOutputStream().flush();
+                exchange.getOutputStream().write("Response".getBytes(StandardCharsets.US_ASCII));
+            }
+        }), RECEIVER, "%{STORED_RESPONSE}", AccessLogFileTestCase.class.getClassLoader()), 7));
+        try (TestHttpClient client = new TestHttpClient()) {
+            HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/path");
+            HttpResponse result = client.execute(get);
+            Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+            Assert.assertEquals("HelloResponse", HttpClientUtils.readResponse(result));
+            latch.await(10, TimeUnit.SECONDS);
+            Assert.assertEquals("HelloRe", message);
         }
     }
 
@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.undertow.server.handlers.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.undertow.testutils.category.UnitTest;
+
+@Category(UnitTest.class)
+public class DirectBufferCacheTestCase {
+
+    @Test
+    public void testStatistics() {
+        DirectBufferCache cache = new DirectBufferCache(16, 4, 64);
+        DirectBufferCacheStatistics statistics = cache.getStatistics();
+        Assert.assertEquals(4, statistics.getSliceCapacity());
+        Assert.assertNull(cache.get("a"));
+        cache.add("a", 20);
+        DirectBufferCache.CacheEntry entry = lookup(cache, "a", 4);
+        Assert.assertEquals(2, entry.buffers().length);
+        entry.enable();
+        Assert.assertSame(entry, cache.get("a"));
+
+        Assert.assertEquals(1, statistics.getEntryCount());
+        Assert.assertEquals(2, statistics.getSlicesUsed());
+        Assert.assertEquals(20, statistics.getBytesCached());
+        Assert.assertEquals(1, statistics.getHits());
+        Assert.assertEquals(5, statistics.getMisses());
+
+        cache.remove("a");
+        Assert.assertEquals(0, statistics.getEntryCount());
+        Assert.assertEquals(0, statistics.getSlicesUsed());
+        Assert.assertEquals(0, statistics.getBytesCached());
+    }
+
+    @Test
+    public void testLargeColdEntryDoesNotEvictSmallHotEntries() {
+        DirectBufferCache cache = new DirectBufferCache(16, 4, 64);
+        DirectBufferCacheStatistics statistics = cache.getStatistics();
+        for (String key : new String[]{"a", "b", "c", "d"}) {
+            cache.add(key, 16);
+            Assert.assertEquals(1, lookup(cache, key, 20).buffers().length);
+        }
+        Assert.assertEquals(4, statistics.getSlicesUsed());
+
+        //a file that needs every slice, and has only been used a few times
+        cache.add("large", 64);
+        Assert.assertEquals(0, lookup(cache, "large", 10).buffers().length);
+        Assert.assertEquals(2, statistics.getAllocationFailures());
+        Assert.assertEquals(0, statistics.getEvictions());
+        Assert.assertEquals(4, statistics.getSlicesUsed());
+
+        //once it is used more often than the small files, for its size, it replaces them
+        DirectBufferCache.CacheEntry large = lookup(cache, "large", 400);
+        Assert.assertEquals(4, large.buffers().length);
+        Assert.assertEquals(4, statistics.getEvictions());
+        Assert.assertEquals(4, statistics.getSlicesUsed());
+        Assert.assertEquals(64, statistics.getBytesCached());
+        Assert.assertEquals(1, statistics.getEntryCount());
+    }
+
+    @Test
+    public void testNewEntryReplacesColdEntry() {
+        DirectBufferCache cache = new DirectBufferCache(16, 2, 32);
+        DirectBufferCacheStatistics statistics = cache.getStatistics();
+        cache.add("hot", 16);
+        lookup(cache, "hot", 100);
+        cache.add("cold", 16);
+        lookup(cache, "cold", 5);
+        cache.add("new", 16);
+        Assert.assertEquals(1, lookup(cache, "new", 10).buffers().length);
+        Assert.assertNull(cache.get("cold"));
+        Assert.assertNotNull(cache.get("hot"));
+        Assert.assertEquals(1, statistics.getEvictions());
+    }
+
+    private static DirectBufferCache.CacheEntry lookup(DirectBufferCache cache, String key, int times) {
+        DirectBufferCache.CacheEntry entry = null;
+        for (int i = 0; i < times; ++i) {
+            entry = cache.get(key);
+        }
+        return entry;
+    }
+}
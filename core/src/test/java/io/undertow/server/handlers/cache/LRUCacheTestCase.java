@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.undertow.server.handlers.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.undertow.testutils.category.UnitTest;
+
+@Category(UnitTest.class)
+public class LRUCacheTestCase {
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        //LRU keeps whatever was used last, so a scan flushes most of the hot entries
+        Assert.assertTrue(hotEntriesAfterScan(LRUCache.EvictionPolicy.LRU) < 25);
+        Assert.assertEquals(50, hotEntriesAfterScan(LRUCache.EvictionPolicy.TINY_LFU));
+    }
+
+    private static int hotEntriesAfterScan(LRUCache.EvictionPolicy policy) {
+        LRUCache<String, String> cache = new LRUCache<>(100, -1, policy);
+        for (int round = 0; round < 20; ++round) {
+            for (int i = 0; i < 50; ++i) {
+                getOrAdd(cache, "hot" + i);
+            }
+        }
+        //the hot entries are still used while the scan runs, but less often than the scan adds entries
+        for (int i = 0; i < 10000; ++i) {
+            getOrAdd(cache, "cold" + i);
+            if (i % 10 == 0) {
+                getOrAdd(cache, "hot" + (i / 10) % 50);
+            }
+        }
+        Assert.assertTrue(cache.size() <= 100);
+        int found = 0;
+        for (int i = 0; i < 50; ++i) {
+            if (cache.get("hot" + i) != null) {
+                ++found;
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        for (LRUCache.EvictionPolicy policy : LRUCache.EvictionPolicy.values()) {
+            LRUCache<Integer, String> cache = new LRUCache<>(10, -1, policy);
+            Assert.assertNull(cache.putIfAbsent(1, "a"));
+            Assert.assertEquals(policy.name(), "a", cache.putIfAbsent(1, "b"));
+            Assert.assertEquals(policy.name(), "a", cache.get(1));
+            for (int i = 2; i <= 30; ++i) {
+                cache.putIfAbsent(i, "x");
+            }
+            Assert.assertEquals(policy.name(), 10, cache.size());
+        }
+    }
+
+    @Test
+    public void testCounters() {
+        for (LRUCache.EvictionPolicy policy : LRUCache.EvictionPolicy.values()) {
+            LRUCache<Integer, Integer> cache = new LRUCache<>(10, -1, policy);
+            Assert.assertNull(cache.get(1));
+            cache.add(1, 1);
+            Assert.assertEquals(Integer.valueOf(1), cache.get(1));
+            Assert.assertEquals(policy.name(), 1, cache.getHits());
+            Assert.assertEquals(policy.name(), 1, cache.getMisses());
+            for (int i = 2; i <= 30; ++i) {
+                cache.add(i, i);
+            }
+            Assert.assertEquals(policy.name(), 10, cache.size());
+            Assert.assertEquals(policy.name(), 20, cache.getEvictions());
+            //the entry that was added last is always kept
+            Assert.assertEquals(policy.name(), Integer.valueOf(30), cache.get(30));
+        }
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        LRUCache<Integer, Integer> cache = new LRUCache<>(10, -1, LRUCache.EvictionPolicy.TINY_LFU);
+        for (int i = 0; i < 10; ++i) {
+            cache.add(i, i);
+        }
+        Assert.assertEquals(Integer.valueOf(5), cache.remove(5));
+        Assert.assertNull(cache.get(5));
+        Assert.assertEquals(9, cache.size());
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        for (int i = 0; i < 100; ++i) {
+            cache.add(i, i);
+            Assert.assertEquals(Integer.valueOf(i), cache.get(i));
+        }
+        Assert.assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        LRUCache<Integer, Integer> cache = new LRUCache<>(10, 10, LRUCache.EvictionPolicy.TINY_LFU);
+        cache.add(1, 1);
+        Thread.sleep(20);
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals(0, cache.size());
+        cache.add(1, 2);
+        Assert.assertEquals(Integer.valueOf(2), cache.get(1));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final LRUCache<Integer, Integer> cache = new LRUCache<>(100, -1, LRUCache.EvictionPolicy.TINY_LFU);
+        List<Thread> threads = new ArrayList<>();
+        final List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (int i = 0; i < 100000; ++i) {
+                            int key = random.nextInt(1000);
+                            Integer value = cache.get(key);
+                            if (value == null) {
+                                cache.add(key, key);
+                            } else if (value != key) {
+                                throw new AssertionError("Wrong value " + value + " for " + key);
+                            } else if (random.nextInt(100) == 0) {
+                                cache.remove(key);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(new ArrayList<>(), failures);
+        Assert.assertTrue(cache.size() <= 100);
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    private static void getOrAdd(LRUCache<String, String> cache, String key) {
+        if (cache.get(key) == null) {
+            cache.add(key, key);
+        }
+    }
+}
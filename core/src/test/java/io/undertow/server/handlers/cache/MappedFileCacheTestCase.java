@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.netty.buffer.ByteBuf;
+import io.undertow.testutils.category.UnitTest;
+
+@Category(UnitTest.class)
+public class MappedFileCacheTestCase {
+
+    private Path dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("mapped-file-cache");
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testFilesAreMappedOnceRequestedOften() throws IOException {
+        Path file = write("a", "0123456789");
+        MappedFileCache cache = new MappedFileCache(100, 3);
+        Assert.assertNull(cache.get("a", file, 10));
+        Assert.assertNull(cache.get("a", file, 10));
+        MappedFileCache.MappedFile mapped = cache.get("a", file, 10);
+        Assert.assertNotNull(mapped);
+        Assert.assertEquals(10, mapped.length());
+        Assert.assertEquals(10, cache.getMappedBytes());
+        mapped.dereference();
+
+        mapped = cache.get("a", file, 10);
+        Assert.assertEquals("3456", read(mapped.slice(3, 6)));
+        Assert.assertEquals("0123456789", read(mapped.slice(0, 9)));
+        mapped.dereference();
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+
+        //files bigger than the limit are never mapped
+        Path large = write("large", "01234567890123456789");
+        MappedFileCache small = new MappedFileCache(10, 1);
+        Assert.assertNull(small.get("large", large, 20));
+        Assert.assertEquals(0, small.getMappedBytes());
+    }
+
+    @Test
+    public void testSlicesSpanningRegions() throws IOException {
+        Path file = write("a", "0123456789");
+        MappedFileCache cache = new MappedFileCache(100, 1, 4);
+        MappedFileCache.MappedFile mapped = cache.get("a", file, 10);
+        Assert.assertEquals("0123456789", read(mapped.slice(0, 9)));
+        Assert.assertEquals("345678", read(mapped.slice(3, 8)));
+        Assert.assertEquals("4567", read(mapped.slice(4, 7)));
+        Assert.assertEquals("9", read(mapped.slice(9, 9)));
+        mapped.dereference();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFilesAreEvicted() throws IOException {
+        Path a = write("a", "0123456789");
+        Path b = write("b", "abcdefghij");
+        Path c = write("c", "ABCDEFGHIJ");
+        MappedFileCache cache = new MappedFileCache(20, 1);
+        MappedFileCache.MappedFile mappedA = cache.get("a", a, 10);
+        cache.get("b", b, 10).dereference();
+        //a buffer that is still being written keeps the file mapped after it has been evicted
+        ByteBuf inFlight = mappedA.slice(0, 9);
+        mappedA.dereference();
+        cache.get("b", b, 10).dereference();
+
+        MappedFileCache.MappedFile mappedC = cache.get("c", c, 10);
+        Assert.assertNotNull(mappedC);
+        mappedC.dereference();
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals(20, cache.getMappedBytes());
+        Assert.assertFalse(cache.getAllKeys().contains("a"));
+        Assert.assertTrue(mappedA.isMapped());
+        Assert.assertEquals("0123456789", read(inFlight));
+        Assert.assertFalse(mappedA.isMapped());
+    }
+
+    @Test
+    public void testRemoveAndChangedFiles() throws IOException {
+        Path file = write("a", "0123456789");
+        MappedFileCache cache = new MappedFileCache(100, 1);
+        MappedFileCache.MappedFile mapped = cache.get("a", file, 10);
+        mapped.dereference();
+        cache.remove("a");
+        Assert.assertFalse(mapped.isMapped());
+        Assert.assertEquals(0, cache.getMappedBytes());
+
+        mapped = cache.get("a", file, 10);
+        mapped.dereference();
+        //a file with a different length replaces the old mapping
+        write("a", "0123");
+        MappedFileCache.MappedFile changed = cache.get("a", file, 4);
+        Assert.assertFalse(mapped.isMapped());
+        Assert.assertEquals("0123", read(changed.slice(0, 3)));
+        changed.dereference();
+        Assert.assertEquals(4, cache.getMappedBytes());
+        //and a length that does not match the file is not mapped at all
+        cache.remove("a");
+        Assert.assertNull(cache.get("a", file, 10));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(ByteBuf buffer) {
+        try {
+            return buffer.toString(StandardCharsets.UTF_8);
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.undertow.Handlers;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.server.handlers.PathHandler;
+import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.ResourceHandler;
+import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.TestHttpClient;
+
+@RunWith(DefaultServer.class)
+public class ContentEncodedResourceTestCase {
+
+    private static final String MESSAGE;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; ++i) {
+            sb.append("This is line ").append(i).append(" of the file\n");
+        }
+        MESSAGE = sb.toString();
+    }
+
+    private static Path dir;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        dir = Files.createTempDirectory("undertow-encoding");
+        Files.write(dir.resolve("file.txt"), MESSAGE.getBytes(StandardCharsets.UTF_8));
+        ContentEncodingRepository repository = new ContentEncodingRepository()
+                .addEncodingHandler("gzip", new GzipEncodingProvider(), 100);
+        PathHandler path = Handlers.path();
+        path.addPrefixPath("/cached", new ResourceHandler(new PathResourceManager(dir, 10485760))
+                .setContentEncodedResourceManager(new ContentEncodedResourceManager(repository, new DirectBufferCache(1000, 10, 100000), 100000, -1, null)));
+        path.addPrefixPath("/uncached", new ResourceHandler(new PathResourceManager(dir, 10485760))
+                .setContentEncodedResourceManager(new ContentEncodedResourceManager(repository, null, 100000, -1, null)));
+        DefaultServer.setRootHandler(path);
+    }
+
+    @AfterClass
+    public static void cleanup() throws IOException {
+        Files.deleteIfExists(dir.resolve("file.txt"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testEncodedVariantIsCached() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            boolean fromCache = false;
+            for (int i = 0; i < 20; ++i) {
+                HttpResponse result = get(client, "/cached/file.txt", "gzip");
+                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                Assert.assertEquals("gzip", result.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING).getValue());
+                Assert.assertEquals(HttpHeaderNames.ACCEPT_ENCODING, result.getFirstHeader(HttpHeaderNames.VARY).getValue());
+                Assert.assertNull(result.getFirstHeader(HttpHeaderNames.ACCEPT_RANGES));
+                //the encoded length is only known up front once the variant is in the cache
+                fromCache = result.getFirstHeader(HttpHeaderNames.CONTENT_LENGTH) != null;
+                byte[] body = HttpClientUtils.readRawResponse(result);
+                Assert.assertEquals(MESSAGE, HttpClientUtils.readResponse(new GZIPInputStream(new ByteArrayInputStream(body))));
+            }
+            Assert.assertTrue(fromCache);
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testEncodedOnTheFly() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            for (int i = 0; i < 3; ++i) {
+                HttpResponse result = get(client, "/uncached/file.txt", "gzip");
+                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                Assert.assertEquals("gzip", result.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING).getValue());
+                byte[] body = HttpClientUtils.readRawResponse(result);
+                Assert.assertEquals(MESSAGE, HttpClientUtils.readResponse(new GZIPInputStream(new ByteArrayInputStream(body))));
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testUnencodedRequests() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            HttpResponse result = get(client, "/cached/file.txt", null);
+            Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+            Assert.assertNull(result.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING));
+            Assert.assertEquals(MESSAGE, HttpClientUtils.readResponse(result));
+
+            HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/cached/file.txt");
+            get.addHeader(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+            get.addHeader(HttpHeaderNames.RANGE, "bytes=0-9");
+            result = client.execute(get);
+            Assert.assertEquals(StatusCodes.PARTIAL_CONTENT, result.getStatusLine().getStatusCode());
+            Assert.assertNull(result.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING));
+            Assert.assertEquals(MESSAGE.substring(0, 10), HttpClientUtils.readResponse(result));
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    private static HttpResponse get(TestHttpClient client, String path, String acceptEncoding) throws IOException {
+        HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+        if (acceptEncoding != null) {
+            get.addHeader(HttpHeaderNames.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return client.execute(get);
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.server.handlers.encoding;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.undertow.Handlers;
+import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.StatusCodes;
+import io.undertow.predicate.Predicates;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.server.handlers.ByteRangeHandler;
+import io.undertow.server.handlers.PathHandler;
+import io.undertow.testutils.DefaultServer;
+import io.undertow.testutils.HttpClientUtils;
+import io.undertow.testutils.TestHttpClient;
+
+@RunWith(DefaultServer.class)
+public class EncodingHandlerTestCase {
+
+    private static final String MESSAGE;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; ++i) {
+            sb.append("This is line ").append(i).append(" of the message\n");
+        }
+        MESSAGE = sb.toString();
+    }
+
+    @BeforeClass
+    public static void setup() {
+        ContentEncodingRepository repository = new ContentEncodingRepository()
+                .addEncodingHandler("gzip", new GzipEncodingProvider(), 100)
+                .addEncodingHandler("deflate", new DeflateEncodingProvider(), 50);
+        HttpHandler single = new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.setResponseContentLength(MESSAGE.length());
+                exchange.writeAsync(MESSAGE);
+            }
+        };
+        PathHandler path = Handlers.path();
+        path.addPrefixPath("/single", single);
+        path.addPrefixPath("/stream", new BlockingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                byte[] data = MESSAGE.getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < data.length; i += 1000) {
+                    exchange.getOutputStream().write(data, i, Math.min(1000, data.length - i));
+                    exchange.getOutputStream().flush();
+                }
+            }
+        }));
+        path.addPrefixPath("/empty", new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.endExchange();
+            }
+        });
+        path.addPrefixPath("/range", new ByteRangeHandler(single, true));
+        PathHandler root = Handlers.path(new EncodingHandler(path, repository));
+        root.addPrefixPath("/small", new EncodingHandler(new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                exchange.setResponseContentLength(5);
+                exchange.writeAsync("small");
+            }
+        }, new ContentEncodingRepository().addEncodingHandler("gzip", new GzipEncodingProvider(), 100, Predicates.maxContentSize(100))));
+        DefaultServer.setRootHandler(root);
+    }
+
+    @Test
+    public void testGzipEncoding() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            for (String path : new String[]{"/single", "/stream"}) {
+                HttpResponse result = get(client, path, "gzip");
+                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                Assert.assertEquals("gzip", result.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING).getValue());
+                Assert.assertEquals(HttpHeaderNames.ACCEPT_ENCODING, result.getFirstHeader(HttpHeaderNames.VARY).getValue());
+                byte[] body = HttpClientUtils.readRawResponse(result);
+                Assert.assertTrue(body.length < MESSAGE.length());
+                Assert.assertEquals(MESSAGE, decode(new GZIPInputStream(new ByteArrayInputStream(body))));
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testDeflateEncoding() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            for (String path : new String[]{"/single", "/stream"}) {
+                HttpResponse result = get(client, path, "deflate");
+                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                Assert.assertEquals("deflate", result.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING).getValue());
+                byte[] body = HttpClientUtils.readRawResponse(result);
+                Assert.assertEquals(MESSAGE, decode(new InflaterInputStream(new ByteArrayInputStream(body))));
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testNegotiation() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            //same q value, so the priority decides
+            Assert.assertEquals("gzip", encoding(get(client, "/single", "deflate, gzip")));
+            Assert.assertEquals("deflate", encoding(get(client, "/single", "gzip;q=0.5, deflate")));
+            Assert.assertEquals("deflate", encoding(get(client, "/single", "*, gzip;q=0")));
+            Assert.assertEquals("gzip", encoding(get(client, "/single", "*")));
+            Assert.assertNull(encoding(get(client, "/single", "identity, gzip;q=0.5")));
+            Assert.assertNull(encoding(get(client, "/single", "br")));
+            Assert.assertNull(encoding(get(client, "/single", null)));
+
+            HttpResponse result = get(client, "/single", "br, identity;q=0");
+            Assert.assertEquals(StatusCodes.NOT_ACCEPTABLE, result.getStatusLine().getStatusCode());
+            HttpClientUtils.readResponse(result);
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testUnencodedResponses() throws IOException {
+        TestHttpClient client = new TestHttpClient();
+        try {
+            HttpResponse result = get(client, "/empty", "gzip");
+            Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+            Assert.assertEquals("gzip", result.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING).getValue());
+            Assert.assertEquals("", decode(new GZIPInputStream(new ByteArrayInputStream(HttpClientUtils.readRawResponse(result)))));
+
+            result = get(client, "/small", "gzip");
+            Assert.assertNull(result.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING));
+            Assert.assertEquals("small", HttpClientUtils.readResponse(result));
+
+            HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/range");
+            get.addHeader(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+            get.addHeader(HttpHeaderNames.RANGE, "bytes=0-9");
+            result = client.execute(get);
+            Assert.assertEquals(StatusCodes.PARTIAL_CONTENT, result.getStatusLine().getStatusCode());
+            Assert.assertNull(result.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING));
+            Assert.assertEquals(MESSAGE.substring(0, 10), HttpClientUtils.readResponse(result));
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    private static String encoding(HttpResponse response) throws IOException {
+        HttpClientUtils.readRawResponse(response);
+        return response.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING) == null ? null : response.getFirstHeader(HttpHeaderNames.CONTENT_ENCODING).getValue();
+    }
+
+    private static HttpResponse get(TestHttpClient client, String path, String acceptEncoding) throws IOException {
+        HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + path);
+        if (acceptEncoding != null) {
+            get.addHeader(HttpHeaderNames.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return client.execute(get);
+    }
+
+    private static String decode(InputStream in) throws IOException {
+        return HttpClientUtils.readResponse(in);
+    }
+}
@@ -37,9 +37,14 @@ import org.junit.runner.RunWith;
 
 import io.undertow.Undertow;
 import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.BlockingHandler;
 import io.undertow.server.handlers.CanonicalPathHandler;
 import io.undertow.server.handlers.PathHandler;
+import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.resource.CachingResourceManager;
 import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.Resource;
 import io.undertow.server.handlers.resource.ResourceHandler;
 import io.undertow.testutils.DefaultServer;
 import io.undertow.testutils.HttpClientUtils;
@@ -207,6 +212,34 @@ public class FileHandlerTestCase {
         }
     }
 
+    @Test
+    public void testCachedFileServedBlocking() throws IOException, URISyntaxException {
+        TestHttpClient client = new TestHttpClient();
+        Path file = Paths.get(getClass().getResource("page.html").toURI());
+        final String expected = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        //small slices, so the cached resource is spread over several buffers
+        final CachingResourceManager resourceManager = new CachingResourceManager(100, 10000, new DirectBufferCache(16, 10, 10000), new PathResourceManager(file.getParent(), 10485760), -1);
+        try {
+            DefaultServer.setRootHandler(new BlockingHandler(new HttpHandler() {
+                @Override
+                public void handleRequest(HttpServerExchange exchange) throws Exception {
+                    Resource resource = resourceManager.getResource("page.html");
+                    exchange.setResponseContentLength(resource.getContentLength());
+                    resource.serveBlocking(exchange.getOutputStream(), exchange);
+                }
+            }));
+            //the first few requests populate the cache, the rest are served from it
+            for (int i = 0; i < 20; ++i) {
+                HttpGet get = new HttpGet(DefaultServer.getDefaultServerURL() + "/page.html");
+                HttpResponse result = client.execute(get);
+                Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+                Assert.assertEquals(expected, HttpClientUtils.readResponse(result));
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
     /*
     Starts simple file server, it is useful for testing directory browsing
      */
@@ -1,17 +1,30 @@
 package io.undertow.server.handlers.file;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.junit.Assert;
 import org.junit.Assume;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.resource.CachingResourceManager;
 import io.undertow.server.handlers.resource.PathResourceManager;
 import io.undertow.server.handlers.resource.Resource;
+import io.undertow.server.handlers.resource.ResourceChangeEvent;
+import io.undertow.server.handlers.resource.ResourceChangeListener;
 import io.undertow.server.handlers.resource.ResourceManager;
 import io.undertow.testutils.category.UnitTest;
 import io.undertow.util.ETag;
@@ -101,4 +114,113 @@ public class PathResourceManagerTestCase {
         ETag actual = resourceManager.getResource("page.html").getETag();
         Assert.assertEquals(expected, actual);
     }
+
+    @Test
+    public void testResourceChangeListener() throws Exception {
+        final Path rootPath = Files.createTempDirectory("undertow-watch");
+        final PathResourceManager resourceManager = new PathResourceManager(rootPath, 1024 * 1024);
+        final LinkedBlockingQueue<ResourceChangeEvent> events = new LinkedBlockingQueue<>();
+        try {
+            Assert.assertTrue(resourceManager.isResourceChangeListenerSupported());
+            resourceManager.registerResourceChangeListener(new ResourceChangeListener() {
+                @Override
+                public void handleChanges(Collection<ResourceChangeEvent> changes) {
+                    events.addAll(changes);
+                }
+            });
+            final Path file = rootPath.resolve("file.txt");
+            Files.write(file, "one".getBytes(StandardCharsets.UTF_8));
+            awaitEvent(events, "file.txt", ResourceChangeEvent.Type.ADDED);
+
+            Files.write(file, "two".getBytes(StandardCharsets.UTF_8));
+            awaitEvent(events, "file.txt", ResourceChangeEvent.Type.MODIFIED);
+
+            //files in a new directory are seen, as is everything under it once it is watched
+            final Path dir = rootPath.resolve("dir");
+            Files.createDirectories(dir.resolve("nested"));
+            Files.write(dir.resolve("nested/a.txt"), "a".getBytes(StandardCharsets.UTF_8));
+            awaitEvent(events, "dir/nested/a.txt", ResourceChangeEvent.Type.ADDED);
+            Files.write(dir.resolve("nested/a.txt"), "b".getBytes(StandardCharsets.UTF_8));
+            awaitEvent(events, "dir/nested/a.txt", ResourceChangeEvent.Type.MODIFIED);
+
+            Files.delete(file);
+            awaitEvent(events, "file.txt", ResourceChangeEvent.Type.REMOVED);
+
+            //nothing is known about the files under a directory that is moved away
+            Files.move(dir, rootPath.resolve("moved"));
+            awaitEvent(events, "dir", ResourceChangeEvent.Type.OVERFLOW);
+
+            resourceManager.close();
+            events.clear();
+            Files.write(rootPath.resolve("after-close.txt"), "a".getBytes(StandardCharsets.UTF_8));
+            Assert.assertNull(events.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            resourceManager.close();
+            delete(rootPath);
+        }
+    }
+
+    @Test
+    public void testCachedResourcesInvalidatedWhenChanged() throws Exception {
+        final Path rootPath = Files.createTempDirectory("undertow-watch");
+        //no max age, so cached resources are only ever updated when a change is seen
+        final CachingResourceManager resourceManager = new CachingResourceManager(100, 10000, new DirectBufferCache(16, 10, 10000), new PathResourceManager(rootPath, 1024 * 1024), -1);
+        try {
+            Assert.assertNull(resourceManager.getResource("file.txt"));
+            final Path file = rootPath.resolve("file.txt");
+            Files.write(file, "one".getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(Long.valueOf(3), awaitResource(resourceManager, "file.txt", 3).getContentLength());
+
+            Files.write(file, "three".getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(Long.valueOf(5), awaitResource(resourceManager, "file.txt", 5).getContentLength());
+
+            Files.delete(file);
+            final long end = System.currentTimeMillis() + 10000;
+            while (resourceManager.getResource("file.txt") != null) {
+                Assert.assertTrue("Cached resource was not removed", System.currentTimeMillis() < end);
+                Thread.sleep(10);
+            }
+        } finally {
+            resourceManager.close();
+            delete(rootPath);
+        }
+    }
+
+    private static void awaitEvent(LinkedBlockingQueue<ResourceChangeEvent> events, String resource, ResourceChangeEvent.Type type) throws InterruptedException {
+        final Map<String, ResourceChangeEvent.Type> seen = new HashMap<>();
+        final long end = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < end) {
+            final ResourceChangeEvent event = events.poll(100, TimeUnit.MILLISECONDS);
+            if (event != null) {
+                seen.put(event.getResource(), event.getType());
+                if (event.getResource().equals(resource) && event.getType() == type) {
+                    return;
+                }
+            }
+        }
+        Assert.fail("Did not see " + type + " " + resource + ", saw " + seen);
+    }
+
+    private static Resource awaitResource(ResourceManager resourceManager, String path, long length) throws Exception {
+        final long end = System.currentTimeMillis() + 10000;
+        for (;;) {
+            final Resource resource = resourceManager.getResource(path);
+            if (resource != null && resource.getContentLength() == length) {
+                return resource;
+            }
+            Assert.assertTrue("Cached resource was not updated", System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void delete(Path root) throws Exception {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(new Consumer<Path>() {
+                @Override
+                public void accept(Path path) {
+                    path.toFile().delete();
+                }
+            });
+        }
+    }
 }
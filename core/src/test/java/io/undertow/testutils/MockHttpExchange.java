@@ -28,6 +28,7 @@ public class MockHttpExchange extends HttpExchangeBase {
 
     private final Map<String, String> requestHeaders = new HashMap<>();
     private final Map<String, String> responseHeaders = new HashMap<>();
+    private UndertowOptionMap undertowOptions = UndertowOptionMap.EMPTY;
 
     @Override
     public BufferAllocator getBufferAllocator() {
@@ -206,12 +207,12 @@ public class MockHttpExchange extends HttpExchangeBase {
 
     @Override
     public UndertowOptionMap getUndertowOptions() {
-        return null;
+        return undertowOptions;
     }
 
     @Override
     public void setUndertowOptions(UndertowOptionMap options) {
-
+        this.undertowOptions = options;
     }
 
     @Override
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.util;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.testutils.MockHttpExchange;
+import io.undertow.testutils.category.UnitTest;
+
+/**
+ * Unit tests for {@link QueryParameters}.
+ */
+@Category(UnitTest.class)
+public class CompactQueryParametersTestCase {
+
+    private static final String[] QUERY_STRINGS = {
+            "",
+            "a=b",
+            "a=b&c=d&a=e",
+            "flag",
+            "a=&b",
+            "a=b=c",
+            "&&a=1&",
+            "=",
+            "=x&y=",
+            "q=under%20tow&na%6De=v+alue&%C3%A9t%C3%A9=summer",
+    };
+
+    @Test
+    public void testSameParametersAsParser() throws ParameterLimitException {
+        for (String queryString : QUERY_STRINGS) {
+            for (boolean decode : new boolean[]{true, false}) {
+                HttpServerExchange exchange = new HttpServerExchange(new MockHttpExchange(), -1);
+                URLUtils.parseQueryString(queryString, exchange, "UTF-8", decode, 1000);
+                Map<String, Deque<String>> expected = exchange.getQueryParameters();
+
+                QueryParameters parameters = new QueryParameters(queryString, "UTF-8", decode);
+                Map<String, Deque<String>> actual = new TreeMap<>();
+                parameters.addTo(actual);
+                Assert.assertEquals(queryString, toLists(expected), toLists(actual));
+                Assert.assertEquals(queryString, QueryParameters.count(queryString), parameters.size());
+                for (Map.Entry<String, Deque<String>> entry : expected.entrySet()) {
+                    Assert.assertEquals(queryString, entry.getValue().getFirst(), new QueryParameters(queryString, "UTF-8", decode).getFirst(entry.getKey()));
+                    Assert.assertEquals(queryString, new ArrayList<>(entry.getValue()), new ArrayList<>(parameters.get(entry.getKey())));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLookup() {
+        QueryParameters parameters = new QueryParameters("q=under%20tow&na%6De=v+alue&page=1&page=2&flag", "UTF-8", true);
+        Assert.assertEquals("under tow", parameters.getFirst("q"));
+        Assert.assertEquals("v alue", parameters.getFirst("name"));
+        Assert.assertEquals("1", parameters.getFirst("page"));
+        Assert.assertEquals(2, parameters.get("page").size());
+        Assert.assertEquals("", parameters.getFirst("flag"));
+        Assert.assertNull(parameters.getFirst("missing"));
+        Assert.assertNull(parameters.get("missing"));
+        Assert.assertNull(parameters.getFirst("na%6De"));
+        Assert.assertNull(parameters.getFirst("pag"));
+
+        QueryParameters raw = new QueryParameters("na%6De=v+alue", "UTF-8", false);
+        Assert.assertEquals("v+alue", raw.getFirst("na%6De"));
+        Assert.assertNull(raw.getFirst("name"));
+    }
+
+    @Test
+    public void testExchangeLookup() {
+        HttpServerExchange exchange = new HttpServerExchange(new MockHttpExchange(), -1);
+        Assert.assertNull(exchange.getQueryParameter("a"));
+        exchange.addQueryParam("a", "1");
+        Assert.assertEquals("1", exchange.getQueryParameter("a"));
+        exchange.getQueryParameters().remove("a");
+        Assert.assertNull(exchange.getQueryParameter("a"));
+    }
+
+    private static Map<String, ArrayList<String>> toLists(Map<String, Deque<String>> map) {
+        Map<String, ArrayList<String>> ret = new TreeMap<>();
+        for (Map.Entry<String, Deque<String>> entry : map.entrySet()) {
+            ret.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return ret;
+    }
+}
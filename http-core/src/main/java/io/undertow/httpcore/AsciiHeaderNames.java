@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.httpcore;
+
+import io.netty.util.AsciiString;
+
+/**
+ * The header names from {@link HttpHeaderNames} as cached {@link AsciiString} instances.
+ * <p>
+ * An {@link AsciiString} caches its hash code and compares case insensitively without allocating, so looking up a
+ * header with one of these constants is cheaper than looking it up with a {@link String}, which has to be hashed and
+ * compared again on every lookup.
+ */
+public interface AsciiHeaderNames {
+
+    AsciiString ACCEPT = AsciiString.cached(HttpHeaderNames.ACCEPT);
+    AsciiString ACCEPT_CHARSET = AsciiString.cached(HttpHeaderNames.ACCEPT_CHARSET);
+    AsciiString ACCEPT_ENCODING = AsciiString.cached(HttpHeaderNames.ACCEPT_ENCODING);
+    AsciiString ACCEPT_LANGUAGE = AsciiString.cached(HttpHeaderNames.ACCEPT_LANGUAGE);
+    AsciiString ACCEPT_RANGES = AsciiString.cached(HttpHeaderNames.ACCEPT_RANGES);
+    AsciiString AGE = AsciiString.cached(HttpHeaderNames.AGE);
+    AsciiString ALLOW = AsciiString.cached(HttpHeaderNames.ALLOW);
+    AsciiString AUTHENTICATION_INFO = AsciiString.cached(HttpHeaderNames.AUTHENTICATION_INFO);
+    AsciiString AUTHORIZATION = AsciiString.cached(HttpHeaderNames.AUTHORIZATION);
+    AsciiString CACHE_CONTROL = AsciiString.cached(HttpHeaderNames.CACHE_CONTROL);
+    AsciiString COOKIE = AsciiString.cached(HttpHeaderNames.COOKIE);
+    AsciiString COOKIE2 = AsciiString.cached(HttpHeaderNames.COOKIE2);
+    AsciiString CONNECTION = AsciiString.cached(HttpHeaderNames.CONNECTION);
+    AsciiString CONTENT_DISPOSITION = AsciiString.cached(HttpHeaderNames.CONTENT_DISPOSITION);
+    AsciiString CONTENT_ENCODING = AsciiString.cached(HttpHeaderNames.CONTENT_ENCODING);
+    AsciiString CONTENT_LANGUAGE = AsciiString.cached(HttpHeaderNames.CONTENT_LANGUAGE);
+    AsciiString CONTENT_LENGTH = AsciiString.cached(HttpHeaderNames.CONTENT_LENGTH);
+    AsciiString CONTENT_LOCATION = AsciiString.cached(HttpHeaderNames.CONTENT_LOCATION);
+    AsciiString CONTENT_MD5 = AsciiString.cached(HttpHeaderNames.CONTENT_MD5);
+    AsciiString CONTENT_RANGE = AsciiString.cached(HttpHeaderNames.CONTENT_RANGE);
+    AsciiString CONTENT_SECURITY_POLICY = AsciiString.cached(HttpHeaderNames.CONTENT_SECURITY_POLICY);
+    AsciiString CONTENT_TYPE = AsciiString.cached(HttpHeaderNames.CONTENT_TYPE);
+    AsciiString DATE = AsciiString.cached(HttpHeaderNames.DATE);
+    AsciiString ETAG = AsciiString.cached(HttpHeaderNames.ETAG);
+    AsciiString EXPECT = AsciiString.cached(HttpHeaderNames.EXPECT);
+    AsciiString EXPIRES = AsciiString.cached(HttpHeaderNames.EXPIRES);
+    AsciiString FORWARDED = AsciiString.cached(HttpHeaderNames.FORWARDED);
+    AsciiString FROM = AsciiString.cached(HttpHeaderNames.FROM);
+    AsciiString HOST = AsciiString.cached(HttpHeaderNames.HOST);
+    AsciiString IF_MATCH = AsciiString.cached(HttpHeaderNames.IF_MATCH);
+    AsciiString IF_MODIFIED_SINCE = AsciiString.cached(HttpHeaderNames.IF_MODIFIED_SINCE);
+    AsciiString IF_NONE_MATCH = AsciiString.cached(HttpHeaderNames.IF_NONE_MATCH);
+    AsciiString IF_RANGE = AsciiString.cached(HttpHeaderNames.IF_RANGE);
+    AsciiString IF_UNMODIFIED_SINCE = AsciiString.cached(HttpHeaderNames.IF_UNMODIFIED_SINCE);
+    AsciiString LAST_MODIFIED = AsciiString.cached(HttpHeaderNames.LAST_MODIFIED);
+    AsciiString LOCATION = AsciiString.cached(HttpHeaderNames.LOCATION);
+    AsciiString MAX_FORWARDS = AsciiString.cached(HttpHeaderNames.MAX_FORWARDS);
+    AsciiString ORIGIN = AsciiString.cached(HttpHeaderNames.ORIGIN);
+    AsciiString PRAGMA = AsciiString.cached(HttpHeaderNames.PRAGMA);
+    AsciiString PROXY_AUTHENTICATE = AsciiString.cached(HttpHeaderNames.PROXY_AUTHENTICATE);
+    AsciiString PROXY_AUTHORIZATION = AsciiString.cached(HttpHeaderNames.PROXY_AUTHORIZATION);
+    AsciiString RANGE = AsciiString.cached(HttpHeaderNames.RANGE);
+    AsciiString REFERER = AsciiString.cached(HttpHeaderNames.REFERER);
+    AsciiString REFERRER_POLICY = AsciiString.cached(HttpHeaderNames.REFERRER_POLICY);
+    AsciiString REFRESH = AsciiString.cached(HttpHeaderNames.REFRESH);
+    AsciiString RETRY_AFTER = AsciiString.cached(HttpHeaderNames.RETRY_AFTER);
+    AsciiString SEC_WEB_SOCKET_ACCEPT = AsciiString.cached(HttpHeaderNames.SEC_WEB_SOCKET_ACCEPT);
+    AsciiString SEC_WEB_SOCKET_EXTENSIONS = AsciiString.cached(HttpHeaderNames.SEC_WEB_SOCKET_EXTENSIONS);
+    AsciiString SEC_WEB_SOCKET_KEY = AsciiString.cached(HttpHeaderNames.SEC_WEB_SOCKET_KEY);
+    AsciiString SEC_WEB_SOCKET_KEY1 = AsciiString.cached(HttpHeaderNames.SEC_WEB_SOCKET_KEY1);
+    AsciiString SEC_WEB_SOCKET_KEY2 = AsciiString.cached(HttpHeaderNames.SEC_WEB_SOCKET_KEY2);
+    AsciiString SEC_WEB_SOCKET_LOCATION = AsciiString.cached(HttpHeaderNames.SEC_WEB_SOCKET_LOCATION);
+    AsciiString SEC_WEB_SOCKET_ORIGIN = AsciiString.cached(HttpHeaderNames.SEC_WEB_SOCKET_ORIGIN);
+    AsciiString SEC_WEB_SOCKET_PROTOCOL = AsciiString.cached(HttpHeaderNames.SEC_WEB_SOCKET_PROTOCOL);
+    AsciiString SEC_WEB_SOCKET_VERSION = AsciiString.cached(HttpHeaderNames.SEC_WEB_SOCKET_VERSION);
+    AsciiString SERVER = AsciiString.cached(HttpHeaderNames.SERVER);
+    AsciiString SERVLET_ENGINE = AsciiString.cached(HttpHeaderNames.SERVLET_ENGINE);
+    AsciiString SET_COOKIE = AsciiString.cached(HttpHeaderNames.SET_COOKIE);
+    AsciiString SET_COOKIE2 = AsciiString.cached(HttpHeaderNames.SET_COOKIE2);
+    AsciiString SSL_CLIENT_CERT = AsciiString.cached(HttpHeaderNames.SSL_CLIENT_CERT);
+    AsciiString SSL_CIPHER = AsciiString.cached(HttpHeaderNames.SSL_CIPHER);
+    AsciiString SSL_SESSION_ID = AsciiString.cached(HttpHeaderNames.SSL_SESSION_ID);
+    AsciiString SSL_CIPHER_USEKEYSIZE = AsciiString.cached(HttpHeaderNames.SSL_CIPHER_USEKEYSIZE);
+    AsciiString STATUS = AsciiString.cached(HttpHeaderNames.STATUS);
+    AsciiString STRICT_TRANSPORT_SECURITY = AsciiString.cached(HttpHeaderNames.STRICT_TRANSPORT_SECURITY);
+    AsciiString TE = AsciiString.cached(HttpHeaderNames.TE);
+    AsciiString TRAILER = AsciiString.cached(HttpHeaderNames.TRAILER);
+    AsciiString TRANSFER_ENCODING = AsciiString.cached(HttpHeaderNames.TRANSFER_ENCODING);
+    AsciiString UPGRADE = AsciiString.cached(HttpHeaderNames.UPGRADE);
+    AsciiString USER_AGENT = AsciiString.cached(HttpHeaderNames.USER_AGENT);
+    AsciiString VARY = AsciiString.cached(HttpHeaderNames.VARY);
+    AsciiString VIA = AsciiString.cached(HttpHeaderNames.VIA);
+    AsciiString WARNING = AsciiString.cached(HttpHeaderNames.WARNING);
+    AsciiString WWW_AUTHENTICATE = AsciiString.cached(HttpHeaderNames.WWW_AUTHENTICATE);
+    AsciiString X_CONTENT_TYPE_OPTIONS = AsciiString.cached(HttpHeaderNames.X_CONTENT_TYPE_OPTIONS);
+    AsciiString X_DISABLE_PUSH = AsciiString.cached(HttpHeaderNames.X_DISABLE_PUSH);
+    AsciiString X_FORWARDED_FOR = AsciiString.cached(HttpHeaderNames.X_FORWARDED_FOR);
+    AsciiString X_FORWARDED_PROTO = AsciiString.cached(HttpHeaderNames.X_FORWARDED_PROTO);
+    AsciiString X_FORWARDED_HOST = AsciiString.cached(HttpHeaderNames.X_FORWARDED_HOST);
+    AsciiString X_FORWARDED_PORT = AsciiString.cached(HttpHeaderNames.X_FORWARDED_PORT);
+    AsciiString X_FORWARDED_SERVER = AsciiString.cached(HttpHeaderNames.X_FORWARDED_SERVER);
+    AsciiString X_FRAME_OPTIONS = AsciiString.cached(HttpHeaderNames.X_FRAME_OPTIONS);
+    AsciiString X_XSS_PROTECTION = AsciiString.cached(HttpHeaderNames.X_XSS_PROTECTION);
+    AsciiString CONTENT_TRANSFER_ENCODING = AsciiString.cached(HttpHeaderNames.CONTENT_TRANSFER_ENCODING);
+}
@@ -0,0 +1,41 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.undertow.httpcore;
+
+import java.io.IOException;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Represents an output stream that can write byte buffers directly.
+ * <p>
+ * This allows data that is already held in a buffer to be handed to the underlying channel without first being
+ * copied into the stream's own buffer.
+ */
+public interface BufferWritableOutputStream {
+
+    /**
+     * Writes the given buffer. Any data buffered by the stream is written first.
+     * <p>
+     * The stream takes ownership of the buffer, and will release it once it has been written (possibly after this
+     * method has returned), even if the write fails. As with the other write methods, if a content length was set
+     * the stream is closed once the full content length has been written.
+     *
+     * @param data The data to write
+     * @throws IOException If the write fails
+     */
+    void write(ByteBuf data) throws IOException;
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.undertow.httpcore;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jboss.logging.Logger;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Fallback used by {@link OutputChannel#writeFileAsync(Path, long, long, IoCallback, Object)} when the
+ * file region cannot be handed directly to the connection.
+ * <p>
+ * The region is read using positional reads, one buffer at a time, and each buffer is written
+ * asynchronously. The next read is only performed once the previous write has completed, so at most
+ * one buffer is in flight at any time.
+ */
+final class ChunkedFileWriter<T> implements IoCallback<Object> {
+
+    private static final Logger log = Logger.getLogger(ChunkedFileWriter.class);
+
+    private final HttpExchangeBase exchange;
+    private final Path file;
+    private final IoCallback<T> callback;
+    private final T context;
+    private FileChannel channel;
+    private long position;
+    private long remaining;
+
+    ChunkedFileWriter(HttpExchangeBase exchange, Path file, long position, long count, IoCallback<T> callback, T context) {
+        this.exchange = exchange;
+        this.file = file;
+        this.position = position;
+        this.remaining = count;
+        this.callback = callback;
+        this.context = context;
+    }
+
+    void start() {
+        if (remaining <= 0) {
+            exchange.writeAsync(null, true, callback, context);
+            return;
+        }
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            callback.onException(exchange, context, e);
+            return;
+        }
+        writeNext();
+    }
+
+    private void writeNext() {
+        ByteBuf buffer = exchange.getBufferAllocator().allocateBuffer();
+        try {
+            int toRead = (int) Math.min(buffer.writableBytes(), remaining);
+            while (toRead > 0) {
+                int res = buffer.writeBytes(channel, position, toRead);
+                if (res == -1) {
+                    throw new EOFException("Unexpected end of file " + file);
+                }
+                position += res;
+                remaining -= res;
+                toRead -= res;
+            }
+        } catch (IOException e) {
+            buffer.release();
+            closeFile();
+            callback.onException(exchange, context, e);
+            return;
+        }
+        exchange.writeAsync(buffer, remaining == 0, this, null);
+    }
+
+    @Override
+    public void onComplete(HttpExchange ex, Object ignored) {
+        if (remaining > 0) {
+            writeNext();
+        } else {
+            closeFile();
+            callback.onComplete(exchange, context);
+        }
+    }
+
+    @Override
+    public void onException(HttpExchange ex, Object ignored, IOException exception) {
+        closeFile();
+        callback.onException(exchange, context, exception);
+    }
+
+    private void closeFile() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debugf(e, "Failed to close file %s", file);
+            }
+            channel = null;
+        }
+    }
+}
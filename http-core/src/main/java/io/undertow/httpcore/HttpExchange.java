@@ -60,6 +60,60 @@ public interface HttpExchange extends Closeable {
      */
     String getResponseHeader(String name);
 
+    /*
+     * CharSequence overloads of the header methods. These are intended to be used with the AsciiHeaderNames constants,
+     * which implementations can look up without hashing and comparing the name again. The default implementations
+     * just convert the name to a String.
+     */
+
+    default String getRequestHeader(CharSequence name) {
+        return getRequestHeader(name.toString());
+    }
+
+    default List<String> getRequestHeaders(CharSequence name) {
+        return getRequestHeaders(name.toString());
+    }
+
+    default boolean containsRequestHeader(CharSequence name) {
+        return containsRequestHeader(name.toString());
+    }
+
+    default void removeRequestHeader(CharSequence name) {
+        removeRequestHeader(name.toString());
+    }
+
+    default void setRequestHeader(CharSequence name, String value) {
+        setRequestHeader(name.toString(), value);
+    }
+
+    default void addRequestHeader(CharSequence name, String value) {
+        addRequestHeader(name.toString(), value);
+    }
+
+    default String getResponseHeader(CharSequence name) {
+        return getResponseHeader(name.toString());
+    }
+
+    default List<String> getResponseHeaders(CharSequence name) {
+        return getResponseHeaders(name.toString());
+    }
+
+    default boolean containsResponseHeader(CharSequence name) {
+        return containsResponseHeader(name.toString());
+    }
+
+    default void removeResponseHeader(CharSequence name) {
+        removeResponseHeader(name.toString());
+    }
+
+    default void setResponseHeader(CharSequence name, String value) {
+        setResponseHeader(name.toString(), value);
+    }
+
+    default void addResponseHeader(CharSequence name, String value) {
+        addResponseHeader(name.toString(), value);
+    }
+
     void setCompletedListener(CompletedListener listener);
     void setPreCommitListener(PreCommitListener listener);
 
@@ -67,7 +121,7 @@ public interface HttpExchange extends Closeable {
      * @return The content length of the request, or <code>-1</code> if it has not been set
      */
     default long getRequestContentLength() {
-        String contentLengthString = getRequestHeader(HttpHeaderNames.CONTENT_LENGTH);
+        String contentLengthString = getRequestHeader(AsciiHeaderNames.CONTENT_LENGTH);
         if (contentLengthString == null) {
             return -1;
         }
@@ -78,7 +132,7 @@ public interface HttpExchange extends Closeable {
      * @return The content length of the response, or <code>-1</code> if it has not been set
      */
     default long getResponseContentLength() {
-        String contentLengthString = getResponseHeader(HttpHeaderNames.CONTENT_LENGTH);
+        String contentLengthString = getResponseHeader(AsciiHeaderNames.CONTENT_LENGTH);
         if (contentLengthString == null) {
             return -1;
         }
@@ -126,6 +180,15 @@ public interface HttpExchange extends Closeable {
 
     void addWriteFunction(WriteFunction listener);
 
+    /**
+     * Sets the throttle that limits the rate at which the response body is written. Exchanges that do not support
+     * throttling ignore this, and always write at full speed.
+     *
+     * @param throttle The throttle, or <code>null</code> to write at full speed
+     */
+    default void setWriteThrottle(WriteThrottle throttle) {
+    }
+
     OutputChannel getOutputChannel();
 
     InputChannel getInputChannel();
@@ -136,11 +199,54 @@ public interface HttpExchange extends Closeable {
 
     void setBlockingHttpExchange(BlockingHttpExchange exchange);
 
+    /**
+     * Sets the sizes of earlier similar responses, which is used to size the buffer of the blocking output stream.
+     * This must be called before the output stream is first written to.
+     *
+     * @param hint The hint, or <code>null</code> to always start with a full size buffer
+     */
+    default void setResponseSizeHint(ResponseSizeHint hint) {
+    }
+
+    /**
+     * @return The response size hint, or <code>null</code> if there is none
+     */
+    default ResponseSizeHint getResponseSizeHint() {
+        return null;
+    }
+
 
     InetSocketAddress getDestinationAddress();
 
     InetSocketAddress getSourceAddress();
 
+    /**
+     * Gets the IP address of the peer in network byte order, as returned by {@link java.net.InetAddress#getAddress()}.
+     * Implementations may return a shared array, so it must not be modified.
+     *
+     * @return The address bytes, or <code>null</code> if the peer does not have an IP address
+     */
+    default byte[] getSourceAddressBytes() {
+        return addressBytes(getSourceAddress());
+    }
+
+    /**
+     * Gets the IP address the request was sent to in network byte order. Implementations may return a shared array,
+     * so it must not be modified.
+     *
+     * @return The address bytes, or <code>null</code> if the destination does not have an IP address
+     */
+    default byte[] getDestinationAddressBytes() {
+        return addressBytes(getDestinationAddress());
+    }
+
+    static byte[] addressBytes(InetSocketAddress address) {
+        if (address == null || address.getAddress() == null) {
+            return null;
+        }
+        return address.getAddress().getAddress();
+    }
+
     boolean isComplete();
 
     /**
@@ -3,9 +3,15 @@ package io.undertow.httpcore;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiConsumer;
 
 import org.jboss.logging.Logger;
@@ -17,6 +23,9 @@ public abstract class HttpExchangeBase implements HttpExchange, OutputChannel {
 
     private static final Logger log = Logger.getLogger(HttpExchangeBase.class);
 
+    private static final Object THROTTLE_ACTIVE = new Object();
+    private static final Object THROTTLE_FINISHED = new Object();
+
     private static final BiConsumer<InputChannel, HttpExchangeBase> DRAIN_CALLBACK = new BiConsumer<InputChannel, HttpExchangeBase>() {
         @Override
         public void accept(InputChannel channel, HttpExchangeBase exchange) {
@@ -39,10 +48,17 @@ public abstract class HttpExchangeBase implements HttpExchange, OutputChannel {
     private boolean responseTerminated;
     private CompletedListener completedListener;
     private BlockingHttpExchange blockingHttpExchange;
+    private ResponseSizeHint responseSizeHint;
 
     private int writeFunctionCount;
     private WriteFunction[] writeFunctions;
+    private volatile WriteThrottle writeThrottle;
+    /**
+     * The throttled async write that is in progress, if any
+     */
+    private volatile ThrottledWrite<?> throttledWrite;
     protected PreCommitListener preCommitListener;
+    private boolean preCommitRun;
     private boolean responseStarted;
 
     /**
@@ -103,6 +119,16 @@ public abstract class HttpExchangeBase implements HttpExchange, OutputChannel {
         this.blockingHttpExchange = exchange;
     }
 
+    @Override
+    public void setResponseSizeHint(ResponseSizeHint hint) {
+        this.responseSizeHint = hint;
+    }
+
+    @Override
+    public ResponseSizeHint getResponseSizeHint() {
+        return responseSizeHint;
+    }
+
     @Override
     public OutputStream getOutputStream() {
         if (blockingHttpExchange == null) {
@@ -210,6 +236,18 @@ public abstract class HttpExchangeBase implements HttpExchange, OutputChannel {
         writeFunctions[writeFunctionCount] = listener;
     }
 
+    @Override
+    public void setWriteThrottle(WriteThrottle throttle) {
+        this.writeThrottle = throttle;
+    }
+
+    /**
+     * @return <code>true</code> if a throttled write is waiting to be written
+     */
+    protected boolean isThrottledWritePending() {
+        return throttledWrite != null;
+    }
+
     @Override
     public OutputChannel getOutputChannel() {
         return this;
@@ -222,7 +260,18 @@ public abstract class HttpExchangeBase implements HttpExchange, OutputChannel {
         if(!last) {
             Objects.requireNonNull(callback, "Callback cannot be null");
         }
+        ThrottledWrite<?> pending = throttledWrite;
+        if (pending != null && pending.defer(data, last, callback, context)) {
+            return;
+        }
         data = processData(data, last);
+        WriteThrottle throttle = writeThrottle;
+        if (throttle != null && data != null && data.isReadable()) {
+            ThrottledWrite<T> write = new ThrottledWrite<>(throttle, data, last, callback, context);
+            throttledWrite = write;
+            write.writeNext();
+            return;
+        }
         writeAsync0(data, last, callback, context);
     }
 
@@ -233,12 +282,62 @@ public abstract class HttpExchangeBase implements HttpExchange, OutputChannel {
     public final void writeBlocking(ByteBuf data, boolean last) throws IOException {
 
         data = processData(data, last);
+        WriteThrottle throttle = writeThrottle;
+        if (throttle != null && data != null && data.isReadable()) {
+            if (isInIoThread()) {
+                //the IO thread can not wait, the data still counts against the throttle so later writes are slowed down
+                throttle.acquire(data.readableBytes());
+            } else {
+                //the chunks are written by the IO thread in the same way as an async write, this thread just waits
+                //until the last one has been written
+                ThrottledBlockingWrite waiter = new ThrottledBlockingWrite();
+                ThrottledWrite<Object> write = new ThrottledWrite<>(throttle, data, last, waiter, null);
+                throttledWrite = write;
+                write.writeNext();
+                waiter.await();
+                return;
+            }
+        }
         writeBlocking0(data, last);
 
     }
 
     protected abstract void writeBlocking0(ByteBuf data, boolean last) throws IOException;
 
+    @Override
+    public final <T> void writeFileAsync(Path file, long position, long count, IoCallback<T> callback, T context) {
+        Objects.requireNonNull(callback, "Callback cannot be null");
+        if (!responseStarted) {
+            if (!containsResponseHeader(AsciiHeaderNames.CONTENT_LENGTH)) {
+                setResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, Long.toString(count));
+            }
+            runPreCommit();
+            if (!isResponseEntityBodyAllowed()) {
+                writeAsync(null, true, callback, context);
+                return;
+            }
+            if (writeFunctionCount == 0 && writeThrottle == null) {
+                //nothing needs to see the data, so the engine is free to transfer it directly
+                responseStarted = true;
+                responseBytesSent += count;
+                writeFileAsync0(file, position, count, callback, context);
+                return;
+            }
+        }
+        new ChunkedFileWriter<>(this, file, position, count, callback, context).start();
+    }
+
+    /**
+     * Writes a file region as the complete response body. When this is called the response has not
+     * been started, and the headers (including the content length) are final.
+     * <p>
+     * The default implementation reads the file in chunks and writes them using {@link #writeAsync0(ByteBuf, boolean, IoCallback, Object)}.
+     * Engines that can transfer files directly to the connection should override this.
+     */
+    protected <T> void writeFileAsync0(Path file, long position, long count, IoCallback<T> callback, T context) {
+        new ChunkedFileWriter<>(this, file, position, count, callback, context).start();
+    }
+
 
     /**
      * @return The number of bytes sent in the entity body
@@ -253,47 +352,28 @@ public abstract class HttpExchangeBase implements HttpExchange, OutputChannel {
 
     private ByteBuf processData(ByteBuf data, boolean last) {
         if (!responseStarted) {
-            if(preCommitListener != null) {
-                preCommitListener.preCommit(this);
-            }
-            if(!isResponseEntityBodyAllowed()) {
-                addWriteFunction(new WriteFunction() {
-                    @Override
-                    public ByteBuf preWrite(ByteBuf data, boolean last) {
-                        data.release();
-                        return Unpooled.EMPTY_BUFFER;
-                    }
-                });
-            }
-            if (writeFunctions != null && data != null) {
-                for (int i = 0; i < writeFunctionCount; ++i) {
-                    data = writeFunctions[i].preWrite(data, last);
-                }
-            }
+            runPreCommit();
+            data = applyWriteFunctions(data, last);
             if (last) {
                 if (data == null) {
-                    if (!containsResponseHeader(HttpHeaderNames.CONTENT_LENGTH)) {
-                        addResponseHeader(HttpHeaderNames.CONTENT_LENGTH, "0");
+                    if (!containsResponseHeader(AsciiHeaderNames.CONTENT_LENGTH)) {
+                        addResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, "0");
                     }
                 } else {
-                    if (!containsResponseHeader(HttpHeaderNames.CONTENT_LENGTH)) {
-                        addResponseHeader(HttpHeaderNames.CONTENT_LENGTH, Integer.toString(data.readableBytes()));
+                    if (!containsResponseHeader(AsciiHeaderNames.CONTENT_LENGTH)) {
+                        addResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, Integer.toString(data.readableBytes()));
                     }
                 }
             } else {
-                if (!containsResponseHeader(HttpHeaderNames.CONTENT_LENGTH) && !isHttp2()) {
-                    setResponseHeader(HttpHeaderNames.TRANSFER_ENCODING, "chunked");
+                if (!containsResponseHeader(AsciiHeaderNames.CONTENT_LENGTH) && !isHttp2()) {
+                    setResponseHeader(AsciiHeaderNames.TRANSFER_ENCODING, "chunked");
                 } else if (isHttp2()) {
-                    removeResponseHeader(HttpHeaderNames.TRANSFER_ENCODING);
+                    removeResponseHeader(AsciiHeaderNames.TRANSFER_ENCODING);
                 }
             }
             responseStarted = true;
         } else {
-            if (writeFunctions != null && data != null) {
-                for (int i = 0; i < writeFunctionCount; ++i) {
-                    data = writeFunctions[i].preWrite(data, last);
-                }
-            }
+            data = applyWriteFunctions(data, last);
         }
         if(data != null && !isResponseEntityBodyAllowed()) {
             data.release();
@@ -306,6 +386,52 @@ public abstract class HttpExchangeBase implements HttpExchange, OutputChannel {
     }
 
 
+    private ByteBuf applyWriteFunctions(ByteBuf data, boolean last) {
+        if (writeFunctions == null) {
+            return data;
+        }
+        if (data == null) {
+            if (!last) {
+                return null;
+            }
+            //the write functions still need to see the end of the response, as they may
+            //have buffered data that needs to be written out (e.g. a compressor)
+            data = Unpooled.EMPTY_BUFFER;
+            for (int i = 0; i < writeFunctionCount; ++i) {
+                data = writeFunctions[i].preWrite(data == null ? Unpooled.EMPTY_BUFFER : data, true);
+            }
+            if (data != null && !data.isReadable()) {
+                data.release();
+                return null;
+            }
+            return data;
+        }
+        for (int i = 0; i < writeFunctionCount; ++i) {
+            //a function is never passed null, even if the one before it returned null
+            data = writeFunctions[i].preWrite(data == null ? Unpooled.EMPTY_BUFFER : data, last);
+        }
+        return data;
+    }
+
+    private void runPreCommit() {
+        if (preCommitRun) {
+            return;
+        }
+        preCommitRun = true;
+        if(preCommitListener != null) {
+            preCommitListener.preCommit(this);
+        }
+        if(!isResponseEntityBodyAllowed()) {
+            addWriteFunction(new WriteFunction() {
+                @Override
+                public ByteBuf preWrite(ByteBuf data, boolean last) {
+                    data.release();
+                    return Unpooled.EMPTY_BUFFER;
+                }
+            });
+        }
+    }
+
     protected boolean isResponseEntityBodyAllowed() {
         if(getRequestMethod().equals(HttpMethodNames.HEAD)) {
             return false;
@@ -328,4 +454,152 @@ public abstract class HttpExchangeBase implements HttpExchange, OutputChannel {
         }
         return true;
     }
+
+    /**
+     * A write made while a {@link ThrottledWrite} was still in progress.
+     */
+    private static final class DeferredWrite {
+
+        final ByteBuf data;
+        final boolean last;
+        final IoCallback<Object> callback;
+        final Object context;
+
+        DeferredWrite(ByteBuf data, boolean last, IoCallback<Object> callback, Object context) {
+            this.data = data;
+            this.last = last;
+            this.callback = callback;
+            this.context = context;
+        }
+    }
+
+    /**
+     * Blocks a thread doing a blocking write until the {@link ThrottledWrite} that writes its data has finished.
+     */
+    private static final class ThrottledBlockingWrite implements IoCallback<Object> {
+
+        private final Thread waiter = Thread.currentThread();
+        private volatile boolean done;
+        private volatile IOException error;
+
+        void await() throws IOException {
+            while (!done) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            IOException error = this.error;
+            if (error != null) {
+                throw new IOException(error);
+            }
+        }
+
+        @Override
+        public void onComplete(HttpExchange exchange, Object context) {
+            done = true;
+            LockSupport.unpark(waiter);
+        }
+
+        @Override
+        public void onException(HttpExchange exchange, Object context, IOException exception) {
+            error = exception;
+            done = true;
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * An async write that is split into chunks, with each chunk written once the throttle allows it. While the
+     * throttle is waiting the next chunk is scheduled on the IO thread, rather than holding a thread.
+     */
+    private final class ThrottledWrite<T> implements IoCallback<Object>, Runnable {
+
+        private final WriteThrottle throttle;
+        private final ByteBuf data;
+        private final boolean last;
+        private final IoCallback<T> callback;
+        private final T context;
+        private int chunkSize;
+
+        /**
+         * {@link #THROTTLE_ACTIVE}, {@link #THROTTLE_FINISHED}, or a {@link DeferredWrite} that was made while this
+         * one was still in progress and is performed once the last chunk has been handed to the engine. In practice
+         * that is only the end of the exchange. This is only changed with compare and set, so no lock is taken by the
+         * threads writing, and nothing is ever written while a lock is held.
+         */
+        private final AtomicReference<Object> state = new AtomicReference<>(THROTTLE_ACTIVE);
+
+        ThrottledWrite(WriteThrottle throttle, ByteBuf data, boolean last, IoCallback<T> callback, T context) {
+            this.throttle = throttle;
+            this.data = data;
+            this.last = last;
+            this.callback = callback;
+            this.context = context;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean defer(ByteBuf data, boolean last, IoCallback<?> callback, Object context) {
+            if (state.compareAndSet(THROTTLE_ACTIVE, new DeferredWrite(data, last, (IoCallback<Object>) callback, context))) {
+                return true;
+            }
+            if (state.get() == THROTTLE_FINISHED) {
+                return false;
+            }
+            throw new IllegalStateException("Write already in progress");
+        }
+
+        void writeNext() {
+            chunkSize = Math.min(data.readableBytes(), Math.max(1, throttle.getMaxWriteSize()));
+            long delay = throttle.acquire(chunkSize);
+            if (delay > 0) {
+                try {
+                    getIoThread().schedule(this, delay, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    onException(HttpExchangeBase.this, null, new IOException(e));
+                }
+            } else {
+                run();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (chunkSize < data.readableBytes()) {
+                writeAsync0(data.readRetainedSlice(chunkSize), false, this, null);
+                return;
+            }
+            //a write that is deferred before the state changes is made after this one, and a write made after it
+            //changes goes straight to the engine, so neither can overtake the last chunk
+            writeAsync0(data, last, callback, context);
+            throttledWrite = null;
+            Object previous = state.getAndSet(THROTTLE_FINISHED);
+            if (previous instanceof DeferredWrite) {
+                DeferredWrite deferred = (DeferredWrite) previous;
+                writeAsync(deferred.data, deferred.last, deferred.callback, deferred.context);
+            }
+        }
+
+        @Override
+        public void onComplete(HttpExchange exchange, Object ctx) {
+            writeNext();
+        }
+
+        @Override
+        public void onException(HttpExchange exchange, Object ctx, IOException exception) {
+            throttledWrite = null;
+            Object previous = state.getAndSet(THROTTLE_FINISHED);
+            data.release();
+            if (previous instanceof DeferredWrite && ((DeferredWrite) previous).data != null) {
+                ((DeferredWrite) previous).data.release();
+            }
+            if (callback != null) {
+                callback.onException(exchange, context, exception);
+            } else {
+                //nobody is waiting for the write, so fail the exchange the same way any other callback would
+                IoCallback.super.onException(exchange, ctx, exception);
+            }
+        }
+    }
 }
@@ -2,6 +2,7 @@ package io.undertow.httpcore;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.nio.charset.StandardCharsets;
 
 import io.netty.buffer.ByteBuf;
@@ -45,4 +46,22 @@ public interface OutputChannel extends AutoCloseable {
      * @throws IOException
      */
     void writeBlocking(ByteBuf data, boolean last) throws IOException;
+
+    /**
+     * Writes a region of a file and ends the response. This is always the last write for the exchange.
+     * <p>
+     * If possible the underlying engine will transfer the file directly to the connection without copying
+     * it through user space (e.g. using sendfile). If this is not possible (for example because a
+     * {@link WriteFunction} needs to see the data, or the connection is encrypted) the file will be
+     * read in chunks and written asynchronously instead.
+     * <p>
+     * This method never blocks, and can be called from the IO thread.
+     *
+     * @param file     The file to send
+     * @param position The position in the file to start sending from
+     * @param count    The number of bytes to send
+     * @param callback The callback that is invoked once the write is complete
+     * @param context  A context object that is passed to the callback
+     */
+    <T> void writeFileAsync(Path file, long position, long count, IoCallback<T> callback, T context);
 }
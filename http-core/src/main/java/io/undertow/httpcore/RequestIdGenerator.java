@@ -0,0 +1,34 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.httpcore;
+
+/**
+ * Generates the ids returned by {@code HttpServerExchange#getRequestId()}. Ids are only generated for requests that
+ * ask for them, on whatever thread asks first, so implementations must be thread safe.
+ *
+ * @see UndertowOptions#REQUEST_ID_GENERATOR
+ * @see RequestIds
+ */
+public interface RequestIdGenerator {
+
+    /**
+     * @return A new request id, which must be unique within the server
+     */
+    String generateRequestId();
+}
@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.httpcore;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * The built in {@link RequestIdGenerator} implementations.
+ */
+public final class RequestIds {
+
+    /**
+     * The number of ids a thread takes from the shared counter at a time.
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    private static final AtomicLong NEXT_BLOCK = new AtomicLong(1);
+
+    private static final FastThreadLocal<long[]> SEQUENCE = new FastThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            //the next id and the end of the block, the block starts out used up
+            return new long[2];
+        }
+    };
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Decimal ids taken from a counter, the default.
+     * <p>
+     * Each thread reserves a block of ids from the shared counter and then hands them out from its own sequence, so
+     * generating an id only touches a shared cache line once every {@value #BLOCK_SIZE} ids. Ids are unique, but are
+     * only ordered within a thread, an id generated later on another thread can be lower.
+     * <p>
+     * This suits the long lived IO and worker threads ids are normally generated on. Each short lived thread, such as
+     * a virtual thread per request, takes a whole block for the few ids it uses, so the ids skip ahead by up to
+     * {@value #BLOCK_SIZE} per thread. Use {@link #TRACE_ID} or a generator backed by a single counter if the ids need
+     * to be dense or ordered across threads.
+     */
+    public static final RequestIdGenerator SEQUENTIAL = new RequestIdGenerator() {
+        @Override
+        public String generateRequestId() {
+            long[] sequence = SEQUENCE.get();
+            if (sequence[0] == sequence[1]) {
+                sequence[0] = NEXT_BLOCK.getAndAdd(BLOCK_SIZE);
+                sequence[1] = sequence[0] + BLOCK_SIZE;
+            }
+            return Long.toString(sequence[0]++);
+        }
+    };
+
+    /**
+     * Random 128 bit ids, as 32 lower case hex characters. These have the same format as a W3C Trace Context trace-id,
+     * so they can be used to correlate log entries with traces.
+     */
+    public static final RequestIdGenerator TRACE_ID = new RequestIdGenerator() {
+        @Override
+        public String generateRequestId() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long high = random.nextLong();
+            long low = random.nextLong();
+            while (high == 0 && low == 0) {
+                //an all zero trace-id is invalid
+                low = random.nextLong();
+            }
+            char[] id = new char[32];
+            toHex(high, id, 0);
+            toHex(low, id, 16);
+            return new String(id);
+        }
+    };
+
+    private RequestIds() {
+
+    }
+
+    private static void toHex(long value, char[] id, int offset) {
+        for (int i = offset + 15; i >= offset; --i) {
+            id[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.httpcore;
+
+/**
+ * The sizes of the responses that have been sent by a route or servlet, which is used to pick the size of the first
+ * buffer a response is written into.
+ * <p>
+ * Only a moving estimate is kept. It rises quickly when a larger response is seen and falls slowly, so that a route
+ * that sometimes sends a large response does not start every response in a buffer that is too small. Updates are not
+ * synchronized, a lost update only makes the estimate a little less accurate.
+ *
+ * @see HttpExchange#setResponseSizeHint(ResponseSizeHint)
+ */
+public final class ResponseSizeHint {
+
+    /**
+     * The smallest buffer that is used for a response.
+     */
+    public static final int MIN_BUFFER_SIZE = 512;
+
+    private volatile int estimate = -1;
+
+    /**
+     * Gets the size of the first buffer for a response.
+     *
+     * @param bufferSize The full buffer size, which is the most that will be returned
+     * @return The buffer size, which is <code>bufferSize</code> until a response has been recorded
+     */
+    public int initialBufferSize(final int bufferSize) {
+        final int estimate = this.estimate;
+        if (estimate < 0 || estimate >= bufferSize) {
+            return bufferSize;
+        }
+        //the size is rounded up to a power of two, which is what the pooled allocator hands out anyway
+        final int size = estimate < MIN_BUFFER_SIZE ? MIN_BUFFER_SIZE : Integer.highestOneBit(estimate - 1) << 1;
+        return Math.min(size, bufferSize);
+    }
+
+    /**
+     * Records the size of a response that has been written.
+     *
+     * @param bytes The number of bytes in the response body
+     */
+    public void record(final long bytes) {
+        final int size = (int) Math.min(bytes, Integer.MAX_VALUE);
+        final int estimate = this.estimate;
+        if (estimate < 0) {
+            this.estimate = size;
+        } else if (size > estimate) {
+            this.estimate = estimate + (int) (((long) size - estimate) >> 1);
+        } else {
+            this.estimate = estimate - ((estimate - size) >> 4);
+        }
+    }
+
+    /**
+     * @return The current estimate of the response size, or -1 if no response has been recorded
+     */
+    public int getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * Gets the size of the buffer that follows a full buffer, buffers double in size until they reach the maximum.
+     *
+     * @param current The size of the buffer that is full
+     * @param max     The largest buffer size
+     * @return The size of the next buffer
+     */
+    public static int nextBufferSize(final int current, final int max) {
+        return current >= max >> 1 ? Math.max(current, max) : current << 1;
+    }
+}
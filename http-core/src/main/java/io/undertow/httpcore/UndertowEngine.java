@@ -7,6 +7,13 @@ public interface UndertowEngine {
 
     EngineInstance start(int ioThreads, Executor blockingExecutor, BufferAllocator bufferAllocator);
 
+    /**
+     * Starts the engine with the server options, engines use these to configure their transport.
+     */
+    default EngineInstance start(int ioThreads, Executor blockingExecutor, BufferAllocator bufferAllocator, UndertowOptionMap options) {
+        return start(ioThreads, blockingExecutor, bufferAllocator);
+    }
+
     void bindHttp(EngineInstance instance, ExchangeHandler handler, int port, String host, Object options);
 
     void bindHttps(EngineInstance instance, ExchangeHandler handler, int port, String host, String keyStore, String keyStorePassword, String trustStore, String trustStorePassword, Object options);
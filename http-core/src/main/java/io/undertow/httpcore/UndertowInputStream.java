@@ -23,6 +23,9 @@ import io.netty.buffer.ByteBuf;
 /**
  * Input stream that reads from the underlying channel. This stream delays creation
  * of the channel till it is actually used.
+ * <p>
+ * As well as the usual methods, that copy the data into an array, {@link #readBuffer()} returns the data in the
+ * buffers it was received in.
  *
  * @author Stuart Douglas
  */
@@ -75,6 +78,33 @@ public class UndertowInputStream extends InputStream {
         return copied;
     }
 
+    /**
+     * Reads the next part of the request body as a buffer rather than copying it into an array. Any data that has
+     * been received but not yet consumed by the other read methods is returned first.
+     * <p>
+     * The buffer is read only, and is owned by the caller, who must release it.
+     *
+     * @return The next part of the body, or <code>null</code> if the end of the body has been reached
+     * @throws IOException If the data could not be read
+     */
+    public ByteBuf readBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        readIntoBuffer();
+        while (pooled != null && !pooled.isReadable()) {
+            pooled.release();
+            pooled = null;
+            readIntoBuffer();
+        }
+        if (finished) {
+            return null;
+        }
+        ByteBuf buffer = pooled;
+        pooled = null;
+        return buffer.asReadOnly();
+    }
+
     private void readIntoBuffer() throws IOException {
         if (pooled == null && !finished) {
             pooled = exchange.getInputChannel().readBlocking();
@@ -99,7 +129,7 @@ public class UndertowInputStream extends InputStream {
     @Override
     public void close() throws IOException {
         if (closed) {
-            throw new IOException("Stream is closed");
+            return;
         }
         closed = true;
         try {
@@ -178,6 +178,75 @@ public class UndertowOptions {
     @Deprecated
     public static final UndertowOption<Integer> WORKER_ACCEPT_THREADS = UndertowOption.create("WORKER_ACCEPT_THREADS", Integer.class);
 
+    /**
+     * If the server should use the native transport for the platform (epoll, io_uring or kqueue) when it is on the
+     * class path. If it is not available the JDK transport is used instead.
+     * <p>
+     * Defaults to false
+     */
+    public static final UndertowOption<Boolean> PREFER_NATIVE_TRANSPORT = UndertowOption.create("PREFER_NATIVE_TRANSPORT", Boolean.class);
+
+    /**
+     * If listening sockets should be opened with <code>SO_REUSEPORT</code>, which allows several servers to bind to the
+     * same port and have the kernel balance connections between them. This requires the native transport.
+     */
+    public static final UndertowOption<Boolean> REUSE_PORT = UndertowOption.create("REUSE_PORT", Boolean.class);
+
+    /**
+     * If <code>TCP_FASTOPEN</code> should be enabled on listening sockets. This requires the native transport.
+     */
+    public static final UndertowOption<Boolean> TCP_FASTOPEN = UndertowOption.create("TCP_FASTOPEN", Boolean.class);
+
+    /**
+     * If <code>TCP_QUICKACK</code> should be enabled on accepted connections. This requires the epoll transport.
+     */
+    public static final UndertowOption<Boolean> TCP_QUICKACK = UndertowOption.create("TCP_QUICKACK", Boolean.class);
+
+    /**
+     * If <code>TCP_CORK</code> should be enabled on accepted connections. This requires the epoll transport.
+     */
+    public static final UndertowOption<Boolean> TCP_CORK = UndertowOption.create("TCP_CORK", Boolean.class);
+
+    /**
+     * The generator for the ids returned by {@code HttpServerExchange#getRequestId()}. Ids are only generated for
+     * requests that ask for them.
+     * <p>
+     * Defaults to {@link RequestIds#SEQUENTIAL}, {@link RequestIds#TRACE_ID} generates ids in the W3C trace-id format.
+     */
+    public static final UndertowOption<RequestIdGenerator> REQUEST_ID_GENERATOR = UndertowOption.create("REQUEST_ID_GENERATOR", RequestIdGenerator.class);
+
+    /**
+     * If the server should reuse exchange objects rather than allocating new ones for every request. An exchange is
+     * reused once it has completed and no handler is still running for it, so handlers must not keep a reference to
+     * the exchange and use it after the request has completed.
+     * <p>
+     * Only the {@code HttpServerExchange} itself is reused, the underlying exchange, headers and buffers that make up
+     * most of the per request allocation are not. In {@code ExchangeBenchmark} this saves about 160 bytes per request
+     * (1192 to 1032), but each request takes about 130-150ns longer because of resetting the exchange, its reference
+     * count and handing it back to its IO thread. Only enable this if allocation rate matters more than latency.
+     * <p>
+     * Defaults to false
+     */
+    public static final UndertowOption<Boolean> RECYCLE_EXCHANGES = UndertowOption.create("RECYCLE_EXCHANGES", Boolean.class);
+
+    /**
+     * If exchange recycling should check for misuse. Instead of being reused recycled exchanges fail on any further
+     * use, and exchanges that are garbage collected without ever being released are logged. This is slow, and is
+     * meant to be used when testing an application with {@link #RECYCLE_EXCHANGES}.
+     * <p>
+     * Defaults to false
+     */
+    public static final UndertowOption<Boolean> RECYCLE_EXCHANGES_DEBUG = UndertowOption.create("RECYCLE_EXCHANGES_DEBUG", Boolean.class);
+
+    /**
+     * The largest buffer a response that does not fit in a single buffer is written in, in bytes. Once a response
+     * has been sent in one buffer the ones that follow double in size up to this limit, so large responses are sent
+     * in fewer writes.
+     * <p>
+     * Defaults to four times the buffer size
+     */
+    public static final UndertowOption<Integer> MAX_RESPONSE_BUFFER_SIZE = UndertowOption.create("MAX_RESPONSE_BUFFER_SIZE", Integer.class);
+
     private UndertowOptions() {
 
     }
@@ -19,19 +19,26 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 /**
  * Buffering output stream that wraps a channel.
  * <p>
  * This stream delays channel creation, so if a response will fit in the buffer it is not necessary to
  * set the content length header.
+ * <p>
+ * The first buffer is sized from the exchange's {@link ResponseSizeHint}, and grows in place up to the full buffer
+ * size, so a small response does not hold a full size buffer but still gets a content length and a single write. Once
+ * a response no longer fits the buffers that are sent double in size, up to
+ * {@link UndertowOptions#MAX_RESPONSE_BUFFER_SIZE}.
  *
  * @author Stuart Douglas
  */
-public class UndertowOutputStream extends OutputStream {
+public class UndertowOutputStream extends OutputStream implements BufferWritableOutputStream {
 
     private final HttpExchange exchange;
     private ByteBuf pooledBuffer;
+    private int nextBufferSize;
     private long written;
     private final long contentLength;
 
@@ -66,6 +73,44 @@ public class UndertowOutputStream extends OutputStream {
         }
     }
 
+    private ByteBuf allocateBuffer() {
+        final BufferAllocator allocator = exchange.getBufferAllocator();
+        if (nextBufferSize == 0) {
+            ResponseSizeHint hint = exchange.getResponseSizeHint();
+            nextBufferSize = hint == null ? allocator.getBufferSize() : hint.initialBufferSize(allocator.getBufferSize());
+        }
+        return allocator.allocateBuffer(nextBufferSize);
+    }
+
+    /**
+     * If the buffer can be grown rather than sent, which is the case until it reaches the full buffer size for
+     * the first write.
+     */
+    private boolean canGrow(ByteBuf buffer) {
+        return !writeStarted && buffer.capacity() < exchange.getBufferAllocator().getBufferSize();
+    }
+
+    /**
+     * Makes room for more data once the buffer is full, either by growing it or by sending it.
+     *
+     * @return The buffer to write to
+     */
+    private ByteBuf nextBuffer(ByteBuf buffer) throws IOException {
+        final int bufferSize = exchange.getBufferAllocator().getBufferSize();
+        if (canGrow(buffer)) {
+            nextBufferSize = Math.min(buffer.capacity() << 1, bufferSize);
+            if (nextBufferSize <= buffer.maxCapacity()) {
+                buffer.capacity(nextBufferSize);
+                return buffer;
+            }
+        }
+        writeStarted = true;
+        nextBufferSize = ResponseSizeHint.nextBufferSize(buffer.capacity(), exchange.getUndertowOptions().get(UndertowOptions.MAX_RESPONSE_BUFFER_SIZE, bufferSize * 4));
+        this.pooledBuffer = allocateBuffer();
+        exchange.getOutputChannel().writeBlocking(buffer, false);
+        return pooledBuffer;
+    }
+
     public long getBytesWritten() {
         return written;
     }
@@ -74,7 +119,31 @@ public class UndertowOutputStream extends OutputStream {
      * {@inheritDoc}
      */
     public void write(final int b) throws IOException {
-        write(new byte[]{(byte) b}, 0, 1);
+        if (exchange.getIoThread().inEventLoop()) {
+            throw new IllegalStateException("Cannot do blocking IO from IO thread");
+        }
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        ByteBuf buffer = pooledBuffer;
+        try {
+            if (buffer == null) {
+                pooledBuffer = buffer = allocateBuffer();
+            } else if (!buffer.isWritable()) {
+                buffer = nextBuffer(buffer);
+            }
+            buffer.writeByte(b);
+            if (!buffer.isWritable() && !canGrow(buffer)) {
+                nextBuffer(buffer);
+            }
+        } catch (Exception e) {
+            if (pooledBuffer != null) {
+                pooledBuffer.release();
+                pooledBuffer = null;
+            }
+            throw new IOException(e);
+        }
+        updateWritten(1);
     }
 
     /**
@@ -103,29 +172,72 @@ public class UndertowOutputStream extends OutputStream {
         ByteBuf buffer = pooledBuffer;
         try {
             if (buffer == null) {
-                pooledBuffer = buffer = exchange.getBufferAllocator().allocateBuffer();
+                pooledBuffer = buffer = allocateBuffer();
+            } else if (!buffer.isWritable()) {
+                buffer = nextBuffer(buffer);
             }
             while (rem > 0) {
                 int toWrite = Math.min(rem, buffer.writableBytes());
                 buffer.writeBytes(b, idx, toWrite);
                 rem -= toWrite;
                 idx += toWrite;
-                if (!buffer.isWritable()) {
-                    writeStarted = true;
-                    ByteBuf tempBuffer = buffer;
-                    this.pooledBuffer = buffer = exchange.getBufferAllocator().allocateBuffer();
-                    exchange.getOutputChannel().writeBlocking(tempBuffer, false);
+                //a full buffer is only grown if there is more to write, but it is sent straight away
+                if (!buffer.isWritable() && (rem > 0 || !canGrow(buffer))) {
+                    buffer = nextBuffer(buffer);
                 }
             }
         } catch (Exception e) {
-            if (buffer != null) {
-                buffer.release();
+            if (pooledBuffer != null) {
+                pooledBuffer.release();
+                pooledBuffer = null;
             }
             throw new IOException(e);
         }
         updateWritten(len);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(ByteBuf data) throws IOException {
+        int len = data.readableBytes();
+        if (len < 1) {
+            data.release();
+            return;
+        }
+        if (exchange.getIoThread().inEventLoop()) {
+            data.release();
+            throw new IllegalStateException("Cannot do blocking IO from IO thread");
+        }
+        if (closed) {
+            data.release();
+            throw new IOException("Stream is closed");
+        }
+        ByteBuf buffer = pooledBuffer;
+        pooledBuffer = null;
+        if (buffer != null) {
+            if (buffer.isReadable()) {
+                data = Unpooled.wrappedBuffer(buffer, data);
+            } else {
+                buffer.release();
+            }
+        }
+        this.written += len;
+        writeStarted = true;
+        if (contentLength != -1 && this.written >= contentLength) {
+            //the last write goes through close(), so the response is finished the same way as any other
+            pooledBuffer = data;
+            close();
+            return;
+        }
+        try {
+            exchange.getOutputChannel().writeBlocking(data, false);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
     void updateWritten(final long len) throws IOException {
         this.written += len;
         if (contentLength != -1 && this.written >= contentLength) {
@@ -143,6 +255,7 @@ public class UndertowOutputStream extends OutputStream {
         }
         try {
             if (pooledBuffer != null) {
+                writeStarted = true;
                 exchange.getOutputChannel().writeBlocking(pooledBuffer, false);
                 pooledBuffer = null;
             }
@@ -161,11 +274,15 @@ public class UndertowOutputStream extends OutputStream {
     public void close() throws IOException {
         if (closed) return;
         closed = true;
+        ResponseSizeHint hint = exchange.getResponseSizeHint();
+        if (hint != null) {
+            hint.record(written);
+        }
         if (!writeStarted) {
             if (pooledBuffer == null) {
-                exchange.setResponseHeader(HttpHeaderNames.CONTENT_LENGTH, "0");
+                exchange.setResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, "0");
             } else {
-                exchange.setResponseHeader(HttpHeaderNames.CONTENT_LENGTH, "" + pooledBuffer.readableBytes());
+                exchange.setResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, "" + pooledBuffer.readableBytes());
             }
         }
         try {
@@ -4,6 +4,11 @@ import io.netty.buffer.ByteBuf;
 
 /**
  * Function that is called before a write is performed.
+ * <p>
+ * The function takes ownership of the data it is passed, and returns the data that should actually be written.
+ * The data is never <code>null</code>. When the response is ended without any data the function is called with an
+ * empty buffer, so it always sees the last write, and it can add data to the end of the response (for example a
+ * compressor's trailer). A function that has nothing to write should return an empty buffer.
  */
 public interface WriteFunction {
 
@@ -0,0 +1,41 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.undertow.httpcore;
+
+/**
+ * Limits the rate at which the response body is written.
+ * <p>
+ * Once the write functions have been applied the data is split into chunks of at most {@link #getMaxWriteSize()}
+ * bytes, and each chunk is only written once the throttle allows it. Async writes wait by scheduling the next chunk
+ * on the IO thread, so no thread is held while a throttled response is waiting. Blocking writes are split and
+ * scheduled in the same way, and the calling thread waits until the IO thread has written the last chunk.
+ */
+public interface WriteThrottle {
+
+    /**
+     * @return The maximum number of bytes that will be written in a single chunk
+     */
+    int getMaxWriteSize();
+
+    /**
+     * Reserves the given number of bytes.
+     *
+     * @param bytes The number of bytes that are about to be written
+     * @return The number of nanoseconds to wait before they can be written, or a value less than or equal to zero
+     *         if they can be written immediately
+     */
+    long acquire(int bytes);
+}
@@ -75,6 +75,7 @@ public class DeploymentInfo implements Cloneable {
     private int containerMinorVersion = 0;
     private Executor executor;
     private Executor asyncExecutor;
+    private boolean virtualThreadExecutor;
     private Path tempDir;
     private JspConfigDescriptor jspConfigDescriptor;
     private DefaultServletConfig defaultServletConfig;
@@ -645,6 +646,23 @@ public class DeploymentInfo implements Cloneable {
         return this;
     }
 
+    public boolean isVirtualThreadExecutor() {
+        return virtualThreadExecutor;
+    }
+
+    /**
+     * If this is true and no {@link #setExecutor(Executor) executor} has been set, every servlet invocation runs in a
+     * new virtual thread. The executor is created when the deployment is deployed, and shut down when it is undeployed.
+     * <p>
+     * This requires Java 21 or later.
+     *
+     * @param virtualThreadExecutor <code>true</code> to run servlet invocations in virtual threads
+     */
+    public DeploymentInfo setVirtualThreadExecutor(final boolean virtualThreadExecutor) {
+        this.virtualThreadExecutor = virtualThreadExecutor;
+        return this;
+    }
+
     public File getTempDir() {
         if(tempDir == null) {
             return null;
@@ -1423,6 +1441,7 @@ public class DeploymentInfo implements Cloneable {
         info.mimeMappings.addAll(mimeMappings);
         info.executor = executor;
         info.asyncExecutor = asyncExecutor;
+        info.virtualThreadExecutor = virtualThreadExecutor;
         info.tempDir = tempDir;
         info.jspConfigDescriptor = jspConfigDescriptor;
         info.defaultServletConfig = defaultServletConfig;
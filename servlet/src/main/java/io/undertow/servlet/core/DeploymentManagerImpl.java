@@ -36,6 +36,7 @@ import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 
 import jakarta.servlet.ServletContainerInitializer;
 import jakarta.servlet.ServletContext;
@@ -112,6 +113,7 @@ import io.undertow.servlet.predicate.DispatcherTypePredicate;
 import io.undertow.servlet.spec.ServletContextImpl;
 import io.undertow.servlet.spec.SessionCookieConfigImpl;
 import io.undertow.util.MimeMappings;
+import io.undertow.util.VirtualThreads;
 
 /**
  * The deployment manager. This manager is responsible for controlling the lifecycle of a servlet deployment.
@@ -133,6 +135,11 @@ public class DeploymentManagerImpl implements DeploymentManager {
     private volatile DeploymentImpl deployment;
     private volatile State state = State.UNDEPLOYED;
 
+    /**
+     * The executor created for {@link DeploymentInfo#isVirtualThreadExecutor()}, this is owned by the deployment
+     */
+    private volatile ExecutorService virtualThreadExecutor;
+
     public DeploymentManagerImpl(final DeploymentInfo deployment, final ServletContainer servletContainer) {
         this.originalDeployment = deployment;
         this.servletContainer = servletContainer;
@@ -147,6 +154,10 @@ public class DeploymentManagerImpl implements DeploymentManager {
         }
 
         deploymentInfo.validate();
+        if (deploymentInfo.isVirtualThreadExecutor() && deploymentInfo.getExecutor() == null) {
+            virtualThreadExecutor = VirtualThreads.newExecutor(deploymentInfo.getDeploymentName() + "-");
+            deploymentInfo.setExecutor(virtualThreadExecutor);
+        }
         final DeploymentImpl deployment = new DeploymentImpl(this, deploymentInfo, servletContainer);
         this.deployment = deployment;
 
@@ -250,6 +261,7 @@ public class DeploymentManagerImpl implements DeploymentManager {
                 }
             }).call(null, null);
         } catch (Exception e) {
+            shutdownVirtualThreadExecutor();
             throw new RuntimeException(e);
         }
         //any problems with the paths won't get detected until the data is initialize
@@ -674,6 +686,7 @@ public class DeploymentManagerImpl implements DeploymentManager {
                         }
                     }
                     deployment.destroy();
+                    shutdownVirtualThreadExecutor();
                     deployment = null;
                     state = State.UNDEPLOYED;
                     return null;
@@ -685,6 +698,14 @@ public class DeploymentManagerImpl implements DeploymentManager {
 
     }
 
+    private void shutdownVirtualThreadExecutor() {
+        ExecutorService executor = virtualThreadExecutor;
+        if (executor != null) {
+            virtualThreadExecutor = null;
+            executor.shutdown();
+        }
+    }
+
     @Override
     public State getState() {
         return state;
@@ -29,6 +29,7 @@ import jakarta.servlet.Servlet;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.UnavailableException;
 
+import io.undertow.httpcore.ResponseSizeHint;
 import io.undertow.server.handlers.form.FormEncodedDataDefinition;
 import io.undertow.server.handlers.form.FormParserFactory;
 import io.undertow.server.handlers.form.MultiPartParserDefinition;
@@ -66,6 +67,8 @@ public class ManagedServlet implements Lifecycle {
 
     private FormParserFactory formParserFactory;
 
+    private final ResponseSizeHint responseSizeHint = new ResponseSizeHint();
+
     public ManagedServlet(final ServletInfo servletInfo, final ServletContextImpl servletContext) {
         this.servletInfo = servletInfo;
         this.servletContext = servletContext;
@@ -234,6 +237,13 @@ public class ManagedServlet implements Lifecycle {
         return maxRequestSize;
     }
 
+    /**
+     * @return The sizes of the responses this servlet has sent, used to size the response buffer
+     */
+    public ResponseSizeHint getResponseSizeHint() {
+        return responseSizeHint;
+    }
+
     public MultipartConfigElement getMultipartConfig() {
         return multipartConfig;
     }
@@ -33,7 +33,7 @@ import io.undertow.server.ExchangeCompletionListener;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.servlet.api.CrawlerSessionManagerConfig;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 
 /**
  * Web crawlers can trigger the creation of many thousands of sessions as they
@@ -74,7 +74,7 @@ public class CrawlerSessionManagerHandler implements HttpHandler {
         if (src.getOriginalRequest().getSession(false) == null) {
 
             // Is this a crawler - check the UA headers
-            List<String> userAgentHeaders = exchange.getRequestHeaders(HttpHeaderNames.USER_AGENT);
+            List<String> userAgentHeaders = exchange.getRequestHeaders(AsciiHeaderNames.USER_AGENT);
             if (userAgentHeaders != null) {
                 Iterator<String> uaHeaders = userAgentHeaders.iterator();
                 String uaHeader = null;
@@ -18,7 +18,7 @@
 
 package io.undertow.servlet.handlers;
 
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpMethodNames;
 import io.undertow.httpcore.StatusCodes;
 import io.undertow.server.HttpHandler;
@@ -51,7 +51,7 @@ public class RedirectDirHandler implements HttpHandler {
         // as there is a good chance the web socket client won't understand the redirect
         // we make an exception for HTTP2 upgrade requests, as this would have already be handled at
         // the connector level if it was going to be handled.
-        String upgradeString = exchange.getRequestHeader(HttpHeaderNames.UPGRADE);
+        String upgradeString = exchange.getRequestHeader(AsciiHeaderNames.UPGRADE);
         boolean isUpgradeRequest = upgradeString != null && !upgradeString.startsWith(HTTP2_UPGRADE_PREFIX);
         if (info.getType() == ServletPathMatch.Type.REDIRECT && !isUpgradeRequest) {
             // UNDERTOW-89
@@ -61,7 +61,7 @@ public class RedirectDirHandler implements HttpHandler {
             } else {
                 exchange.setStatusCode(StatusCodes.TEMPORARY_REDIRECT);
             }
-            exchange.setResponseHeader(HttpHeaderNames.LOCATION, RedirectBuilder.redirect(exchange, exchange.getRelativePath() + "/", true));
+            exchange.setResponseHeader(AsciiHeaderNames.LOCATION, RedirectBuilder.redirect(exchange, exchange.getRelativePath() + "/", true));
             return;
         }
         next.handleRequest(exchange);
@@ -37,7 +37,7 @@ import io.undertow.servlet.spec.HttpServletResponseImpl;
 import io.undertow.servlet.spec.HttpSessionImpl;
 import io.undertow.servlet.spec.ServletContextImpl;
 import io.undertow.util.AttachmentKey;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 
 /**
  * All the information that servlet needs to attach to the exchange.
@@ -242,7 +242,7 @@ public class ServletRequestContext {
             if(!address.isLoopbackAddress()) {
                 return false;
             }
-            return !getExchange().containsRequestHeader(HttpHeaderNames.X_FORWARDED_FOR);
+            return !getExchange().containsRequestHeader(AsciiHeaderNames.X_FORWARDED_FOR);
         }
 
     }
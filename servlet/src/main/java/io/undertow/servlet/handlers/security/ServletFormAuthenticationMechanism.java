@@ -46,7 +46,7 @@ import io.undertow.server.session.SessionManager;
 import io.undertow.servlet.handlers.ServletRequestContext;
 import io.undertow.servlet.spec.HttpSessionImpl;
 import io.undertow.servlet.util.SavedRequest;
-import io.undertow.httpcore.HttpHeaderNames;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.util.RedirectBuilder;
 
 /**
@@ -135,9 +135,9 @@ public class ServletFormAuthenticationMechanism extends FormAuthenticationMechan
         ServletResponse resp = servletRequestContext.getServletResponse();
         RequestDispatcher disp = req.getRequestDispatcher(location);
         //make sure the login page is never cached
-        exchange.addResponseHeader(HttpHeaderNames.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
-        exchange.addResponseHeader(HttpHeaderNames.PRAGMA, "no-cache");
-        exchange.addResponseHeader(HttpHeaderNames.EXPIRES, "0");
+        exchange.addResponseHeader(AsciiHeaderNames.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+        exchange.addResponseHeader(AsciiHeaderNames.PRAGMA, "no-cache");
+        exchange.addResponseHeader(AsciiHeaderNames.EXPIRES, "0");
 
         final FormResponseWrapper respWrapper = exchange.getStatusCode() != OK && resp instanceof HttpServletResponse
                 ? new FormResponseWrapper((HttpServletResponse) resp) : null;
@@ -60,6 +60,7 @@ import io.undertow.servlet.handlers.ServletDebugPageHandler;
 import io.undertow.servlet.handlers.ServletPathMatch;
 import io.undertow.servlet.handlers.ServletRequestContext;
 import io.undertow.util.CanonicalPathUtils;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.util.SameThreadExecutor;
 import io.undertow.httpcore.StatusCodes;
@@ -103,6 +104,8 @@ public class AsyncContextImpl implements AsyncContext {
         this.requestSupplied = requestSupplied;
         this.previousAsyncContext = previousAsyncContext;
         initiatingThread = Thread.currentThread();
+        //async tasks and listeners can run after the exchange has completed
+        exchange.disableRecycling();
         exchange.dispatch(SameThreadExecutor.INSTANCE, new Runnable() {
             @Override
             public void run() {
@@ -511,7 +514,7 @@ public class AsyncContextImpl implements AsyncContext {
                                             if (!getResponse().isCommitted()) {
                                                 //close the connection on timeout
                                                 exchange.setPersistent(false);
-                                                exchange.setResponseHeader(HttpHeaderNames.CONNECTION, HttpHeaderNames.CLOSE.toString());
+                                                exchange.setResponseHeader(AsciiHeaderNames.CONNECTION, HttpHeaderNames.CLOSE.toString());
                                                 Connectors.executeRootHandler(new HttpHandler() {
                                                     @Override
                                                     public void handleRequest(HttpServerExchange exchange) throws Exception {
@@ -83,6 +83,7 @@ import io.undertow.servlet.util.IteratorEnumeration;
 import io.undertow.util.CanonicalPathUtils;
 import io.undertow.util.DateUtils;
 import io.undertow.util.HttpAttachments;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.httpcore.HttpMethodNames;
 import io.undertow.util.LocaleUtils;
@@ -556,7 +557,7 @@ public final class HttpServletRequestImpl implements HttpServletRequest {
 
         if (parts == null) {
             final List<Part> parts = new ArrayList<>();
-            String mimeType = exchange.getRequestHeader(HttpHeaderNames.CONTENT_TYPE);
+            String mimeType = exchange.getRequestHeader(AsciiHeaderNames.CONTENT_TYPE);
             if (mimeType != null && mimeType.startsWith(MULTIPART_FORM_DATA)) {
 
                 FormData formData = parseFormData();
@@ -613,7 +614,7 @@ public final class HttpServletRequestImpl implements HttpServletRequest {
     }
 
     private String getCharacterEncodingFromHeader() {
-        String contentType = exchange.getRequestHeader(HttpHeaderNames.CONTENT_TYPE);
+        String contentType = exchange.getRequestHeader(AsciiHeaderNames.CONTENT_TYPE);
         if (contentType == null) {
             return null;
         }
@@ -698,11 +699,15 @@ public final class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public String getParameter(final String name) {
+        final String param;
         if (queryParameters == null) {
-            queryParameters = exchange.getQueryParameters();
+            //look the parameter up without building the parameter map
+            param = exchange.getQueryParameter(name);
+        } else {
+            Deque<String> params = queryParameters.get(name);
+            param = params == null ? null : params.peekFirst();
         }
-        Deque<String> params = queryParameters.get(name);
-        if (params == null) {
+        if (param == null) {
             final FormData parsedFormData = parseFormData();
             if (parsedFormData != null) {
                 FormData.FormValue res = parsedFormData.getFirst(name);
@@ -714,7 +719,7 @@ public final class HttpServletRequestImpl implements HttpServletRequest {
             }
             return null;
         }
-        return params.getFirst();
+        return param;
     }
 
     @Override
@@ -947,7 +952,7 @@ public final class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public Enumeration<Locale> getLocales() {
-        final List<String> acceptLanguage = exchange.getRequestHeaders(HttpHeaderNames.ACCEPT_LANGUAGE);
+        final List<String> acceptLanguage = exchange.getRequestHeaders(AsciiHeaderNames.ACCEPT_LANGUAGE);
         List<Locale> ret = LocaleUtils.getLocalesFromHeader(acceptLanguage);
         if (ret.isEmpty()) {
             return new IteratorEnumeration<>(Collections.singletonList(Locale.getDefault()).iterator());
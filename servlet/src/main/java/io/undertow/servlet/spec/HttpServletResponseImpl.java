@@ -52,6 +52,7 @@ import io.undertow.servlet.handlers.ServletRequestContext;
 import io.undertow.util.CanonicalPathUtils;
 import io.undertow.util.DateUtils;
 import io.undertow.util.HttpAttachments;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.httpcore.HttpProtocolNames;
 import io.undertow.util.RedirectBuilder;
@@ -179,7 +180,7 @@ public final class HttpServletResponseImpl implements HttpServletResponse {
         setStatus(StatusCodes.FOUND);
         String realPath;
         if (isAbsoluteUrl(location)) {//absolute url
-            exchange.setResponseHeader(HttpHeaderNames.LOCATION, location);
+            exchange.setResponseHeader(AsciiHeaderNames.LOCATION, location);
         } else {
             if (location.startsWith("/")) {
                 realPath = location;
@@ -192,7 +193,7 @@ public final class HttpServletResponseImpl implements HttpServletResponse {
                 realPath = CanonicalPathUtils.canonicalize(servletContext.getContextPath() + current + location);
             }
             String loc = exchange.getRequestScheme() + "://" + exchange.getHostAndPort() + realPath;
-            exchange.setResponseHeader(HttpHeaderNames.LOCATION, loc);
+            exchange.setResponseHeader(AsciiHeaderNames.LOCATION, loc);
         }
         responseDone();
     }
@@ -228,7 +229,7 @@ public final class HttpServletResponseImpl implements HttpServletResponse {
         if (insideInclude || ignoredFlushPerformed || treatAsCommitted) {
             return;
         }
-        if(name.equals(HttpHeaderNames.CONTENT_TYPE) && !exchange.containsResponseHeader(HttpHeaderNames.CONTENT_TYPE)) {
+        if(name.equals(HttpHeaderNames.CONTENT_TYPE) && !exchange.containsResponseHeader(AsciiHeaderNames.CONTENT_TYPE)) {
             setContentType(value);
         } else {
             exchange.addResponseHeader(name, value);
@@ -347,7 +348,7 @@ public final class HttpServletResponseImpl implements HttpServletResponse {
         charsetSet = charset != null;
         this.charset = charset;
         if (contentType != null) {
-            exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, getContentType());
+            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, getContentType());
         }
     }
 
@@ -362,9 +363,9 @@ public final class HttpServletResponseImpl implements HttpServletResponse {
             return;
         }
         if(len >= 0) {
-            exchange.setResponseHeader(HttpHeaderNames.CONTENT_LENGTH, Long.toString(len));
+            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, Long.toString(len));
         } else {
-            exchange.removeResponseHeader(HttpHeaderNames.CONTENT_LENGTH);
+            exchange.removeResponseHeader(AsciiHeaderNames.CONTENT_LENGTH);
         }
         this.contentLength = len;
     }
@@ -395,11 +396,11 @@ public final class HttpServletResponseImpl implements HttpServletResponse {
             useCharset = true;
         }
         if(useCharset || !charsetSet) {
-            exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, ct.getHeader());
+            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, ct.getHeader());
         } else if(ct.getCharset() == null) {
-            exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, ct.getHeader() + "; charset=" + charset);
+            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, ct.getHeader() + "; charset=" + charset);
         }else {
-            exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, ct.getContentType() + "; charset=" + charset);
+            exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, ct.getContentType() + "; charset=" + charset);
         }
     }
 
@@ -494,7 +495,7 @@ public final class HttpServletResponseImpl implements HttpServletResponse {
             return;
         }
         this.locale = loc;
-        exchange.setResponseHeader(HttpHeaderNames.CONTENT_LANGUAGE, loc.getLanguage() + "-" + loc.getCountry());
+        exchange.setResponseHeader(AsciiHeaderNames.CONTENT_LANGUAGE, loc.getLanguage() + "-" + loc.getCountry());
         if (!charsetSet && writer == null) {
             final Map<String, String> localeCharsetMapping = servletContext.getDeployment().getDeploymentInfo().getLocaleCharsetMapping();
             // Match full language_country_variant first, then language_country,
@@ -510,7 +511,7 @@ public final class HttpServletResponseImpl implements HttpServletResponse {
             if (charset != null) {
                 this.charset = charset;
                 if (contentType != null) {
-                    exchange.setResponseHeader(HttpHeaderNames.CONTENT_TYPE, getContentType());
+                    exchange.setResponseHeader(AsciiHeaderNames.CONTENT_TYPE, getContentType());
                 }
             }
         }
@@ -744,7 +745,7 @@ public final class HttpServletResponseImpl implements HttpServletResponse {
         if(exchange.getProtocol().equals(HttpProtocolNames.HTTP_1_0)) {
             throw UndertowServletMessages.MESSAGES.trailersNotSupported("HTTP/1.0 request");
         } else if(exchange.getProtocol().equals(HttpProtocolNames.HTTP_1_1)) {
-            if(exchange.containsResponseHeader(HttpHeaderNames.CONTENT_LENGTH)) {
+            if(exchange.containsResponseHeader(AsciiHeaderNames.CONTENT_LENGTH)) {
                 throw UndertowServletMessages.MESSAGES.trailersNotSupported("not chunked");
             }
         }
@@ -173,6 +173,35 @@ public class ServletInputStreamImpl extends ServletInputStream {
         return copied;
     }
 
+    /**
+     * Reads the next part of the request body as a buffer rather than copying it into an array. Any data that has
+     * been received but not yet consumed by the other read methods is returned first. When a read listener is in
+     * use this must only be called when {@link #isReady()} has returned true, the same as the other read methods.
+     * <p>
+     * The buffer is read only, and is owned by the caller, who must release it.
+     *
+     * @return The next part of the body, or <code>null</code> if the end of the body has been reached
+     * @throws IOException If the data could not be read
+     */
+    public ByteBuf readBuffer() throws IOException {
+        if (anyAreSet(state, FLAG_CLOSED)) {
+            throw UndertowServletMessages.MESSAGES.streamIsClosed();
+        }
+        if (listener != null) {
+            if (anyAreClear(state, FLAG_IS_READY_CALLED)) {
+                throw UndertowServletMessages.MESSAGES.streamNotReady();
+            }
+            clearFlags(FLAG_IS_READY_CALLED);
+        }
+        readIntoBuffer(false);
+        if (anyAreSet(state, FLAG_FINISHED)) {
+            return null;
+        }
+        ByteBuf buffer = pooled;
+        pooled = null;
+        return buffer.asReadOnly();
+    }
+
     private void readIntoBuffer(boolean close) throws IOException {
         if (pooled == null && !anyAreSet(state, FLAG_FINISHED)) {
             pooled = listener == null || close ? exchange.readBlocking() : exchange.readAsync();
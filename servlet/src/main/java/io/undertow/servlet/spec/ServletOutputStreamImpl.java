@@ -32,11 +32,15 @@ import jakarta.servlet.WriteListener;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.undertow.UndertowMessages;
+import io.undertow.httpcore.BufferWritableOutputStream;
 import io.undertow.httpcore.HttpExchange;
 import io.undertow.httpcore.IoCallback;
+import io.undertow.httpcore.ResponseSizeHint;
+import io.undertow.httpcore.UndertowOptions;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.servlet.UndertowServletMessages;
 import io.undertow.servlet.handlers.ServletRequestContext;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.util.IoUtils;
 
@@ -45,6 +49,10 @@ import io.undertow.util.IoUtils;
  * it will buffer in the pooled buffer. If the stream is closed before the buffer is full it will
  * set a content-length header if one has not been explicitly set.
  * <p>
+ * Unless a buffer size has been set the first buffer is sized from the sizes of earlier responses from the same
+ * servlet, and grows in place up to the full buffer size before anything is sent. Once a response no longer fits the
+ * buffers that are sent double in size, up to {@link UndertowOptions#MAX_RESPONSE_BUFFER_SIZE}.
+ * <p>
  * If a content-length header was present when the stream was created then it will automatically
  * close and flush itself once the appropriate amount of data has been written.
  * <p>
@@ -59,12 +67,14 @@ import io.undertow.util.IoUtils;
  *
  * @author Stuart Douglas
  */
-public class ServletOutputStreamImpl extends ServletOutputStream {
+public class ServletOutputStreamImpl extends ServletOutputStream implements BufferWritableOutputStream {
 
     private final ServletRequestContext servletRequestContext;
     private final HttpServerExchange exchange;
     private ByteBuf pooledBuffer;
     private int bufferSize;
+    private int nextBufferSize;
+    private final ResponseSizeHint responseSizeHint;
     private long written;
     private final long contentLength;
     private static final AtomicIntegerFieldUpdater<ServletOutputStreamImpl> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(ServletOutputStreamImpl.class, "state");
@@ -88,12 +98,67 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
         this.exchange = exchange;
         this.contentLength = exchange.getResponseContentLength();
         servletRequestContext = exchange.getAttachment(ServletRequestContext.ATTACHMENT_KEY);
+        responseSizeHint = responseSizeHint(servletRequestContext);
     }
 
     public ServletOutputStreamImpl(HttpServerExchange exchange, Integer bufferSize) {
         this.exchange = exchange;
         this.contentLength = exchange.getResponseContentLength();
+        this.bufferSize = bufferSize;
         servletRequestContext = exchange.getAttachment(ServletRequestContext.ATTACHMENT_KEY);
+        responseSizeHint = responseSizeHint(servletRequestContext);
+    }
+
+    private static ResponseSizeHint responseSizeHint(ServletRequestContext servletRequestContext) {
+        if (servletRequestContext == null || servletRequestContext.getCurrentServlet() == null) {
+            return null;
+        }
+        return servletRequestContext.getCurrentServlet().getManagedServlet().getResponseSizeHint();
+    }
+
+    private int bufferSize() {
+        return bufferSize > 0 ? bufferSize : exchange.getBufferSize();
+    }
+
+    private ByteBuf allocateBuffer() {
+        if (nextBufferSize == 0) {
+            //an explicitly set buffer size is always used, and async writes are sent as soon as the buffer is full
+            if (bufferSize > 0 || responseSizeHint == null || listener != null) {
+                nextBufferSize = bufferSize();
+            } else {
+                nextBufferSize = responseSizeHint.initialBufferSize(bufferSize());
+            }
+        }
+        return exchange.allocateBuffer(nextBufferSize);
+    }
+
+    /**
+     * If a full buffer can be grown rather than sent, which is the case in blocking mode until it reaches the buffer
+     * size for the first write.
+     */
+    private boolean canGrow(ByteBuf buffer) {
+        return listener == null && anyAreClear(state, FLAG_WRITE_STARTED) && buffer.capacity() < bufferSize();
+    }
+
+    /**
+     * Makes room for more data once the buffer is full in blocking mode, either by growing it or by sending it.
+     *
+     * @return The buffer to write to
+     */
+    private ByteBuf nextBuffer(ByteBuf buffer) throws IOException {
+        final int bufferSize = bufferSize();
+        if (canGrow(buffer)) {
+            nextBufferSize = Math.min(buffer.capacity() << 1, bufferSize);
+            if (nextBufferSize <= buffer.maxCapacity()) {
+                buffer.capacity(nextBufferSize);
+                return buffer;
+            }
+        }
+        setFlags(FLAG_WRITE_STARTED);
+        nextBufferSize = ResponseSizeHint.nextBufferSize(buffer.capacity(), exchange.getUndertowOptions().get(UndertowOptions.MAX_RESPONSE_BUFFER_SIZE, bufferSize * 4));
+        this.pooledBuffer = allocateBuffer();
+        exchange.writeBlocking(buffer, false);
+        return pooledBuffer;
     }
 
 
@@ -105,7 +170,35 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
      * {@inheritDoc}
      */
     public void write(final int b) throws IOException {
-        write(new byte[]{(byte) b}, 0, 1);
+        if (listener != null) {
+            write(new byte[]{(byte) b}, 0, 1);
+            return;
+        }
+        if (anyAreSet(state, FLAG_CLOSED)) {
+            throw UndertowMessages.MESSAGES.streamIsClosed();
+        }
+        if (exchange.getIoThread().inEventLoop()) {
+            throw UndertowMessages.MESSAGES.blockingIoFromIOThread();
+        }
+        ByteBuf buffer = pooledBuffer;
+        try {
+            if (buffer == null) {
+                pooledBuffer = buffer = allocateBuffer();
+            } else if (!buffer.isWritable()) {
+                buffer = nextBuffer(buffer);
+            }
+            buffer.writeByte(b);
+            if (!buffer.isWritable() && !canGrow(buffer)) {
+                nextBuffer(buffer);
+            }
+        } catch (Exception e) {
+            if (pooledBuffer != null) {
+                pooledBuffer.release();
+                this.pooledBuffer = null;
+            }
+            throw new IOException(e);
+        }
+        updateWritten(1);
     }
 
     /**
@@ -136,28 +229,23 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
             ByteBuf buffer = pooledBuffer;
             try {
                 if (buffer == null) {
-                    // TODO too ugly ... is there any other way? for now I'm not replicating this throughout the class
-                    if (bufferSize > 0) {
-                        pooledBuffer = buffer = exchange.allocateBuffer(bufferSize);
-                    } else {
-                        pooledBuffer = buffer = exchange.allocateBuffer();
-                    }
+                    pooledBuffer = buffer = allocateBuffer();
+                } else if (!buffer.isWritable()) {
+                    buffer = nextBuffer(buffer);
                 }
                 while (rem > 0) {
                     int toWrite = Math.min(rem, buffer.writableBytes());
                     buffer.writeBytes(b, idx, toWrite);
                     rem -= toWrite;
                     idx += toWrite;
-                    if (!buffer.isWritable()) {
-                        setFlags(FLAG_WRITE_STARTED);
-                        ByteBuf tmpBuf = buffer;
-                        this.pooledBuffer = buffer = exchange.allocateBuffer();
-                        exchange.writeBlocking(tmpBuf, false);
+                    //a full buffer is only grown if there is more to write, but it is sent straight away
+                    if (!buffer.isWritable() && (rem > 0 || !canGrow(buffer))) {
+                        buffer = nextBuffer(buffer);
                     }
                 }
             } catch (Exception e) {
-                if (buffer != null) {
-                    buffer.release();
+                if (pooledBuffer != null) {
+                    pooledBuffer.release();
                     this.pooledBuffer = null;
                 }
                 throw new IOException(e);
@@ -197,6 +285,50 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
         updateWrittenAsync(len);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(ByteBuf data) throws IOException {
+        int len = data.readableBytes();
+        if (len < 1) {
+            data.release();
+            return;
+        }
+        if (anyAreSet(state, FLAG_CLOSED)) {
+            data.release();
+            throw UndertowMessages.MESSAGES.streamIsClosed();
+        }
+        if (listener == null && exchange.getIoThread().inEventLoop()) {
+            data.release();
+            throw UndertowMessages.MESSAGES.blockingIoFromIOThread();
+        }
+        ByteBuf buffer = pooledBuffer;
+        pooledBuffer = null;
+        if (buffer != null) {
+            if (buffer.isReadable()) {
+                data = Unpooled.wrappedBuffer(buffer, data);
+            } else {
+                buffer.release();
+            }
+        }
+        if (listener == null) {
+            this.written += len;
+            long contentLength = servletRequestContext.getOriginalResponse().getContentLength();
+            boolean last = contentLength != -1 && this.written >= contentLength;
+            setFlags(last ? FLAG_WRITE_STARTED | FLAG_CLOSED : FLAG_WRITE_STARTED);
+            try {
+                exchange.writeBlocking(data, last);
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        } else {
+            setFlags(FLAG_PENDING_DATA | FLAG_WRITE_STARTED);
+            exchange.writeAsync(data, false, listenerCallback, null);
+            updateWrittenAsync(len);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -207,6 +339,7 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
         try {
             if (pooledBuffer != null) {
                 if (listener == null) {
+                    setFlags(FLAG_WRITE_STARTED);
                     exchange.writeBlocking(pooledBuffer, false);
                     pooledBuffer = null;
                 } else {
@@ -229,11 +362,14 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
     public void close() throws IOException {
         if (anyAreSet(state, FLAG_CLOSED)) return;
         setFlags(FLAG_CLOSED);
+        if (responseSizeHint != null) {
+            responseSizeHint.record(written);
+        }
         if (anyAreClear(state, FLAG_WRITE_STARTED) && servletRequestContext.getOriginalResponse().getHeader(HttpHeaderNames.CONTENT_LENGTH) == null) {
             if (pooledBuffer == null) {
-                exchange.setResponseHeader(HttpHeaderNames.CONTENT_LENGTH, "0");
+                exchange.setResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, "0");
             } else {
-                exchange.setResponseHeader(HttpHeaderNames.CONTENT_LENGTH, "" + pooledBuffer.readableBytes());
+                exchange.setResponseHeader(AsciiHeaderNames.CONTENT_LENGTH, "" + pooledBuffer.readableBytes());
             }
         }
         try {
@@ -281,12 +417,24 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
 
     public ByteBuf underlyingBuffer() {
         if (pooledBuffer == null) {
-            pooledBuffer = exchange.allocateBuffer();
+            pooledBuffer = allocateBuffer();
         }
         return pooledBuffer;
     }
 
     public ByteBuf flushInternal() throws IOException {
+        ByteBuf buffer = pooledBuffer;
+        if (listener == null && buffer != null && !buffer.isWritable() && anyAreClear(state, FLAG_CLOSED)) {
+            try {
+                return nextBuffer(buffer);
+            } catch (Exception e) {
+                if (pooledBuffer != null) {
+                    pooledBuffer.release();
+                    pooledBuffer = null;
+                }
+                throw new IOException(e);
+            }
+        }
         flush();
         return underlyingBuffer();
     }
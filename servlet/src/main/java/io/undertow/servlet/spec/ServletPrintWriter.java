@@ -236,7 +236,8 @@ public class ServletPrintWriter {
                         flushPos = i + buffer.writableBytes();
                     }
                 }
-                outputStream.updateWritten(remaining - buffer.writableBytes());
+                //every ascii character is one byte, the buffer may have been flushed or grown so its size can not be used
+                outputStream.updateWritten(i - off);
                 if (ok) {
                     return;
                 }
@@ -286,7 +287,7 @@ public class ServletPrintWriter {
                     }
                     buffer.writeByte((byte) c);
                 }
-                outputStream.updateWritten(remaining - buffer.writableBytes());
+                outputStream.updateWritten(i - off);
                 if (ok) {
                     return;
                 }
@@ -66,7 +66,8 @@ public class AsyncInputStreamServlet extends HttpServlet {
         private final AsyncContext context;
         private final boolean offIoThread;
 
-        boolean done = false;
+        volatile boolean done = false;
+        boolean completed = false;
 
         int written = 0;
         int read = 0;
@@ -84,16 +85,19 @@ public class AsyncInputStreamServlet extends HttpServlet {
         }
 
         @Override
-        public void onWritePossible() throws IOException {
+        public synchronized void onWritePossible() throws IOException {
             //we don't use async writes for the off IO thread case
             //as we can't make it thread safe
+            //off the IO thread this is called both by the reader once it sees the end of the stream, and from
+            //onAllDataRead, which the container can run while the reader is still writing
             if (offIoThread || outputStream.isReady()) {
                 if(dataToWrite.size() > 0) {
                     dataToWrite.writeTo(outputStream);
                 }
                 written += dataToWrite.size();
                 dataToWrite.reset();
-                if (done) {
+                if (done && !completed) {
+                    completed = true;
                     context.complete();
                     System.out.println("WRITTEN POSSIBLE" + written);
                 }
@@ -136,7 +140,7 @@ public class AsyncInputStreamServlet extends HttpServlet {
         }
 
         @Override
-        public synchronized void onAllDataRead() throws IOException {
+        public void onAllDataRead() throws IOException {
             System.out.println("READ " + read);
             done = true;
             if(offIoThread) {
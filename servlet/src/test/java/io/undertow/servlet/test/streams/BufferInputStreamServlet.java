@@ -0,0 +1,60 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.servlet.test.streams;
+
+import java.io.IOException;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import io.netty.buffer.ByteBuf;
+import io.undertow.servlet.spec.ServletInputStreamImpl;
+
+/**
+ * Echoes the request body, reading it as buffers rather than into an array.
+ */
+public class BufferInputStreamServlet extends HttpServlet {
+
+    @Override
+    protected void doPost(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+        final ServletInputStreamImpl inputStream = (ServletInputStreamImpl) req.getInputStream();
+        final ServletOutputStream out = resp.getOutputStream();
+        //a copying read first, the rest of the first buffer must still be returned
+        int first = inputStream.read();
+        if (first != -1) {
+            out.write(first);
+        }
+        ByteBuf buffer;
+        while ((buffer = inputStream.readBuffer()) != null) {
+            try {
+                if (!buffer.isReadOnly()) {
+                    throw new IllegalStateException("buffer is writable");
+                }
+                byte[] data = new byte[buffer.readableBytes()];
+                buffer.readBytes(data);
+                out.write(data);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package io.undertow.servlet.test.streams;
 
 import org.junit.BeforeClass;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import io.undertow.servlet.api.ServletInfo;
@@ -31,6 +32,8 @@ import io.undertow.testutils.DefaultServer;
 @RunWith(DefaultServer.class)
 public class ServletInputStreamTestCase extends AbstractServletInputStreamTestCase {
 
+    public static final String BUFFER_SERVLET = "bufferInput";
+
     @BeforeClass
     public static void setup() {
         DeploymentUtils.setupServlet(
@@ -38,7 +41,21 @@ public class ServletInputStreamTestCase extends AbstractServletInputStreamTestCa
                         .addMapping("/" + BLOCKING_SERVLET),
                 new ServletInfo(ASYNC_SERVLET, AsyncInputStreamServlet.class)
                         .addMapping("/" + ASYNC_SERVLET)
-                        .setAsyncSupported(true));
+                        .setAsyncSupported(true),
+                new ServletInfo(BUFFER_SERVLET, BufferInputStreamServlet.class)
+                        .addMapping("/" + BUFFER_SERVLET));
+    }
+
+    @Test
+    public void testServletInputStreamBuffers() throws Exception {
+        StringBuilder builder = new StringBuilder(1000 * HELLO_WORLD.length());
+        runTest("", BUFFER_SERVLET, false, false);
+        for (int i = 0; i < 10; ++i) {
+            for (int j = 0; j < 1000; ++j) {
+                builder.append(HELLO_WORLD);
+            }
+            runTest(builder.toString(), BUFFER_SERVLET, false, false);
+        }
     }
 
 }
@@ -37,6 +37,7 @@ import io.undertow.servlet.test.util.DeploymentUtils;
 import io.undertow.testutils.DefaultServer;
 import io.undertow.testutils.HttpClientUtils;
 import io.undertow.testutils.TestHttpClient;
+import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.httpcore.StatusCodes;
 
 /**
@@ -52,6 +53,7 @@ public class ServletOutputStreamTestCase {
     public static final String ASYNC_SERVLET = "asyncOutput";
     public static final String CONTENT_LENGTH_SERVLET = "contentLength";
     public static final String RESET = "reset";
+    public static final String SIZED = "sized";
 
     public static final String START = "START";
     public static final String END = "END";
@@ -71,7 +73,8 @@ public class ServletOutputStreamTestCase {
                         .setAsyncSupported(true),
                 new ServletInfo(CONTENT_LENGTH_SERVLET, ContentLengthCloseFlushServlet.class)
                         .addMapping("/" + CONTENT_LENGTH_SERVLET),
-                new ServletInfo(RESET, ResetBufferServlet.class).addMapping("/" + RESET));
+                new ServletInfo(RESET, ResetBufferServlet.class).addMapping("/" + RESET),
+                new ServletInfo(SIZED, SizedResponseServlet.class).addMapping("/" + SIZED));
     }
 
 
@@ -97,6 +100,45 @@ public class ServletOutputStreamTestCase {
         }
     }
 
+    @Test
+    public void testAdaptiveBufferSize() throws Exception {
+        TestHttpClient client = createClient();
+        try {
+            //small responses make the servlet start with a small buffer, which has to grow for the larger ones
+            for (int i = 0; i < 5; ++i) {
+                runSizedTest(client, "", 100, true);
+                runSizedTest(client, "&writer=true", 100, true);
+            }
+            runSizedTest(client, "", 5000, true);
+            runSizedTest(client, "&writer=true", 5000, true);
+            runSizedTest(client, "", 200000, false);
+            runSizedTest(client, "&writer=true", 200000, false);
+            runSizedTest(client, "", 100, true);
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    private void runSizedTest(TestHttpClient client, String query, int length, boolean contentLength) throws IOException {
+        HttpGet get = new HttpGet(getBaseUrl() + "/servletContext/" + SIZED + "?length=" + length + query);
+        HttpResponse result = client.execute(get);
+        Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+        Assert.assertEquals(sizedResponse(length), HttpClientUtils.readResponse(result));
+        if (contentLength) {
+            Assert.assertEquals(Integer.toString(length), result.getFirstHeader(HttpHeaderNames.CONTENT_LENGTH).getValue());
+        } else {
+            Assert.assertNull(result.getFirstHeader(HttpHeaderNames.CONTENT_LENGTH));
+        }
+    }
+
+    static String sizedResponse(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; ++i) {
+            builder.append((char) ('a' + i % 10));
+        }
+        return builder.toString();
+    }
+
     protected TestHttpClient createClient() {
         return new TestHttpClient();
     }
@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.undertow.servlet.test.streams;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Writes a response of the requested length a byte or a short string at a time.
+ */
+public class SizedResponseServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+        int length = Integer.parseInt(req.getParameter("length"));
+        if (req.getParameter("writer") != null) {
+            PrintWriter writer = resp.getWriter();
+            for (int i = 0; i < length; i += 10) {
+                writer.write(ServletOutputStreamTestCase.sizedResponse(Math.min(10, length - i)));
+            }
+        } else {
+            ServletOutputStream out = resp.getOutputStream();
+            for (int i = 0; i < length; ++i) {
+                out.write('a' + i % 10);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.undertow.vertx;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.NetUtil;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.net.SocketAddress;
+
+/**
+ * The peer and local addresses of a connection, converted from the Vert.x addresses once and then stored on the
+ * channel so every request on the connection can use them.
+ * <p>
+ * The addresses are built from the raw IP address bytes, so no name resolution ever takes place, and the bytes are
+ * kept so that IP address matching does not have to copy them out of the {@link InetAddress} for every request.
+ */
+final class ConnectionAddresses {
+
+    private static final AttributeKey<ConnectionAddresses> KEY = AttributeKey.valueOf(ConnectionAddresses.class, "addresses");
+
+    final InetSocketAddress source;
+    final byte[] sourceBytes;
+    final InetSocketAddress destination;
+    final byte[] destinationBytes;
+
+    ConnectionAddresses(SocketAddress source, SocketAddress destination) {
+        this.source = toInetSocketAddress(source);
+        this.sourceBytes = addressBytes(this.source);
+        this.destination = toInetSocketAddress(destination);
+        this.destinationBytes = addressBytes(this.destination);
+    }
+
+    static ConnectionAddresses get(Channel channel, HttpServerRequest request) {
+        Attribute<ConnectionAddresses> attribute = channel.attr(KEY);
+        ConnectionAddresses addresses = attribute.get();
+        if (addresses == null) {
+            //the request addresses take the proxy protocol into account, so we can't just use the channel ones
+            //if two requests race here they both compute the same thing, so it does not matter which one wins
+            addresses = new ConnectionAddresses(request.remoteAddress(), request.localAddress());
+            attribute.set(addresses);
+        }
+        return addresses;
+    }
+
+    /**
+     * @return The bytes as returned by {@link InetAddress#getAddress()}, so an IPv4 mapped IPv6 address is 4 bytes long
+     */
+    private static byte[] addressBytes(InetSocketAddress address) {
+        if (address == null || address.isUnresolved()) {
+            return null;
+        }
+        return address.getAddress().getAddress();
+    }
+
+    private static InetSocketAddress toInetSocketAddress(SocketAddress address) {
+        if (address == null || address.host() == null) {
+            return null;
+        }
+        byte[] bytes = address.isInetSocket() && address.hostAddress() != null ? NetUtil.createByteArrayFromIpAddressString(address.hostAddress()) : null;
+        if (bytes != null) {
+            try {
+                return new InetSocketAddress(InetAddress.getByAddress(bytes), address.port());
+            } catch (UnknownHostException e) {
+                //can't happen, the array is always a valid length
+            }
+        }
+        return InetSocketAddress.createUnresolved(address.host(), address.port());
+    }
+}
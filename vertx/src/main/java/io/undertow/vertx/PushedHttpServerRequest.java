@@ -114,10 +114,11 @@ public class PushedHttpServerRequest extends HttpServerRequestInternal implement
 
     @Override
     public String query() {
-        synchronized (original.connection()) {
-            this.query = uri != null ? parseQuery(uri) : null;
-            return query;
+        //the uri never changes, so racing threads can only compute the same value
+        if (query == null && uri != null) {
+            query = parseQuery(uri);
         }
+        return query;
     }
 
     @Override
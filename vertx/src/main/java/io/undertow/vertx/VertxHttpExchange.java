@@ -1,15 +1,17 @@
 package io.undertow.vertx;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.util.concurrent.EventExecutor;
+import io.undertow.httpcore.AsciiHeaderNames;
 import io.undertow.httpcore.BufferAllocator;
 import io.undertow.httpcore.ConnectionSSLSessionInfo;
 import io.undertow.httpcore.HttpExchange;
 import io.undertow.httpcore.HttpExchangeBase;
-import io.undertow.httpcore.HttpHeaderNames;
 import io.undertow.httpcore.InputChannel;
 import io.undertow.httpcore.IoCallback;
 import io.undertow.httpcore.OutputChannel;
@@ -21,14 +23,12 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.http.HttpConnection;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.http.HttpVersion;
 import io.vertx.core.http.impl.Http1xServerConnection;
-import io.vertx.core.net.SocketAddress;
 import io.vertx.core.net.impl.ConnectionBase;
 import org.jboss.logging.Logger;
 
@@ -36,13 +36,19 @@ import javax.net.ssl.SSLSession;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
-import java.util.ArrayDeque;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Path;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -55,6 +61,16 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
 
     private static final Logger log = Logger.getLogger(VertxHttpExchange.class);
 
+    /**
+     * The number of bytes a blocking writer can queue before it has to wait for the IO thread, this is the same as the
+     * default high water mark of the channel.
+     */
+    private static final int MAX_QUEUED_OUTPUT = 64 * 1024;
+
+    private static final AtomicIntegerFieldUpdater<VertxHttpExchange> OUTPUT_QUEUED_UPDATER = AtomicIntegerFieldUpdater.newUpdater(VertxHttpExchange.class, "outputQueued");
+    private static final AtomicIntegerFieldUpdater<VertxHttpExchange> OUTPUT_FLUSH_UPDATER = AtomicIntegerFieldUpdater.newUpdater(VertxHttpExchange.class, "outputFlushScheduled");
+    private static final AtomicReferenceFieldUpdater<VertxHttpExchange, PendingRead> READ_HANDLER_UPDATER = AtomicReferenceFieldUpdater.newUpdater(VertxHttpExchange.class, PendingRead.class, "readHandler");
+
     private final HttpServerRequest request;
     private final HttpServerResponse response;
     private final ConnectionBase connectionBase;
@@ -65,22 +81,50 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
     private final BufferAllocator allocator;
     private final Executor worker;
 
-    private Buffer input1;
-    private Deque<Buffer> inputOverflow;
-    private boolean waitingForRead = false;
-    private BiConsumer<InputChannel, Object> readHandler;
-    private Object readHandlerContext;
+    /**
+     * The request body. Data is added by the IO thread, and taken by the single thread that is reading the request,
+     * which may be the IO thread or a worker doing blocking reads. Neither side takes a lock: the reader is woken by
+     * unparking it if it is blocked, or by running its read handler on the IO thread.
+     */
+    private final Queue<Buffer> input = new ConcurrentLinkedQueue<>();
+    private volatile Thread readWaiter;
+    private volatile PendingRead readHandler;
 
-    private boolean eof = false;
+    private volatile boolean eof = false;
     private boolean eofRead = false;
     private boolean responseDone = false;
 
-    private boolean waitingForWrite;
+    /**
+     * Response data written by a blocking writer. The writer only adds to the queue, and the IO thread takes everything
+     * that has been queued and writes it to Vert.x as one buffer, so a stream of small writes costs one task and one
+     * flush per batch instead of one per write. The writer blocks once {@link #MAX_QUEUED_OUTPUT} bytes are waiting,
+     * and the IO thread stops taking data while the connection is not writable, which gives the same backpressure as
+     * {@link HttpServerResponse#writeQueueFull()}.
+     */
+    private final Queue<ByteBuf> output = new ConcurrentLinkedQueue<>();
+    private volatile int outputQueued;
+    private volatile int outputFlushScheduled;
+    private volatile boolean outputComplete;
+    private volatile Thread writeWaiter;
+    private volatile IOException writeError;
+    private boolean outputStarted;
+    private boolean outputEnded;
     private boolean drainHandlerRegistered;
+    private final Handler<AsyncResult<Void>> endListener = new Handler<AsyncResult<Void>>() {
+        @Override
+        public void handle(AsyncResult<Void> event) {
+            terminateResponse();
+        }
+    };
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushOutput(false);
+        }
+    };
     private volatile boolean writeQueued = false;
-    private IOException readError;
+    private volatile IOException readError;
     private final Object context;
-    private boolean first = true;
     private Handler<AsyncResult<Void>> upgradeHandler;
     private final boolean upgradeRequest;
     private long readTimeout = UndertowOptions.DEFAULT_READ_TIMEOUT;
@@ -90,6 +134,7 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
     private Handler<HttpServerRequest> pushHandler;
     private int continueState;
     private UndertowOptionMap optionMap = UndertowOptionMap.EMPTY;
+    private ConnectionAddresses addresses;
 
     public VertxHttpExchange(HttpServerRequest request, BufferAllocator allocator, Executor worker, Object context) {
         this(request, allocator, worker, context, null);
@@ -102,7 +147,9 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
         this.allocator = allocator;
         this.worker = worker;
         this.context = context;
-        this.input1 = existingBody;
+        if (existingBody != null) {
+            input.add(existingBody);
+        }
 
         ChannelPipeline pipeline = connectionBase.channel().pipeline();
         final ChannelHandler websocketChannelHandler = pipeline.get("webSocketExtensionHandler");
@@ -114,56 +161,26 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
             request.exceptionHandler(new Handler<Throwable>() {
                 @Override
                 public void handle(Throwable event) {
-                    synchronized (request.connection()) {
-
-                        if (waitingForRead) {
-                            request.connection().notify();
-                            if (input1 != null) {
-                                input1.getByteBuf().release();
-                                input1 = null;
-                            }
-                            if (inputOverflow != null) {
-                                while (!inputOverflow.isEmpty()) {
-                                    inputOverflow.poll().getByteBuf().release();
-                                }
-                            }
-                        }
-                        if (event instanceof IOException) {
-                            readError = (IOException) event;
-                        } else {
-                            readError = new IOException(event);
-                        }
+                    if (event instanceof IOException) {
+                        readError = (IOException) event;
+                    } else {
+                        readError = new IOException(event);
                     }
+                    //the reader discards any data that has not been read yet when it sees the error
+                    wakeReader(true);
                 }
             });
             request.endHandler(new Handler<Void>() {
                 @Override
                 public void handle(Void event) {
-                    boolean terminate = false;
-                    BiConsumer<InputChannel, Object> readCallback = null;
-                    Object readContext = null;
-                    synchronized (request.connection()) {
-                        eof = true;
-                        if (requestContentLength != -1 && uploadSize != requestContentLength) {
-                            //we did not read the full request
-                            readError = new IOException("Failed to read full request");
-                        }
-                        if (waitingForRead) {
-                            request.connection().notify();
-                        }
-                        if (VertxHttpExchange.this.readHandler != null) {
-                            readCallback = VertxHttpExchange.this.readHandler;
-                            VertxHttpExchange.this.readHandler = null;
-                            readContext = readHandlerContext;
-                            VertxHttpExchange.this.readHandlerContext = null;
-                        }
-                        if (input1 == null) {
-                            terminate = true;
-                        }
-                    }
-                    if (readCallback != null) {
-                        readCallback.accept(VertxHttpExchange.this, readContext);
+                    if (requestContentLength != -1 && uploadSize != requestContentLength) {
+                        //we did not read the full request
+                        readError = new IOException("Failed to read full request");
                     }
+                    //all data has been added to the queue before this, so a reader that sees eof will also see the data
+                    eof = true;
+                    boolean terminate = input.isEmpty();
+                    wakeReader(false);
                     if (terminate) {
                         terminateRequest();
                     }
@@ -188,20 +205,16 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
         request.response().exceptionHandler(new Handler<Throwable>() {
             @Override
             public void handle(Throwable event) {
-                synchronized (request.connection()) {
-                    log.debugf(event, "IO Exception ");
-                    eof = true;
-                    if (waitingForRead) {
-                        request.connection().notify();
-                    }
-                    //we are not getting any more read events either
-                    if (event instanceof IOException) {
-                        readError = (IOException) event;
-                    } else {
-                        readError = new IOException(event);
-                    }
-
+                log.debugf(event, "IO Exception ");
+                //we are not getting any more read events either
+                if (event instanceof IOException) {
+                    readError = (IOException) event;
+                } else {
+                    readError = new IOException(event);
                 }
+                eof = true;
+                wakeReader(true);
+                failOutput(readError);
                 terminateResponse();
                 VertxHttpExchange.this.close();
             }
@@ -210,15 +223,15 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
         request.response().endHandler(new Handler<Void>() {
             @Override
             public void handle(Void event) {
-                synchronized (request.connection()) {
-                    if (waitingForWrite || waitingForRead) {
-                        request.connection().notify();
-                    }
+                LockSupport.unpark(writeWaiter);
+                //this runs as soon as end() is called, if the last blocking write ended the response it is
+                //terminated once vert.x has written it instead
+                if (!outputEnded) {
+                    terminateResponse();
                 }
-                terminateResponse();
             }
         });
-        if (request.headers().contains(HttpHeaderNames.UPGRADE)) {
+        if (request.headers().contains(AsciiHeaderNames.UPGRADE)) {
             upgradeRequest = true;
             //we always remove the websocket handler (if it's present)
             ConnectionBase connection = (ConnectionBase) request.connection();
@@ -355,6 +368,75 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
         return response.headers().get(name);
     }
 
+    @Override
+    public String getRequestHeader(CharSequence name) {
+        return request.getHeader(name);
+    }
+
+    @Override
+    public List<String> getRequestHeaders(CharSequence name) {
+        return request.headers().getAll(name);
+    }
+
+    @Override
+    public boolean containsRequestHeader(CharSequence name) {
+        return request.headers().contains(name);
+    }
+
+    @Override
+    public void removeRequestHeader(CharSequence name) {
+        request.headers().remove(name);
+    }
+
+    @Override
+    public void setRequestHeader(CharSequence name, String value) {
+        request.headers().set(name, value);
+    }
+
+    @Override
+    public void addRequestHeader(CharSequence name, String value) {
+        request.headers().add(name, value);
+    }
+
+    @Override
+    public String getResponseHeader(CharSequence name) {
+        return response.headers().get(name);
+    }
+
+    @Override
+    public List<String> getResponseHeaders(CharSequence name) {
+        return response.headers().getAll(name);
+    }
+
+    @Override
+    public boolean containsResponseHeader(CharSequence name) {
+        return response.headers().contains(name);
+    }
+
+    @Override
+    public void removeResponseHeader(CharSequence name) {
+        if (isResponseStarted()) {
+            return;
+        }
+        response.headers().remove(name);
+    }
+
+    @Override
+    public void setResponseHeader(CharSequence name, String value) {
+        if (isResponseStarted()) {
+            return;
+        }
+        response.headers().set(name, value);
+    }
+
+    @Override
+    public void addResponseHeader(CharSequence name, String value) {
+        if (isResponseStarted()) {
+            return;
+        }
+        response.headers().add(name, value);
+    }
+
     @Override
     public String getRequestMethod() {
         return request.method().name();
@@ -401,20 +483,30 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
 
     @Override
     public InetSocketAddress getDestinationAddress() {
-        SocketAddress socketAddress = request.localAddress();
-        if (socketAddress == null) {
-            return null;
-        }
-        return new InetSocketAddress(socketAddress.host(), socketAddress.port());
+        return addresses().destination;
     }
 
     @Override
     public InetSocketAddress getSourceAddress() {
-        SocketAddress socketAddress = request.remoteAddress();
-        if (socketAddress == null) {
-            return null;
+        return addresses().source;
+    }
+
+    @Override
+    public byte[] getDestinationAddressBytes() {
+        return addresses().destinationBytes;
+    }
+
+    @Override
+    public byte[] getSourceAddressBytes() {
+        return addresses().sourceBytes;
+    }
+
+    private ConnectionAddresses addresses() {
+        ConnectionAddresses addresses = this.addresses;
+        if (addresses == null) {
+            this.addresses = addresses = ConnectionAddresses.get(connectionBase.channel(), request);
         }
-        return new InetSocketAddress(socketAddress.host(), socketAddress.port());
+        return addresses;
     }
 
     @Override
@@ -423,67 +515,52 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
             continueState = CONTINUE_STATE_SENT;
             request.response().writeContinue();
         }
-        synchronized (request.connection()) {
-            if (readError != null) {
-                throw new IOException(readError);
-            } else if (input1 != null) {
-                ByteBuf ret = input1.getByteBuf();
-                if (inputOverflow != null) {
-                    input1 = inputOverflow.poll();
-                    if (input1 == null) {
-                        if (!eof) {
-                            request.fetch(1);
-                        }
-                    }
-                } else {
-                    input1 = null;
-                    if (!eof) {
-                        request.fetch(1);
-                    }
-                }
-                return ret;
-            } else if (eof) {
-                eofRead = true;
-                return null;
-            } else {
-                throw new IllegalStateException("readAsync called when isReadable is false");
-            }
+        IOException error = readError;
+        if (error != null) {
+            discardInput();
+            throw new IOException(error);
+        }
+        //read eof first, as once it is set all the data is already in the queue
+        boolean end = eof;
+        Buffer ret = input.poll();
+        if (ret != null) {
+            fetchIfDrained();
+            return ret.getByteBuf();
+        } else if (end) {
+            eofRead = true;
+            return null;
+        } else {
+            throw new IllegalStateException("readAsync called when isReadable is false");
         }
     }
 
     @Override
     public boolean isReadable() {
-        synchronized (request.connection()) {
-            if (eofRead) {
-                return false;
-            }
-            return input1 != null || eof || readError != null;
+        if (eofRead) {
+            return false;
         }
+        return !input.isEmpty() || eof || readError != null;
     }
 
     @Override
     public <T> void setReadHandler(BiConsumer<InputChannel, T> handler, T context) {
-        synchronized (request.connection()) {
-            if (isReadable()) {
-                getIoThread().execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        handler.accept(VertxHttpExchange.this, context);
-                    }
-                });
-            } else {
-                this.readHandler = (BiConsumer<InputChannel, Object>) handler;
-                this.readHandlerContext = context;
+        PendingRead pending = new PendingRead((BiConsumer<InputChannel, Object>) handler, context);
+        if (!isReadable()) {
+            readHandler = pending;
+            //data may have arrived before the handler was visible to the IO thread, in which case whoever
+            //removes the handler is responsible for running it
+            if (!isReadable() || !READ_HANDLER_UPDATER.compareAndSet(this, pending, null)) {
+                return;
             }
         }
+        getIoThread().execute(pending);
     }
 
     @Override
     public int readBytesAvailable() {
-        synchronized (request.connection()) {
-            if (input1 != null) {
-                return input1.getByteBuf().readableBytes();
-            }
+        Buffer next = input.peek();
+        if (next != null) {
+            return next.length();
         }
         return 0;
     }
@@ -495,54 +572,94 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
             request.response().writeContinue();
         }
         long readStart = System.currentTimeMillis();
-        synchronized (request.connection()) {
-
-            while (input1 == null && !eof && readError == null) {
-                try {
-                    waitingForRead = true;
-                    long toWait = readTimeout - (System.currentTimeMillis() - readStart);
-                    if (toWait <= 0) {
-                        throw new IOException("Read timeout");
-                    }
-                    request.connection().wait(toWait);
-                } catch (InterruptedException e) {
-                    throw new InterruptedIOException(e.getMessage());
-                } finally {
-                    waitingForRead = false;
-                }
-            }
-            if (readError != null) {
+        Buffer ret;
+        for (;;) {
+            IOException error = readError;
+            if (error != null) {
+                discardInput();
                 terminateRequest();
-                throw new IOException(readError);
+                throw new IOException(error);
+            }
+            boolean end = eof;
+            ret = input.poll();
+            if (ret != null || end) {
+                break;
+            }
+            long toWait = readTimeout - (System.currentTimeMillis() - readStart);
+            if (toWait <= 0) {
+                throw new IOException("Read timeout");
             }
-            Buffer ret = input1;
-            input1 = null;
-            if (inputOverflow != null) {
-                input1 = inputOverflow.poll();
-                if (input1 == null && !request.isEnded()) {
-                    request.fetch(1);
+            readWaiter = Thread.currentThread();
+            try {
+                //check again now the IO thread can see that we are waiting, so the wakeup can't be missed
+                if (input.isEmpty() && !eof && readError == null) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(toWait));
                 }
-            } else if (!request.isEnded()) {
-                request.fetch(1);
+            } finally {
+                readWaiter = null;
             }
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException();
+            }
+        }
+        if (ret == null) {
+            terminateRequest();
+            return null;
+        }
+        fetchIfDrained();
+        return ret.getByteBuf();
+    }
 
-            if (ret == null) {
-                terminateRequest();
+    /**
+     * Requests more data once the reader has taken everything that is queued.
+     */
+    private void fetchIfDrained() {
+        if (input.isEmpty() && !eof) {
+            request.fetch(1);
+        }
+    }
+
+    /**
+     * Releases any data that has not been read. Only called by the reading thread.
+     */
+    private void discardInput() {
+        Buffer buffer;
+        while ((buffer = input.poll()) != null) {
+            buffer.getByteBuf().release();
+        }
+    }
+
+    /**
+     * Called by the IO thread after data or an end of stream has been made available to the reader.
+     *
+     * @param async If true the read handler is always run as a separate task, otherwise it may be run directly
+     */
+    private void wakeReader(boolean async) {
+        Thread waiter = readWaiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+        if (readHandler != null) {
+            PendingRead pending = READ_HANDLER_UPDATER.getAndSet(this, null);
+            if (pending != null) {
+                if (async) {
+                    getIoThread().execute(pending);
+                } else {
+                    pending.run();
+                }
             }
-            return ret == null ? null : ret.getByteBuf();
         }
     }
 
     @Override
     public void close() {
-        synchronized (request.connection()) {
-            switch (request.version()) {
-                case HTTP_2:
-                    request.response().reset();
-                    break;
-                default:
-                    request.connection().close();
-            }
+        //both of these are safe to call from any thread, so there is no need to lock the connection
+        switch (request.version()) {
+            case HTTP_2:
+                request.response().reset();
+                break;
+            default:
+                request.connection().close();
         }
     }
 
@@ -554,7 +671,7 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
     @Override
     public void writeBlocking0(ByteBuf data, boolean last) throws IOException {
         if (upgradeRequest && getStatusCode() != 101) {
-            response.headers().add(HttpHeaderNames.CONNECTION, "close");
+            response.headers().add(AsciiHeaderNames.CONNECTION, "close");
         }
         if (responseDone) {
             if (last && data == null) {
@@ -563,88 +680,197 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
             data.release();
             throw new IOException("Response already complete");
         }
-        if (last && data == null) {
-            responseDone = true;
-            if (upgradeHandler == null) {
-                request.response().end();
-            } else {
-                request.response().end(upgradeHandler);
+        IOException error = writeError;
+        if (error != null) {
+            if (data != null) {
+                data.release();
             }
+            throw new IOException("Failed to write", error);
+        }
+        boolean inIoThread = isInIoThread();
+        if (!inIoThread) {
+            awaitWriteable(data);
+        }
+        if (data != null) {
+            OUTPUT_QUEUED_UPDATER.addAndGet(this, data.readableBytes());
+            output.add(data);
+        }
+        if (last) {
+            responseDone = true;
+            outputComplete = true;
+        }
+        if (inIoThread) {
+            flushOutput(false);
+        } else if (OUTPUT_FLUSH_UPDATER.compareAndSet(this, 0, 1)) {
+            connectionBase.channel().eventLoop().execute(flushTask);
+        }
+    }
+
+    /**
+     * Blocks until the IO thread has taken enough of the queued output that the data can be added. A write never blocks
+     * while the queue is empty, so a single buffer larger than the limit can still be written.
+     */
+    private void awaitWriteable(ByteBuf data) throws IOException {
+        int size = data == null ? 0 : data.readableBytes();
+        if (outputQueued == 0 || outputQueued + size <= MAX_QUEUED_OUTPUT) {
             return;
         }
+        writeWaiter = Thread.currentThread();
         try {
-            //do all this in the same lock
-            synchronized (request.connection()) {
-                awaitWriteable();
-                try {
-                    if (last) {
-                        responseDone = true;
-                        if (upgradeHandler == null) {
-                            request.response().end(createBuffer(data));
-                        } else {
-                            request.response().end(createBuffer(data), upgradeHandler);
-                        }
-                    } else {
-                        request.response().write(createBuffer(data));
-                    }
-                } catch (Exception e) {
-                    if (data != null && data.refCnt() > 0) {
+            while (outputQueued != 0 && outputQueued + size > MAX_QUEUED_OUTPUT && writeError == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    if (data != null) {
                         data.release();
                     }
-                    throw new IOException("Failed to write", e);
+                    throw new InterruptedIOException();
                 }
             }
         } finally {
-            if (last) {
-                terminateResponse();
+            writeWaiter = null;
+        }
+        IOException error = writeError;
+        if (error != null) {
+            if (data != null) {
+                data.release();
             }
+            throw new IOException("Failed to write", error);
         }
     }
 
-
-    private void awaitWriteable() throws InterruptedIOException {
-        assert Thread.holdsLock(request.connection());
-        if (first) {
-            first = false;
+    /**
+     * Hands everything a blocking writer has queued to Vert.x as a single write. This runs on the IO thread, and stops
+     * while the connection is not writable, the drain handler resumes it.
+     */
+    private void flushOutput(boolean force) {
+        OUTPUT_FLUSH_UPDATER.set(this, 0);
+        if (outputEnded) {
             return;
         }
-        while (request.response().writeQueueFull()) {
-            if (request.response().closed()) {
-                return;
-            }
+        if (writeError == null && response.closed()) {
+            writeError = new ClosedChannelException();
+        }
+        if (writeError != null) {
+            discardOutput();
+            return;
+        }
+        //the first write always goes through, a pushed stream reports that it is full until something is written
+        if (outputStarted && !force && response.writeQueueFull()) {
             if (!drainHandlerRegistered) {
                 drainHandlerRegistered = true;
                 Handler<Void> handler = new Handler<Void>() {
                     @Override
                     public void handle(Void event) {
-                        if (waitingForWrite) {
-                            HttpConnection connection = request.connection();
-                            synchronized (connection) {
-                                connection.notifyAll();
-                            }
-                        }
+                        flushOutput(false);
                     }
                 };
-                request.response().drainHandler(handler);
-                request.response().closeHandler(handler);
+                response.drainHandler(handler);
+                response.closeHandler(handler);
             }
-
-            try {
-                waitingForWrite = true;
-                request.connection().wait();
-            } catch (InterruptedException e) {
-                throw new InterruptedIOException(e.getMessage());
-            } finally {
-                waitingForWrite = false;
+            return;
+        }
+        //read this first, everything written before the last write was queued is then guaranteed to be in the queue
+        boolean last = outputComplete;
+        ByteBuf data = output.poll();
+        if (data == null && !last) {
+            return;
+        }
+        int size = 0;
+        if (data != null) {
+            size = data.readableBytes();
+            ByteBuf next = output.poll();
+            if (next != null) {
+                CompositeByteBuf batch = Unpooled.compositeBuffer();
+                batch.addComponent(true, data);
+                do {
+                    size += next.readableBytes();
+                    batch.addComponent(true, next);
+                } while ((next = output.poll()) != null);
+                data = batch;
+            }
+        }
+        outputStarted = true;
+        try {
+            if (last) {
+                outputEnded = true;
+                //the response is terminated when the end has been written, the upgrade handler does this itself
+                Handler<AsyncResult<Void>> handler = upgradeHandler == null ? endListener : upgradeHandler;
+                if (data == null) {
+                    response.end(handler);
+                } else {
+                    response.end(createBuffer(data), handler);
+                }
+            } else {
+                response.write(createBuffer(data));
+            }
+        } catch (Exception e) {
+            if (data != null && data.refCnt() > 0) {
+                data.release();
+            }
+            log.debugf(e, "Failed to write response");
+            failOutput(new IOException("Failed to write", e));
+            if (last) {
+                terminateResponse();
+            }
+        } finally {
+            //only count the data as gone once vert.x has it, async writes use this to know if they have to wait
+            if (size != 0) {
+                OUTPUT_QUEUED_UPDATER.addAndGet(this, -size);
+                LockSupport.unpark(writeWaiter);
             }
         }
     }
 
+    /**
+     * Async writes go straight to Vert.x, so any data still queued by earlier blocking writes has to be written first.
+     * Returns true if the write has been handed to the IO thread and will be retried from there.
+     */
+    private boolean writeQueuedOutput(Runnable retry) {
+        if (outputQueued == 0) {
+            return false;
+        }
+        if (!connectionBase.channel().eventLoop().inEventLoop()) {
+            writeQueued = true;
+            connectionBase.channel().eventLoop().execute(retry);
+            return true;
+        }
+        flushOutput(true);
+        return false;
+    }
+
+    /**
+     * Fails any blocking write that is in progress or queued, and all writes after it. This must be called from the
+     * IO thread.
+     */
+    private void failOutput(IOException error) {
+        if (writeError == null) {
+            writeError = error;
+        }
+        discardOutput();
+    }
+
+    private void discardOutput() {
+        ByteBuf data;
+        while ((data = output.poll()) != null) {
+            OUTPUT_QUEUED_UPDATER.addAndGet(this, -data.readableBytes());
+            data.release();
+        }
+        LockSupport.unpark(writeWaiter);
+    }
+
 
     @Override
     public <T> void writeAsync0(ByteBuf data, boolean last, IoCallback<T> callback, T context) {
+        if (writeQueuedOutput(new Runnable() {
+            @Override
+            public void run() {
+                writeAsync0(data, last, callback, context);
+            }
+        })) {
+            return;
+        }
         if (upgradeRequest && getStatusCode() != 101) {
-            response.headers().add(HttpHeaderNames.CONNECTION, "close");
+            response.headers().add(AsciiHeaderNames.CONNECTION, "close");
         }
         if (responseDone) {
             if (data != null) {
@@ -721,6 +947,52 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
         }
     }
 
+    @Override
+    protected <T> void writeFileAsync0(Path file, long position, long count, IoCallback<T> callback, T context) {
+        if (writeQueuedOutput(new Runnable() {
+            @Override
+            public void run() {
+                writeFileAsync0(file, position, count, callback, context);
+            }
+        })) {
+            return;
+        }
+        if (upgradeRequest && getStatusCode() != 101) {
+            response.headers().add(AsciiHeaderNames.CONNECTION, "close");
+        }
+        if (upgradeHandler != null) {
+            //sendFile always ends the response, so there is no way to hand over the upgrade handler
+            super.writeFileAsync0(file, position, count, callback, context);
+            return;
+        }
+        if (responseDone) {
+            callback.onException(this, context, new IOException("Response already complete"));
+            return;
+        }
+        responseDone = true;
+        writeQueued = true;
+        try {
+            //vert.x will use a FileRegion if the connection supports it, and fall back to chunked reads for TLS
+            request.response().sendFile(file.toAbsolutePath().toString(), position, count, new Handler<AsyncResult<Void>>() {
+                @Override
+                public void handle(AsyncResult<Void> event) {
+                    terminateResponse();
+                    writeQueued = false;
+                    if (event.succeeded()) {
+                        callback.onComplete(VertxHttpExchange.this, context);
+                    } else if (event.cause() instanceof IOException) {
+                        callback.onException(VertxHttpExchange.this, context, (IOException) event.cause());
+                    } else {
+                        callback.onException(VertxHttpExchange.this, context, new IOException("Failed to send file", event.cause()));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            writeQueued = false;
+            callback.onException(this, context, new IOException("Failed to send file", e));
+        }
+    }
+
     private <T> void queueWriteListener(IoCallback<T> callback, T context, boolean last) {
         connectionBase.channel().eventLoop().execute(new Runnable() {
             @Override
@@ -744,55 +1016,26 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
 
     @Override
     public void handle(Buffer event) {
-        BiConsumer<InputChannel, Object> readCallback = null;
-        Object context = null;
         if (event.length() == 0) {
             event.getByteBuf().release();
             return;
         }
-        synchronized (request.connection()) {
-            uploadSize += event.length();
-            if (maxEntitySizeReached()) {
-                if (!responseDone) {
-                    eof = true;
-                    responseDone = true;
-                    terminateRequest();
-                    response.setStatusCode(413);
-                    response.putHeader("Connection", "close");
-                    response.end("Request body too large");
-                    VertxHttpExchange.this.close();
-                    return;
-                }
-            }
-
-            if (input1 == null) {
-                input1 = event;
-            } else {
-                if (inputOverflow == null) {
-                    inputOverflow = new ArrayDeque<>();
-                }
-                inputOverflow.add(event);
-            }
-            if (waitingForRead) {
-                request.connection().notifyAll();
-            }
-            if (readHandler != null) {
-                readCallback = readHandler;
-                readHandler = null;
-                context = readHandlerContext;
-                readHandlerContext = null;
+        uploadSize += event.length();
+        if (maxEntitySizeReached()) {
+            if (!responseDone) {
+                eof = true;
+                responseDone = true;
+                terminateRequest();
+                response.setStatusCode(413);
+                response.putHeader("Connection", "close");
+                response.end("Request body too large");
+                VertxHttpExchange.this.close();
+                event.getByteBuf().release();
+                return;
             }
         }
-        if (readCallback != null) {
-            BiConsumer<InputChannel, Object> f = readCallback;
-            Object c = context;
-            getIoThread().execute(new Runnable() {
-                @Override
-                public void run() {
-                    f.accept(VertxHttpExchange.this, c);
-                }
-            });
-        }
+        input.add(event);
+        wakeReader(true);
     }
 
     private boolean maxEntitySizeReached() {
@@ -870,7 +1113,7 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
 
     @Override
     public boolean isIoOperationQueued() {
-        return readHandler != null || writeQueued;
+        return readHandler != null || writeQueued || isThrottledWritePending();
     }
 
     @Override
@@ -920,4 +1163,23 @@ public class VertxHttpExchange extends HttpExchangeBase implements HttpExchange,
             }
         };
     }
+
+    /**
+     * A read handler that is waiting for data.
+     */
+    private final class PendingRead implements Runnable {
+
+        private final BiConsumer<InputChannel, Object> handler;
+        private final Object context;
+
+        PendingRead(BiConsumer<InputChannel, Object> handler, Object context) {
+            this.handler = handler;
+            this.context = context;
+        }
+
+        @Override
+        public void run() {
+            handler.accept(VertxHttpExchange.this, context);
+        }
+    }
 }
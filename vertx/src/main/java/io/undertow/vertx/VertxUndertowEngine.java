@@ -8,6 +8,8 @@ import java.util.function.Supplier;
 import io.undertow.httpcore.BufferAllocator;
 import io.undertow.httpcore.ExchangeHandler;
 import io.undertow.httpcore.UndertowEngine;
+import io.undertow.httpcore.UndertowOptionMap;
+import io.undertow.httpcore.UndertowOptions;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
 import io.vertx.core.DeploymentOptions;
@@ -15,16 +17,32 @@ import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.net.JksOptions;
+import org.jboss.logging.Logger;
 
 public class VertxUndertowEngine implements UndertowEngine {
+    private static final Logger log = Logger.getLogger(VertxUndertowEngine.class);
+
     @Override
     public EngineInstance start(int ioThreads, Executor blockingExecutor, BufferAllocator bufferAllocator) {
-        Vertx vertx = Vertx.vertx();
-        return new VertxEngineInstance(vertx, blockingExecutor, ioThreads, bufferAllocator);
+        return start(ioThreads, blockingExecutor, bufferAllocator, UndertowOptionMap.EMPTY);
+    }
+
+    @Override
+    public EngineInstance start(int ioThreads, Executor blockingExecutor, BufferAllocator bufferAllocator, UndertowOptionMap options) {
+        //one event loop per verticle instance, so each instance has its own thread
+        VertxOptions vertxOptions = new VertxOptions()
+                .setEventLoopPoolSize(ioThreads)
+                .setPreferNativeTransport(options.get(UndertowOptions.PREFER_NATIVE_TRANSPORT, false));
+        Vertx vertx = Vertx.vertx(vertxOptions);
+        if (vertxOptions.getPreferNativeTransport() && !vertx.isNativeTransportEnabled()) {
+            log.debugf(vertx.unavailableNativeTransportCause(), "Native transport is not available, using the JDK transport");
+        }
+        return new VertxEngineInstance(vertx, blockingExecutor, ioThreads, bufferAllocator, options);
     }
 
     @Override
@@ -39,7 +57,10 @@ public class VertxUndertowEngine implements UndertowEngine {
                 HttpServerOptions opts = (HttpServerOptions) options;
                 if (opts == null) {
                     opts = new HttpServerOptions();
+                } else {
+                    opts = new HttpServerOptions(opts);
                 }
+                applyTransportOptions(ei.options, opts);
                 return new MyVerticle(ei.allocator, port, host, ei.vertx, ei.executor, handler, opts);
             }
         }, new DeploymentOptions().setInstances(ei.ioThreads), new Handler<AsyncResult<String>>() {
@@ -73,18 +94,39 @@ public class VertxUndertowEngine implements UndertowEngine {
         bindHttp(instance, handler, port, host, opts);
     }
 
+    /**
+     * Applies the socket options that are set in the server options, anything that is not set keeps the value from the
+     * listener options.
+     */
+    private static void applyTransportOptions(UndertowOptionMap options, HttpServerOptions opts) {
+        if (options.contains(UndertowOptions.REUSE_PORT)) {
+            opts.setReusePort(options.get(UndertowOptions.REUSE_PORT));
+        }
+        if (options.contains(UndertowOptions.TCP_FASTOPEN)) {
+            opts.setTcpFastOpen(options.get(UndertowOptions.TCP_FASTOPEN));
+        }
+        if (options.contains(UndertowOptions.TCP_QUICKACK)) {
+            opts.setTcpQuickAck(options.get(UndertowOptions.TCP_QUICKACK));
+        }
+        if (options.contains(UndertowOptions.TCP_CORK)) {
+            opts.setTcpCork(options.get(UndertowOptions.TCP_CORK));
+        }
+    }
+
     static class VertxEngineInstance implements EngineInstance {
         final Vertx vertx;
         final Executor executor;
         final int ioThreads;
         final BufferAllocator allocator;
+        final UndertowOptionMap options;
 
 
-        VertxEngineInstance(Vertx vertx, Executor executor, int ioThreads, BufferAllocator allocator) {
+        VertxEngineInstance(Vertx vertx, Executor executor, int ioThreads, BufferAllocator allocator, UndertowOptionMap options) {
             this.vertx = vertx;
             this.executor = executor;
             this.ioThreads = ioThreads;
             this.allocator = allocator;
+            this.options = options;
         }
 
         @Override
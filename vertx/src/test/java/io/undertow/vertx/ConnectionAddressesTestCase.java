@@ -0,0 +1,43 @@
+package io.undertow.vertx;
+
+import java.net.InetAddress;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.vertx.core.net.SocketAddress;
+
+/**
+ * Tests that the address bytes are the same as the ones {@link InetAddress#getAddress()} returns for the address.
+ */
+public class ConnectionAddressesTestCase {
+
+    @Test
+    public void testIpv4MappedAddress() throws Exception {
+        ConnectionAddresses addresses = new ConnectionAddresses(SocketAddress.inetSocketAddress(1234, "::ffff:10.0.0.1"),
+                SocketAddress.inetSocketAddress(8080, "::ffff:10.0.0.2"));
+        Assert.assertArrayEquals(new byte[]{10, 0, 0, 1}, addresses.sourceBytes);
+        Assert.assertArrayEquals(addresses.source.getAddress().getAddress(), addresses.sourceBytes);
+        Assert.assertEquals(1234, addresses.source.getPort());
+        Assert.assertArrayEquals(new byte[]{10, 0, 0, 2}, addresses.destinationBytes);
+        Assert.assertEquals(8080, addresses.destination.getPort());
+    }
+
+    @Test
+    public void testAddresses() throws Exception {
+        ConnectionAddresses addresses = new ConnectionAddresses(SocketAddress.inetSocketAddress(1234, "10.0.0.1"),
+                SocketAddress.inetSocketAddress(8080, "::1"));
+        Assert.assertArrayEquals(new byte[]{10, 0, 0, 1}, addresses.sourceBytes);
+        Assert.assertArrayEquals(InetAddress.getByName("::1").getAddress(), addresses.destinationBytes);
+        Assert.assertEquals(16, addresses.destinationBytes.length);
+    }
+
+    @Test
+    public void testUnresolvedAddress() {
+        ConnectionAddresses addresses = new ConnectionAddresses(SocketAddress.inetSocketAddress(1234, "example.invalid"), null);
+        Assert.assertNull(addresses.sourceBytes);
+        Assert.assertTrue(addresses.source.isUnresolved());
+        Assert.assertNull(addresses.destination);
+        Assert.assertNull(addresses.destinationBytes);
+    }
+}